@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.bench;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Spring context of the benchmarks : the services and the DAOs
+ * on an in memory H2 database created by Liquibase.
+ * Each JMH fork is a new JVM, so the context is shared by
+ * all the benchmarks of a fork.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class BenchContext {
+
+	/** Context of the fork, null until the first use */
+	private static ClassPathXmlApplicationContext context = null;
+	
+	/**
+	 * Get a bean of the context, starting it if needed.
+	 * @param type Class of the bean
+	 * @return Bean
+	 */
+	public static synchronized <T> T getBean(Class<T> type) {
+		if (context == null) {
+			context = new ClassPathXmlApplicationContext("bench-context.xml");
+		}
+		return context.getBean(type);
+	}
+	
+	/**
+	 * Execute a callback in a transaction which is rolled back,
+	 * so the database is the same for each invocation.
+	 * @param callback Code to execute
+	 * @return Result of the callback
+	 */
+	public static <T> T inRollback(final TransactionCallback<T> callback) {
+		TransactionTemplate template = new TransactionTemplate(getBean(PlatformTransactionManager.class));
+		return template.execute(new TransactionCallback<T>() {
+			@Override
+			public T doInTransaction(TransactionStatus status) {
+				status.setRollbackOnly();
+				return callback.doInTransaction(status);
+			}
+		});
+	}
+	
+	/**
+	 * Execute a callback in a transaction which is committed.
+	 * @param callback Code to execute
+	 * @return Result of the callback
+	 */
+	public static <T> T inTransaction(TransactionCallback<T> callback) {
+		return new TransactionTemplate(getBean(PlatformTransactionManager.class)).execute(callback);
+	}
+	
+	/**
+	 * Insert a generated ledger in the database.
+	 * @param generator Generator of the ledger
+	 * @return Number of operations inserted
+	 * @throws SQLException If the insert failed
+	 */
+	public static int generate(LedgerGenerator generator) throws SQLException {
+		Connection connection = getBean(DataSource.class).getConnection();
+		try {
+			return generator.generate(connection);
+		} finally {
+			connection.close();
+		}
+	}
+	
+	/**
+	 * Close the context.
+	 */
+	public static synchronized void close() {
+		if (context != null) {
+			context.close();
+			context = null;
+		}
+	}
+	
+}
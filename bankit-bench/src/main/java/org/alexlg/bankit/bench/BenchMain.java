@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.bench;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Run the JMH benchmarks, writing the results as JSON in
+ * jmh-result-&lt;date&gt;.json unless another format or file is given,
+ * so the results of several runs can be compared.
+ * All the JMH options are accepted, for example :
+ * java -jar target/benchmarks.jar MonthSummary -p rows=10000
+ * 
+ * @author Alexandre Thomazo
+ */
+public class BenchMain {
+
+	public static void main(String[] args) throws Exception {
+		List<String> opts = new ArrayList<String>(Arrays.asList(args));
+		if (!opts.contains("-rf")) {
+			opts.add("-rf");
+			opts.add("json");
+		}
+		if (!opts.contains("-rff")) {
+			String date = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+			opts.add("-rff");
+			opts.add("jmh-result-" + date + ".json");
+		}
+		org.openjdk.jmh.Main.main(opts.toArray(new String[opts.size()]));
+	}
+	
+}
@@ -0,0 +1,670 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+
+import org.alexlg.bankit.db.Category;
+import org.alexlg.bankit.db.Cost;
+import org.alexlg.bankit.db.Operation;
+import org.alexlg.bankit.recurrence.EpochDays;
+import org.alexlg.bankit.recurrence.Frequency;
+import org.alexlg.bankit.recurrence.RecurrenceRule;
+import org.alexlg.bankit.services.SyncService;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.joda.time.LocalDate;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Generate a realistic ledger for the benchmarks and the load tests :
+ * several years of imported operations with a variety of labels,
+ * recurring costs and their operations, and planned operations
+ * waiting to be debited. The operations are written with JDBC
+ * batches, a ledger of 1M operations takes a few seconds.
+ * 
+ * The generator also builds the next import from the bank, which
+ * debits the planned operations waiting, and writes it as QIF or as
+ * the JSON of the sync API.
+ * 
+ * The data only depend on the seed and the parameters.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class LedgerGenerator {
+
+	/** Number of statements by JDBC batch */
+	private static final int BATCH_SIZE = 1000;
+	
+	/** Number of operations by transaction */
+	private static final int COMMIT_SIZE = 50000;
+	
+	/** Name of the categories */
+	private static final String[] CATEGORIES = {
+		"Alimentation", "Carburant", "Communications", "Energie", "Revenus", "Transport",
+		"Assurances", "Sante", "Loisirs", "Logement", "Retraits", "Divers"
+	};
+	
+	/** Shops : label, category index, min and max amount in cents */
+	private static final Object[][] SHOPS = {
+		{ "CB CARREFOUR MARKET", 0, 800, 15000 },
+		{ "CB LECLERC", 0, 1500, 20000 },
+		{ "CB MONOPRIX", 0, 300, 6000 },
+		{ "CB BOULANGERIE", 0, 120, 1500 },
+		{ "CB TOTAL ESSENCE", 1, 2000, 9000 },
+		{ "CB ESSO STATION", 1, 2000, 8000 },
+		{ "CB SNCF INTERNET", 5, 1500, 18000 },
+		{ "CB RATP", 5, 190, 3000 },
+		{ "CB PHARMACIE", 7, 300, 4500 },
+		{ "CB FNAC", 8, 1000, 30000 },
+		{ "CB CINEMA", 8, 700, 3000 },
+		{ "CB RESTAURANT", 8, 1500, 9000 },
+		{ "CB AMAZON EU", 11, 500, 20000 },
+		{ "RETRAIT DAB", 10, 2000, 10000 },
+		{ "CHQ", -1, 1000, 50000 },
+		{ "VIR SEPA", -1, 500, 40000 }
+	};
+	
+	/** Cities added to the card labels */
+	private static final String[] CITIES = {
+		"PARIS", "LYON", "NANTES", "LILLE", "RENNES", "BORDEAUX", "TOULOUSE", "NICE"
+	};
+	
+	/** Costs : label, category index, amount in cents, day, frequency */
+	private static final Object[][] COSTS = {
+		{ "SALAIRE", 4, 210000, 27, Frequency.MONTHLY },
+		{ "LOYER", 9, -65000, 1, Frequency.MONTHLY },
+		{ "EDF", 3, -6500, 8, Frequency.MONTHLY },
+		{ "FREE MOBILE", 2, -1999, 24, Frequency.MONTHLY },
+		{ "BOX INTERNET", 2, -2999, 20, Frequency.MONTHLY },
+		{ "ASSURANCE AUTO", 6, -4800, 3, Frequency.MONTHLY },
+		{ "MUTUELLE", 7, -3500, 5, Frequency.MONTHLY },
+		{ "NAVIGO", 5, -7520, 2, Frequency.MONTHLY },
+		{ "COURSES", 0, -9000, 6, Frequency.WEEKLY },
+		{ "ASSURANCE HABITATION", 6, -18000, 15, Frequency.YEARLY },
+		{ "CANTINE", 11, -4000, 10, Frequency.BIWEEKLY },
+		{ "IMPOTS", 11, -21000, 15, Frequency.MONTHLY }
+	};
+	
+	/** Random generator of the data */
+	private final Random random;
+	
+	/** Last day of the imported operations */
+	private LocalDate end = new LocalDate();
+	
+	/** Number of years of operations */
+	private int years = 1;
+	
+	/** Number of imported operations by month, excluding the costs */
+	private int opsPerMonth = 60;
+	
+	/** Number of recurring costs */
+	private int nbCosts = COSTS.length;
+	
+	/** Number of planned operations waiting to be debited */
+	private int nbPlanned = 10;
+	
+	/** Costs inserted */
+	private final List<Cost> costs = new ArrayList<Cost>();
+	
+	/** Planned operations waiting inserted */
+	private final List<Operation> planned = new ArrayList<Operation>();
+	
+	/**
+	 * Create a generator.
+	 * @param seed Seed of the random data
+	 */
+	public LedgerGenerator(long seed) {
+		random = new Random(seed);
+	}
+	
+	/**
+	 * Create the tables of the application with the Liquibase changelog,
+	 * the same way as the webapp so it doesn't apply the changesets again.
+	 * @param connection Connection to the database
+	 * @throws LiquibaseException If the update failed
+	 */
+	public static void createSchema(Connection connection) throws LiquibaseException {
+		SpringLiquibase liquibase = new SpringLiquibase();
+		liquibase.setDataSource(new SingleConnectionDataSource(connection, true));
+		liquibase.setChangeLog("classpath:db-changelog.xml");
+		liquibase.setResourceLoader(new DefaultResourceLoader());
+		liquibase.afterPropertiesSet();
+	}
+	
+	/**
+	 * Insert the ledger in an empty database : the categories, the costs,
+	 * the operations and the sync options.
+	 * @param connection Connection to the database
+	 * @return Number of operations inserted
+	 * @throws SQLException If an insert failed
+	 */
+	public int generate(Connection connection) throws SQLException {
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try {
+			List<Category> categories = insertCategories(connection);
+			insertCosts(connection, categories);
+			
+			OperationWriter writer = new OperationWriter(connection);
+			int endDay = EpochDays.of(end);
+			int startDay = EpochDays.of(end.minusYears(years));
+			
+			//initial balance
+			Operation init = newOperation(startDay, "SOLDE INITIAL", new BigDecimal("1500.00"), null);
+			writer.write(init);
+			
+			//imported operations month by month, in date order
+			int firstMonth = EpochDays.monthIndex(startDay);
+			int lastMonth = EpochDays.monthIndex(endDay);
+			for (int month = firstMonth; month <= lastMonth; month++) {
+				int monthStart = Math.max(EpochDays.dayInMonth(month, 1), startDay + 1);
+				int monthEnd = Math.min(EpochDays.dayInMonth(month, 31), endDay);
+				if (monthStart > monthEnd) continue;
+				
+				for (Cost cost : costs) {
+					writeCostOperations(writer, cost, monthStart, monthEnd);
+				}
+				
+				//shops, fewer for an incomplete month
+				int nbOps = opsPerMonth * (monthEnd - monthStart + 1) / 30;
+				for (int i = 0; i < nbOps; i++) {
+					int day = monthStart + random.nextInt(monthEnd - monthStart + 1);
+					writer.write(shopOperation(day, categories));
+				}
+			}
+			
+			//planned operations of the costs materialized until 2 days after the end
+			for (Cost cost : costs) {
+				RecurrenceRule.Occurrences occurrences = cost.getRecurrenceRule().occurrences(endDay + 1, endDay + 2);
+				while (occurrences.hasNext()) {
+					Operation op = newOperation(occurrences.next(), cost.getLabel(), null, cost.getCategory());
+					op.setPlanned(cost.getAmount());
+					op.setCost(cost);
+					writer.write(op);
+				}
+			}
+			
+			//manual planned operations around the end, waiting to be debited
+			for (int i = 0; i < nbPlanned; i++) {
+				Operation op = shopOperation(endDay - 2 + random.nextInt(33), categories);
+				op.setPlanned(op.getAmount());
+				op.setAmount(null);
+				writer.write(op);
+				planned.add(op);
+			}
+			writer.close();
+			
+			//the next sync starts after the end
+			insertOption(connection, SyncService.OP_SYNC_OPT, end.toDate());
+			insertOption(connection, SyncService.COST_SYNC_OPT, end.plusDays(2).toDate());
+			connection.commit();
+			return writer.count;
+		} catch (SQLException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+	
+	/**
+	 * Build the next import from the bank, after the end of the ledger :
+	 * the planned operations waiting debited one day after their date,
+	 * the costs and the shops of the period.
+	 * @param nbDays Number of days of the import
+	 * @return Operations to import, in date order
+	 */
+	public List<Operation> nextImport(int nbDays) {
+		int endDay = EpochDays.of(end);
+		List<Operation> ops = new ArrayList<Operation>();
+		
+		for (Operation plannedOp : planned) {
+			int day = EpochDays.of(plannedOp.getOperationDate()) + 1;
+			if (day > endDay && day <= endDay + nbDays) {
+				ops.add(newOperation(day, plannedOp.getLabel(), plannedOp.getPlanned(), null));
+			}
+		}
+		
+		OperationList list = new OperationList(ops);
+		for (Cost cost : costs) {
+			writeCostOperations(list, cost, endDay + 1, endDay + nbDays);
+		}
+		for (int i = 0; i < opsPerMonth * nbDays / 30; i++) {
+			ops.add(shopOperation(endDay + 1 + random.nextInt(nbDays), null));
+		}
+		
+		//the bank sends them in date order
+		Collections.sort(ops);
+		return ops;
+	}
+	
+	/**
+	 * Write operations into a QIF file as exported by the bank.
+	 * @param ops Operations to write
+	 * @param out Stream to write to, not closed
+	 * @throws IOException If the writing failed
+	 */
+	public static void writeQif(List<Operation> ops, OutputStream out) throws IOException {
+		SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yy");
+		Writer writer = new OutputStreamWriter(out, "cp1252");
+		writer.write("!Type:Bank\n");
+		for (Operation op : ops) {
+			writer.write("D" + dateFormat.format(op.getOperationDate()) + "\n");
+			writer.write("T" + op.getAmount().toPlainString() + "\n");
+			writer.write("P" + op.getLabel() + "\n");
+			writer.write("^\n");
+		}
+		writer.flush();
+	}
+	
+	/**
+	 * Write operations as the JSON body of the sync API.
+	 * @param ops Operations to write
+	 * @param out Stream to write to, not closed
+	 * @throws IOException If the writing failed
+	 */
+	public static void writeJson(List<Operation> ops, OutputStream out) throws IOException {
+		List<Map<String, Object>> json = new ArrayList<Map<String, Object>>(ops.size());
+		for (Operation op : ops) {
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put("operationDate", op.getOperationDate().getTime());
+			values.put("valueDate", op.getValueDate() == null ? null : op.getValueDate().getTime());
+			values.put("label", op.getLabel());
+			values.put("amount", op.getAmount());
+			json.add(values);
+		}
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+		mapper.writeValue(out, json);
+	}
+	
+	/**
+	 * Create a H2 database with a ledger and write the next import
+	 * in import.qif and import.json.
+	 * Arguments : database url, number of years, operations by month,
+	 * and optionally the directory of the import files.
+	 * For example : jdbc:h2:/tmp/bankit 10 8000
+	 * @param args Arguments
+	 * @throws Exception If the generation failed
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("Usage: LedgerGenerator <jdbc url> <years> <operations by month> [import dir]");
+			System.exit(1);
+		}
+		
+		LedgerGenerator generator = new LedgerGenerator(42);
+		generator.setYears(Integer.parseInt(args[1]));
+		generator.setOpsPerMonth(Integer.parseInt(args[2]));
+		
+		long start = System.currentTimeMillis();
+		Connection connection = DriverManager.getConnection(args[0]);
+		int nb;
+		try {
+			createSchema(connection);
+			nb = generator.generate(connection);
+		} finally {
+			connection.close();
+		}
+		System.out.println(nb + " operations generated in " + (System.currentTimeMillis() - start) + "ms");
+		
+		File dir = new File(args.length > 3 ? args[3] : ".");
+		List<Operation> ops = generator.nextImport(30);
+		OutputStream qif = new FileOutputStream(new File(dir, "import.qif"));
+		try {
+			writeQif(ops, qif);
+		} finally {
+			qif.close();
+		}
+		OutputStream json = new FileOutputStream(new File(dir, "import.json"));
+		try {
+			writeJson(ops, json);
+		} finally {
+			json.close();
+		}
+		System.out.println(ops.size() + " operations to import written in " + dir.getAbsolutePath());
+	}
+	
+	/**
+	 * Add the operations of a cost between two days.
+	 * @param writer Destination of the operations
+	 * @param cost Cost of the operations
+	 * @param from First day, included
+	 * @param to Last day, included
+	 */
+	private void writeCostOperations(OperationSink writer, Cost cost, int from, int to) {
+		RecurrenceRule.Occurrences occurrences = cost.getRecurrenceRule().occurrences(from, to);
+		while (occurrences.hasNext()) {
+			int day = occurrences.next();
+			//the bills vary a bit, not the incomes and the fixed costs
+			BigDecimal amount = cost.getAmount();
+			if (cost.getCategory() != null && "Energie".equals(cost.getCategory().getName())) {
+				amount = amount.multiply(new BigDecimal(80 + random.nextInt(40))).movePointLeft(2)
+						.setScale(2, BigDecimal.ROUND_HALF_UP);
+			}
+			String prefix = amount.signum() > 0 ? "VIR " : "PRLV SEPA ";
+			Operation op = newOperation(day, prefix + cost.getLabel() + " " + reference(), amount, cost.getCategory());
+			op.setPlanned(cost.getAmount());
+			writer.write(op);
+		}
+	}
+	
+	/**
+	 * Create an operation of a shop, a quarter of them without category.
+	 * @param day Epoch day of the operation
+	 * @param categories Categories, null for no category
+	 * @return Operation
+	 */
+	private Operation shopOperation(int day, List<Category> categories) {
+		Object[] shop = SHOPS[random.nextInt(SHOPS.length)];
+		String label = (String) shop[0];
+		int catIndex = (Integer) shop[1];
+		int min = (Integer) shop[2];
+		int max = (Integer) shop[3];
+		
+		if (label.startsWith("CB") || label.startsWith("RETRAIT")) {
+			//date of the card payment, formatted by hand as it's done for each operation
+			LocalDate date = EpochDays.toLocalDate(day);
+			int dayOfMonth = date.getDayOfMonth();
+			int month = date.getMonthOfYear();
+			label += (dayOfMonth < 10 ? " 0" : " ") + dayOfMonth + (month < 10 ? "/0" : "/") + month
+					+ " " + CITIES[random.nextInt(CITIES.length)];
+		} else {
+			label += " " + reference();
+		}
+		
+		BigDecimal amount = new BigDecimal(-(min + random.nextInt(max - min))).movePointLeft(2);
+		Category category = null;
+		if (categories != null && catIndex >= 0 && random.nextInt(4) != 0) {
+			category = categories.get(catIndex);
+		}
+		return newOperation(day, label, amount, category);
+	}
+	
+	/**
+	 * Create an operation.
+	 * @param day Epoch day of the operation
+	 * @param label Label
+	 * @param amount Amount, null for a planned operation
+	 * @param category Category or null
+	 * @return Operation
+	 */
+	private Operation newOperation(int day, String label, BigDecimal amount, Category category) {
+		Operation op = new Operation();
+		op.setOperationDate(EpochDays.toDate(day));
+		if (amount != null) op.setValueDate(op.getOperationDate());
+		op.setLabel(label);
+		op.setAmount(amount);
+		op.setCategory(category);
+		return op;
+	}
+	
+	/**
+	 * @return Random reference of a transfer
+	 */
+	private String reference() {
+		return Integer.toString(100000 + random.nextInt(900000));
+	}
+	
+	/**
+	 * Insert the categories.
+	 * @param connection Connection to the database
+	 * @return Categories inserted, in the order of {@link #CATEGORIES}
+	 * @throws SQLException If an insert failed
+	 */
+	private List<Category> insertCategories(Connection connection) throws SQLException {
+		List<Category> categories = new ArrayList<Category>();
+		PreparedStatement st = connection.prepareStatement("insert into categories (name) values (?)",
+				Statement.RETURN_GENERATED_KEYS);
+		try {
+			for (String name : CATEGORIES) {
+				st.setString(1, name);
+				st.executeUpdate();
+				
+				Category category = new Category();
+				category.setName(name);
+				category.setCategoryId(generatedKey(st));
+				categories.add(category);
+			}
+		} finally {
+			st.close();
+		}
+		return categories;
+	}
+	
+	/**
+	 * Insert the costs, with a number after the label when
+	 * there are more costs than the list.
+	 * @param connection Connection to the database
+	 * @param categories Categories of the costs
+	 * @throws SQLException If an insert failed
+	 */
+	private void insertCosts(Connection connection, List<Category> categories) throws SQLException {
+		PreparedStatement st = connection.prepareStatement("insert into costs "
+				+ "(day, label, amount, category_id, frequency, frequency_interval) values (?, ?, ?, ?, ?, ?)",
+				Statement.RETURN_GENERATED_KEYS);
+		try {
+			for (int i = 0; i < nbCosts; i++) {
+				Object[] values = COSTS[i % COSTS.length];
+				Cost cost = new Cost();
+				cost.setDay((Integer) values[3]);
+				cost.setLabel(i < COSTS.length ? (String) values[0] : values[0] + " " + (i / COSTS.length + 1));
+				cost.setAmount(new BigDecimal((Integer) values[2]).movePointLeft(2));
+				cost.setCategory(categories.get((Integer) values[1]));
+				cost.setFrequency((Frequency) values[4]);
+				cost.setInterval(1);
+				
+				st.setInt(1, cost.getDay());
+				st.setString(2, cost.getLabel());
+				st.setBigDecimal(3, cost.getAmount());
+				st.setInt(4, cost.getCategory().getCategoryId());
+				st.setString(5, cost.getFrequency().name());
+				st.setInt(6, cost.getInterval());
+				st.executeUpdate();
+				
+				cost.setCostId(generatedKey(st));
+				costs.add(cost);
+			}
+		} finally {
+			st.close();
+		}
+	}
+	
+	/**
+	 * Insert a date option.
+	 * @param connection Connection to the database
+	 * @param name Name of the option
+	 * @param value Value of the option
+	 * @throws SQLException If the insert failed
+	 */
+	private void insertOption(Connection connection, String name, Date value) throws SQLException {
+		PreparedStatement st = connection.prepareStatement("insert into options (name, date_val) values (?, ?)");
+		try {
+			st.setString(1, name);
+			st.setDate(2, new java.sql.Date(value.getTime()));
+			st.executeUpdate();
+		} finally {
+			st.close();
+		}
+	}
+	
+	/**
+	 * Get the id generated by an insert.
+	 * @param st Statement executed
+	 * @return Id generated
+	 * @throws SQLException If the id can't be read
+	 */
+	private static int generatedKey(Statement st) throws SQLException {
+		ResultSet keys = st.getGeneratedKeys();
+		try {
+			keys.next();
+			return keys.getInt(1);
+		} finally {
+			keys.close();
+		}
+	}
+	
+	public LocalDate getEnd() {
+		return end;
+	}
+	
+	public int getYears() {
+		return years;
+	}
+	
+	public int getOpsPerMonth() {
+		return opsPerMonth;
+	}
+	
+	public int getNbCosts() {
+		return nbCosts;
+	}
+	
+	public int getNbPlanned() {
+		return nbPlanned;
+	}
+	
+	public void setEnd(LocalDate end) {
+		this.end = end;
+	}
+	
+	public void setYears(int years) {
+		this.years = years;
+	}
+	
+	public void setOpsPerMonth(int opsPerMonth) {
+		this.opsPerMonth = opsPerMonth;
+	}
+	
+	public void setNbCosts(int nbCosts) {
+		this.nbCosts = nbCosts;
+	}
+	
+	public void setNbPlanned(int nbPlanned) {
+		this.nbPlanned = nbPlanned;
+	}
+	
+	/**
+	 * Destination of the generated operations.
+	 */
+	private interface OperationSink {
+		void write(Operation op);
+	}
+	
+	/**
+	 * Keep the operations in a list.
+	 */
+	private static class OperationList implements OperationSink {
+		private final List<Operation> ops;
+		
+		private OperationList(List<Operation> ops) {
+			this.ops = ops;
+		}
+		
+		@Override
+		public void write(Operation op) {
+			ops.add(op);
+		}
+	}
+	
+	/**
+	 * Insert the operations with JDBC batches, committed by groups.
+	 */
+	private static class OperationWriter implements OperationSink {
+		private final Connection connection;
+		private final PreparedStatement st;
+		/** Number of operations written */
+		private int count = 0;
+		
+		private OperationWriter(Connection connection) throws SQLException {
+			this.connection = connection;
+			st = connection.prepareStatement("insert into operations "
+					+ "(value_date, operation_date, label, planned, amount, category_id, cost_id) "
+					+ "values (?, ?, ?, ?, ?, ?, ?)");
+		}
+		
+		@Override
+		public void write(Operation op) {
+			try {
+				setDate(1, op.getValueDate());
+				setDate(2, op.getOperationDate());
+				st.setString(3, op.getLabel());
+				st.setBigDecimal(4, op.getPlanned());
+				st.setBigDecimal(5, op.getAmount());
+				if (op.getCategory() != null) {
+					st.setInt(6, op.getCategory().getCategoryId());
+				} else {
+					st.setNull(6, Types.INTEGER);
+				}
+				if (op.getCost() != null) {
+					st.setInt(7, op.getCost().getCostId());
+				} else {
+					st.setNull(7, Types.INTEGER);
+				}
+				st.addBatch();
+				
+				count++;
+				if (count % BATCH_SIZE == 0) st.executeBatch();
+				if (count % COMMIT_SIZE == 0) connection.commit();
+			} catch (SQLException e) {
+				throw new IllegalStateException("Insert of operation " + count + " failed", e);
+			}
+		}
+		
+		private void setDate(int index, Date date) throws SQLException {
+			if (date != null) {
+				st.setDate(index, new java.sql.Date(date.getTime()));
+			} else {
+				st.setNull(index, Types.DATE);
+			}
+		}
+		
+		private void close() throws SQLException {
+			st.executeBatch();
+			st.close();
+		}
+	}
+	
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.Histogram;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+
+/**
+ * Load test of the standalone server : the Jetty server of the
+ * Launcher is started in the JVM on a free port, with the war and
+ * a generated ledger, then many client threads send a mix of requests
+ * as fast as they can :
+ * <ul>
+ * <li>the operations list of the current month,</li>
+ * <li>the operations list of a range of months,</li>
+ * <li>the change of the category of an operation,</li>
+ * <li>the sync of the operations of the next day from the bank,</li>
+ * <li>a fingerprinted asset of the operations page (script, stylesheet
+ * or image), sent by Jetty or by the webapp with -static false.</li>
+ * </ul>
+ * The throughput and the latency distribution of each request are
+ * reported at the end, and the distributions are written in .hgrm files.
+ * 
+ * Each client waits for its response before sending the next request,
+ * so the latencies don't include the time a request would have waited
+ * for a busy server.
+ * 
+ * Options, with their default value :
+ * -threads 16 -warmup 10 -duration 60 (seconds) -years 5 -ops 300
+ * (imported operations by month) -db (a new H2 file database in the temp dir)
+ * -war ../bankit-web/target/bankit-web.war (war or exploded war) -out .
+ * -static true (false to send the assets through the webapp)
+ * 
+ * @author Alexandre Thomazo
+ */
+public class LoadTest {
+
+	/** Requests of the mix */
+	enum Request {
+		LIST(35), RANGE(25), UPDATE_CAT(20), SYNC(5), ASSET(15);
+		
+		/** Percentage of the requests sent */
+		private final int weight;
+		
+		private Request(int weight) {
+			this.weight = weight;
+		}
+	}
+	
+	/** Url of the webapp, ending with a slash */
+	private String baseUrl;
+	
+	/** Generator of the ledger, used for the sync requests */
+	private final LedgerGenerator generator;
+	
+	/** Last day synchronized by the sync requests */
+	private LocalDate syncEnd;
+	
+	/** First operation id of the ledger */
+	private int minOpId;
+	
+	/** Last operation id of the ledger */
+	private int maxOpId;
+	
+	/** Ids of the categories */
+	private final List<Integer> categoryIds = new ArrayList<Integer>();
+	
+	/** Paths of the assets of the operations page */
+	private final List<String> assetPaths = new ArrayList<String>();
+	
+	/** Asset URL in a page, without the session id added for the clients without cookie */
+	private static final Pattern ASSET_URL = Pattern.compile("/bankit/(assets/[0-9a-f]+/[^\"';]+)");
+	
+	/**
+	 * Create the load test of a server.
+	 * @param generator Generator of the ledger of the server database
+	 */
+	public LoadTest(LedgerGenerator generator) {
+		this.generator = generator;
+		this.syncEnd = generator.getEnd();
+	}
+	
+	/**
+	 * Read the operations and the categories of the database,
+	 * the requests use them as parameters.
+	 * @param connection Connection to the database
+	 * @throws SQLException If a query failed
+	 */
+	public void loadIds(Connection connection) throws SQLException {
+		Statement st = connection.createStatement();
+		try {
+			ResultSet rs = st.executeQuery("select min(operation_id), max(operation_id) from operations");
+			rs.next();
+			minOpId = rs.getInt(1);
+			maxOpId = rs.getInt(2);
+			
+			rs = st.executeQuery("select category_id from categories");
+			while (rs.next()) {
+				categoryIds.add(rs.getInt(1));
+			}
+		} finally {
+			st.close();
+		}
+	}
+	
+	public void setBaseUrl(String baseUrl) {
+		this.baseUrl = baseUrl;
+	}
+	
+	/**
+	 * Read the assets of the operations page found on the server,
+	 * the asset requests send them.
+	 * @throws IOException If the page can't be read
+	 */
+	public void loadAssets() throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "account/list").openConnection();
+		InputStream in = connection.getInputStream();
+		String page;
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			page = out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+		
+		Matcher matcher = ASSET_URL.matcher(page);
+		while (matcher.find()) {
+			String path = matcher.group(1);
+			if (assetPaths.contains(path)) continue;
+			//missing assets not counted as errors of the server
+			if (get(path)) {
+				assetPaths.add(path);
+			} else {
+				System.err.println("Asset " + path + " of the page not found");
+			}
+		}
+		if (assetPaths.isEmpty()) throw new IllegalStateException("No asset in the operations page");
+	}
+	
+	/**
+	 * Send requests from several threads during a time.
+	 * @param nbThreads Number of client threads
+	 * @param seconds Duration of the test
+	 * @return Result of the test
+	 * @throws Exception If a thread failed
+	 */
+	public Result run(int nbThreads, final int seconds) throws Exception {
+		final long end = System.nanoTime() + seconds * 1000000000L;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		for (int i = 0; i < nbThreads; i++) {
+			final Random random = new Random(i);
+			futures.add(executor.submit(new Callable<Result>() {
+				@Override
+				public Result call() throws Exception {
+					Result result = new Result(seconds);
+					while (System.nanoTime() < end) {
+						Request request = choose(random);
+						long start = System.nanoTime();
+						boolean ok = send(request, random);
+						result.record(request, (System.nanoTime() - start) / 1000, ok);
+					}
+					return result;
+				}
+			}));
+		}
+		executor.shutdown();
+		
+		Result total = new Result(seconds);
+		for (Future<Result> future : futures) {
+			total.add(future.get());
+		}
+		return total;
+	}
+	
+	/**
+	 * Choose the next request following the weights of the mix.
+	 * @param random Random generator of the thread
+	 * @return Request to send
+	 */
+	private Request choose(Random random) {
+		int n = random.nextInt(100);
+		for (Request request : Request.values()) {
+			n -= request.weight;
+			if (n < 0) return request;
+		}
+		return Request.LIST;
+	}
+	
+	/**
+	 * Send a request and read the whole response.
+	 * @param request Request to send
+	 * @param random Random generator of the thread
+	 * @return True if the server answered 200
+	 * @throws IOException If the server can't be reached
+	 */
+	private boolean send(Request request, Random random) throws IOException {
+		switch (request) {
+		case LIST:
+			return get("account/list");
+		case RANGE:
+			//one to twelve months of the history
+			YearMonth end = new YearMonth(generator.getEnd()).minusMonths(random.nextInt(generator.getYears() * 12));
+			YearMonth start = end.minusMonths(random.nextInt(12));
+			return get("account/list?startDate=" + start + "&endDate=" + end);
+		case UPDATE_CAT:
+			int opId = minOpId + random.nextInt(maxOpId - minOpId + 1);
+			int catId = categoryIds.get(random.nextInt(categoryIds.size()));
+			return post("account/update_cat.json", "application/x-www-form-urlencoded",
+					("op=" + opId + "&cat=" + catId).getBytes("UTF-8"));
+		case SYNC:
+			return post("api/sync", "application/json", nextSync());
+		case ASSET:
+			return get(assetPaths.get(random.nextInt(assetPaths.size())));
+		default:
+			throw new IllegalArgumentException(request.name());
+		}
+	}
+	
+	/**
+	 * Build the JSON of the next day imported from the bank.
+	 * @return Body of the sync request
+	 * @throws IOException If the JSON can't be written
+	 */
+	private synchronized byte[] nextSync() throws IOException {
+		generator.setEnd(syncEnd);
+		syncEnd = syncEnd.plusDays(1);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LedgerGenerator.writeJson(generator.nextImport(1), out);
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Send a GET request.
+	 * @param path Path in the webapp
+	 * @return True if the server answered 200
+	 * @throws IOException If the server can't be reached
+	 */
+	private boolean get(String path) throws IOException {
+		HttpURLConnection connection = open(path);
+		return read(connection);
+	}
+	
+	/**
+	 * Send a POST request.
+	 * @param path Path in the webapp
+	 * @param contentType Type of the body
+	 * @param body Body of the request
+	 * @return True if the server answered 200
+	 * @throws IOException If the server can't be reached
+	 */
+	private boolean post(String path, String contentType, byte[] body) throws IOException {
+		HttpURLConnection connection = open(path);
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("Content-Type", contentType);
+		connection.setDoOutput(true);
+		connection.setFixedLengthStreamingMode(body.length);
+		OutputStream out = connection.getOutputStream();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+		return read(connection);
+	}
+	
+	/**
+	 * Open a connection like a browser would.
+	 * @param path Path in the webapp
+	 * @return Connection, reusing a kept alive one if possible
+	 * @throws IOException If the url is invalid
+	 */
+	private HttpURLConnection open(String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setInstanceFollowRedirects(false);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		return connection;
+	}
+	
+	/**
+	 * Read the whole response so the connection can be kept alive.
+	 * @param connection Connection of the request
+	 * @return True if the server answered 200
+	 * @throws IOException If the server can't be reached
+	 */
+	private boolean read(HttpURLConnection connection) throws IOException {
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		if (in != null) {
+			try {
+				byte[] buffer = new byte[8192];
+				while (in.read(buffer) != -1) { }
+			} finally {
+				in.close();
+			}
+		}
+		return status == 200;
+	}
+	
+	/**
+	 * Latencies in microseconds and errors of each request.
+	 * Each thread records in its own result, added for the report.
+	 */
+	public static class Result {
+		
+		/** Significant digits of the recorded latencies */
+		private static final int PRECISION = 3;
+		
+		/** Duration of the test in seconds */
+		private final int seconds;
+		
+		private final Map<Request, Histogram> histograms =
+				new EnumMap<Request, Histogram>(Request.class);
+		
+		private final Map<Request, Long> errors = new EnumMap<Request, Long>(Request.class);
+		
+		public Result(int seconds) {
+			this.seconds = seconds;
+			for (Request request : Request.values()) {
+				histograms.put(request, new Histogram(PRECISION));
+				errors.put(request, 0L);
+			}
+		}
+		
+		private void record(Request request, long micros, boolean ok) {
+			histograms.get(request).recordValue(micros);
+			if (!ok) errors.put(request, errors.get(request) + 1);
+		}
+		
+		private void add(Result other) {
+			for (Request request : Request.values()) {
+				histograms.get(request).add(other.histograms.get(request));
+				errors.put(request, errors.get(request) + other.errors.get(request));
+			}
+		}
+		
+		/**
+		 * Write a line by request with the throughput and the latencies
+		 * in milliseconds, then the line of all the requests.
+		 * @param out Stream to write to
+		 */
+		public void print(PrintStream out) {
+			out.format("%-12s %10s %10s %10s %10s %10s %10s %10s %8s%n",
+					"request", "count", "req/s", "mean", "p50", "p99", "p99.9", "max", "errors");
+			Histogram all = new Histogram(PRECISION);
+			long allErrors = 0;
+			for (Request request : Request.values()) {
+				Histogram histogram = histograms.get(request);
+				print(out, request.name().toLowerCase(), histogram, errors.get(request));
+				all.add(histogram);
+				allErrors += errors.get(request);
+			}
+			print(out, "all", all, allErrors);
+		}
+		
+		private void print(PrintStream out, String name, Histogram histogram, long nbErrors) {
+			out.format("%-12s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f %8d%n",
+					name, histogram.getTotalCount(), (double) histogram.getTotalCount() / seconds,
+					histogram.getMean() / 1000,
+					histogram.getValueAtPercentile(50) / 1000.0,
+					histogram.getValueAtPercentile(99) / 1000.0,
+					histogram.getValueAtPercentile(99.9) / 1000.0,
+					histogram.getMaxValue() / 1000.0, nbErrors);
+		}
+		
+		/**
+		 * Write the latency distribution of each request in milliseconds
+		 * in a .hgrm file named after the request.
+		 * @param dir Directory of the files
+		 * @throws IOException If a file can't be written
+		 */
+		public void writeDistributions(File dir) throws IOException {
+			for (Request request : Request.values()) {
+				PrintStream out = new PrintStream(new FileOutputStream(
+						new File(dir, request.name().toLowerCase() + ".hgrm")), false, "UTF-8");
+				try {
+					histograms.get(request).outputPercentileDistribution(out, 1000.0);
+				} finally {
+					out.close();
+				}
+			}
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		StandaloneServer.checkClassLoader();
+		
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("threads", "16");
+		options.put("warmup", "10");
+		options.put("duration", "60");
+		options.put("years", "5");
+		options.put("ops", "300");
+		options.put("db", null);
+		options.put("war", System.getProperty("bankit.war", "../bankit-web/target/bankit-web.war"));
+		options.put("out", ".");
+		options.put("static", "true");
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("-") || !options.containsKey(args[i].substring(1))) {
+				System.err.println("Unknown option " + args[i]);
+				System.exit(1);
+			}
+			options.put(args[i].substring(1), args[i + 1]);
+		}
+		if (options.get("db") == null) {
+			File dir = Files.createTempDirectory("bankit-load").toFile();
+			options.put("db", "jdbc:h2:" + new File(dir, "bankit").getAbsolutePath());
+		}
+		
+		//ledger ending today, the syncs import the next days
+		LedgerGenerator generator = new LedgerGenerator(42);
+		generator.setYears(Integer.parseInt(options.get("years")));
+		generator.setOpsPerMonth(Integer.parseInt(options.get("ops")));
+		
+		LoadTest test = new LoadTest(generator);
+		
+		//the database is closed before the server opens it
+		Connection connection = DriverManager.getConnection(options.get("db"));
+		try {
+			LedgerGenerator.createSchema(connection);
+			System.out.println(generator.generate(connection) + " operations generated");
+			test.loadIds(connection);
+		} finally {
+			connection.close();
+		}
+		
+		//assets sent by the static contexts of Jetty or by the webapp
+		System.setProperty("bankit.static_contexts", options.get("static"));
+		StandaloneServer server = new StandaloneServer(new File(options.get("war")), options.get("db"));
+		try {
+			int port = server.getPort();
+			test.setBaseUrl("http://localhost:" + port + "/bankit/");
+			test.loadAssets();
+			
+			int nbThreads = Integer.parseInt(options.get("threads"));
+			System.out.println("Warmup on port " + port);
+			test.run(nbThreads, Integer.parseInt(options.get("warmup")));
+			
+			System.out.println("Load test with " + nbThreads + " threads");
+			Result result = test.run(nbThreads, Integer.parseInt(options.get("duration")));
+			result.print(System.out);
+			result.writeDistributions(new File(options.get("out")));
+		} finally {
+			server.stop();
+		}
+	}
+	
+}
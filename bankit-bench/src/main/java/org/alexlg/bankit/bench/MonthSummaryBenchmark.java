@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.bench;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.alexlg.bankit.dao.CategoryDao;
+import org.alexlg.bankit.db.Category;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+/**
+ * Benchmark of the category summary of a month on a generated
+ * ledger of 5 years, for several numbers of operations.
+ * 
+ * @author Alexandre Thomazo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-bench.xml")
+public class MonthSummaryBenchmark {
+
+	/** Last day of the ledger */
+	private static final LocalDate END = new LocalDate(2012, 12, 31);
+	
+	/** Number of operations in the ledger */
+	@Param({ "10000", "100000", "1000000" })
+	private int rows;
+	
+	private CategoryDao categoryDao;
+	
+	/** Month summarized, in the middle of the ledger */
+	private final YearMonth month = new YearMonth(2010, 6);
+	
+	@Setup
+	public void setUp() throws SQLException {
+		categoryDao = BenchContext.getBean(CategoryDao.class);
+		
+		//the costs add about 20 operations by month
+		LedgerGenerator generator = new LedgerGenerator(42);
+		generator.setEnd(END);
+		generator.setYears(5);
+		generator.setOpsPerMonth(Math.max(rows / 60 - 20, 0));
+		BenchContext.generate(generator);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		BenchContext.close();
+	}
+	
+	@Benchmark
+	public Map<Category, BigDecimal> getMonthSummary() {
+		return BenchContext.inRollback(new TransactionCallback<Map<Category, BigDecimal>>() {
+			@Override
+			public Map<Category, BigDecimal> doInTransaction(TransactionStatus status) {
+				return categoryDao.getMonthSummary(month);
+			}
+		});
+	}
+	
+}
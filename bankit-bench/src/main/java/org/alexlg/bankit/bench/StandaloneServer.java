@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.alexlg.bankit.db.Operation;
+
+/**
+ * Jetty server of the standalone Launcher started in this JVM.
+ * 
+ * The server has its own class loader with the classpath of the JVM
+ * without the libraries and the classes of the webapp, as in the
+ * standalone distribution, except the logging : otherwise the webapp would find some of
+ * its classes twice (e.g. Hibernate loads its services from the
+ * system class loader too).
+ * As H2 is loaded again by this class loader, the database must
+ * be a file database to be shared with the rest of the JVM.
+ * Hibernate also looks for its classes in the system class loader
+ * first, so the libraries must be in a child class loader like the
+ * one of mvn exec:java, not in the classpath of the JVM.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class StandaloneServer {
+
+	/** Class loader of the server */
+	private final ClassLoader loader;
+	
+	/** Jetty server */
+	private final Object server;
+	
+	/** Port listened by the server */
+	private final int port;
+	
+	/**
+	 * Start the server on a free port.
+	 * @param war War or exploded war of the webapp
+	 * @param dbUrl JDBC url of the H2 database, which must not be in memory
+	 * @throws Exception If the server can't be started
+	 */
+	public StandaloneServer(File war, String dbUrl) throws Exception {
+		checkClassLoader();
+		loader = new URLClassLoader(serverClasspath(war), ClassLoader.getSystemClassLoader().getParent());
+		
+		//jetty and its jndi use the context class loader
+		Thread thread = Thread.currentThread();
+		ClassLoader previous = thread.getContextClassLoader();
+		thread.setContextClassLoader(loader);
+		try {
+			server = invoke(loader.loadClass("org.alexlg.bankit.Launcher"), null, "startServer",
+					new Class<?>[] { File.class, String.class, int.class }, war, dbUrl, 0);
+			Object[] connectors = (Object[]) invoke(server.getClass(), server, "getConnectors", new Class<?>[0]);
+			port = (Integer) invoke(connectors[0].getClass(), connectors[0], "getLocalPort", new Class<?>[0]);
+		} finally {
+			thread.setContextClassLoader(previous);
+		}
+	}
+	
+	/**
+	 * Check the libraries of the webapp aren't in the classpath of the JVM.
+	 * @throws IllegalStateException If Hibernate is in the classpath of the JVM
+	 */
+	public static void checkClassLoader() {
+		if (ClassLoader.getSystemClassLoader().getResource("org/hibernate/Version.class") != null) {
+			throw new IllegalStateException("Hibernate is in the classpath of the JVM, "
+					+ "the server must be started from a child class loader (mvn exec:java)");
+		}
+	}
+	
+	public int getPort() {
+		return port;
+	}
+	
+	/**
+	 * Stop the server.
+	 * @throws Exception If the server can't be stopped
+	 */
+	public void stop() throws Exception {
+		invoke(server.getClass(), server, "stop", new Class<?>[0]);
+	}
+	
+	/**
+	 * Build the classpath of the server : the classpath of this class
+	 * without the jars of the webapp lib, but the logging ones, and
+	 * the classes of the webapp.
+	 * @param war War or exploded war of the webapp
+	 * @return Urls of the classpath
+	 * @throws IOException If the war can't be read
+	 */
+	static URL[] serverClasspath(File war) throws IOException {
+		Set<String> webappLibs = new HashSet<String>();
+		if (war.isDirectory()) {
+			String[] names = new File(war, "WEB-INF/lib").list();
+			if (names != null) {
+				for (String name : names) webappLibs.add(name);
+			}
+		} else {
+			ZipFile zip = new ZipFile(war);
+			try {
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				while (entries.hasMoreElements()) {
+					String name = entries.nextElement().getName();
+					if (name.startsWith("WEB-INF/lib/") && name.endsWith(".jar")) {
+						webappLibs.add(name.substring(name.lastIndexOf('/') + 1));
+					}
+				}
+			} finally {
+				zip.close();
+			}
+		}
+		URL webappClasses = Operation.class.getProtectionDomain().getCodeSource().getLocation();
+		
+		List<URL> urls = new ArrayList<URL>();
+		for (URL url : classpath()) {
+			String path = url.getPath();
+			String name = path.substring(path.lastIndexOf('/', path.length() - 2) + 1);
+			//the server provides the logging to the webapp, like in the standalone distribution
+			boolean logging = name.startsWith("slf4j-") || name.startsWith("logback-");
+			if ((logging || !webappLibs.contains(name)) && !url.equals(webappClasses)) {
+				urls.add(url);
+			}
+		}
+		return urls.toArray(new URL[urls.size()]);
+	}
+	
+	/**
+	 * Get the classpath of this class, from its class loader or
+	 * from the system property when it isn't an URLClassLoader.
+	 * @return Urls of the classpath
+	 * @throws MalformedURLException If an entry of the classpath is invalid
+	 */
+	private static List<URL> classpath() throws MalformedURLException {
+		ClassLoader classLoader = StandaloneServer.class.getClassLoader();
+		List<URL> urls = new ArrayList<URL>();
+		if (classLoader instanceof URLClassLoader) {
+			for (URL url : ((URLClassLoader) classLoader).getURLs()) urls.add(url);
+		} else {
+			for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+				urls.add(new File(entry).toURI().toURL());
+			}
+		}
+		return urls;
+	}
+	
+	/**
+	 * Call a public method of a class of the server.
+	 * @param type Class declaring the method
+	 * @param target Object called, null for a static method
+	 * @param name Name of the method
+	 * @param parameterTypes Types of the parameters
+	 * @param args Arguments
+	 * @return Result of the method
+	 * @throws Exception Exception thrown by the method
+	 */
+	private static Object invoke(Class<?> type, Object target, String name,
+			Class<?>[] parameterTypes, Object... args) throws Exception {
+		try {
+			return type.getMethod(name, parameterTypes).invoke(target, args);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
+		}
+	}
+	
+}
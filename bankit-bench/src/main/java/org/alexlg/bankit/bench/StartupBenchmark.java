@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Startup benchmark of the standalone server : the server is started
+ * several times in a new JVM with the war and a generated ledger, and
+ * the time until the server is started and until the first page is
+ * received are measured from the launch of the JVM, with the resident
+ * memory of the JVM after the first page.
+ * <ul>
+ * <li>cold : the war is unpacked and indexed, the JSPs are compiled,</li>
+ * <li>warm : the unpacked webapp, its index and the compiled JSPs
+ * of the previous start are used,</li>
+ * <li>cds : warm with the class data sharing archive of the JDK
+ * classes recorded by a training start, like bankit.sh.</li>
+ * </ul>
+ * The log of the last server is kept in server.log of the directory.
+ * 
+ * Options, with their default value :
+ * -runs 5 -years 1 -ops 100 (imported operations by month)
+ * -dir (a new temp dir, where the war is unpacked and the database created)
+ * -war ../bankit-web/target/bankit-web.war -cds true
+ * 
+ * @author Alexandre Thomazo
+ */
+public class StartupBenchmark {
+
+	/** Maximum time to wait for a server in ms */
+	private static final long TIMEOUT = 5 * 60 * 1000;
+	
+	/** Working directory of the servers */
+	private final File dir;
+	
+	/** Java command of the servers */
+	private final String java;
+	
+	/** Options of the JVM and arguments of the servers */
+	private final List<String> options = new ArrayList<String>();
+	
+	/** Main class and arguments of the servers */
+	private final List<String> arguments = new ArrayList<String>();
+	
+	/**
+	 * Create the benchmark of a war.
+	 * @param war War of the webapp
+	 * @param dbUrl JDBC url of the database, which must not be in memory
+	 * @param dir Working directory of the servers
+	 * @throws IOException If the war can't be read
+	 * @throws URISyntaxException If an entry of the classpath is invalid
+	 */
+	public StartupBenchmark(File war, String dbUrl, File dir) throws IOException, URISyntaxException {
+		this.dir = dir;
+		java = new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+		
+		//classpath of the standalone distribution
+		StringBuilder classpath = new StringBuilder();
+		for (URL url : StandaloneServer.serverClasspath(war)) {
+			if (classpath.length() > 0) classpath.append(File.pathSeparator);
+			classpath.append(new File(url.toURI()).getAbsolutePath());
+		}
+		options.add("-cp");
+		options.add(classpath.toString());
+		String logback = System.getProperty("logback.configurationFile");
+		if (logback != null) options.add("-Dlogback.configurationFile=" + logback);
+		
+		arguments.add(StartupProbe.class.getName());
+		arguments.add(war.getAbsolutePath());
+		arguments.add(dbUrl);
+	}
+	
+	/**
+	 * Start a server and get its first page.
+	 * @param cold True to remove the unpacked webapp and the compiled JSPs before
+	 * @param jvmOptions Other options of the JVM
+	 * @return Time until the server is started and until the first page in ms,
+	 * and resident memory after the first page in KB or -1 if unknown
+	 * @throws Exception If the server didn't start
+	 */
+	public long[] run(boolean cold, List<String> jvmOptions) throws Exception {
+		if (cold) {
+			delete(new File(dir, "webapp"));
+			delete(new File(dir, "webapp.properties"));
+			delete(new File(dir, "work"));
+		}
+		File portFile = new File(dir, "port");
+		delete(portFile);
+		
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		command.addAll(jvmOptions);
+		command.addAll(options);
+		command.addAll(arguments);
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(dir);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(new File(dir, "server.log"));
+		
+		long start = System.nanoTime();
+		Process process = builder.start();
+		try {
+			while (!portFile.isFile()) {
+				if (!isRunning(process)) throw new IllegalStateException("Server stopped, see " + new File(dir, "server.log"));
+				if (System.nanoTime() - start > TIMEOUT * 1000000) throw new IllegalStateException("Server not started");
+				Thread.sleep(5);
+			}
+			long started = System.nanoTime() - start;
+			
+			int port = Integer.parseInt(new String(Files.readAllBytes(portFile.toPath()), "UTF-8"));
+			int status = get("http://localhost:" + port + "/bankit/account/list");
+			if (status != 200) throw new IllegalStateException("First page answered " + status);
+			long firstPage = System.nanoTime() - start;
+			
+			return new long[] { started / 1000000, firstPage / 1000000, residentKb(process) };
+		} finally {
+			process.destroy();
+			process.waitFor();
+		}
+	}
+	
+	/**
+	 * Record the JDK classes loaded by a start, then build the class
+	 * data sharing archive of these classes, like bankit.sh.
+	 * @return Options of the JVM using the archive
+	 * @throws Exception If the archive can't be built
+	 */
+	public List<String> buildSharedArchive() throws Exception {
+		File classList = new File(dir, "bankit.classlist");
+		File archive = new File(dir, "bankit.jsa");
+		run(false, Arrays.asList("-XX:DumpLoadedClassList=" + classList.getAbsolutePath()));
+		
+		//the JFR classes can't be archived
+		List<String> classes = new ArrayList<String>();
+		for (String line : Files.readAllLines(classList.toPath(), StandardCharsets.UTF_8)) {
+			if (!line.startsWith("jdk/jfr/")) classes.add(line);
+		}
+		Files.write(classList.toPath(), classes, StandardCharsets.UTF_8);
+		
+		List<String> archiveOptions = new ArrayList<String>();
+		archiveOptions.add("-XX:+UnlockDiagnosticVMOptions");
+		archiveOptions.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+		
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		command.addAll(archiveOptions);
+		command.add("-Xshare:dump");
+		command.add("-XX:SharedClassListFile=" + classList.getAbsolutePath());
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(new File(dir, "dump.log"));
+		if (builder.start().waitFor() != 0) {
+			throw new IllegalStateException("Archive not built, see " + new File(dir, "dump.log"));
+		}
+		
+		//the servers fail instead of being measured without the archive
+		archiveOptions.add("-Xshare:on");
+		return archiveOptions;
+	}
+	
+	/**
+	 * Send a GET request and read the whole response.
+	 * @param url Url of the request
+	 * @return Status of the response
+	 * @throws IOException If the server can't be reached
+	 */
+	private static int get(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setInstanceFollowRedirects(false);
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		if (in != null) {
+			try {
+				byte[] buffer = new byte[8192];
+				while (in.read(buffer) != -1) { }
+			} finally {
+				in.close();
+			}
+		}
+		return status;
+	}
+	
+	private static boolean isRunning(Process process) {
+		try {
+			process.exitValue();
+			return false;
+		} catch (IllegalThreadStateException e) {
+			return true;
+		}
+	}
+	
+	/**
+	 * Read the resident memory of a process on Linux.
+	 * @param process Process to read
+	 * @return Resident memory in KB, -1 if unknown
+	 */
+	private static long residentKb(Process process) {
+		try {
+			Object pid;
+			try {
+				pid = Process.class.getMethod("pid").invoke(process); //java 9
+			} catch (NoSuchMethodException e) {
+				Field field = process.getClass().getDeclaredField("pid");
+				field.setAccessible(true);
+				pid = field.get(process);
+			}
+			File status = new File("/proc/" + pid + "/status");
+			for (String line : Files.readAllLines(status.toPath(), StandardCharsets.UTF_8)) {
+				if (line.startsWith("VmRSS:")) return Long.parseLong(line.replaceAll("[^0-9]", ""));
+			}
+		} catch (Exception e) {
+			//not available on this system
+		}
+		return -1;
+	}
+	
+	/**
+	 * Delete a file or a directory and its content.
+	 * @param file File to delete
+	 * @throws IOException If the file can't be deleted
+	 */
+	private static void delete(File file) throws IOException {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) delete(child);
+		}
+		if (file.exists() && !file.delete()) throw new IOException("Can't delete " + file);
+	}
+	
+	/**
+	 * Write the min, median and max times and the median resident memory of the starts.
+	 * @param out Stream to write to
+	 * @param results Times and memory of the starts by name
+	 */
+	private static void print(PrintStream out, Map<String, List<long[]>> results) {
+		out.format("%-6s %6s %12s %12s %12s %12s %12s %12s %10s%n", "start", "runs",
+				"started min", "median", "max", "page min", "median", "max", "rss (MB)");
+		for (Map.Entry<String, List<long[]>> result : results.entrySet()) {
+			List<long[]> times = result.getValue();
+			long[] started = new long[times.size()];
+			long[] page = new long[times.size()];
+			long[] rss = new long[times.size()];
+			for (int i = 0; i < times.size(); i++) {
+				started[i] = times.get(i)[0];
+				page[i] = times.get(i)[1];
+				rss[i] = times.get(i)[2];
+			}
+			Arrays.sort(started);
+			Arrays.sort(page);
+			Arrays.sort(rss);
+			out.format("%-6s %6d %12d %12d %12d %12d %12d %12d %10d%n", result.getKey(), times.size(),
+					started[0], started[started.length / 2], started[started.length - 1],
+					page[0], page[page.length / 2], page[page.length - 1], rss[rss.length / 2] / 1024);
+		}
+	}
+	
+	/**
+	 * Start the servers of a kind of start.
+	 * @param name Name of the kind of start
+	 * @param runs Number of starts
+	 * @param cold True for cold starts
+	 * @param jvmOptions Other options of the JVM
+	 * @return Results of the starts
+	 * @throws Exception If a server didn't start
+	 */
+	private List<long[]> run(String name, int runs, boolean cold, List<String> jvmOptions) throws Exception {
+		List<long[]> results = new ArrayList<long[]>();
+		for (int i = 0; i < runs; i++) {
+			results.add(run(cold, jvmOptions));
+			System.out.println(name + " start " + (i + 1) + " : " + Arrays.toString(results.get(i)));
+		}
+		return results;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("runs", "5");
+		options.put("years", "1");
+		options.put("ops", "100");
+		options.put("dir", null);
+		options.put("war", System.getProperty("bankit.war", "../bankit-web/target/bankit-web.war"));
+		options.put("cds", "true");
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("-") || !options.containsKey(args[i].substring(1))) {
+				System.err.println("Unknown option " + args[i]);
+				System.exit(1);
+			}
+			options.put(args[i].substring(1), args[i + 1]);
+		}
+		File dir = options.get("dir") == null ? Files.createTempDirectory("bankit-startup").toFile()
+				: new File(options.get("dir"));
+		dir.mkdirs();
+		String dbUrl = "jdbc:h2:" + new File(dir, "bankit").getAbsolutePath();
+		
+		LedgerGenerator generator = new LedgerGenerator(42);
+		generator.setYears(Integer.parseInt(options.get("years")));
+		generator.setOpsPerMonth(Integer.parseInt(options.get("ops")));
+		
+		//the database is created once, the servers only update it
+		delete(new File(dir, "bankit.h2.db"));
+		Connection connection = DriverManager.getConnection(dbUrl);
+		try {
+			LedgerGenerator.createSchema(connection);
+			System.out.println(generator.generate(connection) + " operations generated");
+		} finally {
+			connection.close();
+		}
+		
+		StartupBenchmark benchmark = new StartupBenchmark(new File(options.get("war")), dbUrl, dir);
+		int runs = Integer.parseInt(options.get("runs"));
+		List<String> none = Collections.emptyList();
+		Map<String, List<long[]>> results = new LinkedHashMap<String, List<long[]>>();
+		results.put("cold", benchmark.run("cold", runs, true, none));
+		results.put("warm", benchmark.run("warm", runs, false, none));
+		if (Boolean.parseBoolean(options.get("cds"))) {
+			results.put("cds", benchmark.run("cds", runs, false, benchmark.buildSharedArchive()));
+		}
+		print(System.out, results);
+	}
+	
+}
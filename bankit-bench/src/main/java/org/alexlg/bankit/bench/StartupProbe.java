@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.alexlg.bankit.Launcher;
+import org.eclipse.jetty.server.Server;
+
+/**
+ * Server started in a new JVM by the StartupBenchmark, with the
+ * classpath of the standalone distribution. Once started, the
+ * port of the server is written in the "port" file of the working
+ * directory, then the server runs until the JVM is stopped.
+ * 
+ * Arguments : war or exploded war, JDBC url of the database
+ * 
+ * @author Alexandre Thomazo
+ */
+public class StartupProbe {
+
+	public static void main(String[] args) throws Exception {
+		Server server = Launcher.startServer(new File(args[0]), args[1], 0);
+		
+		//written then renamed, so the benchmark never reads a partial file
+		File tmp = new File("port.tmp");
+		OutputStream out = new FileOutputStream(tmp);
+		try {
+			out.write(Integer.toString(server.getConnectors()[0].getLocalPort()).getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		tmp.renameTo(new File("port"));
+		
+		server.join();
+	}
+	
+}
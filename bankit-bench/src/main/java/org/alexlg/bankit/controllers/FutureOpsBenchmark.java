@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.controllers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.alexlg.bankit.db.Cost;
+import org.alexlg.bankit.db.Operation;
+import org.alexlg.bankit.recurrence.Frequency;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the projection of the future operations
+ * from the planned operations and the costs.
+ * 
+ * @author Alexandre Thomazo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-bench.xml")
+public class FutureOpsBenchmark {
+
+	/** Day of the projection */
+	private static final LocalDate TODAY = new LocalDate(2012, 8, 25);
+	
+	/** Number of months projected */
+	@Param({ "1", "12", "60" })
+	private int nbMonth;
+	
+	/** Number of costs */
+	@Param({ "20", "200" })
+	private int nbCosts;
+	
+	private final AccountController controller = new AccountController();
+	
+	private final List<Operation> plannedOps = new ArrayList<Operation>();
+	
+	private final List<Cost> costs = new ArrayList<Cost>();
+	
+	@Setup
+	public void setUp() {
+		Frequency[] frequencies = Frequency.values();
+		for (int i = 0; i < nbCosts; i++) {
+			Cost cost = new Cost();
+			cost.setCostId(i + 1);
+			cost.setDay(i % 28 + 1);
+			cost.setLabel("COST " + i);
+			cost.setAmount(new BigDecimal(-10 - i));
+			//mostly monthly costs
+			cost.setFrequency(i % 4 == 0 ? frequencies[i % frequencies.length] : Frequency.MONTHLY);
+			costs.add(cost);
+		}
+		
+		//one manual operation by week
+		for (int i = 0; i < nbMonth * 4; i++) {
+			Operation op = new Operation();
+			op.setOperationId(100000 + i);
+			op.setOperationDate(TODAY.plusWeeks(i).toDate());
+			op.setLabel("PLANNED " + i);
+			op.setPlanned(new BigDecimal(-25));
+			plannedOps.add(op);
+		}
+	}
+	
+	@Benchmark
+	public Set<MonthOps> buildFutureOps() {
+		return controller.buildFutureOps(TODAY, plannedOps, costs, new BigDecimal("1500.00"), nbMonth);
+	}
+	
+}
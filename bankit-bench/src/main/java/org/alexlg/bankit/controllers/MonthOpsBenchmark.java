@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.controllers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alexlg.bankit.db.Operation;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the totals of the operations of a month.
+ * 
+ * @author Alexandre Thomazo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-bench.xml")
+public class MonthOpsBenchmark {
+
+	/** Month of the operations */
+	private static final LocalDate MONTH = new LocalDate(2012, 8, 1);
+	
+	/** Number of operations in the month */
+	@Param({ "30", "300", "3000" })
+	private int nbOps;
+	
+	private final List<Operation> ops = new ArrayList<Operation>();
+	
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < nbOps; i++) {
+			Operation op = new Operation();
+			op.setOperationId(i + 1);
+			op.setOperationDate(MONTH.plusDays(i % 31).toDate());
+			op.setLabel("OP " + i);
+			op.setPlanned(new BigDecimal(i % 2 == 0 ? "-12.50" : "8.20"));
+			ops.add(op);
+		}
+	}
+	
+	/** Add the operations, then compute the running totals */
+	@Benchmark
+	public BigDecimal totals() {
+		MonthOps monthOps = new MonthOps(MONTH, new BigDecimal("1500.00"));
+		for (Operation op : ops) {
+			monthOps.addOp(op);
+		}
+		monthOps.getOps();
+		return monthOps.getBalance();
+	}
+	
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alexlg.bankit.bench.BenchContext;
+import org.alexlg.bankit.bench.LedgerGenerator;
+import org.alexlg.bankit.db.Operation;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+/**
+ * Benchmark of the merge of the planned operations waiting
+ * with the imported ones, for several sizes of backlog.
+ * The next {@link #IMPORT_DAYS} days of a generated ledger are
+ * imported and merged, then rolled back.
+ * 
+ * @author Alexandre Thomazo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-bench.xml")
+public class MergePlannedOpsBenchmark {
+
+	/** Number of days imported */
+	private static final int IMPORT_DAYS = 10;
+	
+	/** Last day of the ledger */
+	private static final LocalDate END = new LocalDate(2012, 12, 15);
+	
+	/** Number of planned operations waiting */
+	@Param({ "100", "1000", "10000" })
+	private int backlog;
+	
+	private SyncService syncService;
+	
+	/** Operations imported */
+	private List<Operation> imported;
+	
+	@Setup
+	public void setUp() throws SQLException {
+		syncService = BenchContext.getBean(SyncService.class);
+		syncService.setEndSyncDate(END.plusDays(IMPORT_DAYS));
+		
+		LedgerGenerator generator = new LedgerGenerator(42);
+		generator.setEnd(END);
+		generator.setNbPlanned(backlog);
+		BenchContext.generate(generator);
+		imported = generator.nextImport(IMPORT_DAYS);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		BenchContext.close();
+	}
+	
+	/** Merge limited to the imported operations */
+	@Benchmark
+	public void mergeImported() {
+		BenchContext.inRollback(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(TransactionStatus status) {
+				List<Integer> ids = syncService.syncOpList(importedOps());
+				syncService.mergeOldPlannedOps(ids);
+				return null;
+			}
+		});
+	}
+	
+	/** Merge of all the planned operations waiting */
+	@Benchmark
+	public void mergeAll() {
+		BenchContext.inRollback(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(TransactionStatus status) {
+				syncService.syncOpList(importedOps());
+				syncService.mergeOldPlannedOps();
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Copy the operations to import, each invocation needs
+	 * new instances as they are persisted.
+	 * @return Operations to import
+	 */
+	private List<Operation> importedOps() {
+		List<Operation> ops = new ArrayList<Operation>(imported.size());
+		for (Operation op : imported) {
+			Operation copy = new Operation();
+			copy.setOperationDate(op.getOperationDate());
+			copy.setValueDate(op.getValueDate());
+			copy.setLabel(op.getLabel());
+			copy.setAmount(op.getAmount());
+			ops.add(copy);
+		}
+		return ops;
+	}
+	
+}
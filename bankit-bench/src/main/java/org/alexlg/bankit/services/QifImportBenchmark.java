@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alexlg.bankit.bench.BenchContext;
+import org.alexlg.bankit.bench.LedgerGenerator;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+/**
+ * Benchmark of the import of a QIF file : parsing and insert
+ * of the operations, rolled back after each import.
+ * 
+ * @author Alexandre Thomazo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-bench.xml")
+public class QifImportBenchmark {
+
+	/** Number of operations in the file */
+	@Param({ "100", "1000", "10000" })
+	private int nbOps;
+	
+	private SyncService syncService;
+	
+	/** File to import */
+	private byte[] qif;
+	
+	@Setup
+	public void setUp() throws IOException {
+		syncService = BenchContext.getBean(SyncService.class);
+		//one month of operations from the bank
+		LedgerGenerator generator = new LedgerGenerator(42);
+		generator.setEnd(new LocalDate(2012, 12, 31));
+		generator.setOpsPerMonth(nbOps);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LedgerGenerator.writeQif(generator.nextImport(30), out);
+		qif = out.toByteArray();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		BenchContext.close();
+	}
+	
+	@Benchmark
+	public List<Integer> readQifAndInsertOp() {
+		return BenchContext.inRollback(new TransactionCallback<List<Integer>>() {
+			@Override
+			public List<Integer> doInTransaction(TransactionStatus status) {
+				try {
+					return syncService.readQifAndInsertOp(new ByteArrayInputStream(qif));
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+	}
+	
+}
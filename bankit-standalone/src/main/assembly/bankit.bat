@@ -18,4 +18,10 @@
 @REM
 
 @echo off
-javaw -jar bankit-standalone.jar
\ No newline at end of file
+cd /d "%~dp0"
+
+@REM private runtime of the distribution if present
+set JAVAW=javaw
+if exist runtime\bin\javaw.exe set JAVAW=runtime\bin\javaw.exe
+
+"%JAVAW%" -jar bankit-standalone.jar %*
\ No newline at end of file
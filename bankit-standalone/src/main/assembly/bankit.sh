@@ -18,4 +18,43 @@
 # along with BankIt. If not, see <http://www.gnu.org/licenses/>.
 #
 
-java -jar bankit-standalone.jar
\ No newline at end of file
+
+cd "$(dirname "$0")"
+
+#private runtime of the distribution if present
+JAVA=java
+if [ -x runtime/bin/java ]; then
+	JAVA=runtime/bin/java
+fi
+
+#the class data sharing archive of the JDK classes loaded by BankIt
+#is built on this computer, again when the jar or the JVM change
+ID=$( (cksum < bankit-standalone.jar; "$JAVA" -version 2>&1) | cksum)
+if [ "$(cat bankit.jsa.id 2>/dev/null)" != "$ID" ]; then
+	rm -f bankit.classlist bankit.jsa
+	echo "$ID" > bankit.jsa.id
+fi
+
+#second start : build the archive from the classes loaded by the first one
+if [ -s bankit.classlist ] && [ ! -f bankit.jsa ]; then
+	#the JFR classes can't be archived
+	grep -v '^jdk/jfr/' bankit.classlist > bankit.classlist.tmp
+	mv bankit.classlist.tmp bankit.classlist
+	if ! "$JAVA" -XX:+UnlockDiagnosticVMOptions -Xshare:dump -XX:SharedClassListFile=bankit.classlist \
+			-XX:SharedArchiveFile=bankit.jsa > bankit.jsa.log 2>&1; then
+		#not tried again until the next change
+		rm -f bankit.jsa
+		: > bankit.classlist
+	fi
+fi
+
+if [ -f bankit.jsa ]; then
+	exec "$JAVA" -XX:+UnlockDiagnosticVMOptions -XX:SharedArchiveFile=bankit.jsa -Xshare:auto \
+		-jar bankit-standalone.jar "$@"
+elif [ ! -f bankit.classlist ]; then
+	#first start : record the loaded classes
+	exec "$JAVA" -XX:+IgnoreUnrecognizedVMOptions -XX:DumpLoadedClassList=bankit.classlist \
+		-jar bankit-standalone.jar "$@"
+else
+	exec "$JAVA" -jar bankit-standalone.jar "$@"
+fi
@@ -0,0 +1,550 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.jasper.compiler.TldLocationsCache;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.eclipse.jetty.webapp.WebInfConfiguration;
+import org.w3c.dom.NodeList;
+
+/**
+ * Webapp unpacked once in a directory, with the index of what Jetty
+ * and the JSP compiler would otherwise scan at each start :
+ * the jars of WEB-INF/lib with web fragments, resources or TLDs,
+ * the location of each TLD and the jars of the server without TLD.
+ * 
+ * The war is unpacked again only when its checksum changed, and the
+ * index is built again when the jars or the web.xml of the directory
+ * changed. The index is kept in a properties file next to the
+ * directory.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class ExplodedWar {
+
+	/** Context attribute read by the JSP compiler instead of scanning the webapp TLDs */
+	private static final String TLD_MAP_ATTRIBUTE = "com.sun.jsp.tldUriToLocationMap";
+	
+	private static final String WAR_SIZE = "war.size";
+	private static final String WAR_LAST_MODIFIED = "war.lastModified";
+	private static final String WAR_SHA1 = "war.sha1";
+	private static final String FINGERPRINT = "webapp.fingerprint";
+	private static final String META_INF_JARS = "metainf.jars";
+	private static final String NO_TLD_JARS = "notld.jars";
+	/** Prefix of the TLD locations, followed by the TLD uri */
+	private static final String TLD = "tld.";
+	/** Set when the TLD can't be indexed (declared in the web.xml) */
+	private static final String TLD_DISABLED = "tld.disabled";
+	
+	/** Directory of the webapp */
+	private final File dir;
+	
+	/** Index of the webapp */
+	private final Properties index;
+	
+	/** True if the war was unpacked or the index built by this start */
+	private final boolean rebuilt;
+	
+	private ExplodedWar(File dir, Properties index, boolean rebuilt) {
+		this.dir = dir;
+		this.index = index;
+		this.rebuilt = rebuilt;
+	}
+	
+	/**
+	 * Open an exploded webapp, unpacking the war if it changed
+	 * and indexing the directory if needed.
+	 * @param war War to unpack, null to use the directory as it is
+	 * @param dir Directory of the webapp
+	 * @return The exploded webapp
+	 * @throws IOException If the war can't be unpacked or the index written
+	 */
+	public static ExplodedWar open(File war, File dir) throws IOException {
+		File indexFile = new File(dir.getParentFile(), dir.getName() + ".properties");
+		Properties index = load(indexFile);
+		boolean rebuilt = false;
+		
+		if (war != null && (!dir.isDirectory() || !isSameWar(war, index))) {
+			unpack(war, dir);
+			index = new Properties();
+			index.setProperty(WAR_SHA1, sha1(war));
+			rebuilt = true;
+		}
+		if (!dir.isDirectory()) throw new IOException("Directory [" + dir.getAbsolutePath() + "] doesn't exists");
+		
+		String fingerprint = fingerprint(dir);
+		if (!fingerprint.equals(index.getProperty(FINGERPRINT))) {
+			String sha1 = index.getProperty(WAR_SHA1);
+			index = scan(dir);
+			if (sha1 != null) index.setProperty(WAR_SHA1, sha1);
+			index.setProperty(FINGERPRINT, fingerprint);
+			rebuilt = true;
+		}
+		//size and date kept even if the war is the same, so its checksum isn't computed again
+		boolean warChanged = false;
+		if (war != null) {
+			String size = Long.toString(war.length());
+			String lastModified = Long.toString(war.lastModified());
+			warChanged = !size.equals(index.getProperty(WAR_SIZE)) || !lastModified.equals(index.getProperty(WAR_LAST_MODIFIED));
+			index.setProperty(WAR_SIZE, size);
+			index.setProperty(WAR_LAST_MODIFIED, lastModified);
+		}
+		if (rebuilt || warChanged) store(index, indexFile);
+		
+		return new ExplodedWar(dir, index, rebuilt);
+	}
+	
+	/**
+	 * Check if a war is newer than the webapp of a directory, so a war
+	 * left by a previous version doesn't replace the webapp shipped by
+	 * an upgrade. The files of an unpacked war have the date of the war
+	 * entries, older than the war file itself.
+	 * @param war War to check
+	 * @param dir Directory of the webapp
+	 * @return True if the war is newer or there is no webapp
+	 */
+	public static boolean isNewer(File war, File dir) {
+		File webXml = new File(dir, "WEB-INF/web.xml");
+		return !webXml.isFile() || war.lastModified() > webXml.lastModified();
+	}
+	
+	/**
+	 * Deploy the webapp from its directory and give the index
+	 * to Jetty and to the JSP compiler so they don't scan the jars.
+	 * The compiled JSPs of the work directory are kept while the
+	 * webapp doesn't change.
+	 * @param context Context of the webapp
+	 * @param workDir Work directory of the webapp
+	 * @throws IOException If a jar of the index can't be found
+	 */
+	public void configure(WebAppContext context, File workDir) throws IOException {
+		context.setWar(dir.getAbsolutePath());
+		if (rebuilt) delete(workDir);
+		context.setTempDirectory(workDir);
+		
+		//only the jars with fragments, resources or TLDs are scanned by jetty
+		StringBuilder pattern = new StringBuilder("$^");
+		for (String jar : split(index.getProperty(META_INF_JARS))) {
+			pattern.append("|.*/").append(Pattern.quote(jar));
+		}
+		context.setAttribute(WebInfConfiguration.WEBINF_JAR_PATTERN, pattern.toString());
+		
+		if (index.getProperty(TLD_DISABLED) == null) {
+			//the map is modified by the JSP compiler, a new one is given at each start
+			HashMap<String, String[]> tlds = new HashMap<String, String[]>();
+			for (String key : index.stringPropertyNames()) {
+				if (!key.startsWith(TLD)) continue;
+				String[] location = index.getProperty(key).split("!", 2);
+				if (location.length == 2) {
+					File jar = new File(dir, "WEB-INF/lib/" + location[0]);
+					if (!jar.isFile()) throw new IOException("Jar [" + jar.getAbsolutePath() + "] of the index doesn't exists");
+					tlds.put(key.substring(TLD.length()), new String[] { jar.toURI().toURL().toString(), location[1] });
+				} else {
+					tlds.put(key.substring(TLD.length()), new String[] { location[0], null });
+				}
+			}
+			context.setAttribute(TLD_MAP_ATTRIBUTE, tlds);
+			TldLocationsCache.setNoTldJars(new HashSet<String>(split(index.getProperty(NO_TLD_JARS))));
+		}
+	}
+	
+	public File getDirectory() {
+		return dir;
+	}
+	
+	/**
+	 * @return True if the war was unpacked or the index built by this start
+	 */
+	public boolean isRebuilt() {
+		return rebuilt;
+	}
+	
+	/**
+	 * Check if the war is the one unpacked. The checksum is only
+	 * computed when the size or the date of the war changed.
+	 * @param war War to check
+	 * @param index Index of the unpacked war
+	 * @return True if the war is the one of the index
+	 * @throws IOException If the war can't be read
+	 */
+	private static boolean isSameWar(File war, Properties index) throws IOException {
+		String sha1 = index.getProperty(WAR_SHA1);
+		if (sha1 == null) return false;
+		if (Long.toString(war.length()).equals(index.getProperty(WAR_SIZE))
+				&& Long.toString(war.lastModified()).equals(index.getProperty(WAR_LAST_MODIFIED))) {
+			return true;
+		}
+		return sha1.equals(sha1(war));
+	}
+	
+	/**
+	 * Unpack the war in a new directory which then replaces
+	 * the directory of the webapp.
+	 * @param war War to unpack
+	 * @param dir Directory of the webapp
+	 * @throws IOException If the war can't be unpacked
+	 */
+	private static void unpack(File war, File dir) throws IOException {
+		File tmpDir = new File(dir.getParentFile(), dir.getName() + ".tmp");
+		delete(tmpDir);
+		String root = tmpDir.getCanonicalPath() + File.separator;
+		
+		ZipFile zip = new ZipFile(war);
+		try {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				File file = new File(tmpDir, entry.getName());
+				if (!file.getCanonicalPath().startsWith(root)) {
+					throw new IOException("Entry [" + entry.getName() + "] is outside of the war");
+				}
+				if (entry.isDirectory()) {
+					file.mkdirs();
+					continue;
+				}
+				file.getParentFile().mkdirs();
+				InputStream in = zip.getInputStream(entry);
+				try {
+					OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+					try {
+						copy(in, out);
+					} finally {
+						out.close();
+					}
+				} finally {
+					in.close();
+				}
+				if (entry.getTime() > 0) file.setLastModified(entry.getTime());
+			}
+		} finally {
+			zip.close();
+		}
+		
+		delete(dir);
+		if (!tmpDir.renameTo(dir)) {
+			throw new IOException("Can't rename [" + tmpDir.getAbsolutePath() + "] to [" + dir.getAbsolutePath() + "]");
+		}
+	}
+	
+	/**
+	 * Scan the webapp and the server classpath like Jetty and the JSP compiler.
+	 * @param dir Directory of the webapp
+	 * @return Index of the webapp
+	 * @throws IOException If a jar can't be read
+	 */
+	private static Properties scan(File dir) throws IOException {
+		Properties index = new Properties();
+		
+		List<String> metaInfJars = new ArrayList<String>();
+		for (String name : libJars(dir)) {
+			ZipFile zip = new ZipFile(new File(dir, "WEB-INF/lib/" + name));
+			try {
+				boolean metaInf = false;
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					String entryName = entry.getName();
+					if (entryName.equals("META-INF/web-fragment.xml") || entryName.startsWith("META-INF/resources/")) {
+						metaInf = true;
+					} else if (entryName.startsWith("META-INF/") && entryName.endsWith(".tld")) {
+						metaInf = true;
+						InputStream in = zip.getInputStream(entry);
+						try {
+							addTld(index, tldUri(in), name + "!" + entryName);
+						} finally {
+							in.close();
+						}
+					}
+				}
+				if (metaInf) metaInfJars.add(name);
+			} finally {
+				zip.close();
+			}
+		}
+		index.setProperty(META_INF_JARS, join(metaInfJars));
+		
+		//TLDs in the webapp directory, out of the jars
+		scanTlds(index, new File(dir, "WEB-INF"), "/WEB-INF/");
+		
+		//the TLDs declared in the web.xml would be skipped with the index
+		File webXml = new File(dir, "WEB-INF/web.xml");
+		if (webXml.isFile() && read(webXml).contains("<taglib")) index.setProperty(TLD_DISABLED, "true");
+		
+		index.setProperty(NO_TLD_JARS, join(serverJarsWithoutTld()));
+		return index;
+	}
+	
+	/**
+	 * Index the TLDs of a directory and its sub directories, but the jars.
+	 * @param index Index to fill
+	 * @param dir Directory to scan
+	 * @param path Path of the directory in the webapp
+	 * @throws IOException If a TLD can't be read
+	 */
+	private static void scanTlds(Properties index, File dir, String path) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) return;
+		for (File file : files) {
+			if (file.isDirectory()) {
+				if (!path.equals("/WEB-INF/") || !file.getName().equals("lib")) {
+					scanTlds(index, file, path + file.getName() + "/");
+				}
+			} else if (file.getName().endsWith(".tld")) {
+				InputStream in = new FileInputStream(file);
+				try {
+					addTld(index, tldUri(in), path + file.getName());
+				} finally {
+					in.close();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Add a TLD to the index, the first one found for an uri is kept.
+	 * @param index Index to fill
+	 * @param uri Uri of the TLD, null if it has none
+	 * @param location Location of the TLD, jar!entry or path in the webapp
+	 */
+	private static void addTld(Properties index, String uri, String location) {
+		if (uri != null && index.getProperty(TLD + uri) == null) index.setProperty(TLD + uri, location);
+	}
+	
+	/**
+	 * Read the uri of a TLD, without loading its DTD.
+	 * @param in Content of the TLD
+	 * @return Uri of the TLD or null
+	 * @throws IOException If the TLD can't be read
+	 */
+	private static String tldUri(InputStream in) throws IOException {
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			DocumentBuilder builder = factory.newDocumentBuilder();
+			NodeList uris = builder.parse(in).getDocumentElement().getElementsByTagName("uri");
+			return uris.getLength() > 0 ? uris.item(0).getTextContent().trim() : null;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Invalid TLD", e);
+		}
+	}
+	
+	/**
+	 * Find the jars of the server classpath without TLD, the JSP
+	 * compiler skips them. The jars are found from their manifest as
+	 * the classpath of the jar of the launcher isn't in java.class.path.
+	 * @return Names of the jars
+	 * @throws IOException If a jar can't be read
+	 */
+	private static Set<String> serverJarsWithoutTld() throws IOException {
+		Set<String> jars = new TreeSet<String>();
+		Enumeration<URL> manifests = ExplodedWar.class.getClassLoader().getResources("META-INF/MANIFEST.MF");
+		while (manifests.hasMoreElements()) {
+			String url = manifests.nextElement().toString();
+			if (!url.startsWith("jar:file:")) continue;
+			File file = new File(URI.create(url.substring(4, url.indexOf("!/"))));
+			ZipFile zip = new ZipFile(file);
+			try {
+				boolean tld = false;
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				while (!tld && entries.hasMoreElements()) {
+					String name = entries.nextElement().getName();
+					tld = name.startsWith("META-INF/") && name.endsWith(".tld");
+				}
+				if (!tld) jars.add(file.getName());
+			} finally {
+				zip.close();
+			}
+		}
+		return jars;
+	}
+	
+	/**
+	 * Fingerprint of the jars and of the web.xml of the webapp,
+	 * from their names, sizes and dates.
+	 * @param dir Directory of the webapp
+	 * @return Fingerprint in hexadecimal
+	 */
+	private static String fingerprint(File dir) {
+		MessageDigest digest = newSha1();
+		List<File> files = new ArrayList<File>();
+		files.add(new File(dir, "WEB-INF/web.xml"));
+		for (String name : libJars(dir)) files.add(new File(dir, "WEB-INF/lib/" + name));
+		for (File file : files) {
+			String line = file.getName() + "|" + file.length() + "|" + file.lastModified() + "\n";
+			digest.update(line.getBytes());
+		}
+		return hex(digest.digest());
+	}
+	
+	/**
+	 * @param dir Directory of the webapp
+	 * @return Sorted names of the jars of WEB-INF/lib
+	 */
+	private static List<String> libJars(File dir) {
+		List<String> jars = new ArrayList<String>();
+		String[] names = new File(dir, "WEB-INF/lib").list();
+		if (names != null) {
+			Arrays.sort(names);
+			for (String name : names) {
+				if (name.endsWith(".jar")) jars.add(name);
+			}
+		}
+		return jars;
+	}
+	
+	/**
+	 * @param file File to read
+	 * @return SHA-1 of the file in hexadecimal
+	 * @throws IOException If the file can't be read
+	 */
+	private static String sha1(File file) throws IOException {
+		MessageDigest digest = newSha1();
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			int n;
+			while ((n = in.read(buffer)) != -1) digest.update(buffer, 0, n);
+		} finally {
+			in.close();
+		}
+		return hex(digest.digest());
+	}
+	
+	private static MessageDigest newSha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
+	
+	private static String join(Iterable<String> values) {
+		StringBuilder sb = new StringBuilder();
+		for (String value : values) {
+			if (sb.length() > 0) sb.append(',');
+			sb.append(value);
+		}
+		return sb.toString();
+	}
+	
+	private static List<String> split(String values) {
+		if (values == null || values.length() == 0) return new ArrayList<String>();
+		return Arrays.asList(values.split(","));
+	}
+	
+	private static String read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			copy(in, out);
+			return out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[64 * 1024];
+		int n;
+		while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+	}
+	
+	/**
+	 * Load the index of the webapp.
+	 * @param file File of the index
+	 * @return Index, empty if the file doesn't exist or can't be read
+	 */
+	private static Properties load(File file) {
+		Properties index = new Properties();
+		if (!file.isFile()) return index;
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				index.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			//the index is built again
+			return new Properties();
+		}
+		return index;
+	}
+	
+	private static void store(Properties index, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			index.store(out, "BankIt webapp index");
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Delete a file or a directory and its content.
+	 * @param file File to delete
+	 * @throws IOException If the file can't be deleted
+	 */
+	private static void delete(File file) throws IOException {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) delete(child);
+		}
+		if (file.exists() && !file.delete()) throw new IOException("Can't delete [" + file.getAbsolutePath() + "]");
+	}
+	
+}
@@ -20,33 +20,79 @@ package org.alexlg.bankit;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
 
+import javax.servlet.ServletContext;
+import javax.swing.SwingUtilities;
+
 import org.apache.commons.dbcp.BasicDataSource;
 import org.eclipse.jetty.plus.jndi.Resource;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.servlet.DefaultServlet;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.webapp.WebAppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Main class which launch the Jetty Server.
  * 
- * It search in lib dir for a WAR to deploy,
+ * It search in lib dir for a WAR to deploy, unpacked
+ * in the webapp dir only when it changed, or deploys
+ * the webapp dir shipped unpacked,
  * bind a H2 database JNDI resource, search
  * for an open port, start the Jetty server on it
  * then open the user default browser.
+ * Static files are sent by Jetty without the webapp,
+ * unless bankit.static_contexts is set to false.
+ * The webapp keeps a continuous Java Flight Recorder recording
+ * when available, unless bankit.jfr is set to false.
+ * The loading frame is started in another thread
+ * than the server, and the duration of each phase
+ * of the startup is logged.
  * 
  * @author Alexandre Thomazo
  */
 public class Launcher {
 	
+	private static Logger logger = LoggerFactory.getLogger(Launcher.class);
+	
+	/** Maximum size of a static file kept in memory */
+	private static final int MAX_CACHED_FILE_SIZE = 512 * 1024;
+	
+	/** Maximum size of the static files kept in memory */
+	private static final int MAX_CACHE_SIZE = 16 * 1024 * 1024;
+	
+	/** Cache duration of the fingerprinted assets in seconds (one year) */
+	private static final long ASSETS_CACHE_SECONDS = 365L * 24 * 60 * 60;
+	
+	/** Cache duration of the static files in seconds (one day), like the webapp */
+	private static final long STATIC_CACHE_SECONDS = 24L * 60 * 60;
+	
+	/** Directory of the unpacked webapp */
+	private static final String WEBAPP_DIR = "webapp";
+	
+	/** Directory of the compiled JSPs, kept between two starts as its name is "work" */
+	private static final String WORK_DIR = "work";
+	
 	public static void main(String[] args) throws Exception {
-		LoadingFrame loadingFrame = new LoadingFrame();
-		loadingFrame.display();
+		long start = System.currentTimeMillis();
+		logPhase("jvm", ManagementFactory.getRuntimeMXBean().getStartTime());
+		
+		//the frame is built by the swing thread while the server starts
+		final LoadingFrame[] loadingFrame = new LoadingFrame[1];
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				loadingFrame[0] = new LoadingFrame();
+				loadingFrame[0].display();
+			}
+		});
 		
 		File warFile = null;
 		if (!(args.length > 0 && args[0].equals("nowar"))) { //can be deactivated for tests
@@ -60,11 +106,53 @@ public class Launcher {
 					break;
 				}
 			}
-			if (warFile == null) throw new Exception("Cant find any .war file in [" + libDir.getAbsolutePath() + "]");
+			
+			//the war replaces the shipped webapp only if it's newer
+			if (warFile != null && !ExplodedWar.isNewer(warFile, new File(WEBAPP_DIR))) {
+				logger.info("War [{}] older than the webapp, not deployed", warFile.getName());
+				warFile = null;
+			}
+			
+			//without war, the webapp is the one shipped unpacked
+			if (warFile == null) warFile = new File(WEBAPP_DIR);
+			if (!warFile.exists()) throw new Exception("Cant find any .war file in [" + libDir.getAbsolutePath()
+					+ "] nor webapp in [" + warFile.getAbsolutePath() + "]");
 		}
 
+		//flight recording started by the webapp, disabled with -Dbankit.jfr=false,
+		//not bound in startServer() to not record the benchmarks
+		Boolean flightRecording = !"false".equals(System.getProperty("bankit.jfr"));
+		new Resource("java:comp/env/flight_recording", flightRecording);
+		
 		final int port = findAvailablePort(8080);
+		logPhase("launcher", start);
+		
+		start = System.currentTimeMillis();
+		Server server = startServer(warFile, "jdbc:h2:bankit", port);
+		logPhase("server", start);
+		
+		//start the user browser after the server started
+		startBrowser("http://localhost:" + port + "/bankit/");
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if (loadingFrame[0] != null) loadingFrame[0].close();
+			}
+		});
 		
+		server.join();
+	}
+	
+	/**
+	 * Start the Jetty server with the bankit webapp and its database.
+	 * @param warFile War or directory of the webapp to deploy, null for none.
+	 * A war is unpacked in the webapp directory of the working directory.
+	 * @param dbUrl JDBC url of the H2 database
+	 * @param port Port to listen on, 0 for any free port
+	 * @return Started server, the port listened is the local port of its connector
+	 * @throws Exception If the server can't be started
+	 */
+	public static Server startServer(File warFile, String dbUrl, int port) throws Exception {
 		//server definition
 		Server server = new Server();
 		server.setGracefulShutdown(1000);
@@ -85,12 +173,17 @@ public class Launcher {
 		shutdownServletCtx.addServlet(new ServletHolder(new ShutdownServlet(server)), "/*");
 		contexts.addHandler(shutdownServletCtx);
 		
-		//bankit war
+		//bankit war, unpacked once in the webapp dir
+		WebAppContext webAppContext = null;
 		if (warFile != null) {
-			WebAppContext webAppContext = new WebAppContext();
+			long start = System.currentTimeMillis();
+			ExplodedWar webapp = warFile.isDirectory() ? ExplodedWar.open(null, warFile)
+					: ExplodedWar.open(warFile, new File(WEBAPP_DIR));
+			logPhase(webapp.isRebuilt() ? "webapp unpack and index" : "webapp index", start);
+			
+			webAppContext = new WebAppContext();
 			webAppContext.setContextPath("/bankit");
-			webAppContext.setWar(warFile.getAbsolutePath());
-			webAppContext.setTempDirectory(new File("tmp/"));
+			webapp.configure(webAppContext, new File(WORK_DIR));
 			
 			//prevent slf4j api to be loaded by the webapp
 			//in order to keep the jetty logback configuration
@@ -102,22 +195,97 @@ public class Launcher {
 		//database datasource
 		BasicDataSource datasource = new BasicDataSource();
 		datasource.setDriverClassName("org.h2.Driver");
-		datasource.setUrl("jdbc:h2:bankit");
+		datasource.setUrl(dbUrl);
 		new Resource("jdbc/bankit", datasource);
 		
 		//standalone jndi resource
 		Boolean standalone = true;
 		new Resource("java:comp/env/standalone", standalone);
 		
+		//slow query threshold in ms, given with -Dbankit.slow_query_threshold=<ms>
+		Integer slowQueryThreshold = Integer.getInteger("bankit.slow_query_threshold");
+		if (slowQueryThreshold != null) new Resource("java:comp/env/slow_query_threshold", slowQueryThreshold);
+		
 		//adding Handlers for servlet and war
 		server.setHandler(contexts);
 		server.start();
 		
-		//start the user browser after the server started
-		startBrowser("http://localhost:" + port + "/bankit/");
-		loadingFrame.close();
+		//static files sent by jetty once the webapp loaded them,
+		//disabled with -Dbankit.static_contexts=false to compare with the webapp
+		if (webAppContext != null && !"false".equals(System.getProperty("bankit.static_contexts"))) {
+			mountStaticContexts(contexts, webAppContext);
+		}
 		
-		server.join();
+		return server;
+	}
+	
+	/**
+	 * Mount the contexts serving the static files of the webapp
+	 * directly from Jetty: the static directory and the fingerprinted
+	 * assets built with the webapp. They take precedence over the
+	 * webapp as their context paths are longer.
+	 * @param contexts Contexts of the server
+	 * @param webAppContext Started bankit webapp
+	 * @throws Exception If a context can't be started
+	 */
+	private static void mountStaticContexts(ContextHandlerCollection contexts,
+			WebAppContext webAppContext) throws Exception {
+		org.eclipse.jetty.util.resource.Resource base = webAppContext.getBaseResource();
+		if (base != null) {
+			addStaticContext(contexts, webAppContext.getContextPath() + "/static",
+					base.addPath("/static/"), "public, max-age=" + STATIC_CACHE_SECONDS);
+		}
+		
+		ServletContext servletContext = webAppContext.getServletContext();
+		Object assetsUrl = servletContext.getAttribute("assetsUrl");
+		Object assetsDir = servletContext.getAttribute("assetsDir");
+		if (assetsUrl != null && assetsDir != null) {
+			addStaticContext(contexts, webAppContext.getContextPath() + assetsUrl,
+					org.eclipse.jetty.util.resource.Resource.newResource(new File((String) assetsDir)),
+					"public, max-age=" + ASSETS_CACHE_SECONDS + ", immutable");
+		}
+	}
+	
+	/**
+	 * Add and start a context serving files with the Jetty DefaultServlet.
+	 * Files are sent from memory mapped buffers, the small ones
+	 * are kept in memory, and the gzipped copies are used when present.
+	 * @param contexts Contexts of the server
+	 * @param contextPath Path of the new context
+	 * @param base Directory of the files
+	 * @param cacheControl Cache-Control header of the files or null
+	 * @throws Exception If the context can't be started
+	 */
+	private static void addStaticContext(ContextHandlerCollection contexts, String contextPath,
+			org.eclipse.jetty.util.resource.Resource base, String cacheControl) throws Exception {
+		ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+		context.setContextPath(contextPath);
+		context.setBaseResource(base);
+		
+		ServletHolder holder = new ServletHolder(new DefaultServlet());
+		holder.setInitParameter("dirAllowed", "false");
+		holder.setInitParameter("useFileMappedBuffer", "true");
+		holder.setInitParameter("maxCachedFileSize", Integer.toString(MAX_CACHED_FILE_SIZE));
+		holder.setInitParameter("maxCacheSize", Integer.toString(MAX_CACHE_SIZE));
+		holder.setInitParameter("gzip", "true");
+		holder.setInitParameter("etags", "true");
+		if (cacheControl != null) holder.setInitParameter("cacheControl", cacheControl);
+		context.addServlet(holder, "/");
+		
+		contexts.addHandler(context);
+		context.start();
+	}
+	
+	/**
+	 * Log the duration of a phase of the startup.
+	 * @param phase Name of the phase
+	 * @param start Start of the phase in ms since the epoch
+	 */
+	private static void logPhase(String phase, long start) {
+		long now = System.currentTimeMillis();
+		long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+		logger.info("Boot phase {} from {} ms to {} ms : {} ms",
+				new Object[] { phase, start - jvmStart, now - jvmStart, now - start });
 	}
 	
 	/**
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.assets;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Builds the static assets of the webapp when it is packaged, run
+ * by the exec plugin of the build after the compilation.
+ * 
+ * The files of the static directory are minified, concatenated
+ * into the bundles of the configuration, and fingerprinted with
+ * a version computed from their content. They are written in
+ * WEB-INF/assets/{version}/ with a gzipped copy of the scripts and
+ * stylesheets, and the version in WEB-INF/assets/assets.properties.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class AssetBuilder {
+
+	/** Directory of the built assets in the webapp */
+	public static final String ASSETS_DIR = "WEB-INF/assets/";
+	
+	/** File of the built assets holding their version */
+	public static final String MANIFEST = "assets.properties";
+	
+	/** Property of the version in the manifest */
+	public static final String VERSION = "version";
+	
+	/** Prefix of the bundle keys in the configuration */
+	private static final String BUNDLE_PREFIX = "bundle.";
+	
+	private static final String CHARSET = "UTF-8";
+	
+	/** Content of the assets by path relative to the static directory */
+	private Map<String, byte[]> assets = Collections.emptyMap();
+	
+	/** Fingerprint of the assets content */
+	private String version = "";
+	
+	/**
+	 * Minify the files, build the bundles and compute the version.
+	 * @param files Content of the files by path relative to the static directory
+	 * @param config Bundles configuration
+	 */
+	public void build(Map<String, byte[]> files, Properties config) throws UnsupportedEncodingException {
+		boolean minify = Boolean.parseBoolean(config.getProperty("minify", "true"));
+		
+		//sorted to compute always the same version
+		Map<String, byte[]> prepared = new TreeMap<String, byte[]>();
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			byte[] content = file.getValue();
+			if (minify) content = minify(file.getKey(), content);
+			prepared.put(file.getKey(), content);
+		}
+		
+		for (String key : config.stringPropertyNames()) {
+			if (!key.startsWith(BUNDLE_PREFIX)) continue;
+			String bundle = key.substring(BUNDLE_PREFIX.length());
+			//scripts separated to not join a statement with the next file
+			String separator = bundle.endsWith(".js") ? ";\n" : "\n";
+			
+			StringBuilder content = new StringBuilder();
+			for (String part : config.getProperty(key).split(",")) {
+				byte[] partContent = prepared.get(part.trim());
+				if (partContent == null) {
+					throw new IllegalArgumentException("Asset [" + part.trim() + "] of bundle [" + bundle + "] doesn't exist");
+				}
+				content.append(new String(partContent, CHARSET)).append(separator);
+			}
+			prepared.put(bundle, content.toString().getBytes(CHARSET));
+		}
+		
+		version = computeVersion(prepared);
+		assets = prepared;
+	}
+	
+	/**
+	 * Write the built assets in the version directory, with a gzipped
+	 * copy of the scripts and stylesheets, then the manifest.
+	 * @param dir Assets directory of the webapp
+	 * @throws IOException If a file can't be written
+	 */
+	public void export(File dir) throws IOException {
+		//previous versions removed
+		if (dir.exists()) FileUtils.deleteDirectory(dir);
+		
+		File versionDir = new File(dir, version);
+		for (Map.Entry<String, byte[]> asset : assets.entrySet()) {
+			File file = new File(versionDir, asset.getKey());
+			FileUtils.writeByteArrayToFile(file, asset.getValue());
+			
+			String path = asset.getKey();
+			if (path.endsWith(".js") || path.endsWith(".css")) {
+				OutputStream out = new GZIPOutputStream(new FileOutputStream(file.getPath() + ".gz"));
+				try {
+					out.write(asset.getValue());
+				} finally {
+					out.close();
+				}
+			}
+		}
+		
+		Properties manifest = new Properties();
+		manifest.setProperty(VERSION, version);
+		OutputStream out = new FileOutputStream(new File(dir, MANIFEST));
+		try {
+			manifest.store(out, "Built assets of the webapp");
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Minify a script or a stylesheet.
+	 * @param path Path of the file
+	 * @param content Content of the file
+	 * @return Minified content or the same content for the other files
+	 */
+	private byte[] minify(String path, byte[] content) throws UnsupportedEncodingException {
+		try {
+			if (path.endsWith(".js")) {
+				return JsMinifier.minify(new String(content, CHARSET)).getBytes(CHARSET);
+			} else if (path.endsWith(".css")) {
+				return CssMinifier.minify(new String(content, CHARSET)).getBytes(CHARSET);
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("Asset [" + path + "] not minified: " + e.getMessage());
+		}
+		return content;
+	}
+	
+	/**
+	 * Compute a fingerprint of the assets.
+	 * @param files Content of the files sorted by path
+	 * @return 12 hexadecimal characters
+	 */
+	private String computeVersion(Map<String, byte[]> files) throws UnsupportedEncodingException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			digest.update(file.getKey().getBytes(CHARSET));
+			digest.update(file.getValue());
+		}
+		
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.substring(0, 12);
+	}
+	
+	/**
+	 * Read recursively the files of a directory.
+	 * @param dir Directory to read
+	 * @return Content of the files by path relative to the directory
+	 * @throws IOException If a file can't be read
+	 */
+	public static Map<String, byte[]> readDir(File dir) throws IOException {
+		Map<String, byte[]> files = new HashMap<String, byte[]>();
+		for (Object listed : FileUtils.listFiles(dir, null, true)) {
+			File file = (File) listed;
+			String path = file.getPath().substring(dir.getPath().length() + 1).replace(File.separatorChar, '/');
+			files.put(path, FileUtils.readFileToByteArray(file));
+		}
+		return files;
+	}
+	
+	/**
+	 * Get the content of a built asset.
+	 * @param path Path relative to the static directory, or bundle name
+	 * @return Content or null if the asset doesn't exist
+	 */
+	public byte[] getAsset(String path) {
+		return assets.get(path);
+	}
+	
+	/**
+	 * Get the fingerprint of the built assets.
+	 * @return Version
+	 */
+	public String getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Build the assets of the webapp.
+	 * @param args Static directory, bundles configuration and
+	 * 	output directory where WEB-INF/assets/ is written
+	 * @throws IOException If a file can't be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("Usage: AssetBuilder <static dir> <bundles configuration> <output dir>");
+			System.exit(1);
+		}
+		long start = System.currentTimeMillis();
+		
+		Properties config = new Properties();
+		InputStream in = new FileInputStream(args[1]);
+		try {
+			config.load(in);
+		} finally {
+			in.close();
+		}
+		
+		AssetBuilder builder = new AssetBuilder();
+		builder.build(readDir(new File(args[0])), config);
+		builder.export(new File(args[2], ASSETS_DIR));
+		System.out.println(builder.assets.size() + " assets built in " + (System.currentTimeMillis() - start)
+				+ "ms with version " + builder.version);
+	}
+	
+}
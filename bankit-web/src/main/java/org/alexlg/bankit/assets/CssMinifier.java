@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.assets;
+
+/**
+ * CSS minifier removing comments and unneeded whitespaces.
+ * Strings are kept as is and spaces are only removed around
+ * braces, semicolons and commas to not change the selectors.
+ * The license comments starting with /*! are kept on their own lines.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class CssMinifier {
+
+	private CssMinifier() {}
+	
+	/**
+	 * Minify a stylesheet.
+	 * @param css Stylesheet to minify
+	 * @return Minified stylesheet
+	 * @throws IllegalArgumentException If a comment or string is not terminated
+	 */
+	public static String minify(String css) {
+		StringBuilder out = new StringBuilder(css.length());
+		int len = css.length();
+		boolean space = false;
+		
+		for (int i = 0; i < len; i++) {
+			char c = css.charAt(i);
+			
+			if (c == '/' && i + 1 < len && css.charAt(i + 1) == '*') {
+				//comment
+				int end = css.indexOf("*/", i + 2);
+				if (end < 0) throw new IllegalArgumentException("Unterminated comment");
+				if (i + 2 < end && css.charAt(i + 2) == '!') {
+					//license comment kept
+					if (out.length() > 0 && out.charAt(out.length() - 1) != '\n') out.append('\n');
+					out.append(css.substring(i, end + 2).replace("\r\n", "\n").replace('\r', '\n')).append('\n');
+					space = false;
+				}
+				i = end + 1;
+				
+			} else if (Character.isWhitespace(c)) {
+				space = true;
+				
+			} else {
+				if (isSeparator(c)) {
+					space = false;
+				} else if (space && out.length() > 0 && !isSeparator(out.charAt(out.length() - 1))) {
+					out.append(' ');
+				}
+				space = false;
+				
+				if (c == '"' || c == '\'') {
+					//string copied as is
+					int end = i + 1;
+					while (end < len && css.charAt(end) != c) {
+						if (css.charAt(end) == '\\') end++;
+						end++;
+					}
+					if (end >= len) throw new IllegalArgumentException("Unterminated string");
+					out.append(css, i, end + 1);
+					i = end;
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		return out.toString();
+	}
+	
+	private static boolean isSeparator(char c) {
+		return c == '{' || c == '}' || c == ';' || c == ',' || c == '\n';
+	}
+	
+}
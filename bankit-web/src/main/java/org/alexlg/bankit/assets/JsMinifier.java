@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.assets;
+
+/**
+ * Javascript minifier removing comments and unneeded whitespaces.
+ * Port of JSMin by Douglas Crockford (2013-03-29), which keeps
+ * the code semantic and never renames anything.
+ * The license comments starting with /*! are kept on their own lines,
+ * like in the JSMin PHP port.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class JsMinifier {
+
+	private static final int EOF = -1;
+	
+	private final String in;
+	private final StringBuilder out;
+	private int pos;
+	
+	private int theA;
+	private int theB;
+	private int theLookahead = EOF;
+	private int theX = EOF;
+	private int theY = EOF;
+	
+	/** License comments read but not written yet */
+	private final StringBuilder keptComments = new StringBuilder();
+	
+	private JsMinifier(String in) {
+		this.in = in;
+		this.out = new StringBuilder(in.length());
+	}
+	
+	/**
+	 * Minify a script.
+	 * @param js Script to minify
+	 * @return Minified script
+	 * @throws IllegalArgumentException If a comment, string or regexp is not terminated
+	 */
+	public static String minify(String js) {
+		JsMinifier minifier = new JsMinifier(js);
+		minifier.jsmin();
+		return minifier.out.toString().trim();
+	}
+	
+	/**
+	 * Check if a character is a letter, digit, underscore,
+	 * dollar sign, backslash or non-ASCII character.
+	 */
+	private static boolean isAlphanum(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+				|| (c >= 'A' && c <= 'Z') || c == '_' || c == '$'
+				|| c == '\\' || c > 126;
+	}
+	
+	/**
+	 * Get the next character, control characters are
+	 * converted to space and carriage return to linefeed.
+	 */
+	private int get() {
+		int c = theLookahead;
+		theLookahead = EOF;
+		if (c == EOF) {
+			c = pos < in.length() ? in.charAt(pos++) : EOF;
+		}
+		if (c >= ' ' || c == '\n' || c == EOF) return c;
+		if (c == '\r') return '\n';
+		return ' ';
+	}
+	
+	/**
+	 * Get the next character without consuming it.
+	 */
+	private int peek() {
+		theLookahead = get();
+		return theLookahead;
+	}
+	
+	/**
+	 * Get the next character, excluding comments.
+	 */
+	private int next() {
+		int c = get();
+		if (c == '/') {
+			switch (peek()) {
+			case '/':
+				for (;;) {
+					c = get();
+					if (c <= '\n') break;
+				}
+				break;
+			case '*':
+				get();
+				//license comment kept, from the input as get() changes the control characters
+				boolean kept = peek() == '!';
+				int start = pos - 3;
+				while (c != ' ') {
+					switch (get()) {
+					case '*':
+						if (peek() == '/') {
+							get();
+							c = ' ';
+						}
+						break;
+					case EOF:
+						throw new IllegalArgumentException("Unterminated comment");
+					}
+				}
+				if (kept) {
+					String comment = in.substring(start, pos).replace("\r\n", "\n").replace('\r', '\n');
+					keptComments.append('\n').append(comment).append('\n');
+				}
+				break;
+			}
+		}
+		theY = theX;
+		theX = c;
+		return c;
+	}
+	
+	private void put(int c) {
+		if (c != EOF) out.append((char) c);
+	}
+	
+	/**
+	 * Do something with A and B:
+	 * 1 output A, copy B to A and get the next B,
+	 * 2 copy B to A and get the next B,
+	 * 3 get the next B.
+	 */
+	private void action(int d) {
+		switch (d) {
+		case 1:
+			put(theA);
+			if ((theY == '\n' || theY == ' ')
+					&& (theA == '+' || theA == '-' || theA == '*' || theA == '/')
+					&& (theB == '+' || theB == '-' || theB == '*' || theB == '/')) {
+				put(theY);
+			}
+			//comments written after the character before them
+			if (keptComments.length() > 0) {
+				if (out.length() > 0 && out.charAt(out.length() - 1) == '\n') out.setLength(out.length() - 1);
+				out.append(keptComments);
+				keptComments.setLength(0);
+			}
+			//fall through
+		case 2:
+			theA = theB;
+			if (theA == '\'' || theA == '"' || theA == '`') {
+				for (;;) {
+					put(theA);
+					theA = get();
+					if (theA == theB) break;
+					if (theA == '\\') {
+						put(theA);
+						theA = get();
+					}
+					if (theA == EOF) throw new IllegalArgumentException("Unterminated string literal");
+				}
+			}
+			//fall through
+		case 3:
+			theB = next();
+			if (theB == '/' && (theA == '(' || theA == ',' || theA == '='
+					|| theA == ':' || theA == '[' || theA == '!' || theA == '&'
+					|| theA == '|' || theA == '?' || theA == '+' || theA == '-'
+					|| theA == '~' || theA == '*' || theA == '/' || theA == '{'
+					|| theA == '\n')) {
+				put(theA);
+				if (theA == '/' || theA == '*') put(' ');
+				put(theB);
+				for (;;) {
+					theA = get();
+					if (theA == '[') {
+						for (;;) {
+							put(theA);
+							theA = get();
+							if (theA == ']') break;
+							if (theA == '\\') {
+								put(theA);
+								theA = get();
+							}
+							if (theA == EOF) throw new IllegalArgumentException("Unterminated set in regular expression literal");
+						}
+					} else if (theA == '/') {
+						int c = peek();
+						if (c == '/' || c == '*') throw new IllegalArgumentException("Unterminated set in regular expression literal");
+						break;
+					} else if (theA == '\\') {
+						put(theA);
+						theA = get();
+					}
+					if (theA == EOF) throw new IllegalArgumentException("Unterminated regular expression literal");
+					put(theA);
+				}
+				theB = next();
+			}
+		}
+	}
+	
+	/**
+	 * Copy the input to the output, deleting the characters
+	 * which are insignificant to JavaScript.
+	 */
+	private void jsmin() {
+		//byte order mark
+		if (peek() == 0xFEFF) get();
+		theA = '\n';
+		action(3);
+		while (theA != EOF) {
+			switch (theA) {
+			case ' ':
+				action(isAlphanum(theB) ? 1 : 2);
+				break;
+			case '\n':
+				switch (theB) {
+				case '{':
+				case '[':
+				case '(':
+				case '+':
+				case '-':
+				case '!':
+				case '~':
+					action(1);
+					break;
+				case ' ':
+					action(3);
+					break;
+				default:
+					action(isAlphanum(theB) ? 1 : 2);
+				}
+				break;
+			default:
+				switch (theB) {
+				case ' ':
+					action(isAlphanum(theA) ? 1 : 3);
+					break;
+				case '\n':
+					switch (theA) {
+					case '}':
+					case ']':
+					case ')':
+					case '+':
+					case '-':
+					case '"':
+					case '\'':
+					case '`':
+						action(1);
+						break;
+					default:
+						action(isAlphanum(theA) ? 1 : 3);
+					}
+					break;
+				default:
+					action(1);
+				}
+			}
+		}
+		out.append(keptComments);
+	}
+	
+}
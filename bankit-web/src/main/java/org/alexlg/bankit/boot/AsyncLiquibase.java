@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.boot;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Liquibase update run in its own thread, so the changelog is parsed,
+ * validated and applied while the rest of the context is built.
+ * The database must not be used before the end of the update,
+ * see {@link MigrationGateDataSource}.
+ * The update is awaited before the end of the context refresh, so a
+ * failed update fails the startup even if no connection was asked.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class AsyncLiquibase extends SpringLiquibase implements SmartLifecycle {
+
+	/** Update of the database, null before the start */
+	private volatile FutureTask<Void> update;
+	
+	/** Update awaited by the context refresh */
+	private volatile boolean running = false;
+	
+	@Override
+	public void afterPropertiesSet() {
+		update = new FutureTask<Void>(new Callable<Void>() {
+			@Override
+			public Void call() throws LiquibaseException {
+				BootTimeline.Phase phase = BootTimeline.get().begin("liquibase");
+				try {
+					AsyncLiquibase.super.afterPropertiesSet();
+					return null;
+				} finally {
+					phase.end();
+				}
+			}
+		});
+		
+		Thread thread = new Thread(update, "bankit-liquibase");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Wait for the end of the update.
+	 * @throws IllegalStateException If the update is not started or failed
+	 */
+	public void await() {
+		if (update == null) throw new IllegalStateException("Liquibase update not started");
+		try {
+			update.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the Liquibase update", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Liquibase update failed", e.getCause());
+		}
+	}
+	
+	/**
+	 * @return True if the update is done, successfully or not
+	 */
+	public boolean isDone() {
+		return update != null && update.isDone();
+	}
+	
+	/**
+	 * Wait for the end of the update, before the context is refreshed.
+	 * @throws IllegalStateException If the update failed
+	 */
+	@Override
+	public void start() {
+		await();
+		running = true;
+	}
+	
+	@Override
+	public void stop() {
+		running = false;
+	}
+	
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+	
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+	
+	/**
+	 * @return Lowest phase, the update is awaited before the other beans start
+	 */
+	@Override
+	public int getPhase() {
+		return Integer.MIN_VALUE;
+	}
+	
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.boot;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timeline of the phases of the webapp startup, with their
+ * start and end times since the start of the JVM so they can
+ * be compared with the phases logged by the launcher.
+ * The phases can run in parallel in different threads.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class BootTimeline {
+
+	private static Logger logger = LoggerFactory.getLogger(BootTimeline.class);
+	
+	private static final BootTimeline INSTANCE = new BootTimeline();
+	
+	/** Start time of the JVM in ms since the epoch */
+	private final long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+	
+	/** Phases in their start order */
+	private final List<Phase> phases = new CopyOnWriteArrayList<Phase>();
+	
+	/**
+	 * @return Timeline of the webapp
+	 */
+	public static BootTimeline get() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Start a phase.
+	 * @param name Name of the phase
+	 * @return The phase, to end when it's done
+	 */
+	public Phase begin(String name) {
+		Phase phase = new Phase(name, Thread.currentThread().getName(), now());
+		phases.add(phase);
+		return phase;
+	}
+	
+	/**
+	 * @return Phases in their start order
+	 */
+	public List<Phase> getPhases() {
+		return new ArrayList<Phase>(phases);
+	}
+	
+	/**
+	 * Log the phases and their durations.
+	 */
+	public void log() {
+		for (Phase phase : phases) {
+			if (phase.isRunning()) {
+				logger.info("Boot phase {} [{}] started at {} ms, still running",
+						new Object[] { phase.name, phase.thread, phase.start });
+			} else {
+				logger.info("Boot phase {} [{}] from {} ms to {} ms : {} ms",
+						new Object[] { phase.name, phase.thread, phase.start, phase.end, phase.getDuration() });
+			}
+		}
+	}
+	
+	/**
+	 * @return Time since the start of the JVM in ms
+	 */
+	private long now() {
+		return System.currentTimeMillis() - jvmStart;
+	}
+	
+	/**
+	 * Phase of the startup.
+	 */
+	public class Phase {
+		
+		private final String name;
+		
+		private final String thread;
+		
+		/** Start in ms since the start of the JVM */
+		private final long start;
+		
+		/** End in ms since the start of the JVM, -1 while running */
+		private volatile long end = -1;
+		
+		private Phase(String name, String thread, long start) {
+			this.name = name;
+			this.thread = thread;
+			this.start = start;
+		}
+		
+		/**
+		 * End the phase.
+		 */
+		public void end() {
+			end = now();
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public String getThread() {
+			return thread;
+		}
+		
+		public long getStart() {
+			return start;
+		}
+		
+		public long getEnd() {
+			return end;
+		}
+		
+		public boolean isRunning() {
+			return end < 0;
+		}
+		
+		/**
+		 * @return Duration in ms, until now if the phase is running
+		 */
+		public long getDuration() {
+			return (end < 0 ? now() : end) - start;
+		}
+	}
+	
+}
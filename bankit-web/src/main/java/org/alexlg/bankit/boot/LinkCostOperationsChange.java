@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.boot;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * Link the planned operations not yet happened, created before the
+ * cost_id column, to the cost which generated them, so they are
+ * updated or deleted with the cost.
+ * An operation is linked when exactly one cost has its label,
+ * its planned amount and its category.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class LinkCostOperationsChange implements CustomTaskChange {
+
+	/** Costs with the label, amount and category of the operation */
+	private static final String SAME_COST = "from costs c where c.label = operations.label "
+			+ "and c.amount = operations.planned and (c.category_id = operations.category_id "
+			+ "or (c.category_id is null and operations.category_id is null))";
+	
+	private static final String LINK = "update operations set cost_id = (select c.cost_id " + SAME_COST + ") "
+			+ "where cost_id is null and amount is null and planned is not null "
+			+ "and (select count(*) " + SAME_COST + ") = 1";
+	
+	/** Number of operations linked by the change */
+	private int nbLinked = 0;
+	
+	/**
+	 * Link the unlinked planned operations to their cost.
+	 * @param connection Connection to the database
+	 * @return Number of operations linked
+	 * @throws SQLException If the update failed
+	 */
+	public static int link(Connection connection) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			return statement.executeUpdate(LINK);
+		} finally {
+			statement.close();
+		}
+	}
+	
+	@Override
+	public void execute(Database database) throws CustomChangeException {
+		try {
+			nbLinked = link(((JdbcConnection) database.getConnection()).getUnderlyingConnection());
+		} catch (SQLException e) {
+			throw new CustomChangeException("Unable to link the planned operations to their cost", e);
+		}
+	}
+	
+	@Override
+	public String getConfirmationMessage() {
+		return nbLinked + " planned operations linked to their cost";
+	}
+	
+	@Override
+	public void setUp() {
+	}
+	
+	@Override
+	public void setFileOpener(ResourceAccessor resourceAccessor) {
+	}
+	
+	@Override
+	public ValidationErrors validate(Database database) {
+		return new ValidationErrors();
+	}
+	
+}
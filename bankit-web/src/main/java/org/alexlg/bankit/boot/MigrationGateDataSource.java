@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.boot;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * DataSource whose connections are given only once the
+ * database is updated by {@link AsyncLiquibase}. The threads
+ * asking for a connection during the update wait for its end.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class MigrationGateDataSource extends DelegatingDataSource {
+
+	private AsyncLiquibase liquibase;
+	
+	/** Set once the update is done, to not check it again */
+	private volatile boolean open = false;
+	
+	@Override
+	public Connection getConnection() throws SQLException {
+		awaitMigration();
+		return super.getConnection();
+	}
+	
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		awaitMigration();
+		return super.getConnection(username, password);
+	}
+	
+	/**
+	 * Wait for the end of the database update.
+	 * @throws SQLException If the update failed
+	 */
+	private void awaitMigration() throws SQLException {
+		if (open) return;
+		try {
+			liquibase.await();
+			open = true;
+		} catch (IllegalStateException e) {
+			throw new SQLException("The database is not available", e);
+		}
+	}
+
+	public void setLiquibase(AsyncLiquibase liquibase) {
+		this.liquibase = liquibase;
+	}
+	
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.boot;
+
+import javax.servlet.ServletContextEvent;
+
+import org.springframework.web.context.ContextLoaderListener;
+
+/**
+ * ContextLoaderListener recording the creation of the
+ * root context in the {@link BootTimeline}.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class TimedContextLoaderListener extends ContextLoaderListener {
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		BootTimeline.Phase phase = BootTimeline.get().begin("root context");
+		try {
+			super.contextInitialized(event);
+		} finally {
+			phase.end();
+		}
+	}
+	
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.boot;
+
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+/**
+ * DispatcherServlet recording the creation of its context
+ * in the {@link BootTimeline}. As it's the last part of
+ * the startup, the timeline is logged once it's created.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class TimedDispatcherServlet extends DispatcherServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected WebApplicationContext initWebApplicationContext() {
+		BootTimeline.Phase phase = BootTimeline.get().begin("servlet context");
+		try {
+			return super.initWebApplicationContext();
+		} finally {
+			phase.end();
+			BootTimeline.get().log();
+		}
+	}
+	
+}
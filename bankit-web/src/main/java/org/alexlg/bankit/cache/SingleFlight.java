@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.alexlg.bankit.metrics.Counter;
+import org.alexlg.bankit.metrics.Timer;
+
+/**
+ * Coalesce concurrent computations of the same key.
+ * The first caller computes the value in its own thread,
+ * the callers arriving before the end of the computation
+ * wait for it and receive the same value (or exception).
+ * Nothing is kept once the computation is done.
+ * 
+ * @author Alexandre Thomazo
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+public class SingleFlight<K, V> {
+
+	/** Computations in progress by key */
+	private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+	
+	/** Number of computations done */
+	private final Counter executions;
+	
+	/** Number of calls which waited for another computation */
+	private final Counter coalesced;
+	
+	/** Duration of the computations */
+	private final Timer time;
+	
+	/**
+	 * Create a single flight with its own metrics.
+	 */
+	public SingleFlight() {
+		this(new Counter(), new Counter(), new Timer());
+	}
+	
+	/**
+	 * Create a single flight recording its metrics, usually
+	 * coming from the MetricsService.
+	 * @param executions Number of computations done
+	 * @param coalesced Number of calls which waited for another computation
+	 * @param time Duration of the computations
+	 */
+	public SingleFlight(Counter executions, Counter coalesced, Timer time) {
+		this.executions = executions;
+		this.coalesced = coalesced;
+		this.time = time;
+	}
+	
+	/**
+	 * Get the value of the key, computed by this call or by
+	 * a concurrent call for the same key.
+	 * @param key Key of the value
+	 * @param loader Computation of the value
+	 * @return Computed value
+	 * @throws Exception Exception thrown by the computation
+	 */
+	public V execute(K key, Callable<V> loader) throws Exception {
+		FutureTask<V> task = new FutureTask<V>(loader);
+		FutureTask<V> running = inFlight.putIfAbsent(key, task);
+		
+		if (running == null) {
+			//we are the leader, computing in the caller thread
+			long start = System.nanoTime();
+			try {
+				task.run();
+			} finally {
+				inFlight.remove(key, task);
+				executions.increment();
+				time.record(System.nanoTime() - start);
+			}
+			running = task;
+		} else {
+			coalesced.increment();
+		}
+		
+		try {
+			return running.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) throw (Exception) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw e;
+		}
+	}
+	
+	public long getExecutions() {
+		return executions.getValue();
+	}
+	
+	public long getCoalesced() {
+		return coalesced.getValue();
+	}
+	
+	/**
+	 * Get the number of computations in progress.
+	 * @return Number of keys computed
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+	
+}
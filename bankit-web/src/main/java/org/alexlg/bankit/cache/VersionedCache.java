@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache whose entries are valid for one version
+ * of the data. An entry read with another version is removed.
+ * 
+ * @author Alexandre Thomazo
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+public class VersionedCache<K, V> {
+
+	/** Entries in access order, the eldest is removed when full */
+	private final Map<K, Entry<V>> entries;
+	
+	/** Number of values found */
+	private long hits;
+	
+	/** Number of values not found or outdated */
+	private long misses;
+	
+	/**
+	 * Create a cache.
+	 * @param maxSize Maximum number of entries
+	 */
+	public VersionedCache(final int maxSize) {
+		entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+	
+	/**
+	 * Get a value computed with a version of the data.
+	 * @param key Key of the value
+	 * @param version Current version of the data
+	 * @return Value or null if not found or computed with another version
+	 */
+	public synchronized V get(K key, long version) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		if (entry.version != version) {
+			entries.remove(key);
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+	
+	/**
+	 * Store a value.
+	 * @param key Key of the value
+	 * @param version Version of the data read before computing the value
+	 * @param value Value to store
+	 */
+	public synchronized void put(K key, long version, V value) {
+		entries.put(key, new Entry<V>(version, value));
+	}
+	
+	/**
+	 * Remove all the entries.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Value with its version.
+	 */
+	private static class Entry<V> {
+		private final long version;
+		private final V value;
+		
+		private Entry(long version, V value) {
+			this.version = version;
+			this.value = value;
+		}
+	}
+	
+}
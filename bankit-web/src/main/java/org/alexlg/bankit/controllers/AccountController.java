@@ -19,11 +19,20 @@
 package org.alexlg.bankit.controllers;
 
 import org.alexlg.bankit.dao.CategoryDao;
+import org.alexlg.bankit.cache.SingleFlight;
+import org.alexlg.bankit.cache.VersionedCache;
 import org.alexlg.bankit.dao.CostDao;
+import org.alexlg.bankit.dao.DataVersion;
 import org.alexlg.bankit.dao.OperationDao;
 import org.alexlg.bankit.db.Category;
 import org.alexlg.bankit.db.Cost;
 import org.alexlg.bankit.db.Operation;
+import org.alexlg.bankit.interceptors.DataVersionETag;
+import org.alexlg.bankit.metrics.FlightEvent;
+import org.alexlg.bankit.recurrence.EpochDays;
+import org.alexlg.bankit.recurrence.RecurrenceRule;
+import org.alexlg.bankit.services.LiveUpdateService;
+import org.alexlg.bankit.services.MetricsService;
 import org.alexlg.bankit.services.OptionsService;
 import org.alexlg.bankit.services.SyncService;
 import org.alexlg.bankit.validgroup.AddPlannedOp;
@@ -52,6 +61,7 @@ import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Controller which handles all operations for
@@ -66,6 +76,15 @@ public class AccountController {
 	/** Number of future month to display */
 	public static final int NB_FUTURE_MONTH = 1;
 	
+	/** Number of list models kept in cache */
+	private static final int LIST_CACHE_SIZE = 32;
+	
+	//flight recorder events
+	private static final FlightEvent.Type LIST_EVENT = new FlightEvent.Type(
+			"org.alexlg.bankit.AccountList", "Account List", "operations", "cacheHit");
+	private static final FlightEvent.Type FORECAST_EVENT = new FlightEvent.Type(
+			"org.alexlg.bankit.Forecast", "Forecast", "plannedOperations", "costs", "months", "operations");
+	
 	@Autowired
 	private OperationDao operationDao;
 	
@@ -81,6 +100,36 @@ public class AccountController {
 	@Autowired
 	private OptionsService optionsService;
 	
+	@Autowired
+	private DataVersion dataVersion;
+	
+	@Autowired
+	private LiveUpdateService liveUpdateService;
+	
+	@Autowired
+	private MetricsService metricsService;
+	
+	/** List models by start day, end day, current day and future display */
+	private final VersionedCache<List<Object>, Map<String, Object>> listCache =
+			new VersionedCache<List<Object>, Map<String, Object>>(LIST_CACHE_SIZE);
+	
+	/** List models being computed by data version and cache key */
+	private SingleFlight<List<Object>, Map<String, Object>> listFlight;
+	
+	/**
+	 * Create the single flight of the list with its metrics.
+	 */
+	@PostConstruct
+	public void init() {
+		listFlight = new SingleFlight<List<Object>, Map<String, Object>>(
+				metricsService.counter("bankit_single_flight_executions_total",
+						"Computations done by a single flight", "flight", "account_list"),
+				metricsService.counter("bankit_single_flight_coalesced_total",
+						"Calls which waited for the computation of another call", "flight", "account_list"),
+				metricsService.timer("bankit_single_flight_seconds",
+						"Duration of the computations of a single flight", "flight", "account_list"));
+	}
+	
 	@RequestMapping("/")
 	public String index() {
 		return "redirect:/account/list";
@@ -127,16 +176,21 @@ public class AccountController {
 	
 	/**
 	 * Display operations list for history and future.
+	 * The model is kept in cache until the next write in the database
+	 * and computed once for concurrent identical requests.
 	 * @param model Model to fill with operations list
 	 * @return view name
 	 */
 	@RequestMapping("/list")
 	@Transactional(readOnly=true)
+	@DataVersionETag
 	public String list(@RequestParam(required = false) String startDate,
 					   @RequestParam(required = false) String endDate,
-					   ModelMap model) {
+					   ModelMap model) throws Exception {
+		FlightEvent event = LIST_EVENT.begin();
 
 		//start/end date of operations displayed
+		LocalDate today = new LocalDate();
 		LocalDate startDay = null;
 		LocalDate endDay = null;
 		boolean buildFuture = false;
@@ -148,14 +202,13 @@ public class AccountController {
 		//select start/end day from parsing or default
 		if (startDay == null) startDay = calculateFirstHistoDay();
 		if (endDay == null) {
-			endDay = new LocalDate();
+			endDay = today;
 			buildFuture = true;
 		} else {
 			//select the last day of the endMonth
 			endDay = endDay.dayOfMonth().withMaximumValue();
 
 			//force endDay to not go beyond today
-			LocalDate today = new LocalDate();
 			if (endDay.isAfter(today)) {
 				endDay = today;
 				buildFuture = true;
@@ -169,6 +222,51 @@ public class AccountController {
 			startDay = tmp;
 		}
 
+		//version read before the data to not cache new data with an old version
+		final long version = dataVersion.get();
+		final List<Object> cacheKey = Arrays.<Object>asList(startDay, endDay, today, buildFuture);
+		Map<String, Object> listModel = listCache.get(cacheKey, version);
+		boolean cacheHit = listModel != null;
+		metricsService.counter("bankit_cache_requests_total", "Requests of the cached data",
+				"cache", "account_list", "result", cacheHit ? "hit" : "miss").increment();
+		if (listModel == null) {
+			//concurrent identical requests share the same computation
+			final LocalDate fStartDay = startDay;
+			final LocalDate fEndDay = endDay;
+			final boolean fBuildFuture = buildFuture;
+			listModel = listFlight.execute(Arrays.<Object>asList(version, cacheKey),
+					new Callable<Map<String, Object>>() {
+				@Override
+				public Map<String, Object> call() {
+					Map<String, Object> computed = buildListModel(fStartDay, fEndDay, fBuildFuture);
+					if (computed != null) listCache.put(cacheKey, version, computed);
+					return computed;
+				}
+			});
+		}
+		
+		//checking if a balance exists or init the account
+		if (listModel == null) {
+			event.commit();
+			return "redirect:/account/init";
+		}
+		model.putAll(listModel);
+		
+		event.set("operations", ((List<?>) listModel.get("ops")).size())
+				.set("cacheHit", cacheHit ? 1 : 0).commit();
+		return "account/list";
+	}
+	
+	/**
+	 * Build the model of the operations list.
+	 * @param startDay First day of the history
+	 * @param endDay Last day of the history
+	 * @param buildFuture True to add the future operations
+	 * @return Model values or null if the account is not initialized
+	 */
+	private Map<String, Object> buildListModel(LocalDate startDay, LocalDate endDay, boolean buildFuture) {
+		Map<String, Object> listModel = new HashMap<String, Object>();
+
 		//getting history operations
 		List<Operation> ops = operationDao.getHistory(startDay, endDay);
 		
@@ -180,9 +278,9 @@ public class AccountController {
 		//balance for planned op but not debited
 		BigDecimal plannedWaiting = new BigDecimal("0");
 		
-		//checking if a balance exists or init the account
+		//no balance, the account must be initialized
 		if (current == null && ops.size() == 0) {
-			return "redirect:/account/init";
+			return null;
 		}
 		
 		if (current == null) current = new BigDecimal("0");
@@ -217,23 +315,25 @@ public class AccountController {
 					operationDao.getFuture(endDay), costDao.getList(),
 					current.add(plannedWaiting), NB_FUTURE_MONTH);
 
-			model.put("futureOps", futureOps);
+			//calculating totals before sharing the operations
+			for (MonthOps monthOps : futureOps) monthOps.getOps();
+			listModel.put("futureOps", futureOps);
 		}
 
-		model.put("startDay", startDay.toDate());
-		model.put("endDay", endDay.toDate());
-		model.put("ops", ops);
-		model.put("current", current);
-		model.put("currentDiff", currentDiff);
-		model.put("periodBalance", current.subtract(initialBalance));
-		model.put("plannedWaiting", plannedWaiting);
-		model.put("currentWaiting", current.add(plannedWaiting));
-		model.put("lastSyncDate", optionsService.getDate(SyncService.OP_SYNC_OPT));
-		model.put("categories", categoryDao.getList());
+		listModel.put("startDay", startDay.toDate());
+		listModel.put("endDay", endDay.toDate());
+		listModel.put("ops", ops);
+		listModel.put("current", current);
+		listModel.put("currentDiff", currentDiff);
+		listModel.put("periodBalance", current.subtract(initialBalance));
+		listModel.put("plannedWaiting", plannedWaiting);
+		listModel.put("currentWaiting", current.add(plannedWaiting));
+		listModel.put("lastSyncDate", optionsService.getDate(SyncService.OP_SYNC_OPT));
+		listModel.put("categories", categoryDao.getList());
 		//get categories summary (for previous and current month)
-		model.put("categoriesSummary", buildCategories(startDay, endDay));
-		
-		return "account/list";
+		listModel.put("categoriesSummary", buildCategories(startDay, endDay));
+
+		return listModel;
 	}
 	
 	/**
@@ -325,8 +425,9 @@ public class AccountController {
 	@Transactional(rollbackFor=IOException.class)
 	public String sync(@RequestParam("file") MultipartFile file) throws IOException {
 		if (!file.isEmpty()) {
-			syncService.readQifAndInsertOp(file.getInputStream());
-			syncService.mergeOldPlannedOps();
+			List<Integer> opIds = syncService.readQifAndInsertOp(file.getInputStream());
+			syncService.mergeOldPlannedOps(opIds);
+			liveUpdateService.balanceChanged(opIds.size());
 		}
 		
 		return "redirect:/account/list";
@@ -398,11 +499,70 @@ public class AccountController {
 		op.setCategory(cat);
 		operationDao.save(op);
 		
+		//other open pages receive the new category summary
+		liveUpdateService.categoryChanged(op.getOperationDate());
+		
 		Map<String, Boolean> res = new HashMap<String, Boolean>(1);
 		res.put("isOk", true);
 		return res;
 	}
 	
+	/**
+	 * Update the category of several operations at once.
+	 * The operations are grouped by category and each group
+	 * is updated with a single statement.
+	 * @param changes List of {op: operation id, cat: category id or -1}
+	 * @return Update operations result with the number of operations updated
+	 * @throws Exception If a category doesn't exist
+	 */
+	@RequestMapping(value="/update_cats.json", method=RequestMethod.POST,
+			consumes="application/json", produces={"application/json"})
+	@Transactional
+	@ResponseBody
+	public Map<String, Object> saveCategories(@RequestBody CategoryChanges changes) throws Exception {
+		//last change of each operation
+		Map<Integer, Integer> catByOp = new LinkedHashMap<Integer, Integer>();
+		for (CategoryChange change : changes) {
+			catByOp.put(change.getOp(), change.getCat());
+		}
+		
+		//operations grouped by category
+		Map<Integer, List<Integer>> opsByCat = new LinkedHashMap<Integer, List<Integer>>();
+		for (Map.Entry<Integer, Integer> change : catByOp.entrySet()) {
+			List<Integer> opIds = opsByCat.get(change.getValue());
+			if (opIds == null) {
+				opIds = new ArrayList<Integer>();
+				opsByCat.put(change.getValue(), opIds);
+			}
+			opIds.add(change.getKey());
+		}
+		
+		//checking all categories before updating
+		Map<Integer, Category> cats = new HashMap<Integer, Category>();
+		for (Integer catId : opsByCat.keySet()) {
+			if (catId == -1) continue;
+			Category cat = categoryDao.get(catId);
+			if (cat == null) throw new Exception("Catégory [" + catId + "] inexistante.");
+			cats.put(catId, cat);
+		}
+		
+		int nbOp = 0;
+		for (Map.Entry<Integer, List<Integer>> group : opsByCat.entrySet()) {
+			nbOp += operationDao.updateCategory(cats.get(group.getKey()), group.getValue());
+		}
+		
+		//other open pages receive the new category summaries
+		if (nbOp > 0) {
+			liveUpdateService.categoriesChanged(
+					operationDao.getOperationDates(new ArrayList<Integer>(catByOp.keySet())));
+		}
+		
+		Map<String, Object> res = new HashMap<String, Object>(2);
+		res.put("isOk", true);
+		res.put("nbOp", nbOp);
+		return res;
+	}
+	
 	/**
 	 * Handles exception which happens in controller
 	 * @param e Exception raised
@@ -423,14 +583,6 @@ public class AccountController {
 		return modelView;
 	}
 	
-	/**
-	 * Run materializeCostsIntoOperation at the start of the application.
-	 */
-	@PostConstruct
-	public void scheduleMaterializeCostsIntoOperation() {
-		syncService.materializeCostsIntoOperation();
-	}
-	
 	/**
 	 * Build a set of MonthOps for all future ops : "manual" or costs (beyond 2 days of current)
 	 * @param day Current day
@@ -442,54 +594,64 @@ public class AccountController {
 	 */
 	protected Set<MonthOps> buildFutureOps(LocalDate day, List<Operation> futurePlannedOps,
 			List<Cost> costs, BigDecimal balance, int nbMonth) {
+		FlightEvent event = FORECAST_EVENT.begin();
+		
+		//operations of each month
+		int firstMonth = EpochDays.monthIndex(day.getYear(), day.getMonthOfYear());
+		List<List<Operation>> monthsOps = new ArrayList<List<Operation>>(nbMonth + 1);
+		for (int i = 0 ; i < nbMonth+1 ; i++) {
+			monthsOps.add(new ArrayList<Operation>());
+		}
+		
+		//adding "manual" operations
+		for (Operation op : futurePlannedOps) {
+			int i = EpochDays.monthIndex(EpochDays.of(op.getOperationDate())) - firstMonth;
+			if (i >= 0 && i <= nbMonth) {
+				op.setAuto(false);
+				monthsOps.get(i).add(op);
+			}
+		}
+		
+		//adding costs occurrences after current+2 until the end of the last month
+		int costStartDay = EpochDays.of(day) + 3;
+		int costEndDay = EpochDays.dayInMonth(firstMonth + nbMonth, 31);
+		for (Cost cost : costs) {
+			RecurrenceRule.Occurrences occurrences = cost.getRecurrenceRule().occurrences(costStartDay, costEndDay);
+			while (occurrences.hasNext()) {
+				int opDay = occurrences.next();
+				int i = EpochDays.monthIndex(opDay) - firstMonth;
+				
+				Operation op = new Operation();
+				//setting a fake id for comparison (as we put the operation in the set)
+				op.setOperationId(cost.getCostId() + i);
+				op.setOperationDate(EpochDays.toDate(opDay));
+				op.setPlanned(cost.getAmount());
+				op.setLabel(cost.getLabel());
+				op.setCategory(cost.getCategory());
+				op.setAuto(true);
+				monthsOps.get(i).add(op);
+			}
+		}
 		
 		Set<MonthOps> futureOps = new TreeSet<MonthOps>();
+		int nbOps = 0;
 		//going through all months
 		for (int i = 0 ; i < nbMonth+1 ; i++) {
 			LocalDate monthDate = day.monthOfYear().addToCopy(i);
-			int lastDayOfMonth = monthDate.dayOfMonth().getMaximumValue();
-			
 			MonthOps monthOps = new MonthOps(monthDate, balance);
 			futureOps.add(monthOps);
 			
-			//adding "manual" operation of the current month
-			if (futurePlannedOps.size() > 0) {
-				//loop an add all operation of the month
-				for (Operation op : futurePlannedOps) {
-					if (new LocalDate(op.getOperationDate()).getMonthOfYear() == monthDate.getMonthOfYear()) {
-						op.setAuto(false);
-						monthOps.addOp(op);
-					}
-				}
-			}
-			
-			//adding costs of the current month
-			LocalDate costStartDay = day.plusDays(2);
-			for (Cost cost : costs) {
-				int costDay = cost.getDay();
-				
-				//if the operation is planned after the last day of month
-				//set it to the last day
-				if (costDay > lastDayOfMonth) costDay = lastDayOfMonth;
-				
-				LocalDate opDate = new LocalDate(monthDate.getYear(), monthDate.getMonthOfYear(), costDay);
-				//checking if we add the cost (the date is after current+2)
-				if (opDate.isAfter(costStartDay)) {
-					Operation op = new Operation();
-					//setting a fake id for comparison (as we put the operation in the set)
-					op.setOperationId(cost.getCostId() + i);
-					op.setOperationDate(opDate.toDate());
-					op.setPlanned(cost.getAmount());
-					op.setLabel(cost.getLabel());
-					op.setCategory(cost.getCategory());
-					op.setAuto(true);
-					monthOps.addOp(op);
-				}
+			for (Operation op : monthsOps.get(i)) {
+				monthOps.addOp(op);
 			}
+			nbOps += monthsOps.get(i).size();
 			
 			//saving current balance for next monthOp
 			balance = monthOps.getBalance();
 		}
+		
+		event.set("plannedOperations", futurePlannedOps.size()).set("costs", costs.size())
+				.set("months", nbMonth + 1).set("operations", nbOps).commit();
 		return futureOps;
 	}
 	
@@ -560,4 +722,32 @@ public class AccountController {
 			return date.minusMonths(1).withDayOfMonth(1);
 		}
 	}
+	
+	/**
+	 * Category change of an operation sent to update_cats.json
+	 */
+	static class CategoryChange {
+		private int op;
+		private int cat;
+		
+		public int getOp() {
+			return op;
+		}
+		
+		public void setOp(int op) {
+			this.op = op;
+		}
+		
+		public int getCat() {
+			return cat;
+		}
+		
+		public void setCat(int cat) {
+			this.cat = cat;
+		}
+	}
+	
+	static class CategoryChanges extends LinkedList<CategoryChange> {
+		private static final long serialVersionUID = 1L;
+	}
 }
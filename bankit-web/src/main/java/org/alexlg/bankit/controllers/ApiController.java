@@ -22,9 +22,12 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import org.alexlg.bankit.db.Operation;
+import org.alexlg.bankit.interceptors.DataVersionETag;
+import org.alexlg.bankit.services.LiveUpdateService;
 import org.alexlg.bankit.services.OptionsService;
 import org.alexlg.bankit.services.SyncService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,6 +57,9 @@ public class ApiController {
 	@Autowired
 	private OptionsService optionsService;
 	
+	@Autowired
+	private LiveUpdateService liveUpdateService;
+	
 	/**
 	 * Sync a list of operation from the the bank with the account.
 	 * @param operations List of operations to sync.
@@ -66,12 +72,10 @@ public class ApiController {
 	public Map<String, String> sync(@RequestBody OpList operations) {
 		int nbOp = 0;
 		if (operations != null) {
-			syncService.syncOpList(operations);
-			syncService.mergeOldPlannedOps();
-			
-			for (Operation op : operations) {
-				if (op.getOperationId() != 0) nbOp++;
-			}
+			List<Integer> opIds = syncService.syncOpList(operations);
+			syncService.mergeOldPlannedOps(opIds);
+			nbOp = opIds.size();
+			liveUpdateService.balanceChanged(nbOp);
 		}
 		
 		Map<String, String> res = new HashMap<String, String>(1);
@@ -81,6 +85,7 @@ public class ApiController {
 	
 	@RequestMapping(value="/update", method=RequestMethod.GET, produces="application/json")
 	@ResponseBody
+	@DataVersionETag
 	public Map<String, String> update() {
 		Integer checkUpdates = optionsService.getInteger("checkUpdates");
 		if (checkUpdates == null) checkUpdates = 1;
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.controllers;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.alexlg.bankit.services.AssetService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Serves the fingerprinted static assets with
+ * far-future cache headers.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class AssetController {
+
+	/** Cache duration of the assets in seconds (one year) */
+	private static final long CACHE_SECONDS = 365L * 24 * 60 * 60;
+	
+	@Autowired
+	private AssetService assetService;
+	
+	private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+	
+	/**
+	 * Send an asset. An asset of the current version never changes,
+	 * an asset requested with another version (page rendered before
+	 * a redeploy) is sent without being cached.
+	 * @param version Version of the assets in the URL
+	 */
+	@RequestMapping(value="/assets/{version}/**", method={RequestMethod.GET, RequestMethod.HEAD})
+	public void asset(@PathVariable String version, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		
+		String prefix = AssetService.ASSETS_PATH + version + "/";
+		String path = urlPathHelper.getPathWithinApplication(request);
+		byte[] content = path.startsWith(prefix) ? assetService.getAsset(path.substring(prefix.length())) : null;
+		if (content == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		
+		if (version.equals(assetService.getVersion())) {
+			response.setHeader("Cache-Control", "public, max-age=" + CACHE_SECONDS + ", immutable");
+			response.setDateHeader("Expires", System.currentTimeMillis() + CACHE_SECONDS * 1000);
+		} else {
+			response.setHeader("Cache-Control", "no-cache");
+		}
+		
+		String contentType = assetService.getContentType(path);
+		if (contentType != null) {
+			response.setContentType(contentType);
+			//scripts and stylesheets are read as UTF-8
+			if (contentType.startsWith("text/") || contentType.endsWith("javascript")) {
+				response.setCharacterEncoding("UTF-8");
+			}
+		}
+		response.setContentLength(content.length);
+		if (!"HEAD".equals(request.getMethod())) {
+			response.getOutputStream().write(content);
+		}
+	}
+	
+}
@@ -22,12 +22,20 @@ import org.alexlg.bankit.dao.CategoryDao;
 import org.alexlg.bankit.dao.CostDao;
 import org.alexlg.bankit.db.Category;
 import org.alexlg.bankit.db.Cost;
+import org.alexlg.bankit.interceptors.DataVersionETag;
+import org.alexlg.bankit.recurrence.Frequency;
+import org.alexlg.bankit.recurrence.RecurrenceRule;
+import org.alexlg.bankit.services.SyncService;
+import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.propertyeditors.CustomDateEditor;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.ModelMap;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -36,6 +44,8 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.validation.Valid;
 import java.io.FileNotFoundException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,10 +66,31 @@ public class CostController {
 	@Autowired
 	private CategoryDao categoryDao;
 
+	@Autowired
+	private SyncService syncService;
+
 	@RequestMapping("/")
 	public String index() {
 		return "redirect:/cost/list";
 	}
+
+	/**
+	 * Initialize binder to handle the start and end dates.
+	 * @param binder Binder to initialize.
+	 */
+	@InitBinder
+	public void binder(WebDataBinder binder) {
+		binder.registerCustomEditor(Date.class, new CustomDateEditor(new SimpleDateFormat("dd/MM/yyyy"), true));
+	}
+
+	/**
+	 * List of the frequencies for the form.
+	 * @return Frequencies
+	 */
+	@ModelAttribute("frequencies")
+	public Frequency[] frequencies() {
+		return Frequency.values();
+	}
 	
 	/**
 	 * List all costs.
@@ -68,6 +99,7 @@ public class CostController {
 	 */
 	@RequestMapping("/list")
 	@Transactional(readOnly=true)
+	@DataVersionETag
 	public String list(ModelMap model) {
 		List<Cost> costs = costDao.getList();
 		model.addAttribute("costs", costs);
@@ -84,6 +116,8 @@ public class CostController {
 	public String showAddCostForm(ModelMap model) {
 		Cost cost = new Cost();
 		cost.setCost(true);
+		cost.setFrequency(Frequency.MONTHLY);
+		cost.setInterval(1);
 		model.addAttribute("cost", cost);
 		//inject categories list
 		model.put("categories", buildCategoriesList());
@@ -103,6 +137,7 @@ public class CostController {
 			BindingResult result,
 			RedirectAttributes redirectAttributes) {
 		
+		checkDay(cost, result);
 		if (result.hasErrors()) {
 			return "cost/form";
 		} else {
@@ -111,7 +146,9 @@ public class CostController {
 				cost.setAmount(cost.getAmount().negate());
 				cost.setCost(false);
 			}
+			initStartDate(cost, new LocalDate());
 			costDao.insert(cost);
+			syncService.materializeCost(cost);
 			redirectAttributes.addFlashAttribute("added", cost.getCostId());
 			return "redirect:/cost/list";
 		}
@@ -157,6 +194,7 @@ public class CostController {
 						   BindingResult result,
 						   RedirectAttributes redirectAttributes) {
 
+		checkDay(cost, result);
 		if (result.hasErrors()) {
 			return "cost/form";
 		} else {
@@ -173,7 +211,13 @@ public class CostController {
 				cost.setCategory(categoryDao.load(cost.getCategoryId()));
 			}
 
+			//rule before modification to know if the planned operations move
+			Cost previous = costDao.get(cost.getCostId());
+			RecurrenceRule previousRule = previous == null ? null : previous.getRecurrenceRule();
+
+			initStartDate(cost, new LocalDate());
 			costDao.save(cost);
+			syncService.updateCostOperations(cost, previousRule);
 			redirectAttributes.addFlashAttribute("edited", cost.getCostId());
 			return "redirect:/cost/list";
 		}
@@ -190,12 +234,46 @@ public class CostController {
 	public String del(@PathVariable int costId,  RedirectAttributes redirectAttributes) {
 		Cost cost = costDao.get(costId);
 		if (cost != null) {
+			syncService.retractCost(cost);
 			costDao.delete(cost);
 			redirectAttributes.addFlashAttribute("deleted", true);
 		}
 		return "redirect:/cost/list";
 	}
 
+	/**
+	 * Reject a day which is not a day of the week for the weekly costs.
+	 * @param cost Cost to check
+	 * @param result Validation result to fill
+	 */
+	private void checkDay(Cost cost, BindingResult result) {
+		if (cost.getFrequency() != null && !cost.getFrequency().isDayOfMonth()
+				&& (cost.getDay() < 1 || cost.getDay() > 7)) {
+			result.rejectValue("day", "weekDay", "Le jour de la semaine doit être entre 1 (lundi) et 7 (dimanche)");
+		}
+	}
+
+	/**
+	 * Initialize the start date of the weekly and yearly costs, as their
+	 * occurrences depend on it. A yearly cost without start date starts the
+	 * given day. A weekly cost starts on the first day of its week day
+	 * (1 for monday to 7 for sunday) from its start date or the given day.
+	 * @param cost Cost to initialize
+	 * @param day Current day
+	 */
+	void initStartDate(Cost cost, LocalDate day) {
+		if (cost.getFrequency() == null || cost.getFrequency() == Frequency.MONTHLY) return;
+
+		LocalDate start = cost.getStartDate() == null ? day : new LocalDate(cost.getStartDate());
+		if (!cost.getFrequency().isDayOfMonth()) {
+			//moving to the week day of the cost
+			start = start.plusDays((cost.getDay() - start.getDayOfWeek() + 7) % 7);
+		} else if (cost.getStartDate() != null) {
+			return;
+		}
+		cost.setStartDate(start.toDate());
+	}
+
 	/**
 	 * Build a Id/Name map of the categories
 	 * @return Map Id/Name of the categories with -1/"" at the top
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.controllers;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.alexlg.bankit.boot.BootTimeline;
+import org.alexlg.bankit.services.MetricsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * Controller which shows the metrics of the application,
+ * for Prometheus and in the options.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class MetricsController {
+
+	@Autowired
+	private MetricsService metricsService;
+	
+	/**
+	 * Write the metrics in the text format of Prometheus.
+	 * @param response Response to write to
+	 * @throws IOException If the writing failed
+	 */
+	@RequestMapping(value="/metrics", method=RequestMethod.GET)
+	public void metrics(HttpServletResponse response) throws IOException {
+		response.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+		Writer writer = response.getWriter();
+		metricsService.write(writer);
+		writer.flush();
+	}
+	
+	/**
+	 * Show the metrics in the options.
+	 * @param model Model to fill with the metrics
+	 * @return View name
+	 */
+	@RequestMapping(value="/options/metrics", method=RequestMethod.GET)
+	public String showMetrics(ModelMap model) {
+		model.put("page", "metrics");
+		model.put("families", metricsService.getFamilies());
+		model.put("bootPhases", BootTimeline.get().getPhases());
+		return "options/metrics";
+	}
+	
+}
@@ -20,6 +20,7 @@ package org.alexlg.bankit.controllers.options;
 
 import org.alexlg.bankit.dao.CategoryDao;
 import org.alexlg.bankit.db.Category;
+import org.alexlg.bankit.services.LiveUpdateService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,6 +31,7 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.FileNotFoundException;
@@ -47,6 +49,9 @@ public class CategoryController {
 	@Autowired
 	private CategoryDao categoryDao;
 
+	@Autowired
+	private LiveUpdateService liveUpdateService;
+
 	/**
 	 * List all categories.
 	 * @param model Model
@@ -155,8 +160,40 @@ public class CategoryController {
 		}
 
 		categoryDao.delete(category);
+		liveUpdateService.categoriesReplaced();
 
 		redirectAttributes.addFlashAttribute("deleted", true);
 		return "redirect:/options/category";
 	}
+
+	/**
+	 * Merge a category into another one. The operations, the costs
+	 * and the rules of the category are moved, then it's deleted.
+	 * @param catId Id of the category to merge
+	 * @param intoId Id of the category receiving the operations
+	 * @param redirectAttributes Redirect attributes to send to redirect view
+	 * @return View name
+	 * @throws FileNotFoundException If one of the categories doesn't exist
+	 */
+	@RequestMapping(value = "/merge", method = RequestMethod.POST)
+	@Transactional
+	public String mergeCategory(@RequestParam int catId, @RequestParam int intoId,
+								RedirectAttributes redirectAttributes) throws FileNotFoundException {
+		Category category = categoryDao.get(catId);
+		if (category == null) {
+			throw new FileNotFoundException("Category [" + catId + "] not found");
+		}
+		Category into = categoryDao.get(intoId);
+		if (into == null) {
+			throw new FileNotFoundException("Category [" + intoId + "] not found");
+		}
+
+		if (catId != intoId) {
+			categoryDao.merge(category, into);
+			liveUpdateService.categoriesReplaced();
+		}
+
+		redirectAttributes.addFlashAttribute("merged", into.getCategoryId());
+		return "redirect:/options/category";
+	}
 }
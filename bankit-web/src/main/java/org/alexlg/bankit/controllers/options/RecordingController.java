@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.controllers.options;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.alexlg.bankit.services.FlightRecorderService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * Controller which shows the Java Flight Recorder recording
+ * and dumps it for profiling.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+@RequestMapping("/options/recording")
+public class RecordingController {
+
+	@Autowired
+	private FlightRecorderService flightRecorderService;
+	
+	/**
+	 * Show the state of the recording.
+	 * @param model Model to fill with the recording
+	 * @return View name
+	 */
+	@RequestMapping(value="", method=RequestMethod.GET)
+	public String showRecording(ModelMap model) {
+		model.put("page", "recording");
+		model.put("available", flightRecorderService.isAvailable());
+		model.put("recording", flightRecorderService.getRecordingInfo());
+		return "options/recording";
+	}
+	
+	/**
+	 * Start the recording if it is not running.
+	 * @return redirect to the recording state
+	 */
+	@RequestMapping(value="/start", method=RequestMethod.POST)
+	public String startRecording() {
+		flightRecorderService.start();
+		return "redirect:/options/recording";
+	}
+	
+	/**
+	 * Send the events of the recording as a .jfr file.
+	 * @param response Response to write the file to
+	 * @throws IOException If the dump failed
+	 */
+	@RequestMapping(value="/dump", method=RequestMethod.GET)
+	public void dumpRecording(HttpServletResponse response) throws IOException {
+		if (flightRecorderService.getRecordingInfo() == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "No recording running");
+			return;
+		}
+		String fileName = "bankit-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jfr";
+		response.setContentType("application/octet-stream");
+		response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+		flightRecorderService.dump(response.getOutputStream());
+	}
+	
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.controllers.options;
+
+import org.alexlg.bankit.dao.CategoryDao;
+import org.alexlg.bankit.dao.CategoryRuleDao;
+import org.alexlg.bankit.db.Category;
+import org.alexlg.bankit.db.CategoryRule;
+import org.alexlg.bankit.services.CategorizeService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.ui.ModelMap;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Handle calls for the categorization rules managing.
+ *
+ * @author Alexandre Thomazo
+ */
+@Controller
+@RequestMapping("/options/rules")
+public class RuleController {
+
+	@Autowired
+	private CategoryRuleDao categoryRuleDao;
+
+	@Autowired
+	private CategoryDao categoryDao;
+
+	@Autowired
+	private CategorizeService categorizeService;
+
+	/**
+	 * List all rules with the form to add one.
+	 * @param model Model
+	 * @return View name
+	 */
+	@RequestMapping(value="", method=RequestMethod.GET)
+	@Transactional(readOnly=true)
+	public String list(ModelMap model) {
+		CategoryRule rule = new CategoryRule();
+		rule.setCategory(new Category());
+		model.put("rule", rule);
+		return showList(model);
+	}
+
+	/**
+	 * Add a rule into the database
+	 * @param rule Rule to add
+	 * @param result Result of the validation
+	 * @param model Model to fill if the rule is invalid
+	 * @param redirectAttributes Redirect attributes to send to redirect view
+	 * @return View name
+	 */
+	@RequestMapping(value="/add", method=RequestMethod.POST)
+	@Transactional
+	public String addRule(@ModelAttribute("rule") @Validated CategoryRule rule,
+			BindingResult result,
+			ModelMap model,
+			RedirectAttributes redirectAttributes) {
+
+		//the form only sends the id of the category
+		Category category = null;
+		if (rule.getCategory() != null) category = categoryDao.get(rule.getCategory().getCategoryId());
+		if (category == null) {
+			result.rejectValue("category", "javax.validation.constraints.NotNull.message");
+		}
+
+		if (result.hasErrors()) {
+			return showList(model);
+		} else {
+			rule.setCategory(category);
+			categoryRuleDao.insert(rule);
+			redirectAttributes.addFlashAttribute("added", true);
+			return "redirect:/options/rules";
+		}
+	}
+
+	/**
+	 * Delete a rule
+	 * @param ruleId Id of the rule to delete
+	 * @param redirectAttributes Redirect attributes to send to redirect view
+	 * @return View name
+	 * @throws FileNotFoundException If the rule to delete doesn't exist
+	 */
+	@RequestMapping(value="/del/{ruleId}", method=RequestMethod.GET)
+	@Transactional
+	public String deleteRule(@PathVariable int ruleId, RedirectAttributes redirectAttributes) throws FileNotFoundException {
+		CategoryRule rule = categoryRuleDao.get(ruleId);
+		if (rule == null) {
+			throw new FileNotFoundException("Rule [" + ruleId + "] not found");
+		}
+
+		categoryRuleDao.delete(rule);
+
+		redirectAttributes.addFlashAttribute("deleted", true);
+		return "redirect:/options/rules";
+	}
+
+	/**
+	 * Apply the rules to the operations with no category.
+	 * @param redirectAttributes Redirect attributes to send to redirect view
+	 * @return View name
+	 */
+	@RequestMapping(value="/apply", method=RequestMethod.POST)
+	public String applyRules(RedirectAttributes redirectAttributes) {
+		int nb = categorizeService.categorizeHistory();
+		redirectAttributes.addFlashAttribute("applied", nb);
+		return "redirect:/options/rules";
+	}
+
+	/**
+	 * Fill the model with the rules and the categories.
+	 * @param model Model to fill
+	 * @return View name
+	 */
+	private String showList(ModelMap model) {
+		model.put("page", "rules");
+		model.put("rules", categoryRuleDao.getList());
+		model.put("categories", categoryDao.getList());
+		return "options/rules";
+	}
+}
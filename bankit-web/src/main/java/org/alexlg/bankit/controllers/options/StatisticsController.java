@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.controllers.options;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.alexlg.bankit.metrics.SlowQueryStatistics;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * Controller which shows the Hibernate statistics
+ * in the options.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+@RequestMapping("/options/stats")
+public class StatisticsController {
+
+	/** Number of slowest queries to show */
+	private static final int SLOWEST_QUERIES = 20;
+	
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+	
+	/**
+	 * Show the statistics of the queries, entities and second-level cache.
+	 * @param model Model to fill with the statistics
+	 * @return View name
+	 */
+	@RequestMapping(value="", method=RequestMethod.GET)
+	public String showStatistics(ModelMap model) {
+		Statistics statistics = getStatistics();
+		
+		model.put("page", "stats");
+		model.put("enabled", statistics.isStatisticsEnabled());
+		model.put("statistics", statistics);
+		model.put("startTime", new Date(statistics.getStartTime()));
+		if (statistics instanceof SlowQueryStatistics) {
+			model.put("threshold", ((SlowQueryStatistics) statistics).getThreshold());
+		}
+		model.put("queries", getSlowestQueries(statistics));
+		model.put("entities", getEntities(statistics));
+		model.put("regions", getRegions(statistics));
+		return "options/stats";
+	}
+	
+	/**
+	 * Reset the statistics.
+	 * @return redirect to the statistics
+	 */
+	@RequestMapping(value="/clear", method=RequestMethod.POST)
+	public String clearStatistics() {
+		getStatistics().clear();
+		return "redirect:/options/stats";
+	}
+	
+	/**
+	 * @return Statistics of the Hibernate session factory
+	 */
+	protected Statistics getStatistics() {
+		return ((HibernateEntityManagerFactory) entityManagerFactory).getSessionFactory().getStatistics();
+	}
+	
+	/**
+	 * Get the slowest queries by max execution time.
+	 * @param statistics Hibernate statistics
+	 * @return Statistics by query, the slowest first
+	 */
+	protected Map<String, QueryStatistics> getSlowestQueries(final Statistics statistics) {
+		List<String> queries = Arrays.asList(statistics.getQueries());
+		Collections.sort(queries, new Comparator<String>() {
+			@Override
+			public int compare(String o1, String o2) {
+				long max1 = statistics.getQueryStatistics(o1).getExecutionMaxTime();
+				long max2 = statistics.getQueryStatistics(o2).getExecutionMaxTime();
+				if (max1 == max2) return 0;
+				return max1 > max2 ? -1 : 1;
+			}
+		});
+		
+		Map<String, QueryStatistics> slowest = new LinkedHashMap<String, QueryStatistics>();
+		for (String query : queries) {
+			if (slowest.size() == SLOWEST_QUERIES) break;
+			slowest.put(query, statistics.getQueryStatistics(query));
+		}
+		return slowest;
+	}
+	
+	/**
+	 * Get the load, fetch and write counts by entity.
+	 * @param statistics Hibernate statistics
+	 * @return Statistics by entity name
+	 */
+	protected Map<String, EntityStatistics> getEntities(Statistics statistics) {
+		Map<String, EntityStatistics> entities = new TreeMap<String, EntityStatistics>();
+		for (String name : statistics.getEntityNames()) {
+			entities.put(name, statistics.getEntityStatistics(name));
+		}
+		return entities;
+	}
+	
+	/**
+	 * Get the hit and miss counts by second-level cache region.
+	 * @param statistics Hibernate statistics
+	 * @return Statistics by region name
+	 */
+	protected Map<String, SecondLevelCacheStatistics> getRegions(Statistics statistics) {
+		Map<String, SecondLevelCacheStatistics> regions = new TreeMap<String, SecondLevelCacheStatistics>();
+		for (String name : statistics.getSecondLevelCacheRegionNames()) {
+			regions.put(name, statistics.getSecondLevelCacheStatistics(name));
+		}
+		return regions;
+	}
+	
+}
@@ -27,6 +27,8 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 
+import org.springframework.beans.factory.annotation.Autowired;
+
 /**
  * Interface defining the common operation on
  * objects in the database. This interface will
@@ -43,6 +45,10 @@ public abstract class AbstractDao <T, KeyType extends Serializable> {
 	@PersistenceContext
 	private EntityManager em;
 	
+	/** Version of the data changed by each write */
+	@Autowired
+	private DataVersion dataVersion;
+	
 	/** Class of the object */
 	protected Class<T> domainClass = getDomainClass();
 
@@ -74,6 +80,7 @@ public abstract class AbstractDao <T, KeyType extends Serializable> {
 	 */
 	public void insert(T t) {
 		em.persist(t);
+		dataChanged();
 	}
 
 	/**
@@ -82,6 +89,7 @@ public abstract class AbstractDao <T, KeyType extends Serializable> {
 	 */
 	public void save(T t) {
 		em.merge(t);
+		dataChanged();
 	}
 
 	/**
@@ -90,6 +98,7 @@ public abstract class AbstractDao <T, KeyType extends Serializable> {
 	 */
 	public void delete(T t) {
 		em.remove(t);
+		dataChanged();
 	}
 
 	/**
@@ -108,6 +117,7 @@ public abstract class AbstractDao <T, KeyType extends Serializable> {
 	public void deleteAll() {
 		String hqlDelete = "delete " + domainClass.getName();
 		em.createQuery(hqlDelete).executeUpdate();
+		dataChanged();
 	}
 
 	/**
@@ -122,6 +132,23 @@ public abstract class AbstractDao <T, KeyType extends Serializable> {
 		return em.createQuery(criteria).getSingleResult().intValue();
 	}
 	
+	/**
+	 * Change the data version after a write. Subclasses must
+	 * call it after their own updates.
+	 */
+	protected void dataChanged() {
+		dataVersion.bump();
+	}
+	
+	/**
+	 * Get the data version, for the subclasses changing
+	 * the version of a part of the data.
+	 * @return Data version
+	 */
+	protected DataVersion getDataVersion() {
+		return dataVersion;
+	}
+	
 	/**
 	 * Utility method for subclasses to retrieve the Criteria Builder
 	 * @return Criteria Builder from entity manager
@@ -147,8 +174,13 @@ public abstract class AbstractDao <T, KeyType extends Serializable> {
 	 */
 	@SuppressWarnings("unchecked")
 	private Class<T> getDomainClass() {
-		//getting class of the first parameterized type
-		ParameterizedType type = (ParameterizedType) getClass().getGenericSuperclass();
+		//getting class of the first parameterized type,
+		//the proxies of the DAOs are subclasses of them
+		Class<?> daoClass = getClass();
+		while (!(daoClass.getGenericSuperclass() instanceof ParameterizedType)) {
+			daoClass = daoClass.getSuperclass();
+		}
+		ParameterizedType type = (ParameterizedType) daoClass.getGenericSuperclass();
 		Class<T> clazz = (Class<T>) type.getActualTypeArguments()[0];
 		
 		return clazz;
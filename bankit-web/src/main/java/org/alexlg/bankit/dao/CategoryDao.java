@@ -26,6 +26,7 @@ import org.joda.time.LocalDate;
 import org.joda.time.YearMonth;
 import org.springframework.stereotype.Controller;
 
+import javax.persistence.Query;
 import javax.persistence.Tuple;
 import javax.persistence.criteria.*;
 import java.math.BigDecimal;
@@ -125,6 +126,61 @@ public class CategoryDao extends AbstractDao<Category, Integer> {
 		return resMap;
 	}
 
+	/**
+	 * Delete a category. The operations and the costs of the category
+	 * are kept without category and its rules are deleted, with one
+	 * statement for each table whatever the number of rows.
+	 * @param category Category to delete
+	 */
+	@Override
+	public void delete(Category category) {
+		replace(category, null);
+	}
+	
+	/**
+	 * Merge a category into another one : the operations, the costs
+	 * and the rules of the category are moved to the other one,
+	 * then the category is deleted.
+	 * @param category Category to merge
+	 * @param into Category receiving the operations
+	 */
+	public void merge(Category category, Category into) {
+		replace(category, into);
+	}
+	
+	/**
+	 * Replace a category in all the tables referencing it, then delete it.
+	 * @param category Category to delete
+	 * @param by New category or null to remove the category
+	 */
+	private void replace(Category category, Category by) {
+		getEm().createQuery("update Operation set category = :by where category = :category")
+				.setParameter("by", by)
+				.setParameter("category", category)
+				.executeUpdate();
+		getEm().createQuery("update Cost set category = :by where category = :category")
+				.setParameter("by", by)
+				.setParameter("category", category)
+				.executeUpdate();
+		
+		//a rule needs a category
+		String ruleQuery = by == null
+				? "delete from CategoryRule where category = :category"
+				: "update CategoryRule set category = :by where category = :category";
+		Query q = getEm().createQuery(ruleQuery).setParameter("category", category);
+		if (by != null) q.setParameter("by", by);
+		if (q.executeUpdate() > 0) {
+			getDataVersion().bump(DataVersion.RULES);
+		}
+		
+		//deleted without em.remove to not load the operations of the category
+		getEm().createQuery("delete from Category where categoryId = :id")
+				.setParameter("id", category.getCategoryId())
+				.executeUpdate();
+		getEm().detach(category);
+		dataChanged();
+	}
+	
 	@Override
 	public List<Category> getList() {
 		CriteriaBuilder b = getBuilder();
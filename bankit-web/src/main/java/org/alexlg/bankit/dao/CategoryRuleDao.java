@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.dao;
+
+import java.util.List;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.alexlg.bankit.db.CategoryRule;
+import org.alexlg.bankit.db.CategoryRule_;
+import org.springframework.stereotype.Controller;
+
+/**
+ * DAO for the categorization rules.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class CategoryRuleDao extends AbstractDao<CategoryRule, Integer> {
+
+	/**
+	 * Get all the rules in creation order, which is
+	 * their priority when several patterns have the same length.
+	 * @return List of the rules
+	 */
+	@Override
+	public List<CategoryRule> getList() {
+		CriteriaBuilder b = getBuilder();
+		
+		//creating criteria
+		CriteriaQuery<CategoryRule> q = b.createQuery(CategoryRule.class);
+		Root<CategoryRule> rule = q.from(CategoryRule.class);
+		q.select(rule);
+		
+		//ordering
+		q.orderBy(b.asc(rule.get(CategoryRule_.ruleId)));
+		
+		return getEm().createQuery(q).getResultList();
+	}
+	
+	/**
+	 * Change the rules version too, so the compiled
+	 * rules are only dropped when the rules change.
+	 */
+	@Override
+	protected void dataChanged() {
+		super.dataChanged();
+		getDataVersion().bump(DataVersion.RULES);
+	}
+	
+}
@@ -26,6 +26,7 @@ import javax.persistence.criteria.Root;
 
 import org.alexlg.bankit.db.Cost;
 import org.alexlg.bankit.db.Cost_;
+import org.alexlg.bankit.recurrence.Frequency;
 import org.springframework.stereotype.Controller;
 
 /**
@@ -53,6 +54,7 @@ public class CostDao extends AbstractDao<Cost, Integer> {
 	
 	/**
 	 * Get all costs between startDay (excluded) and endDay (included)
+	 * and all the weekly costs which can happen on any day.
 	 * @param startDay Get operations from this day excluded
 	 * @param endDay Get operations to this day included
 	 * @return Costs list
@@ -66,9 +68,12 @@ public class CostDao extends AbstractDao<Cost, Integer> {
 		q.select(cost);
 		
 		//restricting
-		q.where(b.and(
-			b.greaterThan(cost.get(Cost_.day), startDay),
-			b.lessThanOrEqualTo(cost.get(Cost_.day), endDay)
+		q.where(b.or(
+			b.and(
+				b.greaterThan(cost.get(Cost_.day), startDay),
+				b.lessThanOrEqualTo(cost.get(Cost_.day), endDay)
+			),
+			cost.get(Cost_.frequency).in(Frequency.WEEKLY, Frequency.BIWEEKLY)
 		));
 		
 		//ordering
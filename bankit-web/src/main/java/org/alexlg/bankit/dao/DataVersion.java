@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.dao;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.alexlg.bankit.db.DataVersionRow;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Global version of the data, changed by each write in the
+ * database. It's used to know if data computed from the database
+ * are still valid.
+ * The version is stored in the database so a write on another
+ * node sharing the database also changes it. It's the date of the
+ * last change in ms, increased by one if the clock is behind.
+ * Other rows hold the version of a part of the data, changed
+ * only by the writes of this part, like {@link #RULES}.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class DataVersion {
+
+	/** Id of the row of the global version */
+	private static final int ROW_ID = 1;
+	
+	/** Id of the row of the categorization rules version */
+	public static final int RULES = 2;
+	
+	/** Entity Manager used to talk with the database */
+	@PersistenceContext
+	private EntityManager em;
+	
+	/**
+	 * Get the current version. It must be read before reading
+	 * the data to not associate new data with an old version.
+	 * @return Current version, 0 if nothing has been written
+	 */
+	public long get() {
+		return get(ROW_ID);
+	}
+	
+	/**
+	 * Get the current version of a part of the data.
+	 * @param versionId Id of the version, like {@link #RULES}
+	 * @return Current version, 0 if nothing has been written
+	 */
+	public long get(int versionId) {
+		List<Long> versions = em.createQuery("select v.version from DataVersionRow v where v.versionId = :id",
+				Long.class)
+				.setParameter("id", versionId)
+				.getResultList();
+		return versions.isEmpty() ? 0 : versions.get(0);
+	}
+	
+	/**
+	 * Change the version after a write. If a transaction is running,
+	 * the version is changed just before its commit, in the same
+	 * transaction as the data.
+	 */
+	public void bump() {
+		bump(ROW_ID);
+	}
+	
+	/**
+	 * Change the version of a part of the data after a write,
+	 * like {@link #bump()}. The global version must be changed too.
+	 * @param versionId Id of the version, like {@link #RULES}
+	 */
+	public void bump(int versionId) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			increment(versionId);
+			return;
+		}
+		
+		//only one change by transaction
+		for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+			if (sync instanceof BumpSynchronization
+					&& ((BumpSynchronization) sync).versionId == versionId) return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new BumpSynchronization(versionId));
+	}
+	
+	/**
+	 * Change the version. The first update locks the row
+	 * until the commit so the nodes never get the same version.
+	 * @param versionId Id of the version
+	 */
+	private void increment(int versionId) {
+		long now = System.currentTimeMillis();
+		int nb = em.createQuery("update DataVersionRow set version = version + 1 where versionId = :id")
+				.setParameter("id", versionId)
+				.executeUpdate();
+		
+		//creating the row on an empty database
+		if (nb == 0) {
+			DataVersionRow row = new DataVersionRow();
+			row.setVersionId(versionId);
+			row.setVersion(now);
+			em.persist(row);
+			em.flush();
+			return;
+		}
+		
+		em.createQuery("update DataVersionRow set version = :now where versionId = :id and version < :now")
+				.setParameter("now", now)
+				.setParameter("id", versionId)
+				.executeUpdate();
+	}
+	
+	/**
+	 * Transaction synchronization changing the version
+	 * at the end of the transaction.
+	 */
+	private class BumpSynchronization extends TransactionSynchronizationAdapter {
+		/** Id of the version to change */
+		private final int versionId;
+		
+		public BumpSynchronization(int versionId) {
+			this.versionId = versionId;
+		}
+		
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			increment(versionId);
+		}
+	}
+	
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.dao;
+
+import java.util.Date;
+
+import org.alexlg.bankit.db.JobLock;
+import org.springframework.stereotype.Controller;
+
+/**
+ * DAO used to acquire and release the lease locks of
+ * scheduled jobs. All the updates are done with a single
+ * statement so the database decides which node wins.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class JobLockDao extends AbstractDao<JobLock, String> {
+
+	/**
+	 * Try to acquire the lock of a job. The lock is acquired
+	 * if it doesn't exist, if it has expired or if it's already
+	 * owned by the owner.
+	 * If the lock is created at the same time by another node,
+	 * the insert fails on the primary key.
+	 * @param name Name of the job
+	 * @param owner Node which wants the lock
+	 * @param now Current date
+	 * @param until Lease end date
+	 * @return true if the lock is acquired
+	 */
+	public boolean acquire(String name, String owner, Date now, Date until) {
+		int nb = getEm().createQuery("update JobLock set owner = :owner, lockedUntil = :until "
+				+ "where name = :name and (lockedUntil < :now or owner = :owner)")
+				.setParameter("owner", owner)
+				.setParameter("until", until)
+				.setParameter("name", name)
+				.setParameter("now", now)
+				.executeUpdate();
+		if (nb > 0) return true;
+		
+		//creating the lock if it's the first run
+		if (get(name) != null) return false;
+		JobLock lock = new JobLock();
+		lock.setName(name);
+		lock.setOwner(owner);
+		lock.setLockedUntil(until);
+		insert(lock);
+		getEm().flush();
+		return true;
+	}
+	
+	/**
+	 * Extend the lease of a lock if still owned and not expired.
+	 * @param name Name of the job
+	 * @param owner Node owning the lock
+	 * @param now Current date
+	 * @param until New lease end date
+	 * @return true if the lease is extended, false if the lock has been lost
+	 */
+	public boolean extend(String name, String owner, Date now, Date until) {
+		return getEm().createQuery("update JobLock set lockedUntil = :until "
+				+ "where name = :name and owner = :owner and lockedUntil >= :now")
+				.setParameter("until", until)
+				.setParameter("name", name)
+				.setParameter("owner", owner)
+				.setParameter("now", now)
+				.executeUpdate() > 0;
+	}
+	
+	/**
+	 * Release a lock owned by the owner.
+	 * @param name Name of the job
+	 * @param owner Node owning the lock
+	 * @param now Current date, the lease ends at this date
+	 */
+	public void release(String name, String owner, Date now) {
+		getEm().createQuery("update JobLock set lockedUntil = :now "
+				+ "where name = :name and owner = :owner")
+				.setParameter("now", now)
+				.setParameter("name", name)
+				.setParameter("owner", owner)
+				.executeUpdate();
+	}
+	
+	/**
+	 * The job locks is not displayed, the data version is not changed.
+	 */
+	@Override
+	protected void dataChanged() {
+	}
+	
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.dao;
+
+import java.util.List;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.alexlg.bankit.db.JobRun;
+import org.alexlg.bankit.db.JobRun_;
+import org.springframework.stereotype.Controller;
+
+/**
+ * DAO for the run history of scheduled jobs.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class JobRunDao extends AbstractDao<JobRun, Integer> {
+
+	/**
+	 * Get the last successful run of a job.
+	 * @param name Name of the job
+	 * @return Last successful run or null if the job never succeeded
+	 */
+	public JobRun getLastSuccess(String name) {
+		CriteriaBuilder b = getBuilder();
+		
+		//creating criteria
+		CriteriaQuery<JobRun> q = b.createQuery(JobRun.class);
+		Root<JobRun> run = q.from(JobRun.class);
+		q.select(run);
+		
+		//selecting
+		q.where(
+			b.equal(run.get(JobRun_.name), name),
+			b.equal(run.get(JobRun_.status), JobRun.Status.SUCCESS)
+		);
+		
+		//ordering
+		q.orderBy(b.desc(run.get(JobRun_.startDate)));
+		
+		List<JobRun> runs = getEm().createQuery(q).setMaxResults(1).getResultList();
+		if (runs.size() > 0) {
+			return runs.get(0);
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * The job run history is not displayed, the data version is not changed.
+	 */
+	@Override
+	protected void dataChanged() {
+	}
+	
+}
@@ -18,17 +18,31 @@
  */
 package org.alexlg.bankit.dao;
 
+import org.alexlg.bankit.db.Category;
+import org.alexlg.bankit.db.Cost;
 import org.alexlg.bankit.db.Operation;
 import org.alexlg.bankit.db.Operation_;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
 import org.joda.time.LocalDate;
 import org.springframework.stereotype.Controller;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Predicate;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Dao for account operations.
@@ -38,6 +52,12 @@ import java.util.List;
 @Controller
 public class OperationDao extends AbstractDao<Operation, Integer> {
 	
+	/** Number of statements sent at once by insertBatch */
+	private static final int BATCH_SIZE = 100;
+	
+	/** Maximum number of ids in a "in" clause */
+	private static final int IN_SIZE = 500;
+	
 	/**
 	 * Get operations from startDay to endDay.
 	 * 
@@ -96,6 +116,28 @@ public class OperationDao extends AbstractDao<Operation, Integer> {
 		return getEm().createQuery(q).getSingleResult();
 	}
 	
+	/**
+	 * Get the total of the planned operations not debited yet.
+	 * @param day Get the planned operations until this day (included)
+	 * @return Total of the planned amounts or null if none
+	 */
+	public BigDecimal getPlannedWaiting(LocalDate day) {
+		CriteriaBuilder b = getBuilder();
+		
+		//creating criteria
+		CriteriaQuery<BigDecimal> q = b.createQuery(BigDecimal.class);
+		Root<Operation> op = q.from(Operation.class);
+		q.select(b.sum(op.get(Operation_.planned)));
+		
+		//adding restriction
+		q.where(
+			b.lessThanOrEqualTo(op.get(Operation_.operationDate), day.toDate()),
+			b.isNull(op.get(Operation_.amount))
+		);
+		
+		return getEm().createQuery(q).getSingleResult();
+	}
+	
 	/**
 	 * Get all future planned operation beyond a day.
 	 * @param day Day from which get future operation
@@ -143,6 +185,58 @@ public class OperationDao extends AbstractDao<Operation, Integer> {
 		return getEm().createQuery(q).getResultList();
 	}
 	
+	/**
+	 * Retrieve planned operations with no amount before a date (included)
+	 * which are within 2 days of the given operations. Used to reconcile
+	 * only the planned operations which can match newly imported operations.
+	 * @param day Date from which retrieve the old operations.
+	 * @param opIds Ids of the operations around which search planned operations
+	 * @return List of old operations
+	 */
+	public List<Operation> getOldPlannedOps(LocalDate day, List<Integer> opIds) {
+		if (opIds == null || opIds.isEmpty()) return Collections.emptyList();
+		CriteriaBuilder b = getBuilder();
+		
+		//retrieving dates of the operations, sorted without duplicates
+		Set<LocalDate> dates = new TreeSet<LocalDate>();
+		for (Date date : getOperationDates(opIds)) {
+			dates.add(new LocalDate(date));
+		}
+		if (dates.isEmpty()) return Collections.emptyList();
+		
+		//creating criteria
+		CriteriaQuery<Operation> q = b.createQuery(Operation.class);
+		Root<Operation> op = q.from(Operation.class);
+		q.select(op);
+		
+		//merging the windows of 2 days around each date (dates are sorted)
+		//in order to have as few ranges as possible in the query
+		List<Predicate> ranges = new ArrayList<Predicate>();
+		LocalDate rangeStart = null;
+		LocalDate rangeEnd = null;
+		for (LocalDate opDate : dates) {
+			if (rangeEnd != null && !opDate.minusDays(2).isAfter(rangeEnd)) {
+				rangeEnd = opDate.plusDays(2);
+				continue;
+			}
+			if (rangeStart != null) {
+				ranges.add(b.between(op.get(Operation_.operationDate), rangeStart.toDate(), rangeEnd.toDate()));
+			}
+			rangeStart = opDate.minusDays(2);
+			rangeEnd = opDate.plusDays(2);
+		}
+		ranges.add(b.between(op.get(Operation_.operationDate), rangeStart.toDate(), rangeEnd.toDate()));
+		
+		//adding restriction
+		q.where(b.and(
+			b.isNull(op.get(Operation_.amount)),
+			b.lessThanOrEqualTo(op.get(Operation_.operationDate), day.toDate()),
+			b.or(ranges.toArray(new Predicate[ranges.size()]))
+		));
+		
+		return getEm().createQuery(q).getResultList();
+	}
+	
 	/**
 	 * Take a planned operation and check if a real operation exists
 	 * for this planned operation.
@@ -190,5 +284,190 @@ public class OperationDao extends AbstractDao<Operation, Integer> {
 			return null;
 		}
 	}
+	
+	/**
+	 * Update the planned operations not yet happened of a cost
+	 * with the label, amount and category of the cost.
+	 * @param cost Cost which has generated the operations
+	 * @param from Date from which the operations are updated
+	 * @return Number of operations updated
+	 */
+	public int updatePlannedFromCost(Cost cost, Date from) {
+		int nb = getEm().createQuery("update Operation set label = :label, planned = :planned, "
+				+ "category = :category where cost = :cost and amount is null and operationDate >= :from")
+				.setParameter("label", cost.getLabel())
+				.setParameter("planned", cost.getAmount())
+				.setParameter("category", cost.getCategory())
+				.setParameter("cost", cost)
+				.setParameter("from", from)
+				.executeUpdate();
+		dataChanged();
+		return nb;
+	}
+	
+	/**
+	 * Delete the planned operations not yet happened of a cost.
+	 * @param cost Cost which has generated the operations
+	 * @param from Date from which the operations are deleted
+	 * @return Number of operations deleted
+	 */
+	public int deletePlannedFromCost(Cost cost, Date from) {
+		int nb = getEm().createQuery("delete from Operation "
+				+ "where cost = :cost and amount is null and operationDate >= :from")
+				.setParameter("cost", cost)
+				.setParameter("from", from)
+				.executeUpdate();
+		dataChanged();
+		return nb;
+	}
+	
+	/**
+	 * Remove the link between a cost and all the operations
+	 * it has generated.
+	 * @param cost Cost to unlink
+	 * @return Number of operations updated
+	 */
+	public int unlinkCost(Cost cost) {
+		int nb = getEm().createQuery("update Operation set cost = null where cost = :cost")
+				.setParameter("cost", cost)
+				.executeUpdate();
+		dataChanged();
+		return nb;
+	}
+	
+	/**
+	 * Set the category of several operations with one update
+	 * statement per group of ids.
+	 * @param category Category to set, null to remove the category
+	 * @param opIds Ids of the operations to update
+	 * @return Number of operations updated
+	 */
+	public int updateCategory(Category category, List<Integer> opIds) {
+		int nb = 0;
+		for (int i = 0; i < opIds.size(); i += IN_SIZE) {
+			List<Integer> ids = opIds.subList(i, Math.min(i + IN_SIZE, opIds.size()));
+			nb += getEm().createQuery("update Operation set category = :category where operationId in (:ids)")
+					.setParameter("category", category)
+					.setParameter("ids", ids)
+					.executeUpdate();
+		}
+		dataChanged();
+		return nb;
+	}
+	
+	/**
+	 * Get several operations with one query per group of ids.
+	 * @param opIds Ids of the operations
+	 * @return Operations found, ordered by id in each group
+	 */
+	public List<Operation> getOperations(List<Integer> opIds) {
+		List<Operation> ops = new ArrayList<Operation>();
+		for (int i = 0; i < opIds.size(); i += IN_SIZE) {
+			List<Integer> ids = opIds.subList(i, Math.min(i + IN_SIZE, opIds.size()));
+			ops.addAll(getEm().createQuery("from Operation where operationId in (:ids) "
+					+ "order by operationId", Operation.class)
+					.setParameter("ids", ids)
+					.getResultList());
+		}
+		return ops;
+	}
+	
+	/**
+	 * Get the operation dates of several operations.
+	 * @param opIds Ids of the operations
+	 * @return Distinct operation dates
+	 */
+	public List<Date> getOperationDates(List<Integer> opIds) {
+		List<Date> dates = new ArrayList<Date>();
+		for (int i = 0; i < opIds.size(); i += IN_SIZE) {
+			List<Integer> ids = opIds.subList(i, Math.min(i + IN_SIZE, opIds.size()));
+			dates.addAll(getEm().createQuery("select distinct operationDate from Operation "
+					+ "where operationId in (:ids)", Date.class)
+					.setParameter("ids", ids)
+					.getResultList());
+		}
+		return dates;
+	}
+	
+	/**
+	 * Get the id and the label of the operations with no category,
+	 * by pages ordered by id.
+	 * @param afterId Id after which the page starts
+	 * @param max Maximum number of operations to get
+	 * @return Array of id and label for each operation
+	 */
+	public List<Object[]> getUncategorized(int afterId, int max) {
+		return getEm().createQuery("select operationId, label from Operation "
+				+ "where category is null and operationId > :afterId "
+				+ "order by operationId", Object[].class)
+				.setParameter("afterId", afterId)
+				.setMaxResults(max)
+				.getResultList();
+	}
+	
+	/**
+	 * Insert a list of new operations using JDBC batches.
+	 * As the operation ids are generated by the database, Hibernate
+	 * does not batch the inserts, this method sends them in groups
+	 * instead of one statement per operation. The inserted operations
+	 * are not attached to the persistence context and their ids are not set.
+	 * @param ops Operations to insert
+	 */
+	public void insertBatch(final List<Operation> ops) {
+		if (ops == null || ops.isEmpty()) return;
+		
+		//flush pending changes to keep statements order
+		getEm().flush();
+		getEm().unwrap(Session.class).doWork(new Work() {
+			@Override
+			public void execute(Connection connection) throws SQLException {
+				PreparedStatement st = connection.prepareStatement("insert into operations "
+						+ "(value_date, operation_date, label, planned, amount, category_id, cost_id) "
+						+ "values (?, ?, ?, ?, ?, ?, ?)");
+				try {
+					int nb = 0;
+					for (Operation op : ops) {
+						setDate(st, 1, op.getValueDate());
+						setDate(st, 2, op.getOperationDate());
+						st.setString(3, op.getLabel());
+						st.setBigDecimal(4, op.getPlanned());
+						st.setBigDecimal(5, op.getAmount());
+						if (op.getCategory() != null) {
+							st.setInt(6, op.getCategory().getCategoryId());
+						} else {
+							st.setNull(6, Types.INTEGER);
+						}
+						if (op.getCost() != null) {
+							st.setInt(7, op.getCost().getCostId());
+						} else {
+							st.setNull(7, Types.INTEGER);
+						}
+						st.addBatch();
+						
+						if (++nb % BATCH_SIZE == 0) st.executeBatch();
+					}
+					if (nb % BATCH_SIZE != 0) st.executeBatch();
+				} finally {
+					st.close();
+				}
+			}
+		});
+		dataChanged();
+	}
+	
+	/**
+	 * Set a date parameter in a statement, handling null value.
+	 * @param st Statement to fill
+	 * @param index Index of the parameter
+	 * @param date Date to set, can be null
+	 * @throws SQLException If the parameter can't be set
+	 */
+	private static void setDate(PreparedStatement st, int index, Date date) throws SQLException {
+		if (date == null) {
+			st.setNull(index, Types.DATE);
+		} else {
+			st.setDate(index, new java.sql.Date(date.getTime()));
+		}
+	}
 
 }
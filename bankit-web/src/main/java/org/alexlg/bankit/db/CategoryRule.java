@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.db;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import org.hibernate.validator.constraints.NotBlank;
+
+/**
+ * A rule sets a category on the imported operations
+ * which label contains a pattern.
+ *
+ * @author Alexandre Thomazo
+ */
+@Entity
+@Table(name="category_rules")
+public class CategoryRule {
+
+	/** Id of the rule */
+	private int ruleId;
+	/** Text to find in the label of the operations */
+	private String pattern;
+	/** Category to set */
+	private Category category;
+
+	@Id	@GeneratedValue(strategy= GenerationType.IDENTITY)
+	@Column(name="rule_id")
+	public int getRuleId() {
+		return ruleId;
+	}
+
+	@NotNull
+	@NotBlank
+	@Size(max=255)
+	public String getPattern() {
+		return pattern;
+	}
+
+	@NotNull
+	@ManyToOne
+	@JoinColumn(name="category_id")
+	public Category getCategory() {
+		return category;
+	}
+
+	public void setRuleId(int ruleId) {
+		this.ruleId = ruleId;
+	}
+
+	public void setPattern(String pattern) {
+		this.pattern = pattern;
+	}
+
+	public void setCategory(Category category) {
+		this.category = category;
+	}
+}
@@ -19,17 +19,22 @@
 package org.alexlg.bankit.db;
 
 import java.math.BigDecimal;
+import java.util.Date;
 
 import javax.persistence.*;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
+import org.alexlg.bankit.recurrence.EpochDays;
+import org.alexlg.bankit.recurrence.Frequency;
+import org.alexlg.bankit.recurrence.RecurrenceRule;
 import org.hibernate.validator.constraints.NotBlank;
 
 /**
  * A cost is a recurring operation on credit or debt.
- * It will be generated to a planned operation each month.
+ * It will be generated to a planned operation at each
+ * occurrence of its recurrence rule, each month by default.
  * 
  * @author Alexandre Thomazo
  */
@@ -38,12 +43,20 @@ import org.hibernate.validator.constraints.NotBlank;
 public class Cost {
 
 	private int costId;
-	/** Day in month of the cost is planned */
+	/** Day in month of the cost is planned, or day of week (1 for monday) for the weekly costs */
 	private int day;
 	/** Label displayed in dashboard until sync */
 	private String label;
 	/** Amount planned for this cost */
 	private BigDecimal amount;
+	/** Frequency of the cost, monthly if null */
+	private Frequency frequency;
+	/** Number of periods between two occurrences, 1 if null */
+	private Integer interval;
+	/** Date of the first occurrence, null for none */
+	private Date startDate;
+	/** Date after which the cost stops, null for none */
+	private Date endDate;
 
 	//-- FOREIGN KEYS
 	/** Category attached to this operation */
@@ -78,6 +91,27 @@ public class Cost {
 		return amount;
 	}
 
+	@Enumerated(EnumType.STRING)
+	public Frequency getFrequency() {
+		return frequency;
+	}
+
+	@Min(1)
+	@Column(name="frequency_interval")
+	public Integer getInterval() {
+		return interval;
+	}
+
+	@Column(name="start_date")
+	public Date getStartDate() {
+		return startDate;
+	}
+
+	@Column(name="end_date")
+	public Date getEndDate() {
+		return endDate;
+	}
+
 	@ManyToOne(fetch = FetchType.EAGER)
 	@JoinColumn(name="category_id")
 	public Category getCategory() {
@@ -89,6 +123,19 @@ public class Cost {
 		return cost;
 	}
 
+	/**
+	 * Build the recurrence rule of the cost.
+	 * @return Recurrence rule
+	 */
+	@Transient
+	public RecurrenceRule getRecurrenceRule() {
+		return new RecurrenceRule(frequency,
+				interval == null ? 1 : interval,
+				day,
+				startDate == null ? RecurrenceRule.UNBOUNDED_START : EpochDays.of(startDate),
+				endDate == null ? RecurrenceRule.UNBOUNDED_END : EpochDays.of(endDate));
+	}
+
 	@Transient
 	public int getCategoryId() {
 		if (category != null) categoryId = category.getCategoryId();
@@ -107,6 +154,18 @@ public class Cost {
 	public void setAmount(BigDecimal amount) {
 		this.amount = amount;
 	}
+	public void setFrequency(Frequency frequency) {
+		this.frequency = frequency;
+	}
+	public void setInterval(Integer interval) {
+		this.interval = interval;
+	}
+	public void setStartDate(Date startDate) {
+		this.startDate = startDate;
+	}
+	public void setEndDate(Date endDate) {
+		this.endDate = endDate;
+	}
 	public void setCategory(Category category) {
 		this.category = category;
 	}
@@ -120,6 +179,7 @@ public class Cost {
 	@Override
 	public String toString() {
 		return "Cost [costId=" + costId + ", day=" + day + ", label=" + label
-				+ ", amount=" + amount + "]";
+				+ ", amount=" + amount + ", frequency=" + frequency
+				+ ", interval=" + interval + "]";
 	}
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.db;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Only row of the data version table, changed by each
+ * write so all the nodes sharing the database see the
+ * same version.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Entity
+@Table(name="data_version")
+public class DataVersionRow {
+
+	private int versionId;
+	private long version;
+	
+	@Id
+	@Column(name="version_id")
+	public int getVersionId() {
+		return versionId;
+	}
+	
+	public long getVersion() {
+		return version;
+	}
+	
+	
+	public void setVersionId(int versionId) {
+		this.versionId = versionId;
+	}
+	public void setVersion(long version) {
+		this.version = version;
+	}
+	
+}
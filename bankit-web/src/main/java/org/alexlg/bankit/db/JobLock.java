@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.db;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Lease lock on a scheduled job. A node can run the job
+ * only if it owns the lock and the lease is not expired.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Entity
+@Table(name="job_locks")
+public class JobLock {
+
+	private String name;
+	private String owner;
+	private Date lockedUntil;
+	
+	@Id
+	public String getName() {
+		return name;
+	}
+	
+	public String getOwner() {
+		return owner;
+	}
+	
+	@Column(name="locked_until")
+	public Date getLockedUntil() {
+		return lockedUntil;
+	}
+	
+	
+	public void setName(String name) {
+		this.name = name;
+	}
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+	public void setLockedUntil(Date lockedUntil) {
+		this.lockedUntil = lockedUntil;
+	}
+	
+}
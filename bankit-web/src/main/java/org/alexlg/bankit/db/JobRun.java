@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.db;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Execution of a scheduled job by a node.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Entity
+@Table(name="job_runs")
+public class JobRun {
+
+	/** Status of a job execution */
+	public enum Status { RUNNING, SUCCESS, FAILED }
+	
+	private int runId;
+	private String name;
+	private String owner;
+	private Date startDate;
+	private Date endDate;
+	private Status status;
+	
+	@Id @GeneratedValue(strategy=GenerationType.IDENTITY)
+	@Column(name="run_id")
+	public int getRunId() {
+		return runId;
+	}
+	
+	@NotNull
+	public String getName() {
+		return name;
+	}
+	
+	public String getOwner() {
+		return owner;
+	}
+	
+	@Column(name="start_date")
+	public Date getStartDate() {
+		return startDate;
+	}
+	
+	@Column(name="end_date")
+	public Date getEndDate() {
+		return endDate;
+	}
+	
+	@Enumerated(EnumType.STRING)
+	public Status getStatus() {
+		return status;
+	}
+	
+	
+	public void setRunId(int runId) {
+		this.runId = runId;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+	public void setStartDate(Date startDate) {
+		this.startDate = startDate;
+	}
+	public void setEndDate(Date endDate) {
+		this.endDate = endDate;
+	}
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+	
+}
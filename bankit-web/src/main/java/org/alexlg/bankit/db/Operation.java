@@ -23,6 +23,7 @@ import java.util.Date;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -57,6 +58,8 @@ public class Operation implements Comparable<Operation> {
 	//-- FOREIGN KEYS
 	/** Category attached to this operation */
 	private Category category;
+	/** Cost which has generated this planned operation */
+	private Cost cost;
 
 	//-- TRANSIENT / NOT PERSISTENT
 	/** Is this operation is a future planned added automatically */
@@ -104,6 +107,12 @@ public class Operation implements Comparable<Operation> {
 		return category;
 	}
 
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name="cost_id")
+	public Cost getCost() {
+		return cost;
+	}
+
 	@Transient
 	public boolean isAuto() {
 		return auto;
@@ -140,6 +149,9 @@ public class Operation implements Comparable<Operation> {
 	public void setCategory(Category category) {
 		this.category = category;
 	}
+	public void setCost(Cost cost) {
+		this.cost = cost;
+	}
 	public void setAuto(boolean auto) {
 		this.auto = auto;
 	}
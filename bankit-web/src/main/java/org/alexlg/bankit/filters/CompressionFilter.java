@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.filters;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Filter which compresses the responses with gzip or deflate
+ * when the client accepts it.
+ * 
+ * Only the responses with a content type listed in the
+ * "mimeTypes" init parameter and of at least "minSize" bytes
+ * are compressed. It must be mapped before the sitemesh filter
+ * to compress the decorated page.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class CompressionFilter implements Filter {
+
+	/** Default compressed content types */
+	public static final String DEFAULT_MIME_TYPES = "text/html,text/plain,text/css,"
+			+ "text/javascript,application/javascript,application/json";
+	
+	/** Default minimum size in bytes of a compressed response */
+	public static final int DEFAULT_MIN_SIZE = 1024;
+	
+	/** Content types to compress */
+	private Set<String> mimeTypes;
+	
+	/** Minimum size of a response to compress it */
+	private int minSize;
+	
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+		String types = filterConfig.getInitParameter("mimeTypes");
+		if (types == null) types = DEFAULT_MIME_TYPES;
+		mimeTypes = new HashSet<String>();
+		for (String type : types.split(",")) {
+			if (type.trim().length() > 0) mimeTypes.add(type.trim().toLowerCase());
+		}
+		
+		String size = filterConfig.getInitParameter("minSize");
+		try {
+			minSize = size == null ? DEFAULT_MIN_SIZE : Integer.parseInt(size.trim());
+		} catch (NumberFormatException e) {
+			throw new ServletException("Invalid minSize [" + size + "]", e);
+		}
+	}
+
+	@Override
+	public void doFilter(ServletRequest req, ServletResponse resp,
+			FilterChain chain) throws IOException, ServletException {
+		HttpServletRequest request = (HttpServletRequest) req;
+		HttpServletResponse response = (HttpServletResponse) resp;
+		
+		String encoding = selectEncoding(request);
+		if (encoding == null || "HEAD".equals(request.getMethod())
+				|| response.containsHeader("Content-Encoding") || isEventStream(request)) {
+			chain.doFilter(request, response);
+			return;
+		}
+		
+		CompressionResponseWrapper wrapper = new CompressionResponseWrapper(
+				response, encoding, mimeTypes, minSize);
+		boolean done = false;
+		try {
+			chain.doFilter(request, wrapper);
+			done = true;
+		} finally {
+			if (done) {
+				wrapper.finish();
+			} else {
+				wrapper.abort();
+			}
+		}
+	}
+	
+	/**
+	 * Select the encoding from the Accept-Encoding header.
+	 * @param request Request of the client
+	 * @return "gzip", "deflate" or null if none is accepted
+	 */
+	private String selectEncoding(HttpServletRequest request) {
+		String accept = request.getHeader("Accept-Encoding");
+		if (accept == null) return null;
+		
+		boolean deflate = false;
+		for (String part : accept.toLowerCase().split(",")) {
+			String[] values = part.split(";");
+			String coding = values[0].trim();
+			//q=0 means not acceptable
+			if (values.length > 1 && values[1].trim().matches("q=0(\\.0*)?")) continue;
+			
+			if (coding.equals("gzip") || coding.equals("x-gzip")) return "gzip";
+			if (coding.equals("deflate")) deflate = true;
+		}
+		return deflate ? "deflate" : null;
+	}
+
+	/**
+	 * Check if the request opens a server-sent events stream,
+	 * which is written asynchronously after the filter.
+	 * @param request Request of the client
+	 * @return True for an event stream
+	 */
+	private boolean isEventStream(HttpServletRequest request) {
+		String accept = request.getHeader("Accept");
+		return accept != null && accept.contains("text/event-stream");
+	}
+
+	@Override
+	public void destroy() {
+		
+	}
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response wrapper used by CompressionFilter.
+ * 
+ * The first bytes are kept until the minimum size is reached,
+ * then the response is compressed or sent as is
+ * depending on its content type.
+ * 
+ * @author Alexandre Thomazo
+ */
+class CompressionResponseWrapper extends HttpServletResponseWrapper {
+
+	/** Content encoding to use: gzip or deflate */
+	private final String encoding;
+	
+	/** Content types to compress */
+	private final Set<String> mimeTypes;
+	
+	/** Minimum size of a response to compress it */
+	private final int minSize;
+	
+	/** Content length set by the application or -1 */
+	private long contentLength = -1;
+	
+	private CompressionOutputStream stream;
+	private PrintWriter writer;
+	
+	CompressionResponseWrapper(HttpServletResponse response, String encoding,
+			Set<String> mimeTypes, int minSize) {
+		super(response);
+		this.encoding = encoding;
+		this.mimeTypes = mimeTypes;
+		this.minSize = minSize;
+	}
+	
+	@Override
+	public void setContentLength(int len) {
+		contentLength = len;
+	}
+	
+	@Override
+	public void setHeader(String name, String value) {
+		if ("Content-Length".equalsIgnoreCase(name)) {
+			contentLength = value == null ? -1 : Long.parseLong(value);
+		} else {
+			super.setHeader(name, value);
+		}
+	}
+	
+	@Override
+	public void addHeader(String name, String value) {
+		if ("Content-Length".equalsIgnoreCase(name)) {
+			setHeader(name, value);
+		} else {
+			super.addHeader(name, value);
+		}
+	}
+	
+	@Override
+	public void setIntHeader(String name, int value) {
+		if ("Content-Length".equalsIgnoreCase(name)) {
+			contentLength = value;
+		} else {
+			super.setIntHeader(name, value);
+		}
+	}
+	
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (writer != null) throw new IllegalStateException("getWriter() has already been called");
+		if (stream == null) stream = new CompressionOutputStream();
+		return stream;
+	}
+	
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			if (stream != null) throw new IllegalStateException("getOutputStream() has already been called");
+			stream = new CompressionOutputStream();
+			writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+		}
+		return writer;
+	}
+	
+	@Override
+	public void flushBuffer() throws IOException {
+		if (writer != null) writer.flush();
+		if (stream != null) stream.flush();
+		super.flushBuffer();
+	}
+	
+	@Override
+	public void resetBuffer() {
+		super.resetBuffer();
+		if (stream != null) stream.resetBuffer();
+	}
+	
+	@Override
+	public void reset() {
+		super.reset();
+		contentLength = -1;
+		if (stream != null) stream.resetBuffer();
+	}
+	
+	/**
+	 * Write the remaining content at the end of the request.
+	 * @throws IOException If the response can't be written
+	 */
+	void finish() throws IOException {
+		if (writer != null) writer.flush();
+		if (stream != null) {
+			stream.close();
+		} else if (contentLength >= 0) {
+			setRawContentLength();
+		}
+	}
+	
+	/**
+	 * End the response after an exception of the application. If nothing
+	 * has been sent, the compression is dropped so the error page is sent
+	 * as is, otherwise the compressed stream is terminated.
+	 * The exception of the application is kept, errors of the client
+	 * connection are ignored.
+	 */
+	void abort() {
+		if (!isCommitted()) {
+			getResponse().reset();
+			contentLength = -1;
+			stream = null;
+			writer = null;
+			return;
+		}
+		try {
+			finish();
+		} catch (IOException e) {
+			//connection closed, nothing more to send
+		}
+	}
+	
+	/**
+	 * Forward the content length of the application to the response.
+	 */
+	private void setRawContentLength() {
+		if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+			super.setContentLength((int) contentLength);
+		}
+	}
+	
+	/**
+	 * Check if the content type of the response must be compressed.
+	 * @return True to compress
+	 */
+	private boolean isCompressible() {
+		String type = getContentType();
+		if (type == null || containsHeader("Content-Encoding")) return false;
+		int sep = type.indexOf(';');
+		if (sep >= 0) type = type.substring(0, sep);
+		return mimeTypes.contains(type.trim().toLowerCase());
+	}
+	
+	/**
+	 * Output stream which buffers the beginning of the response
+	 * to decide if it must be compressed.
+	 */
+	private class CompressionOutputStream extends ServletOutputStream {
+		
+		/** First bytes of the response until the choice is done */
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		
+		/** Stream to the client once the choice is done */
+		private OutputStream out;
+		
+		private boolean closed;
+		
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (closed) throw new IOException("Stream closed");
+			if (out == null) {
+				//declared too small or not compressible, no need to wait
+				if ((contentLength >= 0 && contentLength < minSize) || !isCompressible()) {
+					choose(false);
+				} else {
+					buffer.write(b, off, len);
+					if (buffer.size() >= minSize) choose(true);
+					return;
+				}
+			}
+			out.write(b, off, len);
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			//a streamed response which will never be compressed is sent now
+			if (out == null && !isCompressible()) choose(false);
+			if (out != null) out.flush();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			if (closed) return;
+			closed = true;
+			if (out == null) choose(false);
+			if (out instanceof DeflaterOutputStream) {
+				((DeflaterOutputStream) out).finish();
+			}
+			out.flush();
+		}
+		
+		/**
+		 * Drop the buffered bytes if nothing has been sent.
+		 */
+		void resetBuffer() {
+			if (buffer != null) buffer.reset();
+		}
+		
+		/**
+		 * Create the stream to the client and send the buffered bytes.
+		 * @param compress True to compress the response
+		 * @throws IOException If the response can't be written
+		 */
+		private void choose(boolean compress) throws IOException {
+			HttpServletResponse response = (HttpServletResponse) getResponse();
+			if (compress) {
+				response.addHeader("Vary", "Accept-Encoding");
+				response.setHeader("Content-Encoding", encoding);
+				if (encoding.equals("gzip")) {
+					out = new GZIPOutputStream(response.getOutputStream());
+				} else {
+					out = new DeflaterOutputStream(response.getOutputStream());
+				}
+			} else {
+				if (isCompressible()) response.addHeader("Vary", "Accept-Encoding");
+				//the whole response is in the buffer when closing
+				if (contentLength < 0 && closed) contentLength = buffer.size();
+				setRawContentLength();
+				out = response.getOutputStream();
+			}
+			buffer.writeTo(out);
+			buffer = null;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.interceptors;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.alexlg.bankit.controllers.GitProperties;
+import org.alexlg.bankit.dao.DataVersion;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+/**
+ * Handle the conditional GET of the handlers annotated with
+ * {@link DataVersionETag}. The ETag is built from the data version,
+ * the current day and the commit of the application, so the
+ * response is sent again only if one of them has changed.
+ * The check is done before the handler, only the data version
+ * shared by the nodes is read for a 304.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class DataVersionETagInterceptor extends HandlerInterceptorAdapter {
+
+	@Autowired
+	private DataVersion dataVersion;
+	
+	@Autowired
+	private GitProperties gitProperties;
+	
+	@Override
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) throws Exception {
+		
+		//only for annotated GET handlers
+		if (!(handler instanceof HandlerMethod)) return true;
+		if (((HandlerMethod) handler).getMethodAnnotation(DataVersionETag.class) == null) return true;
+		String method = request.getMethod();
+		if (!"GET".equals(method) && !"HEAD".equals(method)) return true;
+		
+		//flash attributes are displayed once, the page must be rendered
+		Map<String, ?> flashMap = RequestContextUtils.getInputFlashMap(request);
+		if (flashMap != null && !flashMap.isEmpty()) return true;
+		
+		LocalDate today = new LocalDate();
+		long version = dataVersion.get();
+		String etag = "W/\"" + Long.toString(version, 36) + "-" + today.toString("yyyyMMdd")
+				+ "-" + gitProperties.getCommitIdAbbrev() + "\"";
+		//the version is the date of the last change, the page also changes with the day
+		long lastModified = Math.max(version, today.toDate().getTime());
+		lastModified -= lastModified % 1000;
+		
+		response.setHeader("ETag", etag);
+		response.setDateHeader("Last-Modified", lastModified);
+		response.setHeader("Cache-Control", "no-cache");
+		
+		if (isNotModified(request, etag, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Check the conditional headers of the request. The ETag
+	 * has priority on the modification date.
+	 * @param request Request to check
+	 * @param etag Current ETag
+	 * @param lastModified Current modification date
+	 * @return true if the client has the current version
+	 */
+	private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.equals("*") || tag.equals(etag) || ("W/" + tag).equals(etag)) return true;
+			}
+			return false;
+		}
+		
+		long ifModifiedSince = -1;
+		try {
+			ifModifiedSince = request.getDateHeader("If-Modified-Since");
+		} catch (IllegalArgumentException e) {
+			//invalid date, ignored
+		}
+		return ifModifiedSince != -1 && ifModifiedSince >= lastModified;
+	}
+	
+}
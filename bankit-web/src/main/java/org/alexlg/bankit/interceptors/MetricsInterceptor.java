@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.interceptors;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.alexlg.bankit.metrics.ThreadUsage;
+import org.alexlg.bankit.services.MetricsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Record the duration of the requests by handler, HTTP method and
+ * status, including the rendering of the view.
+ * The CPU time and the memory allocated by the thread of the request
+ * are recorded by handler.
+ * It must be the first interceptor to also time the requests
+ * stopped by another interceptor.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class MetricsInterceptor extends HandlerInterceptorAdapter {
+
+	/** Request attribute of the start time */
+	private static final String START_ATTRIBUTE = MetricsInterceptor.class.getName() + ".start";
+	
+	/** Request attribute of the CPU time of the thread at the start */
+	private static final String CPU_ATTRIBUTE = MetricsInterceptor.class.getName() + ".cpu";
+	
+	/** Request attribute of the bytes allocated by the thread at the start */
+	private static final String ALLOCATED_ATTRIBUTE = MetricsInterceptor.class.getName() + ".allocated";
+	
+	@Autowired
+	private MetricsService metricsService;
+	
+	@Override
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) throws Exception {
+		request.setAttribute(CPU_ATTRIBUTE, ThreadUsage.cpuTime());
+		request.setAttribute(ALLOCATED_ATTRIBUTE, ThreadUsage.allocatedBytes());
+		request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+		return true;
+	}
+	
+	@Override
+	public void afterCompletion(HttpServletRequest request,
+			HttpServletResponse response, Object handler, Exception ex)
+			throws Exception {
+		Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+		if (start == null) return;
+		long duration = System.nanoTime() - start;
+		long allocated = ThreadUsage.allocatedBytes();
+		long cpu = ThreadUsage.cpuTime();
+		
+		//an exception is sent as an error after the interceptors
+		String status = ex == null ? Integer.toString(response.getStatus()) : "500";
+		String name = handlerName(handler);
+		metricsService.timer("bankit_http_request_seconds", "Duration of the requests by handler",
+				"handler", name, "method", request.getMethod(), "status", status)
+				.record(duration);
+		
+		//not available on every JVM
+		long cpuStart = (Long) request.getAttribute(CPU_ATTRIBUTE);
+		if (cpu >= 0 && cpuStart >= 0) {
+			metricsService.timer("bankit_http_request_cpu_seconds", "CPU time of the requests by handler",
+					"handler", name).record(cpu - cpuStart);
+		}
+		long allocatedStart = (Long) request.getAttribute(ALLOCATED_ATTRIBUTE);
+		if (allocated >= 0 && allocatedStart >= 0) {
+			metricsService.byteHistogram("bankit_http_request_allocated_bytes", "Memory allocated by the requests by handler",
+					"handler", name).record(allocated - allocatedStart);
+		}
+	}
+	
+	/**
+	 * Get the name of a handler : controller and method for
+	 * the annotated handlers, the class otherwise.
+	 * @param handler Handler of the request
+	 * @return Name of the handler
+	 */
+	static String handlerName(Object handler) {
+		if (handler instanceof HandlerMethod) {
+			HandlerMethod method = (HandlerMethod) handler;
+			return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+		}
+		return handler.getClass().getSimpleName();
+	}
+	
+}
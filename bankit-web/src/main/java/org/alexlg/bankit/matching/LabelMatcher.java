@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.matching;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Find which patterns are contained in a label with the
+ * Aho-Corasick algorithm: all the patterns are compiled into
+ * one automaton and a label is read only once, whatever the
+ * number of patterns.
+ * Labels and patterns are compared in upper case, without accents
+ * and with single spaces. When several patterns are found, the
+ * longest wins, then the first added.
+ * 
+ * @author Alexandre Thomazo
+ *
+ * @param <T> Type of the values associated to the patterns
+ */
+public class LabelMatcher<T> {
+
+	/** Accents left by the decomposition of the characters */
+	private static final Pattern ACCENTS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+	
+	/** Spaces to merge */
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+	
+	/** Root of the automaton */
+	private final Node<T> root = new Node<T>();
+	
+	/** Number of patterns added */
+	private int size = 0;
+	
+	/** true when the failure links have been computed */
+	private boolean built = false;
+	
+	/**
+	 * Add a pattern to the automaton. Patterns can't
+	 * be added after the first match.
+	 * @param pattern Pattern to find in the labels
+	 * @param value Value returned when the pattern is found
+	 */
+	public void add(String pattern, T value) {
+		if (built) throw new IllegalStateException("Patterns can't be added after the first match");
+		String norm = normalize(pattern);
+		if (norm.length() == 0) return;
+		
+		Node<T> node = root;
+		for (int i = 0; i < norm.length(); i++) {
+			Character c = norm.charAt(i);
+			Node<T> child = node.children.get(c);
+			if (child == null) {
+				child = new Node<T>();
+				node.children.put(c, child);
+			}
+			node = child;
+		}
+		
+		//the first pattern added is kept for duplicates
+		if (node.value == null) {
+			node.value = value;
+			node.length = norm.length();
+			node.order = size;
+		}
+		size++;
+	}
+	
+	/**
+	 * Find the best pattern contained in a label.
+	 * @param label Label to read
+	 * @return Value of the best pattern or null if none is found
+	 */
+	public synchronized T match(String label) {
+		if (!built) build();
+		if (label == null || size == 0) return null;
+		
+		Node<T> best = null;
+		Node<T> node = root;
+		String norm = normalize(label);
+		for (int i = 0; i < norm.length(); i++) {
+			Character c = norm.charAt(i);
+			while (node != root && !node.children.containsKey(c)) {
+				node = node.fail;
+			}
+			Node<T> next = node.children.get(c);
+			if (next != null) node = next;
+			
+			if (node.output != null && node.output.isBetterThan(best)) {
+				best = node.output;
+			}
+		}
+		
+		return best == null ? null : best.value;
+	}
+	
+	/**
+	 * @return Number of patterns added
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Normalize a label or a pattern : upper case,
+	 * without accents and with single spaces.
+	 * @param label Label to normalize
+	 * @return Normalized label
+	 */
+	public static String normalize(String label) {
+		if (label == null) return "";
+		String norm = Normalizer.normalize(label, Normalizer.Form.NFD);
+		norm = ACCENTS.matcher(norm).replaceAll("");
+		norm = SPACES.matcher(norm).replaceAll(" ");
+		return norm.trim().toUpperCase();
+	}
+	
+	/**
+	 * Compute the failure links with a breadth-first walk, and
+	 * for each node the best pattern ending on it.
+	 */
+	private void build() {
+		LinkedList<Node<T>> queue = new LinkedList<Node<T>>();
+		for (Node<T> child : root.children.values()) {
+			child.fail = root;
+			child.output = child.value != null ? child : null;
+			queue.add(child);
+		}
+		
+		while (!queue.isEmpty()) {
+			Node<T> node = queue.removeFirst();
+			for (Map.Entry<Character, Node<T>> entry : node.children.entrySet()) {
+				Character c = entry.getKey();
+				Node<T> child = entry.getValue();
+				
+				//longest suffix of the child which is also a prefix
+				Node<T> fail = node.fail;
+				while (fail != root && !fail.children.containsKey(c)) {
+					fail = fail.fail;
+				}
+				Node<T> failChild = fail.children.get(c);
+				child.fail = failChild != null ? failChild : root;
+				
+				//best pattern between the one of the node and its suffixes
+				child.output = child.value != null ? child : null;
+				if (child.fail.output != null && child.fail.output.isBetterThan(child.output)) {
+					child.output = child.fail.output;
+				}
+				queue.add(child);
+			}
+		}
+		
+		built = true;
+	}
+	
+	/**
+	 * State of the automaton.
+	 */
+	private static class Node<T> {
+		/** Next states by character */
+		private final Map<Character, Node<T>> children = new HashMap<Character, Node<T>>();
+		/** State to go to when no child matches */
+		private Node<T> fail;
+		/** Best pattern ending on this state, itself or a suffix */
+		private Node<T> output;
+		/** Value of the pattern ending on this state, null if none */
+		private T value;
+		/** Length of the pattern */
+		private int length;
+		/** Order in which the pattern was added */
+		private int order;
+		
+		/**
+		 * Compare the patterns ending on two nodes.
+		 * @param other Other node, can be null
+		 * @return true if the pattern of this node is longer or added before
+		 */
+		private boolean isBetterThan(Node<T> other) {
+			if (other == null) return true;
+			if (length != other.length) return length > other.length;
+			return order < other.order;
+		}
+	}
+	
+}
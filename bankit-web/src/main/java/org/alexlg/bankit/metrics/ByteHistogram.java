@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.metrics;
+
+/**
+ * Histogram of memory sizes with buckets growing by 4,
+ * from 1 KiB to 1 GiB. Sizes are recorded and exported
+ * in bytes and shown in KiB.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class ByteHistogram extends Histogram {
+
+	/** Upper bounds of the buckets in bytes, the last bucket has no bound */
+	public static final double[] BUCKETS = new double[11];
+	static {
+		for (int i = 0; i < BUCKETS.length; i++) {
+			BUCKETS[i] = 1024L << (2 * i);
+		}
+	}
+	
+	public ByteHistogram() {
+		super(BUCKETS, 1, 1024, "Kio");
+	}
+	
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter which can only be increased.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class Counter {
+
+	private final AtomicLong value = new AtomicLong();
+	
+	public void increment() {
+		value.incrementAndGet();
+	}
+	
+	/**
+	 * Increase the counter.
+	 * @param n Value to add, must be positive
+	 */
+	public void add(long n) {
+		value.addAndGet(n);
+	}
+	
+	public long getValue() {
+		return value.get();
+	}
+	
+}
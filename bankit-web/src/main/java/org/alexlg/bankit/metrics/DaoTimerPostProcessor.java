@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.metrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.alexlg.bankit.dao.AbstractDao;
+import org.alexlg.bankit.services.MetricsService;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Time the calls of the public methods of the DAOs, with a timer
+ * by DAO and method. The DAOs are wrapped in a proxy, or the
+ * timing is added to their proxy if they already have one.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class DaoTimerPostProcessor implements BeanPostProcessor {
+
+	@Autowired
+	private MetricsService metricsService;
+	
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) {
+		return bean;
+	}
+	
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (!(bean instanceof AbstractDao)) return bean;
+		
+		DaoTimer timer = new DaoTimer(ClassUtils.getUserClass(bean).getSimpleName());
+		if (bean instanceof Advised) {
+			((Advised) bean).addAdvice(0, timer);
+			return bean;
+		}
+		ProxyFactory factory = new ProxyFactory(bean);
+		factory.setProxyTargetClass(true);
+		factory.addAdvice(timer);
+		return factory.getProxy();
+	}
+	
+	/**
+	 * Record the duration of the calls of a DAO.
+	 */
+	private class DaoTimer implements MethodInterceptor {
+		
+		/** Name of the DAO class */
+		private final String dao;
+		
+		/** Timers by method, to not build the labels for each call */
+		private final ConcurrentMap<Method, Timer> timers = new ConcurrentHashMap<Method, Timer>();
+		
+		private DaoTimer(String dao) {
+			this.dao = dao;
+		}
+		
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			Method method = invocation.getMethod();
+			if (method.getDeclaringClass() == Object.class) return invocation.proceed();
+			
+			Timer timer = timers.get(method);
+			if (timer == null) {
+				timer = metricsService.timer("bankit_dao_call_seconds", "Duration of the DAO calls",
+						"dao", dao, "method", method.getName());
+				timers.put(method, timer);
+			}
+			
+			long start = System.nanoTime();
+			try {
+				return invocation.proceed();
+			} finally {
+				timer.record(System.nanoTime() - start);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.metrics;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Custom event of the Java Flight Recorder.
+ * The events are defined at runtime through jdk.jfr.EventFactory
+ * so the application still compiles and runs on JVMs without JFR,
+ * where the events do nothing. The duration of an event is the time
+ * between its creation and its commit, its fields are long values.
+ * 
+ * <pre>
+ * FlightEvent event = TYPE.begin();
+ * ...
+ * event.set("rows", rows).commit();
+ * </pre>
+ * 
+ * @author Alexandre Thomazo
+ */
+public class FlightEvent {
+
+	private static Logger logger = LoggerFactory.getLogger(FlightEvent.class);
+	
+	/** Category of all the BankIt events in JFR */
+	public static final String CATEGORY = "BankIt";
+	
+	private static final FlightEvent NOOP = new FlightEvent(null, null);
+	
+	private final Type type;
+	
+	/** jdk.jfr.Event instance, null if JFR is not available */
+	private final Object event;
+	
+	private FlightEvent(Type type, Object event) {
+		this.type = type;
+		this.event = event;
+	}
+	
+	/**
+	 * Set the value of a field.
+	 * @param field Name of the field, as declared in the type
+	 * @param value Value of the field
+	 * @return This event
+	 */
+	public FlightEvent set(String field, long value) {
+		if (event == null) return this;
+		int index = type.fields.indexOf(field);
+		if (index < 0) throw new IllegalArgumentException("Unknown field [" + field + "] for " + type.name);
+		type.invoke(type.setMethod, event, index, value);
+		return this;
+	}
+	
+	/**
+	 * End the event and write it in the recordings.
+	 */
+	public void commit() {
+		if (event == null) return;
+		type.invoke(type.commitMethod, event);
+	}
+	
+	/**
+	 * Type of event, to be created once for each kind of event.
+	 */
+	public static class Type {
+		
+		private final String name;
+		
+		private final List<String> fields;
+		
+		/** jdk.jfr.EventFactory of the type, null if JFR is not available */
+		private Object factory;
+		
+		private Method newEventMethod;
+		
+		private Method beginMethod;
+		
+		private Method setMethod;
+		
+		private Method commitMethod;
+		
+		/**
+		 * Register a type of event in JFR.
+		 * @param name Name of the event type, like org.alexlg.bankit.Import
+		 * @param label Human readable name of the event
+		 * @param fields Names of the long fields of the event
+		 */
+		public Type(String name, String label, String... fields) {
+			this.name = name;
+			this.fields = Collections.unmodifiableList(Arrays.asList(fields));
+			try {
+				Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+				Constructor<?> annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+				Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+				Constructor<?> valueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class);
+				
+				List<Object> annotations = new ArrayList<Object>();
+				annotations.add(annotationElement.newInstance(annotationClass("jdk.jfr.Name"), name));
+				annotations.add(annotationElement.newInstance(annotationClass("jdk.jfr.Label"), label));
+				annotations.add(annotationElement.newInstance(annotationClass("jdk.jfr.Category"), new String[] { CATEGORY }));
+				//the stack trace would only show the reflection calls
+				annotations.add(annotationElement.newInstance(annotationClass("jdk.jfr.StackTrace"), false));
+				
+				List<Object> descriptors = new ArrayList<Object>();
+				for (String field : fields) {
+					descriptors.add(valueDescriptor.newInstance(long.class, field));
+				}
+				
+				Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+				factory = factoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, descriptors);
+				newEventMethod = factoryClass.getMethod("newEvent");
+				
+				Class<?> eventClass = Class.forName("jdk.jfr.Event");
+				beginMethod = eventClass.getMethod("begin");
+				setMethod = eventClass.getMethod("set", int.class, Object.class);
+				commitMethod = eventClass.getMethod("commit");
+			} catch (ClassNotFoundException e) {
+				factory = null;
+			} catch (Exception e) {
+				logger.warn("Unable to register the JFR event " + name, e);
+				factory = null;
+			}
+		}
+		
+		/**
+		 * Start an event of this type.
+		 * @return The started event, a no-op event if JFR is not available
+		 */
+		public FlightEvent begin() {
+			if (factory == null) return NOOP;
+			Object event = invoke(newEventMethod, factory);
+			invoke(beginMethod, event);
+			return new FlightEvent(this, event);
+		}
+		
+		/**
+		 * @return True if the events are sent to JFR
+		 */
+		public boolean isAvailable() {
+			return factory != null;
+		}
+		
+		/**
+		 * Invoke a JFR method, whose exceptions are unchecked.
+		 * @param method Method to invoke
+		 * @param target Object on which the method is invoked
+		 * @param args Arguments of the method
+		 * @return Result of the method
+		 */
+		private Object invoke(Method method, Object target, Object... args) {
+			try {
+				return method.invoke(target, args);
+			} catch (Exception e) {
+				throw new IllegalStateException("Unable to call " + method.getName() + " on the JFR event " + name, e);
+			}
+		}
+		
+		@SuppressWarnings("unchecked")
+		private static Class<? extends Annotation> annotationClass(String className) throws ClassNotFoundException {
+			return (Class<? extends Annotation>) Class.forName(className);
+		}
+	}
+	
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of long values with fixed buckets.
+ * The values are recorded in a raw unit (like ns) and exported in
+ * the base unit of Prometheus (like seconds), the statistics are
+ * shown in a display unit (like ms).
+ * Recording a value doesn't lock.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class Histogram {
+
+	/** Upper bounds of the buckets in the base unit, the last bucket has no bound */
+	private final double[] buckets;
+	
+	/** Upper bounds of the buckets in the raw unit */
+	private final long[] rawBuckets;
+	
+	/** Raw values in one base unit */
+	private final double scale;
+	
+	/** Raw values in one display unit */
+	private final double displayScale;
+	
+	/** Name of the display unit */
+	private final String unit;
+	
+	/** Number of values in each bucket, not cumulated */
+	private final AtomicLongArray counts;
+	
+	/** Number of values recorded */
+	private final AtomicLong count = new AtomicLong();
+	
+	/** Sum of the values in the raw unit */
+	private final AtomicLong sum = new AtomicLong();
+	
+	/** Highest value in the raw unit */
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Create an empty histogram.
+	 * @param buckets Upper bounds of the buckets in the base unit, sorted
+	 * @param scale Raw values in one base unit
+	 * @param displayScale Raw values in one display unit
+	 * @param unit Name of the display unit
+	 */
+	protected Histogram(double[] buckets, double scale, double displayScale, String unit) {
+		this.buckets = buckets;
+		this.scale = scale;
+		this.displayScale = displayScale;
+		this.unit = unit;
+		rawBuckets = new long[buckets.length];
+		for (int i = 0; i < buckets.length; i++) {
+			rawBuckets[i] = Math.round(buckets[i] * scale);
+		}
+		counts = new AtomicLongArray(buckets.length + 1);
+	}
+	
+	/**
+	 * Record a value.
+	 * @param value Value in the raw unit
+	 */
+	public void record(long value) {
+		int bucket = 0;
+		while (bucket < rawBuckets.length && value > rawBuckets[bucket]) bucket++;
+		counts.incrementAndGet(bucket);
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+	
+	/**
+	 * @return Upper bounds of the buckets in the base unit
+	 */
+	public double[] getBuckets() {
+		return buckets.clone();
+	}
+	
+	public String getUnit() {
+		return unit;
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * Get the sum of the values.
+	 * @return Sum in the base unit
+	 */
+	public double getSum() {
+		return sum.get() / scale;
+	}
+	
+	/**
+	 * Get the mean of the values.
+	 * @return Mean in the display unit, 0 if nothing is recorded
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : sum.get() / displayScale / n;
+	}
+	
+	/**
+	 * Get the highest value.
+	 * @return Value in the display unit
+	 */
+	public double getMax() {
+		return max.get() / displayScale;
+	}
+	
+	/**
+	 * Get the number of values lower or equal to the bound of a bucket.
+	 * @param bucket Index of the bucket, the number of buckets for all the values
+	 * @return Cumulated count
+	 */
+	public long getCumulativeCount(int bucket) {
+		long n = 0;
+		for (int i = 0; i <= bucket; i++) {
+			n += counts.get(i);
+		}
+		return n;
+	}
+	
+	/**
+	 * Get the bound of the bucket of a percentile,
+	 * the percentile is lower or equal to it.
+	 * @param percentile Percentage between 0 and 100
+	 * @return Bound in the display unit, the highest value for the last bucket
+	 */
+	public double getPercentile(double percentile) {
+		long n = count.get();
+		if (n == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long cumulated = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			cumulated += counts.get(i);
+			if (cumulated >= rank) return Math.min(rawBuckets[i] / displayScale, getMax());
+		}
+		return getMax();
+	}
+	
+	public double getP50() {
+		return getPercentile(50);
+	}
+	
+	public double getP99() {
+		return getPercentile(99);
+	}
+	
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.metrics;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.ConcurrentStatisticsImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hibernate statistics which log the queries slower
+ * than a threshold.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class SlowQueryStatistics extends ConcurrentStatisticsImpl {
+
+	private static final long serialVersionUID = 1L;
+	
+	private static Logger logger = LoggerFactory.getLogger(SlowQueryStatistics.class);
+	
+	/** Threshold in ms, the slow query log is disabled if negative */
+	private final long threshold;
+	
+	/**
+	 * Create the statistics of a session factory.
+	 * @param sessionFactory Session factory to follow
+	 * @param threshold Threshold in ms above which a query is logged,
+	 * 	negative to disable the log
+	 */
+	public SlowQueryStatistics(SessionFactoryImplementor sessionFactory, long threshold) {
+		super(sessionFactory);
+		this.threshold = threshold;
+	}
+	
+	@Override
+	public void queryExecuted(String hql, int rows, long time) {
+		super.queryExecuted(hql, rows, time);
+		if (threshold >= 0 && time >= threshold) {
+			logger.warn("{} ms, {} rows: {}", new Object[] { time, rows, hql });
+		}
+	}
+
+	/**
+	 * @return Threshold in ms above which a query is logged
+	 */
+	public long getThreshold() {
+		return threshold;
+	}
+	
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.metrics;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Build the SlowQueryStatistics of Hibernate, declared with the
+ * <code>hibernate.stats.factory</code> property. The threshold is read
+ * from the <code>bankit.slow_query_threshold</code> property (in ms),
+ * set from the <code>slow_query_threshold</code> JNDI entry.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class SlowQueryStatisticsFactory implements StatisticsFactory {
+
+	/** Property holding the slow query threshold in ms */
+	public static final String THRESHOLD = "bankit.slow_query_threshold";
+	
+	/** Default threshold in ms */
+	public static final int DEFAULT_THRESHOLD = 500;
+	
+	@Override
+	public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+		int threshold = ConfigurationHelper.getInt(THRESHOLD, sessionFactory.getProperties(), DEFAULT_THRESHOLD);
+		return new SlowQueryStatistics(sessionFactory, threshold);
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Resources used by the current thread, read from the ThreadMXBean.
+ * The allocated bytes are only counted by the HotSpot JVMs, through
+ * com.sun.management.ThreadMXBean which is called by reflection.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class ThreadUsage {
+
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	
+	/** getThreadAllocatedBytes(long) of the HotSpot bean, null if not supported */
+	private static final Method allocatedBytesMethod = findAllocatedBytesMethod();
+	
+	private ThreadUsage() {}
+	
+	/**
+	 * Get the CPU time used by the current thread.
+	 * @return Time in ns, -1 if not supported
+	 */
+	public static long cpuTime() {
+		if (!threadBean.isCurrentThreadCpuTimeSupported() || !threadBean.isThreadCpuTimeEnabled()) return -1;
+		return threadBean.getCurrentThreadCpuTime();
+	}
+	
+	/**
+	 * Get the memory allocated by the current thread since its start.
+	 * @return Size in bytes, -1 if not supported
+	 */
+	public static long allocatedBytes() {
+		if (allocatedBytesMethod == null) return -1;
+		try {
+			return (Long) allocatedBytesMethod.invoke(threadBean, Thread.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Find the method giving the allocated bytes and enable
+	 * the allocation counting.
+	 * @return Method or null if the JVM doesn't count the allocations
+	 */
+	private static Method findAllocatedBytesMethod() {
+		try {
+			Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+			if (!beanClass.isInstance(threadBean)) return null;
+			if (!(Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(threadBean)) return null;
+			beanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(threadBean, true);
+			return beanClass.getMethod("getThreadAllocatedBytes", long.class);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.metrics;
+
+/**
+ * Histogram of durations with fixed buckets, the same as the
+ * default buckets of the Prometheus clients, from 1ms to 10s.
+ * Durations are recorded in ns, exported in seconds and shown in ms.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class Timer extends Histogram {
+
+	/** Upper bounds of the buckets in seconds, the last bucket has no bound */
+	public static final double[] BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+			0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+	
+	public Timer() {
+		super(BUCKETS, 1e9, 1e6, "ms");
+	}
+	
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.recurrence;
+
+import java.util.Date;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Utility methods on dates stored as a number of days
+ * since 1970-01-01 (epoch day). All the computations are done
+ * on primitive int, the conversions from and to Joda dates are only
+ * needed at the boundaries.
+ * The month index is the number of months since year 0 (year * 12 + month - 1).
+ * 
+ * @author Alexandre Thomazo
+ */
+public final class EpochDays {
+
+	/** Days from 0000-03-01 to 1970-01-01 */
+	private static final int DAYS_0000_TO_1970 = 719468;
+	
+	/** Days in a 400 years era */
+	private static final int DAYS_PER_ERA = 146097;
+	
+	private EpochDays() {}
+	
+	/**
+	 * Get the epoch day of a date.
+	 * @param year Year
+	 * @param month Month from 1 to 12
+	 * @param day Day of month from 1 to 31
+	 * @return Epoch day
+	 */
+	public static int of(int year, int month, int day) {
+		//years start in march to put the leap day at the end
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+	}
+	
+	/**
+	 * Get the epoch day of a date.
+	 * @param date Date to convert
+	 * @return Epoch day
+	 */
+	public static int of(LocalDate date) {
+		return of(date.getYear(), date.getMonthOfYear(), date.getDayOfMonth());
+	}
+	
+	/**
+	 * Get the epoch day of a date in the default time zone.
+	 * @param date Date to convert
+	 * @return Epoch day
+	 */
+	public static int of(Date date) {
+		return of(new LocalDate(date));
+	}
+	
+	/**
+	 * Get the month index of an epoch day.
+	 * @param epochDay Epoch day
+	 * @return Month index
+	 */
+	public static int monthIndex(int epochDay) {
+		int z = epochDay + DAYS_0000_TO_1970;
+		int era = (z >= 0 ? z : z - DAYS_PER_ERA + 1) / DAYS_PER_ERA;
+		int dayOfEra = z - era * DAYS_PER_ERA;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		
+		//converting the march based year
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return monthIndex(year, month);
+	}
+	
+	/**
+	 * Get the month index of a month.
+	 * @param year Year
+	 * @param month Month from 1 to 12
+	 * @return Month index
+	 */
+	public static int monthIndex(int year, int month) {
+		return year * 12 + month - 1;
+	}
+	
+	/**
+	 * Get the epoch day of a day in a month. If the month
+	 * is shorter than the day, the last day of the month is used.
+	 * @param monthIndex Month index
+	 * @param day Day of month from 1 to 31
+	 * @return Epoch day
+	 */
+	public static int dayInMonth(int monthIndex, int day) {
+		int year = floorDiv(monthIndex, 12);
+		int month = floorMod(monthIndex, 12) + 1;
+		int length = lengthOfMonth(year, month);
+		return of(year, month, day > length ? length : day);
+	}
+	
+	/**
+	 * Get the number of days in a month.
+	 * @param year Year
+	 * @param month Month from 1 to 12
+	 * @return Number of days
+	 */
+	public static int lengthOfMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+				return leap ? 29 : 28;
+			case 4: case 6: case 9: case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+	
+	/**
+	 * Get the day of week of an epoch day.
+	 * @param epochDay Epoch day
+	 * @return Day of week, from 1 (monday) to 7 (sunday)
+	 */
+	public static int dayOfWeek(int epochDay) {
+		//1970-01-01 is a thursday
+		return floorMod(epochDay + 3, 7) + 1;
+	}
+	
+	/**
+	 * Convert an epoch day to a LocalDate.
+	 * @param epochDay Epoch day
+	 * @return LocalDate
+	 */
+	public static LocalDate toLocalDate(int epochDay) {
+		int monthIndex = monthIndex(epochDay);
+		int year = floorDiv(monthIndex, 12);
+		int month = floorMod(monthIndex, 12) + 1;
+		return new LocalDate(year, month, epochDay - of(year, month, 1) + 1);
+	}
+	
+	/**
+	 * Convert an epoch day to a Date at midnight in the default time zone.
+	 * @param epochDay Epoch day
+	 * @return Date
+	 */
+	public static Date toDate(int epochDay) {
+		return toLocalDate(epochDay).toDate();
+	}
+	
+	/**
+	 * Integer division rounded to negative infinity.
+	 */
+	static int floorDiv(int x, int y) {
+		int r = x / y;
+		if ((x % y != 0) && ((x ^ y) < 0)) r--;
+		return r;
+	}
+	
+	/**
+	 * Modulo with the sign of the divisor.
+	 */
+	static int floorMod(int x, int y) {
+		return x - floorDiv(x, y) * y;
+	}
+	
+}
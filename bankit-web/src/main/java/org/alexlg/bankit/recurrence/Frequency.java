@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.recurrence;
+
+/**
+ * Frequency of a recurring cost.
+ * 
+ * @author Alexandre Thomazo
+ */
+public enum Frequency {
+	
+	MONTHLY("Mensuelle"),
+	WEEKLY("Hebdomadaire"),
+	BIWEEKLY("Toutes les deux semaines"),
+	YEARLY("Annuelle");
+	
+	/** Label displayed to the user */
+	private final String label;
+	
+	private Frequency(String label) {
+		this.label = label;
+	}
+	
+	/**
+	 * Is the occurrence date based on a day of the month.
+	 * @return true for MONTHLY and YEARLY, false for WEEKLY and BIWEEKLY
+	 */
+	public boolean isDayOfMonth() {
+		return this == MONTHLY || this == YEARLY;
+	}
+	
+	public String getLabel() {
+		return label;
+	}
+	
+}
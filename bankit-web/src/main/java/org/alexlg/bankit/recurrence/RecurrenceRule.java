@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.recurrence;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Rule describing the dates of a recurring cost.
+ * <ul>
+ * <li>MONTHLY: the day of month, every interval months.</li>
+ * <li>YEARLY: the day of month of the start month, every interval years.</li>
+ * <li>WEEKLY/BIWEEKLY: the day of week of the start date, every interval weeks
+ * (twice as much for BIWEEKLY).</li>
+ * </ul>
+ * The months and weeks are counted from the start date. Without start
+ * date, the months are counted from january of year 0 and the weeks
+ * are on the day of week given by the day (1 for monday).
+ * The occurrences are expanded lazily with {@link #occurrences(int, int)}.
+ * 
+ * @author Alexandre Thomazo
+ */
+public final class RecurrenceRule {
+
+	/** Start or end day of a rule without bound */
+	public static final int UNBOUNDED_START = Integer.MIN_VALUE;
+	public static final int UNBOUNDED_END = Integer.MAX_VALUE;
+	
+	/** Epoch day of monday 1970-01-05 */
+	private static final int FIRST_MONDAY = 4;
+	
+	private final Frequency frequency;
+	private final int interval;
+	private final int day;
+	private final int startDay;
+	private final int endDay;
+	
+	/**
+	 * Create a rule.
+	 * @param frequency Frequency, MONTHLY if null
+	 * @param interval Number of periods between two occurrences, 1 if lower
+	 * @param day Day of month (or of week without start date for weekly rules)
+	 * @param startDay Epoch day of the first possible occurrence or UNBOUNDED_START
+	 * @param endDay Epoch day of the last possible occurrence or UNBOUNDED_END
+	 */
+	public RecurrenceRule(Frequency frequency, int interval, int day, int startDay, int endDay) {
+		this.frequency = frequency == null ? Frequency.MONTHLY : frequency;
+		this.interval = interval < 1 ? 1 : interval;
+		this.day = day;
+		this.startDay = startDay;
+		this.endDay = endDay;
+	}
+	
+	/**
+	 * Create a monthly rule without bounds.
+	 * @param day Day of month
+	 */
+	public RecurrenceRule(int day) {
+		this(Frequency.MONTHLY, 1, day, UNBOUNDED_START, UNBOUNDED_END);
+	}
+	
+	/**
+	 * Get the occurrences of the rule between two days.
+	 * @param from First epoch day, included
+	 * @param to Last epoch day, included
+	 * @return Iterator on the occurrences
+	 */
+	public Occurrences occurrences(int from, int to) {
+		return new Occurrences(from < startDay ? startDay : from, to > endDay ? endDay : to);
+	}
+	
+	public Frequency getFrequency() {
+		return frequency;
+	}
+
+	public int getInterval() {
+		return interval;
+	}
+
+	public int getDay() {
+		return day;
+	}
+
+	public int getStartDay() {
+		return startDay;
+	}
+
+	public int getEndDay() {
+		return endDay;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = frequency.hashCode();
+		result = 31 * result + interval;
+		result = 31 * result + day;
+		result = 31 * result + startDay;
+		result = 31 * result + endDay;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof RecurrenceRule)) return false;
+		RecurrenceRule o = (RecurrenceRule) obj;
+		return frequency == o.frequency && interval == o.interval && day == o.day
+				&& startDay == o.startDay && endDay == o.endDay;
+	}
+
+	@Override
+	public String toString() {
+		return "RecurrenceRule [frequency=" + frequency + ", interval=" + interval
+				+ ", day=" + day + ", startDay=" + startDay + ", endDay=" + endDay + "]";
+	}
+	
+	/**
+	 * Iterator on the epoch days of the occurrences of the rule.
+	 * The values are primitive int, nothing is allocated while iterating.
+	 */
+	public final class Occurrences {
+		
+		/** Last epoch day to return */
+		private final int to;
+		/** Next epoch day to return */
+		private int next;
+		/** Month index of the next occurrence for monthly rules */
+		private int month;
+		/** Step between two occurrences, in months or in days */
+		private final int step;
+		
+		private Occurrences(int from, int to) {
+			this.to = to;
+			if (from > to) {
+				step = 1;
+				next = to + 1;
+				return;
+			}
+			
+			if (frequency.isDayOfMonth()) {
+				step = frequency == Frequency.YEARLY ? 12 * interval : interval;
+				int anchor = startDay == UNBOUNDED_START ? 0 : EpochDays.monthIndex(startDay);
+				
+				//first month of the rule from the first day
+				month = EpochDays.monthIndex(from);
+				int shift = EpochDays.floorMod(month - anchor, step);
+				if (shift != 0) month += step - shift;
+				next = EpochDays.dayInMonth(month, day);
+				if (next < from) {
+					month += step;
+					next = EpochDays.dayInMonth(month, day);
+				}
+			} else {
+				step = (frequency == Frequency.BIWEEKLY ? 14 : 7) * interval;
+				int anchor = startDay == UNBOUNDED_START
+						? FIRST_MONDAY + EpochDays.floorMod(day - 1, 7) : startDay;
+				
+				//first occurrence from the first day
+				next = anchor + EpochDays.floorDiv(from - anchor + step - 1, step) * step;
+			}
+		}
+		
+		/**
+		 * Is there another occurrence.
+		 * @return true if next() can be called
+		 */
+		public boolean hasNext() {
+			return next <= to;
+		}
+		
+		/**
+		 * Get the next occurrence.
+		 * @return Epoch day of the occurrence
+		 */
+		public int next() {
+			if (next > to) throw new NoSuchElementException();
+			int current = next;
+			if (frequency.isDayOfMonth()) {
+				month += step;
+				next = EpochDays.dayInMonth(month, day);
+			} else {
+				next += step;
+			}
+			return current;
+		}
+		
+	}
+	
+}
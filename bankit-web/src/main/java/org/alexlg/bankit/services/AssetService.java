@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.ServletContext;
+
+import org.alexlg.bankit.assets.AssetBuilder;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.context.ServletContextAware;
+
+/**
+ * Service giving access to the static assets built with the webapp.
+ * 
+ * The files of the static directory are minified, concatenated
+ * into bundles and fingerprinted with a version computed from their
+ * content by {@link AssetBuilder} when the webapp is packaged. They
+ * are loaded once at startup, served under /assets/{version}/ and
+ * can be cached forever by the browser.
+ * The URL prefix is exposed to the JSP in the "assetsUrl"
+ * attribute of the servlet context.
+ * 
+ * When the webapp is unpacked, the directory of the built assets
+ * and their gzipped copies is in the "assetsDir" attribute, so the
+ * standalone server can send them without going through the webapp.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class AssetService implements ServletContextAware {
+
+	/** Servlet context attribute with the assets URL prefix */
+	public static final String ASSETS_URL_ATTR = "assetsUrl";
+	
+	/** Servlet context attribute with the directory of the built assets */
+	public static final String ASSETS_DIR_ATTR = "assetsDir";
+	
+	/** Prefix of the assets URL */
+	public static final String ASSETS_PATH = "/assets/";
+	
+	private static Logger logger = LoggerFactory.getLogger(AssetService.class);
+	
+	private ServletContext servletContext;
+	
+	/** Content of the assets by path relative to the static directory */
+	private volatile Map<String, byte[]> assets = Collections.emptyMap();
+	
+	/** Fingerprint of the assets content */
+	private volatile String version = "";
+	
+	@Override
+	public void setServletContext(ServletContext servletContext) {
+		this.servletContext = servletContext;
+	}
+	
+	/**
+	 * Load the assets built with the webapp.
+	 * @throws IOException If the assets can't be read or have not been built
+	 */
+	@PostConstruct
+	public void init() throws IOException {
+		//not in a webapp (tests)
+		if (servletContext == null) return;
+		
+		long start = System.currentTimeMillis();
+		String manifestPath = "/" + AssetBuilder.ASSETS_DIR + AssetBuilder.MANIFEST;
+		InputStream in = servletContext.getResourceAsStream(manifestPath);
+		if (in == null) {
+			throw new FileNotFoundException("Built assets [" + manifestPath + "] not found, the webapp must be packaged by maven");
+		}
+		Properties manifest = new Properties();
+		try {
+			manifest.load(in);
+		} finally {
+			in.close();
+		}
+		version = manifest.getProperty(AssetBuilder.VERSION);
+		
+		String dir = "/" + AssetBuilder.ASSETS_DIR + version + "/";
+		Map<String, byte[]> files = new HashMap<String, byte[]>();
+		readDir(dir, dir, files);
+		assets = files;
+		servletContext.setAttribute(ASSETS_URL_ATTR, getUrl());
+		
+		//null if the webapp is not unpacked
+		String realDir = servletContext.getRealPath(dir);
+		if (realDir != null) servletContext.setAttribute(ASSETS_DIR_ATTR, realDir);
+		
+		logger.info("{} assets loaded in {}ms with version {}", new Object[] {
+				assets.size(), System.currentTimeMillis() - start, version });
+	}
+	
+	/**
+	 * Read recursively the files of a webapp directory,
+	 * without the gzipped copies.
+	 * @param baseDir Directory of the assets, ending with a slash
+	 * @param dir Directory to read, ending with a slash
+	 * @param files Map to fill with the content by path relative to the base directory
+	 * @throws IOException If a file can't be read
+	 */
+	private void readDir(String baseDir, String dir, Map<String, byte[]> files) throws IOException {
+		Set<String> paths = servletContext.getResourcePaths(dir);
+		if (paths == null) return;
+		
+		for (String path : paths) {
+			if (path.endsWith("/")) {
+				readDir(baseDir, path, files);
+				continue;
+			}
+			if (path.endsWith(".gz")) continue;
+			InputStream in = servletContext.getResourceAsStream(path);
+			if (in == null) continue;
+			try {
+				files.put(path.substring(baseDir.length()), IOUtils.toByteArray(in));
+			} finally {
+				in.close();
+			}
+		}
+	}
+	
+	/**
+	 * Get the content of an asset.
+	 * @param path Path relative to the static directory, or bundle name
+	 * @return Content or null if the asset doesn't exist
+	 */
+	public byte[] getAsset(String path) {
+		return assets.get(path);
+	}
+	
+	/**
+	 * Get the content type of an asset.
+	 * @param path Path relative to the static directory, or bundle name
+	 * @return Content type or null if unknown
+	 */
+	public String getContentType(String path) {
+		return servletContext != null ? servletContext.getMimeType(path) : null;
+	}
+	
+	/**
+	 * Get the fingerprint of the current assets.
+	 * @return Version
+	 */
+	public String getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Get the URL prefix of the current assets, without context path.
+	 * @return URL like /assets/{version}
+	 */
+	public String getUrl() {
+		return ASSETS_PATH + version;
+	}
+	
+}
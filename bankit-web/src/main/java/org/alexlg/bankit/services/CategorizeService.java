@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alexlg.bankit.dao.CategoryDao;
+import org.alexlg.bankit.dao.CategoryRuleDao;
+import org.alexlg.bankit.dao.DataVersion;
+import org.alexlg.bankit.dao.OperationDao;
+import org.alexlg.bankit.db.CategoryRule;
+import org.alexlg.bankit.db.Operation;
+import org.alexlg.bankit.matching.LabelMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+
+/**
+ * Set the category of the operations from the rules.
+ * The rules are compiled into one {@link LabelMatcher} which is
+ * kept until the rules change, so categorizing an operation costs
+ * one read of its label whatever the number of rules.
+ * The matcher is keyed on the version of the rules, which is changed
+ * when the rules are committed, on this node or on another one.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class CategorizeService {
+
+	/** Name of the job applying the rules to the history */
+	public static final String CATEGORIZE_HISTORY_JOB = "categorizeHistory";
+	
+	/** Number of operations read at once by the history job */
+	private static final int PAGE_SIZE = 1000;
+	
+	@Autowired
+	private CategoryRuleDao categoryRuleDao;
+	
+	@Autowired
+	private CategoryDao categoryDao;
+	
+	@Autowired
+	private OperationDao operationDao;
+	
+	@Autowired
+	private JobService jobService;
+	
+	@Autowired
+	private LiveUpdateService liveUpdateService;
+	
+	@Autowired
+	private DataVersion dataVersion;
+	
+	/** Class logger */
+	private static Logger logger = LoggerFactory.getLogger(CategorizeService.class);
+	
+	/** Compiled rules, category id by pattern, null if the rules have changed */
+	private LabelMatcher<Integer> matcher = null;
+	
+	/** Rules version read before the rules */
+	private long matcherVersion;
+	
+	/**
+	 * Set the category of the operations which have none
+	 * and which label matches a rule.
+	 * @param operations Operations to categorize
+	 * @return Number of operations categorized
+	 */
+	public int categorize(List<Operation> operations) {
+		LabelMatcher<Integer> m = getMatcher();
+		if (m.size() == 0) return 0;
+		
+		int nb = 0;
+		for (Operation op : operations) {
+			if (op.getCategory() != null) continue;
+			Integer catId = m.match(op.getLabel());
+			if (catId != null) {
+				op.setCategory(categoryDao.load(catId));
+				nb++;
+			}
+		}
+		return nb;
+	}
+	
+	/**
+	 * Apply the rules to all the operations with no category.
+	 * It's run as a job so two nodes don't update the same operations.
+	 * @return Number of operations categorized or -1 if the job hasn't run
+	 */
+	public int categorizeHistory() {
+		final int[] nb = new int[] { 0 };
+		boolean success = jobService.runJob(CATEGORIZE_HISTORY_JOB, new Runnable() {
+			@Override
+			public void run() {
+				nb[0] = applyToHistory();
+			}
+		});
+		return success ? nb[0] : -1;
+	}
+	
+	/**
+	 * Apply the rules to the operations with no category, page
+	 * by page, with one update per category and page. Runs in the
+	 * transaction of the caller.
+	 * @return Number of operations categorized
+	 */
+	int applyToHistory() {
+		LabelMatcher<Integer> m = getMatcher();
+		if (m.size() == 0) return 0;
+		
+		int nb = 0;
+		List<Integer> updatedIds = new ArrayList<Integer>();
+		int lastId = 0;
+		List<Object[]> page;
+		do {
+			page = operationDao.getUncategorized(lastId, PAGE_SIZE);
+			
+			//grouping the operations by matched category
+			Map<Integer, List<Integer>> idsByCat = new HashMap<Integer, List<Integer>>();
+			for (Object[] op : page) {
+				lastId = (Integer) op[0];
+				Integer catId = m.match((String) op[1]);
+				if (catId == null) continue;
+				
+				List<Integer> ids = idsByCat.get(catId);
+				if (ids == null) {
+					ids = new ArrayList<Integer>();
+					idsByCat.put(catId, ids);
+				}
+				ids.add(lastId);
+			}
+			
+			for (Map.Entry<Integer, List<Integer>> entry : idsByCat.entrySet()) {
+				nb += operationDao.updateCategory(categoryDao.load(entry.getKey()), entry.getValue());
+				updatedIds.addAll(entry.getValue());
+			}
+		} while (page.size() == PAGE_SIZE);
+		
+		if (!updatedIds.isEmpty()) {
+			List<Date> dates = operationDao.getOperationDates(updatedIds);
+			liveUpdateService.categoriesChanged(dates);
+		}
+		logger.info("{} operations categorized by the rules", nb);
+		return nb;
+	}
+	
+	/**
+	 * Forget the compiled rules, they will be compiled again on the
+	 * next use. Only needed for rules changed without a commit, the
+	 * committed changes are seen through the rules version.
+	 */
+	public synchronized void invalidate() {
+		matcher = null;
+	}
+	
+	/**
+	 * Get the compiled rules, compiling them if the rules have changed.
+	 * @return Matcher of the rules
+	 */
+	private synchronized LabelMatcher<Integer> getMatcher() {
+		//version read before the rules to not keep old rules with a new version
+		long version = dataVersion.get(DataVersion.RULES);
+		if (matcher == null || matcherVersion != version) {
+			LabelMatcher<Integer> m = new LabelMatcher<Integer>();
+			for (CategoryRule rule : categoryRuleDao.getList()) {
+				m.add(rule.getPattern(), rule.getCategory().getCategoryId());
+			}
+			matcher = m;
+			matcherVersion = version;
+		}
+		return matcher;
+	}
+	
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends server-sent events to the open pages.
+ * 
+ * The clients are asynchronous requests registered by the
+ * EventsServlet. A single thread writes the events to all of them,
+ * and a comment every 15 seconds to detect the closed connections.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class EventBroadcaster {
+
+	/** Delay between two heartbeats in milliseconds */
+	private static final long HEARTBEAT = 15000;
+	
+	private static Logger logger = LoggerFactory.getLogger(EventBroadcaster.class);
+	
+	/** Open connections */
+	private final List<AsyncContext> clients = new CopyOnWriteArrayList<AsyncContext>();
+	
+	/** Formatted events waiting to be sent */
+	private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+	
+	private final ObjectMapper mapper = new ObjectMapper();
+	
+	private Thread thread;
+	
+	private volatile boolean running;
+	
+	/**
+	 * Start the thread sending the events.
+	 */
+	@PostConstruct
+	public void start() {
+		running = true;
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				broadcastLoop();
+			}
+		}, "bankit-events");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stop the thread and close the connections.
+	 */
+	@PreDestroy
+	public void stop() {
+		running = false;
+		thread.interrupt();
+		for (AsyncContext client : clients) {
+			close(client);
+		}
+	}
+	
+	/**
+	 * Add a client which receives the next events.
+	 * @param client Asynchronous request of the client
+	 */
+	public void register(final AsyncContext client) {
+		client.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) throws IOException {
+				clients.remove(client);
+			}
+			
+			@Override
+			public void onTimeout(AsyncEvent event) throws IOException {
+				//the browser reconnects itself
+				close(client);
+			}
+			
+			@Override
+			public void onError(AsyncEvent event) throws IOException {
+				close(client);
+			}
+			
+			@Override
+			public void onStartAsync(AsyncEvent event) throws IOException {
+			}
+		});
+		clients.add(client);
+	}
+	
+	/**
+	 * Send an event to all the clients. In a transaction,
+	 * the event is sent only after the commit.
+	 * @param name Name of the event
+	 * @param data Data of the event, sent as JSON
+	 */
+	public void publish(String name, Object data) {
+		final String event;
+		try {
+			event = "event: " + name + "\ndata: " + mapper.writeValueAsString(data) + "\n\n";
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Can't serialize event [" + name + "]", e);
+		}
+		
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					events.offer(event);
+				}
+			});
+		} else {
+			events.offer(event);
+		}
+	}
+	
+	/**
+	 * Get the number of open connections.
+	 * @return Number of clients
+	 */
+	public int getClientCount() {
+		return clients.size();
+	}
+	
+	/**
+	 * Wait for the events and write them to the clients.
+	 */
+	private void broadcastLoop() {
+		while (running) {
+			String event;
+			try {
+				event = events.poll(HEARTBEAT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (event == null) event = ": ping\n\n";
+			
+			for (AsyncContext client : clients) {
+				try {
+					PrintWriter writer = client.getResponse().getWriter();
+					writer.write(event);
+					writer.flush();
+					if (writer.checkError()) close(client);
+				} catch (Exception e) {
+					logger.debug("Event client closed: {}", e.getMessage());
+					close(client);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Remove and complete a client.
+	 * @param client Client to close
+	 */
+	private void close(AsyncContext client) {
+		if (!clients.remove(client)) return;
+		try {
+			client.complete();
+		} catch (IllegalStateException e) {
+			//already completed by the container
+		}
+	}
+	
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Controller;
+
+/**
+ * Service giving access to the continuous recording of the
+ * Java Flight Recorder, started with the webapp when the
+ * <code>flight_recording</code> JNDI entry is true, as set by
+ * the standalone launcher, or from the options. JFR is used
+ * through reflection as it's not available on every JVM.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class FlightRecorderService {
+
+	/** JNDI entry asking for the recording at the start of the webapp */
+	public static final String RECORDING_JNDI = "java:comp/env/flight_recording";
+	
+	/** Name of the BankIt recording */
+	public static final String RECORDING_NAME = "bankit";
+	
+	/** Maximum age of the recorded events in hours */
+	public static final int MAX_AGE_HOURS = 1;
+	
+	/** Maximum size of the recorded events in bytes */
+	public static final long MAX_SIZE = 100L * 1024 * 1024;
+	
+	/** Class logger */
+	private static Logger logger = LoggerFactory.getLogger(FlightRecorderService.class);
+	
+	/**
+	 * Start the recording if the JNDI entry asks for it. It's
+	 * started in another thread to not delay the webapp start.
+	 */
+	@PostConstruct
+	public void init() {
+		if (!isRecordingAsked()) return;
+		Thread recording = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				long start = System.currentTimeMillis();
+				try {
+					if (start()) {
+						logger.info("Flight recording started in {} ms", System.currentTimeMillis() - start);
+					}
+				} catch (IllegalStateException e) {
+					logger.warn("Unable to start the flight recording", e);
+				}
+			}
+		}, "bankit-jfr");
+		recording.setDaemon(true);
+		recording.start();
+	}
+	
+	/**
+	 * @return True if the recording JNDI entry is set to true
+	 */
+	private boolean isRecordingAsked() {
+		try {
+			return Boolean.TRUE.equals(new InitialContext().lookup(RECORDING_JNDI));
+		} catch (NamingException e) {
+			//no entry or no JNDI, as in the tests
+			return false;
+		}
+	}
+	
+	/**
+	 * @return True if JFR is available in this JVM
+	 */
+	public boolean isAvailable() {
+		try {
+			Class<?> recorderClass = Class.forName("jdk.jfr.FlightRecorder");
+			return (Boolean) recorderClass.getMethod("isAvailable").invoke(null);
+		} catch (ClassNotFoundException e) {
+			return false;
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to check JFR", e);
+		}
+	}
+	
+	/**
+	 * Get the BankIt recording if it is running.
+	 * @return jdk.jfr.Recording or null if JFR is not available or not recording
+	 */
+	protected Object getRecording() {
+		if (!isAvailable()) return null;
+		try {
+			Class<?> recorderClass = Class.forName("jdk.jfr.FlightRecorder");
+			Object recorder = recorderClass.getMethod("getFlightRecorder").invoke(null);
+			for (Object recording : (List<?>) recorderClass.getMethod("getRecordings").invoke(recorder)) {
+				if (RECORDING_NAME.equals(call(recording, "getName"))
+						&& "RUNNING".equals(call(recording, "getState").toString())) {
+					return recording;
+				}
+			}
+			return null;
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to list the JFR recordings", e);
+		}
+	}
+	
+	/**
+	 * Get the state of the BankIt recording.
+	 * @return Start time, max age in minutes, max size and size in bytes
+	 * 	of the recording, null if not recording
+	 */
+	public Map<String, Object> getRecordingInfo() {
+		Object recording = getRecording();
+		if (recording == null) return null;
+		
+		Map<String, Object> info = new LinkedHashMap<String, Object>();
+		info.put("startTime", new Date((Long) call(call(recording, "getStartTime"), "toEpochMilli")));
+		Object maxAge = call(recording, "getMaxAge");
+		info.put("maxAge", maxAge == null ? null : call(maxAge, "toMinutes"));
+		info.put("maxSize", call(recording, "getMaxSize"));
+		info.put("size", call(recording, "getSize"));
+		return info;
+	}
+	
+	/**
+	 * Start the BankIt recording with the low overhead "default" settings,
+	 * keeping the last hour of events on disk.
+	 * Does nothing if the recording is already running.
+	 * @return True if the recording is running
+	 */
+	public synchronized boolean start() {
+		if (!isAvailable()) return false;
+		if (getRecording() != null) return true;
+		try {
+			Class<?> configurationClass = Class.forName("jdk.jfr.Configuration");
+			Object configuration = configurationClass.getMethod("getConfiguration", String.class).invoke(null, "default");
+			Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+			Object recording = recordingClass.getConstructor(configurationClass).newInstance(configuration);
+			
+			Class<?> durationClass = Class.forName("java.time.Duration");
+			Object maxAge = durationClass.getMethod("ofHours", long.class).invoke(null, MAX_AGE_HOURS);
+			recordingClass.getMethod("setName", String.class).invoke(recording, RECORDING_NAME);
+			recordingClass.getMethod("setMaxAge", durationClass).invoke(recording, maxAge);
+			recordingClass.getMethod("setMaxSize", long.class).invoke(recording, MAX_SIZE);
+			recordingClass.getMethod("setToDisk", boolean.class).invoke(recording, true);
+			recordingClass.getMethod("start").invoke(recording);
+			return true;
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to start the JFR recording", e);
+		}
+	}
+	
+	/**
+	 * Dump the events kept by the BankIt recording.
+	 * @param out Stream where the .jfr file is written
+	 * @return False if nothing is recording
+	 * @throws IOException If the dump failed
+	 */
+	public boolean dump(OutputStream out) throws IOException {
+		Object recording = getRecording();
+		if (recording == null) return false;
+		
+		File file = File.createTempFile("bankit-", ".jfr");
+		try {
+			Class<?> pathClass = Class.forName("java.nio.file.Path");
+			Object path = File.class.getMethod("toPath").invoke(file);
+			recording.getClass().getMethod("dump", pathClass).invoke(recording, path);
+			
+			InputStream in = new FileInputStream(file);
+			try {
+				byte[] buffer = new byte[64 * 1024];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+			return true;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Unable to dump the JFR recording", e);
+		} finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Call a public method without argument.
+	 * @param target Object on which the method is called
+	 * @param methodName Name of the method
+	 * @return Result of the method
+	 */
+	private static Object call(Object target, String methodName) {
+		try {
+			Method method = target.getClass().getMethod(methodName);
+			return method.invoke(target);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to call " + methodName + " on " + target.getClass(), e);
+		}
+	}
+	
+}
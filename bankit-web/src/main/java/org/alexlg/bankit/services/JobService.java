@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.PersistenceException;
+
+import org.alexlg.bankit.dao.JobLockDao;
+import org.alexlg.bankit.dao.JobRunDao;
+import org.alexlg.bankit.db.JobRun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service running the scheduled jobs. A job runs only on the
+ * node which owns its lease lock in the database, so several
+ * instances can share the same database without running
+ * the same job twice. While the job runs, the lease is
+ * extended by a heartbeat and each run is recorded in the history.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class JobService {
+
+	/** Duration of the lease in ms */
+	public static final long LEASE = 5 * 60 * 1000;
+	
+	/** Delay between two lease extensions in ms */
+	public static final long HEARTBEAT = 60 * 1000;
+	
+	@Autowired
+	private JobLockDao jobLockDao;
+	
+	@Autowired
+	private JobRunDao jobRunDao;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	/** Class logger */
+	private static Logger logger = LoggerFactory.getLogger(JobService.class);
+	
+	/** Identifier of this node in the locks */
+	private final String owner = buildOwner();
+	
+	/** Executor extending the leases of running jobs */
+	private final ScheduledExecutorService heartbeatExecutor = 
+			Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "job-heartbeat");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	
+	/**
+	 * Run a job if the lock can be acquired. The job runs in its
+	 * own transaction which is rolled back if the lease has been
+	 * lost during the execution.
+	 * @param name Name of the job
+	 * @param job Job to run
+	 * @return true if the job has run successfully on this node
+	 */
+	public boolean runJob(final String name, final Runnable job) {
+		if (!acquire(name)) {
+			logger.info("Job {} is locked by another node", name);
+			return false;
+		}
+		
+		final int runId = startRun(name);
+		ScheduledFuture<?> heartbeat = heartbeatExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				if (!extend(name)) logger.warn("Lease of job {} lost", name);
+			}
+		}, HEARTBEAT, HEARTBEAT, TimeUnit.MILLISECONDS);
+		
+		boolean success = false;
+		try {
+			success = newTransaction().execute(new TransactionCallback<Boolean>() {
+				@Override
+				public Boolean doInTransaction(TransactionStatus status) {
+					job.run();
+					
+					//another node may have taken the lock if the lease has expired
+					if (!extend(name)) {
+						logger.warn("Lease of job {} lost, rollbacking", name);
+						status.setRollbackOnly();
+						return false;
+					}
+					return true;
+				}
+			});
+		} catch (RuntimeException e) {
+			logger.error("Job " + name + " failed", e);
+		} finally {
+			heartbeat.cancel(false);
+			endRun(runId, success);
+			release(name);
+		}
+		
+		return success;
+	}
+	
+	/**
+	 * Get the date of the last successful run of a job.
+	 * @param name Name of the job
+	 * @return Start date of the last successful run or null if none
+	 */
+	public Date getLastSuccess(final String name) {
+		return newTransaction().execute(new TransactionCallback<Date>() {
+			@Override
+			public Date doInTransaction(TransactionStatus status) {
+				JobRun run = jobRunDao.getLastSuccess(name);
+				if (run != null) return run.getStartDate();
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Stop the heartbeat thread.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		heartbeatExecutor.shutdownNow();
+	}
+	
+	/**
+	 * Try to acquire the lock of a job in a new transaction.
+	 * @param name Name of the job
+	 * @return true if acquired
+	 */
+	private boolean acquire(final String name) {
+		try {
+			return newTransaction().execute(new TransactionCallback<Boolean>() {
+				@Override
+				public Boolean doInTransaction(TransactionStatus status) {
+					Date now = new Date();
+					return jobLockDao.acquire(name, owner, now, new Date(now.getTime() + LEASE));
+				}
+			});
+		} catch (PersistenceException e) {
+			//lock created at the same time by another node
+			logger.debug("Lock creation of job " + name + " failed", e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Extend the lease of the lock in the current transaction or a new one.
+	 * @param name Name of the job
+	 * @return true if the lock is still owned
+	 */
+	private boolean extend(final String name) {
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		return template.execute(new TransactionCallback<Boolean>() {
+			@Override
+			public Boolean doInTransaction(TransactionStatus status) {
+				Date now = new Date();
+				return jobLockDao.extend(name, owner, now, new Date(now.getTime() + LEASE));
+			}
+		});
+	}
+	
+	/**
+	 * Release the lock of a job in a new transaction.
+	 * @param name Name of the job
+	 */
+	private void release(final String name) {
+		newTransaction().execute(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(TransactionStatus status) {
+				jobLockDao.release(name, owner, new Date());
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Record the start of a job run.
+	 * @param name Name of the job
+	 * @return Id of the run
+	 */
+	private int startRun(final String name) {
+		return newTransaction().execute(new TransactionCallback<Integer>() {
+			@Override
+			public Integer doInTransaction(TransactionStatus status) {
+				JobRun run = new JobRun();
+				run.setName(name);
+				run.setOwner(owner);
+				run.setStartDate(new Date());
+				run.setStatus(JobRun.Status.RUNNING);
+				jobRunDao.insert(run);
+				return run.getRunId();
+			}
+		});
+	}
+	
+	/**
+	 * Record the end of a job run.
+	 * @param runId Id of the run
+	 * @param success true if the job has succeeded
+	 */
+	private void endRun(final int runId, final boolean success) {
+		newTransaction().execute(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(TransactionStatus status) {
+				JobRun run = jobRunDao.get(runId);
+				run.setEndDate(new Date());
+				run.setStatus(success ? JobRun.Status.SUCCESS : JobRun.Status.FAILED);
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Create a template running the callback in a new transaction.
+	 * @return Transaction template
+	 */
+	private TransactionTemplate newTransaction() {
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return template;
+	}
+	
+	/**
+	 * Build the identifier of this node from the host name.
+	 * @return Node identifier
+	 */
+	private static String buildOwner() {
+		String host;
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			host = "unknown";
+		}
+		return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+	}
+	
+	/**
+	 * Get the identifier of this node.
+	 * @return Node identifier
+	 */
+	public String getOwner() {
+		return owner;
+	}
+	
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alexlg.bankit.dao.CategoryDao;
+import org.alexlg.bankit.dao.OperationDao;
+import org.alexlg.bankit.db.Category;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service which pushes to the open pages the values changed
+ * by a write, so they are updated without reloading.
+ * 
+ * Events sent:
+ * - "category": summary of the categories for a month
+ * - "categories": categories deleted or merged, the pages have to be reloaded
+ * - "balance": current balance and planned operations not debited
+ * Amounts are sent as strings to be displayed like in the page.
+ * The running totals of the operation rows are not sent: a category
+ * change doesn't modify them and a sync inserts rows, so the page
+ * offers to reload instead.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+@Transactional(readOnly=true)
+public class LiveUpdateService {
+
+	@Autowired
+	private OperationDao operationDao;
+	
+	@Autowired
+	private CategoryDao categoryDao;
+	
+	@Autowired
+	private EventBroadcaster eventBroadcaster;
+	
+	/**
+	 * Send the category summary of the month of an operation.
+	 * @param day Day of the operation changed
+	 */
+	public void categoryChanged(Date day) {
+		categoriesChanged(Collections.singletonList(day));
+	}
+	
+	/**
+	 * Send the category summaries of the months of several operations,
+	 * once for each month.
+	 * @param days Days of the operations changed
+	 */
+	public void categoriesChanged(Collection<Date> days) {
+		Set<YearMonth> months = new LinkedHashSet<YearMonth>();
+		for (Date day : days) {
+			LocalDate date = new LocalDate(day);
+			months.add(new YearMonth(date.getYear(), date.getMonthOfYear()));
+		}
+		
+		for (YearMonth month : months) {
+			List<Map<String, Object>> cells = new ArrayList<Map<String, Object>>();
+			for (Map.Entry<Category, BigDecimal> summary : categoryDao.getMonthSummary(month).entrySet()) {
+				Map<String, Object> cell = new HashMap<String, Object>(4);
+				cell.put("id", summary.getKey().getCategoryId());
+				cell.put("name", summary.getKey().getName());
+				cell.put("amount", summary.getValue().toString());
+				cells.add(cell);
+			}
+			
+			Map<String, Object> data = new HashMap<String, Object>(2);
+			data.put("month", month.toString("yyyy-MM"));
+			data.put("categories", cells);
+			eventBroadcaster.publish("category", data);
+		}
+	}
+	
+	/**
+	 * Tell the open pages that categories were deleted or merged.
+	 * All the months of these categories are changed, so the pages
+	 * are reloaded instead of sending a summary for each month.
+	 */
+	public void categoriesReplaced() {
+		eventBroadcaster.publish("categories", Collections.emptyMap());
+	}
+	
+	/**
+	 * Send the current balance after new operations.
+	 * @param nbNewOps Number of operations imported
+	 */
+	public void balanceChanged(int nbNewOps) {
+		LocalDate today = new LocalDate();
+		BigDecimal current = operationDao.getBalanceHistory(today.plusDays(1));
+		if (current == null) current = BigDecimal.ZERO;
+		BigDecimal plannedWaiting = operationDao.getPlannedWaiting(today);
+		if (plannedWaiting == null) plannedWaiting = BigDecimal.ZERO;
+		
+		Map<String, Object> data = new HashMap<String, Object>(4);
+		data.put("current", current.toString());
+		data.put("plannedWaiting", plannedWaiting.toString());
+		data.put("currentWaiting", current.add(plannedWaiting).toString());
+		data.put("newOps", nbNewOps);
+		eventBroadcaster.publish("balance", data);
+	}
+	
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.alexlg.bankit.metrics.ByteHistogram;
+import org.alexlg.bankit.metrics.Counter;
+import org.alexlg.bankit.metrics.Histogram;
+import org.alexlg.bankit.metrics.Timer;
+import org.springframework.stereotype.Controller;
+
+/**
+ * Registry of the metrics of the application : the counters and the
+ * histograms, grouped by name and identified by their labels.
+ * The metrics are written in the text format of Prometheus.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class MetricsService {
+
+	/** Families of metrics by name */
+	private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<String, Family>();
+	
+	/**
+	 * Get a counter, created on the first call.
+	 * @param name Name of the counter, ending with _total
+	 * @param help Description of the counter
+	 * @param labels Names and values of the labels, alternated
+	 * @return Counter
+	 */
+	public Counter counter(String name, String help, String... labels) {
+		return family(name, help, "counter").get(labels, Counter.class);
+	}
+	
+	/**
+	 * Get a timer, created on the first call.
+	 * @param name Name of the timer, ending with _seconds
+	 * @param help Description of the timer
+	 * @param labels Names and values of the labels, alternated
+	 * @return Timer
+	 */
+	public Timer timer(String name, String help, String... labels) {
+		return family(name, help, "histogram").get(labels, Timer.class);
+	}
+	
+	/**
+	 * Get a histogram of memory sizes, created on the first call.
+	 * @param name Name of the histogram, ending with _bytes
+	 * @param help Description of the histogram
+	 * @param labels Names and values of the labels, alternated
+	 * @return Histogram
+	 */
+	public ByteHistogram byteHistogram(String name, String help, String... labels) {
+		return family(name, help, "histogram").get(labels, ByteHistogram.class);
+	}
+	
+	/**
+	 * Get the families of metrics sorted by name.
+	 * @return Families
+	 */
+	public List<Family> getFamilies() {
+		List<Family> list = new ArrayList<Family>(families.values());
+		Collections.sort(list);
+		return list;
+	}
+	
+	/**
+	 * Write all the metrics in the text format of Prometheus.
+	 * @param writer Writer of the response
+	 * @throws IOException If the writing failed
+	 */
+	public void write(Writer writer) throws IOException {
+		for (Family family : getFamilies()) {
+			writer.write("# HELP " + family.name + " " + family.help + "\n");
+			writer.write("# TYPE " + family.name + " " + family.type + "\n");
+			
+			for (Map.Entry<String, Object> entry : family.getMetrics().entrySet()) {
+				String labels = entry.getKey();
+				if (entry.getValue() instanceof Counter) {
+					writeSample(writer, family.name, labels, Long.toString(((Counter) entry.getValue()).getValue()));
+				} else {
+					Histogram histogram = (Histogram) entry.getValue();
+					double[] buckets = histogram.getBuckets();
+					String prefix = labels.isEmpty() ? "" : labels + ",";
+					for (int i = 0; i < buckets.length; i++) {
+						writeSample(writer, family.name + "_bucket", prefix + "le=\"" + buckets[i] + "\"",
+								Long.toString(histogram.getCumulativeCount(i)));
+					}
+					//count of the buckets, consistent with the last bucket
+					String count = Long.toString(histogram.getCumulativeCount(buckets.length));
+					writeSample(writer, family.name + "_bucket", prefix + "le=\"+Inf\"", count);
+					writeSample(writer, family.name + "_sum", labels, Double.toString(histogram.getSum()));
+					writeSample(writer, family.name + "_count", labels, count);
+				}
+			}
+		}
+	}
+	
+	private void writeSample(Writer writer, String name, String labels, String value) throws IOException {
+		writer.write(name);
+		if (!labels.isEmpty()) writer.write("{" + labels + "}");
+		writer.write(" " + value + "\n");
+	}
+	
+	/**
+	 * Get a family, created on the first call.
+	 * @param name Name of the family
+	 * @param help Description of the family
+	 * @param type Prometheus type
+	 * @return Family of the name
+	 */
+	private Family family(String name, String help, String type) {
+		Family family = families.get(name);
+		if (family == null) {
+			Family created = new Family(name, help, type);
+			family = families.putIfAbsent(name, created);
+			if (family == null) family = created;
+		}
+		if (!family.type.equals(type)) {
+			throw new IllegalArgumentException("Metric [" + name + "] is a " + family.type);
+		}
+		return family;
+	}
+	
+	/**
+	 * Metrics with the same name and different labels.
+	 */
+	public static class Family implements Comparable<Family> {
+		
+		private final String name;
+		
+		private final String help;
+		
+		/** Prometheus type : counter or histogram */
+		private final String type;
+		
+		/** Metrics by their labels written as name="value",... */
+		private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<String, Object>();
+		
+		private Family(String name, String help, String type) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+		}
+		
+		/**
+		 * Get a metric, created on the first call.
+		 * @param labels Names and values of the labels
+		 * @param metricClass Class of the metric
+		 * @return Metric of the labels
+		 */
+		private <T> T get(String[] labels, Class<T> metricClass) {
+			String key = formatLabels(labels);
+			Object metric = metrics.get(key);
+			if (metric == null) {
+				try {
+					Object created = metricClass.newInstance();
+					metric = metrics.putIfAbsent(key, created);
+					if (metric == null) metric = created;
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return metricClass.cast(metric);
+		}
+		
+		/**
+		 * Write the labels in the Prometheus format.
+		 * @param labels Names and values of the labels
+		 * @return Labels separated by commas
+		 */
+		private static String formatLabels(String[] labels) {
+			if (labels.length % 2 != 0) throw new IllegalArgumentException("A label has no value");
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < labels.length; i += 2) {
+				if (i > 0) sb.append(',');
+				sb.append(labels[i]).append("=\"");
+				for (char c : labels[i + 1].toCharArray()) {
+					if (c == '\\' || c == '"') sb.append('\\').append(c);
+					else if (c == '\n') sb.append("\\n");
+					else sb.append(c);
+				}
+				sb.append('"');
+			}
+			return sb.toString();
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public String getHelp() {
+			return help;
+		}
+		
+		public String getType() {
+			return type;
+		}
+		
+		/**
+		 * Get the metrics sorted by labels.
+		 * @return Counters or histograms by labels
+		 */
+		public SortedMap<String, Object> getMetrics() {
+			return new TreeMap<String, Object>(metrics);
+		}
+		
+		@Override
+		public int compareTo(Family other) {
+			return name.compareTo(other.name);
+		}
+	}
+	
+}
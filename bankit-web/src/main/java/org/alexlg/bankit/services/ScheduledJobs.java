@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import java.util.Date;
+import java.util.concurrent.Executor;
+
+import javax.annotation.PostConstruct;
+
+import org.alexlg.bankit.boot.BootTimeline;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Controller;
+
+/**
+ * Scheduled jobs of the application. Each job is run through
+ * the {@link JobService} so only one node runs it at a time.
+ * 
+ * @author Alexandre Thomazo
+ */
+@Controller
+public class ScheduledJobs {
+
+	/** Name of the job materializing the costs */
+	public static final String MATERIALIZE_COSTS_JOB = "materializeCosts";
+	
+	@Autowired
+	private JobService jobService;
+	
+	@Autowired
+	private SyncService syncService;
+	
+	/** Executor of the catch-up, it's run synchronously without it */
+	@Autowired(required=false)
+	@Qualifier("myExecutor")
+	private Executor executor;
+	
+	/**
+	 * Materialize the costs into operations.
+	 * It runs every day at midnight and 5 seconds.
+	 */
+	@Scheduled(cron="5 0 0 * * *")
+	public void materializeCosts() {
+		jobService.runJob(MATERIALIZE_COSTS_JOB, new Runnable() {
+			@Override
+			public void run() {
+				syncService.materializeCostsIntoOperation();
+			}
+		});
+	}
+	
+	/**
+	 * Run the jobs at the start of the application if
+	 * their last successful run is before the current day,
+	 * for example when all the nodes were stopped at midnight.
+	 * The jobs are run by the executor to not delay the startup.
+	 */
+	@PostConstruct
+	public void startCatchUp() {
+		Runnable catchUp = new Runnable() {
+			@Override
+			public void run() {
+				BootTimeline.Phase phase = BootTimeline.get().begin("catch-up");
+				try {
+					catchUp();
+				} finally {
+					phase.end();
+				}
+			}
+		};
+		if (executor != null) {
+			executor.execute(catchUp);
+		} else {
+			catchUp.run();
+		}
+	}
+	
+	/**
+	 * Run the jobs whose last successful run is before the current day.
+	 */
+	public void catchUp() {
+		Date today = new LocalDate().toDate();
+		Date lastRun = jobService.getLastSuccess(MATERIALIZE_COSTS_JOB);
+		if (lastRun == null || lastRun.before(today)) {
+			materializeCosts();
+		}
+	}
+	
+}
@@ -22,12 +22,13 @@ import org.alexlg.bankit.dao.CostDao;
 import org.alexlg.bankit.dao.OperationDao;
 import org.alexlg.bankit.db.Cost;
 import org.alexlg.bankit.db.Operation;
+import org.alexlg.bankit.metrics.FlightEvent;
+import org.alexlg.bankit.recurrence.EpochDays;
+import org.alexlg.bankit.recurrence.RecurrenceRule;
 import org.joda.time.LocalDate;
-import org.joda.time.Months;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -70,9 +71,25 @@ public class SyncService {
 	@Autowired
 	private OptionsService optionsService;
 	
+	@Autowired
+	private CategorizeService categorizeService;
+	
+	@Autowired
+	private MetricsService metricsService;
+	
 	/** Class logger */
 	private static Logger logger = LoggerFactory.getLogger(SyncService.class);
 	
+	//flight recorder events
+	private static final FlightEvent.Type MATERIALIZE_EVENT = new FlightEvent.Type(
+			"org.alexlg.bankit.CostMaterialization", "Cost Materialization", "costs", "operations");
+	private static final FlightEvent.Type RECONCILIATION_EVENT = new FlightEvent.Type(
+			"org.alexlg.bankit.Reconciliation", "Reconciliation", "checked", "matched");
+	private static final FlightEvent.Type QIF_IMPORT_EVENT = new FlightEvent.Type(
+			"org.alexlg.bankit.QifImport", "QIF Import", "lines", "operations", "inserted");
+	private static final FlightEvent.Type SYNC_EVENT = new FlightEvent.Type(
+			"org.alexlg.bankit.OperationSync", "Operation Sync", "operations", "inserted");
+	
 	/** Date used for testing */
 	private LocalDate endSyncDate = null;
 
@@ -80,12 +97,15 @@ public class SyncService {
 	 * This function take all the costs between
 	 * the last execution to create the associated
 	 * operations in the operation list.
-	 * It runs every day at midnight and 5 seconds
+	 * All the operations are generated first then inserted
+	 * in batches, so a catch-up over several months doesn't
+	 * send one select and one insert per operation.
+	 * It's run every day by {@link ScheduledJobs}.
 	 */
 	@Transactional
-	@Scheduled(cron="5 0 0 * * *")
 	public void materializeCostsIntoOperation() {
 		logger.info("Starting materializeCostsIntoOperation");
+		FlightEvent event = MATERIALIZE_EVENT.begin();
 		
 		//materialize operations 2 days beyond current date
 		LocalDate endDate = getEndSyncDate().plusDays(2);
@@ -99,7 +119,6 @@ public class SyncService {
 		
 		//retrieve costs list
 		List<Cost> costs = null;
-		int nbMonth = 1;
 		
 		if (endDate.getYear() == startDate.getYear()
 				&& endDate.getMonthOfYear() == startDate.getMonthOfYear()) {
@@ -108,48 +127,91 @@ public class SyncService {
 		} else {
 			//getting all costs
 			costs = costDao.getList();
-			
-			//we generate a least for the current month (as nbMonth = 1)
-			//then we add whole months between start and end.
-			nbMonth += Months.monthsBetween(startDate, endDate).getMonths();
-			
-			//as monthsBetween calculate for whole month, if start is for example the 24-09
-			//and the end is the 02-10, monthsBetween will return 0 but we need to have
-			//2 loops, one for september and one for november so we add a month.
-			if (endDate.getDayOfMonth() <= startDate.getDayOfMonth()) {
-				nbMonth++;
-			}
-		}
-		
-		//going through each month and each cost to create the operation
-		for (int m = 0 ; m < nbMonth ; m++) {
-			LocalDate curMonth = startDate.plusMonths(m);
-			int lastDayOfMonth = curMonth.dayOfMonth().getMaximumValue();
-			
-			for (Cost cost : costs) {
-				int costDay = cost.getDay();
-				
-				//if the operation is planned after the last day of month
-				//set it to the last day
-				if (costDay > lastDayOfMonth) costDay = lastDayOfMonth;
-				
-				//creating operation date
-				LocalDate opDate = new LocalDate(curMonth.getYear(), curMonth.getMonthOfYear(), costDay);
-				
-				//check if date is in the date interval before creating op
-				if (opDate.isAfter(startDate) && opDate.compareTo(endDate) <= 0) {
-					Operation op = new Operation();
-					op.setOperationDate(opDate.toDate());
-					op.setLabel(cost.getLabel());
-					op.setPlanned(cost.getAmount());
-					op.setCategory(cost.getCategory());
-					operationDao.save(op);
-				}
-			}
 		}
 		
+		//inserting operations and sync date in the same transaction
+		List<Operation> ops = buildCostOps(costs, startDate, endDate);
+		operationDao.insertBatch(ops);
 		optionsService.set(COST_SYNC_OPT, endDate.toDate());
+		logger.info("materializeCostsIntoOperation created {} operations", ops.size());
+		event.set("costs", costs.size()).set("operations", ops.size()).commit();
+	}
+	
+	/**
+	 * Create the operations of a new cost from the current day
+	 * to the last execution of materializeCostsIntoOperation.
+	 * The following operations will be created by the next executions.
+	 * @param cost New cost
+	 */
+	@Transactional
+	public void materializeCost(Cost cost) {
+		Date endSync = optionsService.getDate(COST_SYNC_OPT);
+		if (endSync == null) return;
+		
+		//operations are created from the current day included
+		LocalDate startDate = getEndSyncDate().minusDays(1);
+		LocalDate endDate = new LocalDate(endSync);
+		if (!endDate.isAfter(startDate)) return;
+		
+		operationDao.insertBatch(buildCostOps(Collections.singletonList(cost), startDate, endDate));
+	}
+	
+	/**
+	 * Report the modification of a cost to the planned operations
+	 * not yet happened. If the recurrence of the cost is the same, the
+	 * operations are updated, otherwise they are created again.
+	 * @param cost Modified cost
+	 * @param previousRule Recurrence rule of the cost before the modification
+	 */
+	@Transactional
+	public void updateCostOperations(Cost cost, RecurrenceRule previousRule) {
+		Date today = getEndSyncDate().toDate();
+		if (cost.getRecurrenceRule().equals(previousRule)) {
+			operationDao.updatePlannedFromCost(cost, today);
+		} else {
+			operationDao.deletePlannedFromCost(cost, today);
+			materializeCost(cost);
+		}
+	}
+	
+	/**
+	 * Delete the planned operations not yet happened of a cost
+	 * and unlink the other ones, before the deletion of the cost.
+	 * @param cost Cost which will be deleted
+	 */
+	@Transactional
+	public void retractCost(Cost cost) {
+		operationDao.deletePlannedFromCost(cost, getEndSyncDate().toDate());
+		operationDao.unlinkCost(cost);
+	}
+	
+	/**
+	 * Create the operations of the costs between two dates.
+	 * @param costs Costs to create
+	 * @param startDate Date from which create the operations, excluded
+	 * @param endDate Date to which create the operations, included
+	 * @return Operations created sorted by date, not inserted
+	 */
+	private List<Operation> buildCostOps(List<Cost> costs, LocalDate startDate, LocalDate endDate) {
+		int from = EpochDays.of(startDate) + 1;
+		int to = EpochDays.of(endDate);
 		
+		//going through the occurrences of each cost to create the operation
+		List<Operation> ops = new ArrayList<Operation>();
+		for (Cost cost : costs) {
+			RecurrenceRule.Occurrences occurrences = cost.getRecurrenceRule().occurrences(from, to);
+			while (occurrences.hasNext()) {
+				Operation op = new Operation();
+				op.setOperationDate(EpochDays.toDate(occurrences.next()));
+				op.setLabel(cost.getLabel());
+				op.setPlanned(cost.getAmount());
+				op.setCategory(cost.getCategory());
+				op.setCost(cost);
+				ops.add(op);
+			}
+		}
+		Collections.sort(ops);
+		return ops;
 	}
 
 	/**
@@ -160,17 +222,82 @@ public class SyncService {
 	public void mergeOldPlannedOps() {
 		//retrieve all old planned ops
 		List<Operation> oldOps = operationDao.getOldPlannedOps(getEndSyncDate());
+		mergePlannedOps(oldOps, null);
+	}
+	
+	/**
+	 * Try to merge the old planned operations with no amount
+	 * with the operations just imported. Only the planned operations
+	 * within 2 days of the imported operations are checked, so the
+	 * cost of the merge depends on the number of imported operations
+	 * and not on the number of planned operations waiting.
+	 * @param newOpIds Ids of the imported operations
+	 */
+	public void mergeOldPlannedOps(List<Integer> newOpIds) {
+		if (newOpIds == null || newOpIds.isEmpty()) return;
+		
+		//retrieve old planned ops around the new ones
+		List<Operation> oldOps = operationDao.getOldPlannedOps(getEndSyncDate(), newOpIds);
+		mergePlannedOps(oldOps, newOpIds);
+	}
+	
+	/**
+	 * Merge planned operations with the matching real operations.
+	 * @param plannedOps Planned operations to merge
+	 * @param opIds Ids of the real operations which can be matched,
+	 * 		null for all operations
+	 */
+	private void mergePlannedOps(List<Operation> plannedOps, List<Integer> opIds) {
+		FlightEvent event = RECONCILIATION_EVENT.begin();
+		//the imported operations are loaded once and matched in memory
+		List<Operation> realOps = null;
+		if (opIds != null && !plannedOps.isEmpty()) realOps = operationDao.getOperations(opIds);
 		
-		for (Operation oldOp : oldOps) {
+		int nbMatches = 0;
+		for (Operation oldOp : plannedOps) {
 			//checking if a matching operation exists
-			Operation matchedOp = operationDao.matchRealOp(oldOp);
+			Operation matchedOp = realOps == null ? operationDao.matchRealOp(oldOp) : matchRealOp(oldOp, realOps);
 			
 			if (matchedOp != null) {
 				matchedOp.setPlanned(oldOp.getPlanned());
 				matchedOp.setCategory(oldOp.getCategory());
 				operationDao.delete(oldOp);
+				nbMatches++;
 			}
 		}
+		metricsService.counter("bankit_reconciliation_checks_total",
+				"Planned operations checked against the real operations").add(plannedOps.size());
+		metricsService.counter("bankit_reconciliation_matches_total",
+				"Planned operations merged with a real operation").add(nbMatches);
+		event.set("checked", plannedOps.size()).set("matched", nbMatches).commit();
+	}
+	
+	/**
+	 * Find the real operation of a planned operation among a list of operations,
+	 * with the rules of {@link OperationDao#matchRealOp(Operation)}. The label is
+	 * compared ignoring the case, like the MySQL collation.
+	 * @param plannedOp Planned operation to check
+	 * @param realOps Operations which can be matched
+	 * @return The first operation matching or null if none matches
+	 */
+	private Operation matchRealOp(Operation plannedOp, List<Operation> realOps) {
+		LocalDate plannedDate = new LocalDate(plannedOp.getOperationDate());
+		LocalDate start = plannedDate.minusDays(2);
+		LocalDate end = plannedDate.plusDays(2);
+		String label = plannedOp.getLabel() == null ? null : plannedOp.getLabel().toLowerCase();
+		
+		for (Operation realOp : realOps) {
+			if (realOp.getPlanned() != null) continue;
+			LocalDate date = new LocalDate(realOp.getOperationDate());
+			if (date.isBefore(start) || date.isAfter(end)) continue;
+			
+			boolean sameAmount = realOp.getAmount() != null && plannedOp.getPlanned() != null
+					&& realOp.getAmount().compareTo(plannedOp.getPlanned()) == 0;
+			boolean sameLabel = label != null && realOp.getLabel() != null
+					&& realOp.getLabel().toLowerCase().contains(label);
+			if (sameAmount || sameLabel) return realOp;
+		}
+		return null;
 	}
 	
 	/**
@@ -181,6 +308,7 @@ public class SyncService {
 	 * @throws IOException If the reading of the file failed
 	 */
 	public List<Integer> readQifAndInsertOp(InputStream qif) throws IOException {
+		FlightEvent event = QIF_IMPORT_EVENT.begin();
 		SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yy");
 		
 		BufferedReader reader = new BufferedReader(new InputStreamReader(qif, "cp1252"));
@@ -232,42 +360,48 @@ public class SyncService {
 		}
 		
 		//syncing all read operations
-		syncOpList(ops);
-		
-		//getting ids
-		List<Integer> ids = new LinkedList<Integer>();
-		for (Operation op : ops) {
-			int opId = op.getOperationId();
-			if (opId != 0) {
-				ids.add(opId);
-			}
-		}
-
+		List<Integer> ids = syncOpList(ops);
+		event.set("lines", lineNum).set("operations", ops.size()).set("inserted", ids.size()).commit();
 		return ids;
 	}
 	
 	/**
 	 * Sync a list of operation with current ones.
+	 * The new operations are categorized by the rules before the insert.
 	 * @param operations Operations to sync.
+	 * @return List of operations id inserted
 	 */
-	public void syncOpList(List<Operation> operations) {
-		if (operations == null) return;
+	public List<Integer> syncOpList(List<Operation> operations) {
+		List<Integer> ids = new ArrayList<Integer>();
+		if (operations == null) return ids;
+		FlightEvent event = SYNC_EVENT.begin();
 		Date startSync = optionsService.getDate(OP_SYNC_OPT);
 		Date maxDate = null; //older operation date
 		
+		List<Operation> newOps = new ArrayList<Operation>();
 		for (Operation op : operations) {
 			Date opDate = op.getOperationDate();
 			
 			if (startSync == null || opDate.after(startSync)) {
-				operationDao.insert(op);
+				newOps.add(op);
 				
 				//checking if operation if after maxDate
 				if (maxDate == null || opDate.after(maxDate)) maxDate = opDate;
 			}
 		}
 		
+		categorizeService.categorize(newOps);
+		for (Operation op : newOps) {
+			operationDao.insert(op);
+			ids.add(op.getOperationId());
+		}
+		
 		//setting last execution
 		if (maxDate != null) optionsService.set(OP_SYNC_OPT, maxDate);
+		
+		metricsService.counter("bankit_import_rows_total", "Operations imported from the bank").add(ids.size());
+		event.set("operations", operations.size()).set("inserted", ids.size()).commit();
+		return ids;
 	}
 	
 	/**
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.alexlg.bankit.services.EventBroadcaster;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+
+/**
+ * Servlet which opens a server-sent events stream.
+ * The request is kept open asynchronously and handed
+ * to the EventBroadcaster, no thread waits for it.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class EventsServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+	
+	/** Duration of a connection in milliseconds, the browser reconnects after */
+	private static final long TIMEOUT = 10 * 60 * 1000;
+	
+	/** Delay before the browser reconnects in milliseconds */
+	private static final int RETRY = 3000;
+	
+	private EventBroadcaster eventBroadcaster;
+	
+	@Override
+	public void init() throws ServletException {
+		eventBroadcaster = WebApplicationContextUtils
+				.getRequiredWebApplicationContext(getServletContext())
+				.getBean(EventBroadcaster.class);
+	}
+	
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		response.setContentType("text/event-stream");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		
+		//headers sent now, the events come later
+		PrintWriter writer = response.getWriter();
+		writer.write("retry: " + RETRY + "\n\n");
+		writer.flush();
+		
+		AsyncContext asyncContext = request.startAsync();
+		asyncContext.setTimeout(TIMEOUT);
+		eventBroadcaster.register(asyncContext);
+	}
+	
+}
@@ -30,19 +30,12 @@
 		<meta http-equiv="Content-Type" content="text/HTML; charset=UTF-8" />
 		<meta name="viewport" content="width=device-width, initial-scale=1.0">
 		
-		<link href="<c:url value='/static/css/bootstrap.css'/>" type="text/css" rel="stylesheet" />
-		<link href="<c:url value='/static/css/style.css'/>" type="text/css" rel="stylesheet" />
-		<link href="<c:url value='/static/css/bootstrap-responsive.css'/>" type="text/css" rel="stylesheet" />
+		<link href="<c:url value='${assetsUrl}/css/main.css'/>" type="text/css" rel="stylesheet" />
 
 		<script type="text/javascript">var $ctx_path="<c:url value='/'/>";</script>
-		<script src="<c:url value='/static/js/jquery-1.8.1.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/bootstrap.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/mootools.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/mootools-more.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/util.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/update.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/main.js'/>" type="text/javascript"></script>
 		<c:if test="${standalone}">
-		<script src="<c:url value='/static/js/shutdown.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/shutdown.js'/>" type="text/javascript"></script>
 		</c:if>
 		<decorator:head />
 	</head>
@@ -78,7 +71,7 @@
 		<div id="message">
 			<div class="loading" id="loading" style="visibility: hidden;">
 				Chargement...<br /> 
-				<img id="loading_bar" src="<c:url value='/static/img/loading_bar.png'/>" />
+				<img id="loading_bar" src="<c:url value='${assetsUrl}/img/loading_bar.png'/>" />
 			</div>
 	
 			<div class="error" id="error" style="visibility: hidden;">
@@ -38,6 +38,10 @@
 						<li class="nav-header">Options</li>
 						<li class="${page == 'updates' ? 'active' : ''}"><a href="<c:url value='/options/updates' />">Mises à jour</a></li>
                         <li class="${page == 'category' ? 'active' : ''}"><a href="<c:url value='/options/category' />">Catégories</a></li>
+                        <li class="${page == 'rules' ? 'active' : ''}"><a href="<c:url value='/options/rules' />">Règles</a></li>
+                        <li class="${page == 'metrics' ? 'active' : ''}"><a href="<c:url value='/options/metrics' />">Mesures</a></li>
+                        <li class="${page == 'stats' ? 'active' : ''}"><a href="<c:url value='/options/stats' />">Statistiques</a></li>
+                        <li class="${page == 'recording' ? 'active' : ''}"><a href="<c:url value='/options/recording' />">Profilage</a></li>
 					</ul>
 				</div>
 			</div>
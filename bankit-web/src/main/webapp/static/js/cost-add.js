@@ -21,6 +21,9 @@ $(document).ready(function() {
 	    rules: {
 	    	day: {
 	    		range: [1, 31]
+	    	},
+	    	interval: {
+	    		min: 1
 	    	}
 	    },
 		
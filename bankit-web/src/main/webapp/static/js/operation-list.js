@@ -16,10 +16,20 @@
  * You should have received a copy of the GNU General Public License
  * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
  */
+/** True if the page is updated by the server events */
+var $events = false;
+
 $(document).ready(function() {
 	$('*[title]').tooltip({placement: 'bottom'});
 	
-	document.getElements('select.cat_select').addEvent('change', saveCategory);
+	document.getElements('select.cat_select').each(function(select) {
+		select.store('saved', select.get('value'));
+	}).addEvent('change', saveCategory);
+	//changes waiting when leaving the page
+	window.addEvent('beforeunload', function() {
+		if ($saveTimer) sendCategories(true);
+	});
+	$events = listenEvents();
 
 	Locale.use('fr-FR');
 	new Timeframe({
@@ -34,35 +44,147 @@ $(document).ready(function() {
 	});
 });
 
+/** Delay in ms without change before saving the categories */
+var SAVE_CATEGORY_DELAY = 800;
+
+/** Categories changed and not sent yet, by operation id */
+var $pendingCats = {};
+
+/** Timer of the next save */
+var $saveTimer = null;
+
 /**
- * Call the ajax to save the category for an operation
+ * Queue the new category of an operation, the changes
+ * are sent together once the user stops changing them.
  */
 function saveCategory() {
-	var cat_id = this.get('value'),
-		op_id = this.get('id').substring(4);
+	$pendingCats[this.get('id').substring(4)] = this;
 	
-	$loading(true);
+	clearTimeout($saveTimer);
+	$saveTimer = sendCategories.delay(SAVE_CATEGORY_DELAY);
+}
+
+/**
+ * Send the queued categories in one request.
+ * @param sync True to wait for the end of the request
+ */
+function sendCategories(sync) {
+	var selects = $pendingCats,
+		changes = [];
+	$pendingCats = {};
+	$saveTimer = null;
 	
+	Object.each(selects, function(select, opId) {
+		changes.push({op: opId.toInt(), cat: select.get('value').toInt()});
+	});
+	if (changes.length == 0) return;
+	
+	$loading(true);
 	new Request.JSON({
-		url: $ctx_path + 'account/update_cat.json',
-		onSuccess: saveCategoryDisp.bind(this),
-		onFailure: saveCategoryDisp.bind(this)
-	}).post({cat: cat_id, op: op_id});
+		url: $ctx_path + 'account/update_cats.json',
+		async: !sync,
+		urlEncoded: false,
+		headers: {'Content-Type': 'application/json'},
+		onSuccess: function(res) {
+			saveCategoriesDisp(res, selects);
+		},
+		onFailure: function() {
+			saveCategoriesDisp({}, selects);
+		}
+	}).send(JSON.encode(changes));
 }
 
 /**
- * Display the return saveCategory ajax call
+ * Display the return of the categories save.
  * @param res Return from the server
+ * @param selects Selects of the operations sent, by operation id
  */
-function saveCategoryDisp(res) {
+function saveCategoriesDisp(res, selects) {
 	$loading(false);
 	
 	if (res.isOk) {
 		showConfirm("Enregistré");
-		//TODO do something better to update Category summary
-		document.location.reload();
+		Object.each(selects, function(select) {
+			select.store('saved', select.get('value'));
+		});
+		//the category summary is updated by the server event
+		if (!$events) document.location.reload();
 	} else {
 		showError(res.errorName ? res.errorName :"Impossible de mettre à jour la catégorie");
-		this.selectedIndex = 0;
+		//back to the last saved categories
+		Object.each(selects, function(select) {
+			select.set('value', select.retrieve('saved'));
+		});
 	}
-}
\ No newline at end of file
+}
+
+/**
+ * Listen to the server events to update the page without reloading it.
+ * @return True if the browser supports the server events
+ */
+function listenEvents() {
+	if (!window.EventSource) return false;
+	
+	var source = new EventSource($ctx_path + 'events');
+	source.addEventListener('category', function(e) {
+		updateCategories(JSON.decode(e.data));
+	});
+	source.addEventListener('categories', function(e) {
+		showMessage('info', "Les catégories ont été modifiées, rechargez la page pour les afficher");
+	});
+	//the balance is only displayed on the current month
+	if ($live) {
+		source.addEventListener('balance', function(e) {
+			updateBalance(JSON.decode(e.data));
+		});
+	}
+	return true;
+}
+
+/**
+ * Update the category summary of a month.
+ * @param data Month and amounts by category
+ */
+function updateCategories(data) {
+	var table = document.getElement('table[data-month=' + data.month + ']');
+	if (!table) return;
+	
+	var tbody = table.getElement('tbody'),
+		rows = {},
+		received = {};
+	tbody.getElements('tr').each(function(row) {
+		rows[row.get('data-cat')] = row;
+	});
+	
+	data.categories.each(function(cat) {
+		var row = rows[cat.id];
+		received[cat.id] = true;
+		if (!row) {
+			row = new Element('tr', {'data-cat': cat.id}).adopt(
+				new Element('td', {text: cat.id == -1 ? 'Non catégorisé' : cat.name}),
+				new Element('td', {'class': 'amount'})
+			);
+			tbody.grab(row);
+		}
+		row.getElement('td.amount').set('text', cat.amount);
+	});
+	
+	//categories without operation anymore
+	Object.each(rows, function(row, id) {
+		if (!received[id]) row.destroy();
+	});
+}
+
+/**
+ * Update the current balance after a synchronisation.
+ * @param data Balance values and number of new operations
+ */
+function updateBalance(data) {
+	['current', 'plannedWaiting', 'currentWaiting'].each(function(name) {
+		document.getElements('.live_' + name).set('text', data[name]);
+	});
+	
+	if (data.newOps > 0) {
+		showMessage('info', data.newOps + " nouvelle(s) opération(s), rechargez la page pour les afficher");
+	}
+}
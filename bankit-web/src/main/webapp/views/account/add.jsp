@@ -98,9 +98,8 @@
 		
 		<%-- Displaying JS Code for form validating in modal box --%>
 		<c:if test="${not empty param.js}">
-		<script src="<c:url value='/static/js/form-validate/jquery.validate.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/form-validate/messages_fr.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/form-validate-bootstrap.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/validate.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/form-validate-bootstrap.js'/>" type="text/javascript"></script>
 		</c:if>
 	</body>
 </html>
\ No newline at end of file
@@ -25,9 +25,8 @@
 <html>
 	<head>
 		<title>Initialisation</title>
-		<script src="<c:url value='/static/js/form-validate/jquery.validate.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/form-validate/messages_fr.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/form-validate-bootstrap.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/validate.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/form-validate-bootstrap.js'/>" type="text/javascript"></script>
 	</head>
 
 	<body>
@@ -25,14 +25,15 @@
 <html>
 	<head>
 		<title>Liste des opérations</title>
-		<link href="<c:url value='/static/css/account.css'/>" type="text/css" rel="stylesheet" />
-		<link href="<c:url value='/static/css/timeframe.css'/>" type="text/css" rel="stylesheet" />
+		<link href="<c:url value='${assetsUrl}/css/account.css'/>" type="text/css" rel="stylesheet" />
+		<link href="<c:url value='${assetsUrl}/css/timeframe.css'/>" type="text/css" rel="stylesheet" />
 		<script type="text/javascript">
 			var $start_day = new Date(${startDay.time}),
-				$end_day = new Date(${endDay.time});
+				$end_day = new Date(${endDay.time}),
+				$live = ${futureOps != null};
 		</script>
-		<script src="<c:url value='/static/js/timeframe.class.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/operation-list.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/timeframe.class.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/operation-list.js'/>" type="text/javascript"></script>
 	</head>
 
 	<body>
@@ -152,7 +153,7 @@
 									<c:otherwise>${periodBalance}</c:otherwise>
 								</c:choose>
 							</td>
-							<td>${current}</td>
+							<td class="live_current">${current}</td>
 							<td></td>
 						</tr>
 					</tbody>
@@ -188,8 +189,8 @@
 							<td></td>
 							<td>solde prévu non débité</td>
 							<td></td>
-							<td>${plannedWaiting}</td>
-							<td>${currentWaiting}</td>
+							<td class="live_plannedWaiting">${plannedWaiting}</td>
+							<td class="live_currentWaiting">${currentWaiting}</td>
 							<td></td>
 						</tr>
 					</tbody>
@@ -259,12 +260,12 @@
 					<tbody>
 						<tr>
 							<td>courant</td>
-							<td>${current}</td>
+							<td class="live_current">${current}</td>
 						</tr>
 						<c:if test="${plannedWaiting != 0}">
 						<tr>
 							<td>prévu en attente</td>
-							<td>${plannedWaiting}</td>
+							<td class="live_plannedWaiting">${plannedWaiting}</td>
 						</tr>
 						</c:if>
 						<c:forEach items="${futureOps}" var="monthOp">
@@ -282,17 +283,18 @@
 				<c:forEach var="catMonth" items="${categoriesSummary}">
 					<h5><fmt:formatDate pattern="MMMMM" value="${catMonth.key}" /></h5>
 					
-					<table class="table table-striped table-hover table-condensed table-summary">
+					<table class="table table-striped table-hover table-condensed table-summary"
+						data-month="<fmt:formatDate pattern='yyyy-MM' value='${catMonth.key}' />">
 						<tbody>
 							<c:forEach var="cat" items="${catMonth.value}">
-							<tr>
+							<tr data-cat="${cat.key.categoryId}">
 								<td>
 									<c:choose>
 										<c:when test="${cat.key.categoryId == -1}">Non catégorisé</c:when>
 										<c:otherwise>${cat.key.name}</c:otherwise>
 									</c:choose>
 								</td>
-								<td>${cat.value}</td>
+								<td class="amount">${cat.value}</td>
 							</tr>
 							</c:forEach>
 						</tbody>
@@ -55,9 +55,59 @@
 
 			<spring:bind path="day">
 			<div class="control-group ${status.error ? 'error' : '' }">
-				<form:label cssClass="control-label" path="day">Jour du mois:</form:label>
+				<form:label cssClass="control-label" path="day">Jour:</form:label>
 				<div class="controls">
 					<form:input placeholder="jour" path="day" cssClass="required digits" />
+					<span class="help-block">du mois, ou de la semaine en hebdomadaire (1 lundi à 7 dimanche)</span>
+					<c:if test="${status.error}">
+						<span class="help-inline">${status.errorMessage}</span>
+					</c:if>
+				</div>
+			</div>
+			</spring:bind>
+
+			<spring:bind path="frequency">
+			<div class="control-group ${status.error ? 'error' : '' }">
+				<form:label cssClass="control-label" path="frequency">Fréquence:</form:label>
+				<div class="controls">
+					<form:select path="frequency" items="${frequencies}" itemLabel="label" />
+					<c:if test="${status.error}">
+						<span class="help-inline">${status.errorMessage}</span>
+					</c:if>
+				</div>
+			</div>
+			</spring:bind>
+
+			<spring:bind path="interval">
+			<div class="control-group ${status.error ? 'error' : '' }">
+				<form:label cssClass="control-label" path="interval">Toutes les:</form:label>
+				<div class="controls">
+					<form:input placeholder="1" path="interval" cssClass="digits" />
+					<span class="help-block">périodes (ex: 3 en mensuelle pour un trimestre)</span>
+					<c:if test="${status.error}">
+						<span class="help-inline">${status.errorMessage}</span>
+					</c:if>
+				</div>
+			</div>
+			</spring:bind>
+
+			<spring:bind path="startDate">
+			<div class="control-group ${status.error ? 'error' : '' }">
+				<form:label cssClass="control-label" path="startDate">Début:</form:label>
+				<div class="controls">
+					<form:input placeholder="jj/mm/aaaa" path="startDate" />
+					<c:if test="${status.error}">
+						<span class="help-inline">${status.errorMessage}</span>
+					</c:if>
+				</div>
+			</div>
+			</spring:bind>
+
+			<spring:bind path="endDate">
+			<div class="control-group ${status.error ? 'error' : '' }">
+				<form:label cssClass="control-label" path="endDate">Fin:</form:label>
+				<div class="controls">
+					<form:input placeholder="jj/mm/aaaa" path="endDate" />
 					<c:if test="${status.error}">
 						<span class="help-inline">${status.errorMessage}</span>
 					</c:if>
@@ -125,9 +175,8 @@
 		
 		<%-- Displaying JS Code for form validating in modal box --%>
 		<c:if test="${not empty param.js}">
-		<script src="<c:url value='/static/js/form-validate/jquery.validate.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/form-validate/messages_fr.js'/>" type="text/javascript"></script>
-		<script src="<c:url value='/static/js/cost-add.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/validate.js'/>" type="text/javascript"></script>
+		<script src="<c:url value='${assetsUrl}/js/cost-add.js'/>" type="text/javascript"></script>
 		</c:if>
 	</body>
 </html>
\ No newline at end of file
@@ -24,8 +24,8 @@
 <html>
 	<head>
 		<title>Liste des charges/revenus</title>
-		<link href="<c:url value='/static/css/cost.css'/>" type="text/css" rel="stylesheet" />
-		<script type="text/javascript" src="<c:url value='/static/js/costs.js' />"></script>
+		<link href="<c:url value='${assetsUrl}/css/cost.css'/>" type="text/css" rel="stylesheet" />
+		<script type="text/javascript" src="<c:url value='${assetsUrl}/js/costs.js' />"></script>
 	</head>
 
 	<body>
@@ -74,6 +74,7 @@
 					<thead>
 						<tr>
 							<th>Jour</th>
+							<th>Fréquence</th>
 							<th>Libellé</th>
 							<th>Catégorie</th>
 							<th>Montant</th>
@@ -85,6 +86,11 @@
 						<c:forEach var="c" items="${costs}">
 						<tr>
 							<td>${c.day}</td>
+							<td>
+								${c.frequency != null ? c.frequency.label : 'Mensuelle'}
+								<c:if test="${c.interval > 1}">(x${c.interval})</c:if>
+								<c:if test="${c.endDate != null}"><small>jusqu'au <fmt:formatDate value="${c.endDate}" pattern="dd/MM/yyyy"/></small></c:if>
+							</td>
 							<td>${c.label}</td>
 							<td>${c.category.name}</td>
 							<td>${c.amount}</td>
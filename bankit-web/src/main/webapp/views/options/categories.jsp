@@ -20,11 +20,12 @@
 --%>
 <%@ page pageEncoding="UTF-8" contentType="text/html; charset=UTF-8" %>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="fn" uri="http://java.sun.com/jsp/jstl/functions" %>
 <html>
 <head>
 	<title>Catégories</title>
-	<link href="<c:url value='/static/css/categories.css'/>" type="text/css" rel="stylesheet" />
-	<script type="text/javascript" src="<c:url value='/static/js/categories.js' />"></script>
+	<link href="<c:url value='${assetsUrl}/css/categories.css'/>" type="text/css" rel="stylesheet" />
+	<script type="text/javascript" src="<c:url value='${assetsUrl}/js/categories.js' />"></script>
 </head>
 
 <body>
@@ -51,6 +52,12 @@
 				<strong>Catégorie supprimée.</strong>
 			</div>
 		</c:if>
+		<c:if test="${merged != null}">
+			<div class="alert alert-success">
+				<button type="button" class="close" data-dismiss="alert">×</button>
+				<strong>Catégories fusionnées.</strong>
+			</div>
+		</c:if>
 	</div>
 </div>
 
@@ -90,6 +97,29 @@
 	</div>
 </div>
 
+<%-- MERGE FORM --%>
+<c:if test="${fn:length(categories) > 1}">
+<div class="row">
+	<div class="span4">
+		<h5>Fusionner deux catégories</h5>
+		<form method="post" action="<c:url value='/options/category/merge'/>">
+			<select name="catId" class="input-medium">
+				<c:forEach var="cat" items="${categories}">
+					<option value="${cat.categoryId}">${cat.name}</option>
+				</c:forEach>
+			</select>
+			dans
+			<select name="intoId" class="input-medium">
+				<c:forEach var="cat" items="${categories}">
+					<option value="${cat.categoryId}">${cat.name}</option>
+				</c:forEach>
+			</select>
+			<button type="submit" class="btn">Fusionner</button>
+		</form>
+	</div>
+</div>
+</c:if>
+
 <%-- ADD MODAL BOX --%>
 <div id="add-modal" class="modal hide fade">
 	<div class="modal-header">
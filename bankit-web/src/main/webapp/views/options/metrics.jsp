@@ -0,0 +1,118 @@
+<%--
+
+    Copyright (C) 2013 Alexandre Thomazo
+
+    This file is part of BankIt.
+
+    BankIt is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    BankIt is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+
+--%>
+<%@ page pageEncoding="UTF-8" contentType="text/html; charset=UTF-8" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
+<html>
+<head>
+	<title>Mesures</title>
+</head>
+
+<body>
+<h4>Mesures</h4>
+<p>Mesures depuis le démarrage de l'application, aussi disponibles au format Prometheus sur
+<a href="<c:url value='/metrics' />"><c:url value='/metrics' /></a>.
+Les centiles sont arrondis à la borne supérieure de leur intervalle.</p>
+
+<c:forEach var="family" items="${families}">
+<div class="row">
+	<div class="span10">
+		<h5>${family.help} <small>${family.name}</small></h5>
+		<table class="table table-striped table-condensed">
+			<c:choose>
+			<c:when test="${family.type == 'counter'}">
+				<thead>
+				<tr>
+					<th>Libellés</th>
+					<th>Valeur</th>
+				</tr>
+				</thead>
+				<tbody>
+				<c:forEach var="metric" items="${family.metrics}">
+					<tr>
+						<td>${metric.key}</td>
+						<td>${metric.value.value}</td>
+					</tr>
+				</c:forEach>
+				</tbody>
+			</c:when>
+			<c:otherwise>
+				<thead>
+				<tr>
+					<th>Libellés</th>
+					<th>Nombre</th>
+					<th>Moyenne</th>
+					<th>p50</th>
+					<th>p99</th>
+					<th>Max</th>
+				</tr>
+				</thead>
+				<tbody>
+				<c:forEach var="metric" items="${family.metrics}">
+					<tr>
+						<td>${metric.key}</td>
+						<td>${metric.value.count}</td>
+						<td><fmt:formatNumber value="${metric.value.mean}" maxFractionDigits="2" /> ${metric.value.unit}</td>
+						<td><fmt:formatNumber value="${metric.value.p50}" maxFractionDigits="2" /> ${metric.value.unit}</td>
+						<td><fmt:formatNumber value="${metric.value.p99}" maxFractionDigits="2" /> ${metric.value.unit}</td>
+						<td><fmt:formatNumber value="${metric.value.max}" maxFractionDigits="2" /> ${metric.value.unit}</td>
+					</tr>
+				</c:forEach>
+				</tbody>
+			</c:otherwise>
+			</c:choose>
+		</table>
+	</div>
+</div>
+</c:forEach>
+
+<%-- Startup --%>
+<c:if test="${!empty bootPhases}">
+<div class="row">
+	<div class="span10">
+		<h5>Démarrage <small>ms depuis le lancement de la JVM</small></h5>
+		<table class="table table-striped table-condensed">
+			<thead>
+			<tr>
+				<th>Phase</th>
+				<th>Thread</th>
+				<th>Début</th>
+				<th>Fin</th>
+				<th>Durée</th>
+			</tr>
+			</thead>
+			<tbody>
+			<c:forEach var="phase" items="${bootPhases}">
+				<tr>
+					<td>${phase.name}</td>
+					<td>${phase.thread}</td>
+					<td>${phase.start}</td>
+					<td><c:choose><c:when test="${phase.running}">en cours</c:when><c:otherwise>${phase.end}</c:otherwise></c:choose></td>
+					<td>${phase.duration} ms</td>
+				</tr>
+			</c:forEach>
+			</tbody>
+		</table>
+	</div>
+</div>
+</c:if>
+</body>
+</html>
@@ -0,0 +1,55 @@
+<%--
+
+    Copyright (C) 2012 Alexandre Thomazo
+
+    This file is part of BankIt.
+
+    BankIt is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    BankIt is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+
+--%>
+<%@ page pageEncoding="UTF-8" contentType="text/html; charset=UTF-8" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
+<html>
+<head>
+	<title>Profilage</title>
+</head>
+
+<body>
+<h4>Profilage</h4>
+<c:choose>
+<c:when test="${!available}">
+<p>Java Flight Recorder n'est pas disponible dans cette JVM.</p>
+</c:when>
+<c:when test="${empty recording}">
+<p>Aucun enregistrement Java Flight Recorder en cours.
+L'enregistrement garde les événements de la dernière heure avec un faible surcoût.</p>
+<form method="post" action="<c:url value='/options/recording/start' />">
+	<button type="submit" class="btn btn-primary">Démarrer l'enregistrement</button>
+</form>
+</c:when>
+<c:otherwise>
+<p>Un enregistrement Java Flight Recorder est en cours. Le fichier téléchargé contient les événements
+récents de la JVM et de BankIt (import, rapprochement, prévisions, liste des opérations), à ouvrir
+avec JDK Mission Control.</p>
+<table class="table table-striped table-condensed">
+	<tr><td>Démarré le</td><td><fmt:formatDate value="${recording.startTime}" pattern="dd/MM/yyyy HH:mm:ss" /></td></tr>
+	<tr><td>Durée conservée</td><td>${recording.maxAge} min</td></tr>
+	<tr><td>Taille maximale</td><td><fmt:formatNumber value="${recording.maxSize / 1048576}" maxFractionDigits="0" /> Mo</td></tr>
+</table>
+<a class="btn btn-primary" href="<c:url value='/options/recording/dump' />"><i class="icon-download-alt icon-white"></i> Télécharger</a>
+</c:otherwise>
+</c:choose>
+</body>
+</html>
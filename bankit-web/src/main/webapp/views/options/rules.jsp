@@ -0,0 +1,138 @@
+<%--
+
+    Copyright (C) 2013 Alexandre Thomazo
+
+    This file is part of BankIt.
+
+    BankIt is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    BankIt is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+
+--%>
+<%@ page pageEncoding="UTF-8" contentType="text/html; charset=UTF-8" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="spring" uri="http://www.springframework.org/tags" %>
+<%@ taglib prefix="form" uri="http://www.springframework.org/tags/form"%>
+<html>
+<head>
+	<title>Règles de catégorisation</title>
+</head>
+
+<body>
+<h4>Règles de catégorisation</h4>
+<p>Les opérations importées sans catégorie dont le libellé contient le texte d'une règle reçoivent sa catégorie.
+Si plusieurs règles correspondent, la plus longue l'emporte.</p>
+
+<%-- ACTIONS ALERT --%>
+<div class="row">
+	<div class="span6">
+		<c:if test="${added}">
+			<div class="alert alert-success">
+				<button type="button" class="close" data-dismiss="alert">×</button>
+				<strong>Règle ajoutée.</strong>
+			</div>
+		</c:if>
+		<c:if test="${deleted}">
+			<div class="alert alert-success">
+				<button type="button" class="close" data-dismiss="alert">×</button>
+				<strong>Règle supprimée.</strong>
+			</div>
+		</c:if>
+		<c:if test="${applied != null && applied >= 0}">
+			<div class="alert alert-success">
+				<button type="button" class="close" data-dismiss="alert">×</button>
+				<strong>${applied} opération(s) catégorisée(s).</strong>
+			</div>
+		</c:if>
+		<c:if test="${applied != null && applied < 0}">
+			<div class="alert alert-error">
+				<button type="button" class="close" data-dismiss="alert">×</button>
+				<strong>Les règles sont déjà en cours d'application.</strong>
+			</div>
+		</c:if>
+	</div>
+</div>
+
+<%-- RULES LIST --%>
+<div class="row">
+	<div class="span6">
+		<table class="table table-striped table-hover table-condensed">
+			<thead>
+			<tr>
+				<th>Libellé contenant</th>
+				<th>Catégorie</th>
+				<th></th>
+			</tr>
+			</thead>
+
+			<tbody>
+			<c:forEach var="rule" items="${rules}">
+				<tr>
+					<td>${rule.pattern}</td>
+					<td>${rule.category.name}</td>
+					<td>
+						<a href="<c:url value='/options/rules/del/${rule.ruleId}'/>"><i class="icon-trash"></i></a>
+					</td>
+				</tr>
+			</c:forEach>
+			</tbody>
+		</table>
+
+		<form method="post" action="<c:url value='/options/rules/apply'/>">
+			<button type="submit" class="btn">Appliquer aux opérations sans catégorie</button>
+		</form>
+	</div>
+</div>
+
+<%-- ADD FORM --%>
+<div class="row">
+	<div class="span6">
+		<h5>Nouvelle règle</h5>
+		<c:url var="formUrl" value="/options/rules/add"/>
+		<form:form method="post" commandName="rule" action="${formUrl}" cssClass="form-validate form-horizontal">
+
+			<spring:bind path="pattern">
+			<div class="control-group ${status.error ? 'error' : '' }">
+				<form:label cssClass="control-label" path="pattern">Libellé contenant:</form:label>
+				<div class="controls">
+					<form:input path="pattern" placeholder="texte" cssClass="required" maxlength="255" />
+					<c:if test="${status.error}">
+						<span class="help-inline">${status.errorMessage}</span>
+					</c:if>
+				</div>
+			</div>
+			</spring:bind>
+
+			<spring:bind path="category">
+			<div class="control-group ${status.error ? 'error' : '' }">
+				<form:label cssClass="control-label" path="category.categoryId">Catégorie:</form:label>
+				<div class="controls">
+					<form:select path="category.categoryId" items="${categories}" itemValue="categoryId" itemLabel="name" />
+					<c:if test="${status.error}">
+						<span class="help-inline">${status.errorMessage}</span>
+					</c:if>
+				</div>
+			</div>
+			</spring:bind>
+
+			<div class="control-group">
+				<div class="controls">
+					<button type="submit" class="btn btn-primary">Ajouter</button>
+				</div>
+			</div>
+		</form:form>
+	</div>
+</div>
+
+</body>
+
+</html>
@@ -0,0 +1,154 @@
+<%--
+
+    Copyright (C) 2012 Alexandre Thomazo
+
+    This file is part of BankIt.
+
+    BankIt is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    BankIt is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+
+--%>
+<%@ page pageEncoding="UTF-8" contentType="text/html; charset=UTF-8" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
+<html>
+<head>
+	<title>Statistiques</title>
+</head>
+
+<body>
+<h4>Statistiques</h4>
+<c:choose>
+<c:when test="${!enabled}">
+<p>Les statistiques de Hibernate sont désactivées (<code>hibernate.generate_statistics</code>).</p>
+</c:when>
+<c:otherwise>
+<form method="post" action="<c:url value='/options/stats/clear' />" class="pull-right">
+	<button type="submit" class="btn">Remettre à zéro</button>
+</form>
+<p>Statistiques depuis le <fmt:formatDate value="${startTime}" pattern="dd/MM/yyyy HH:mm:ss" />.
+<c:if test="${threshold >= 0}">Les requêtes de plus de ${threshold} ms sont écrites dans <code>bankit-slowquery.log</code>.</c:if></p>
+
+<%-- Summary --%>
+<div class="row">
+	<div class="span5">
+		<h5>Requêtes</h5>
+		<table class="table table-striped table-condensed">
+			<tr><td>Sessions ouvertes</td><td>${statistics.sessionOpenCount}</td></tr>
+			<tr><td>Transactions</td><td>${statistics.transactionCount}</td></tr>
+			<tr><td>Requêtes préparées</td><td>${statistics.prepareStatementCount}</td></tr>
+			<tr><td>Requêtes exécutées</td><td>${statistics.queryExecutionCount}</td></tr>
+			<tr><td>Requête la plus lente (ms)</td><td>${statistics.queryExecutionMaxTime}</td></tr>
+		</table>
+	</div>
+	<div class="span5">
+		<h5>Entités</h5>
+		<table class="table table-striped table-condensed">
+			<tr><td>Chargées</td><td>${statistics.entityLoadCount}</td></tr>
+			<tr><td>Chargées à la demande</td><td>${statistics.entityFetchCount}</td></tr>
+			<tr><td>Collections chargées</td><td>${statistics.collectionLoadCount}</td></tr>
+			<tr><td>Insérées / modifiées / supprimées</td>
+				<td>${statistics.entityInsertCount} / ${statistics.entityUpdateCount} / ${statistics.entityDeleteCount}</td></tr>
+			<tr><td>Cache de second niveau (succès / échecs)</td>
+				<td>${statistics.secondLevelCacheHitCount} / ${statistics.secondLevelCacheMissCount}
+				<c:if test="${statistics.secondLevelCacheHitCount + statistics.secondLevelCacheMissCount > 0}">
+				(<fmt:formatNumber type="percent" value="${statistics.secondLevelCacheHitCount / (statistics.secondLevelCacheHitCount + statistics.secondLevelCacheMissCount)}" />)
+				</c:if></td></tr>
+		</table>
+	</div>
+</div>
+
+<%-- Slowest queries --%>
+<h5>Requêtes les plus lentes</h5>
+<table class="table table-striped table-condensed">
+	<thead>
+	<tr>
+		<th>Requête</th>
+		<th>Exécutions</th>
+		<th>Lignes</th>
+		<th>Moyenne (ms)</th>
+		<th>Max (ms)</th>
+	</tr>
+	</thead>
+	<tbody>
+	<c:forEach var="query" items="${queries}">
+		<tr>
+			<td><c:out value="${query.key}" /></td>
+			<td>${query.value.executionCount}</td>
+			<td>${query.value.executionRowCount}</td>
+			<td>${query.value.executionAvgTime}</td>
+			<td>${query.value.executionMaxTime}</td>
+		</tr>
+	</c:forEach>
+	</tbody>
+</table>
+
+<%-- Entities --%>
+<h5>Entités</h5>
+<table class="table table-striped table-condensed">
+	<thead>
+	<tr>
+		<th>Entité</th>
+		<th>Chargées</th>
+		<th>À la demande</th>
+		<th>Insérées</th>
+		<th>Modifiées</th>
+		<th>Supprimées</th>
+	</tr>
+	</thead>
+	<tbody>
+	<c:forEach var="entity" items="${entities}">
+		<tr>
+			<td>${entity.key}</td>
+			<td>${entity.value.loadCount}</td>
+			<td>${entity.value.fetchCount}</td>
+			<td>${entity.value.insertCount}</td>
+			<td>${entity.value.updateCount}</td>
+			<td>${entity.value.deleteCount}</td>
+		</tr>
+	</c:forEach>
+	</tbody>
+</table>
+
+<%-- Second-level cache regions --%>
+<c:if test="${!empty regions}">
+<h5>Cache de second niveau</h5>
+<table class="table table-striped table-condensed">
+	<thead>
+	<tr>
+		<th>Région</th>
+		<th>Succès</th>
+		<th>Échecs</th>
+		<th>Ajouts</th>
+		<th>Taux de succès</th>
+	</tr>
+	</thead>
+	<tbody>
+	<c:forEach var="region" items="${regions}">
+		<tr>
+			<td>${region.key}</td>
+			<td>${region.value.hitCount}</td>
+			<td>${region.value.missCount}</td>
+			<td>${region.value.putCount}</td>
+			<td><c:if test="${region.value.hitCount + region.value.missCount > 0}">
+				<fmt:formatNumber type="percent" value="${region.value.hitCount / (region.value.hitCount + region.value.missCount)}" />
+			</c:if></td>
+		</tr>
+	</c:forEach>
+	</tbody>
+</table>
+</c:if>
+</c:otherwise>
+</c:choose>
+</body>
+</html>
@@ -40,7 +40,7 @@
 			<div class="span6 offset3 well" style="text-align: center">
 				<div id="loading-stop">
 					<h2>Arrêt de BankIt en cours</h2>
-					<img src="<c:url value='/static/img/stop-loader.gif'/>">
+					<img src="<c:url value='${assetsUrl}/img/stop-loader.gif'/>">
 				</div>
 				<div id="stopped" style="display: none">
 					<h2>BankIt est arrêté</h2>
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.assets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.script.Compilable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Test class for AssetBuilder
+ * 
+ * @author Alexandre Thomazo
+ */
+public class AssetBuilderTest {
+
+	/** Static directory of the webapp */
+	private static final File STATIC_DIR = new File("src/main/webapp/static");
+	
+	/** Test the bundles and the version */
+	@Test
+	public void testBuild() throws Exception {
+		Map<String, byte[]> files = new HashMap<String, byte[]>();
+		files.put("js/a.js", "var a = 1\n".getBytes("UTF-8"));
+		files.put("js/b.js", "(function() { })()".getBytes("UTF-8"));
+		files.put("img/c.png", new byte[] { 1, 2, 3 });
+		Properties config = new Properties();
+		config.setProperty("bundle.js/all.js", "js/a.js, js/b.js");
+		
+		AssetBuilder builder = new AssetBuilder();
+		builder.build(files, config);
+		String version = builder.getVersion();
+		
+		assertEquals("bundle", "var a=1;\n(function(){})();\n", new String(builder.getAsset("js/all.js"), "UTF-8"));
+		assertEquals("file", 3, builder.getAsset("img/c.png").length);
+		
+		//same content, same version
+		builder.build(files, config);
+		assertEquals("same version", version, builder.getVersion());
+		
+		//written in the webapp
+		File dir = new File(System.getProperty("java.io.tmpdir"), "bankit-assets-" + version);
+		try {
+			builder.export(dir);
+			assertTrue("exported", new File(dir, version + "/js/all.js").isFile());
+			assertTrue("gzipped", new File(dir, version + "/js/all.js.gz").isFile());
+			assertFalse("image not gzipped", new File(dir, version + "/img/c.png.gz").exists());
+			
+			Properties manifest = new Properties();
+			InputStream in = new FileInputStream(new File(dir, AssetBuilder.MANIFEST));
+			try {
+				manifest.load(in);
+			} finally {
+				in.close();
+			}
+			assertEquals("manifest", version, manifest.getProperty(AssetBuilder.VERSION));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+		
+		files.put("img/c.png", new byte[] { 1, 2, 4 });
+		builder.build(files, config);
+		assertFalse("new version", version.equals(builder.getVersion()));
+	}
+	
+	/** Test the bundles of the webapp, checking the scripts still compile */
+	@Test
+	public void testWebappBundles() throws Exception {
+		Map<String, byte[]> files = AssetBuilder.readDir(STATIC_DIR);
+		long originalSize = 0;
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			String path = file.getKey();
+			if (path.endsWith(".js") || path.endsWith(".css")) originalSize += file.getValue().length;
+		}
+		
+		Properties config = new Properties();
+		InputStream in = new FileInputStream("src/main/assets/bundles.properties");
+		try {
+			config.load(in);
+		} finally {
+			in.close();
+		}
+		
+		AssetBuilder builder = new AssetBuilder();
+		builder.build(files, config);
+		
+		long minifiedSize = 0;
+		for (String path : files.keySet()) {
+			if (path.endsWith(".js") || path.endsWith(".css")) minifiedSize += builder.getAsset(path).length;
+		}
+		assertTrue("minified", minifiedSize < originalSize);
+		
+		//license comments kept
+		String main = new String(builder.getAsset("js/main.js"), "UTF-8");
+		assertTrue("jquery license", main.startsWith("/*!\n * jQuery JavaScript Library v1.8.1"));
+		assertTrue("sizzle license", main.contains("/*!\n * Sizzle CSS Selector Engine"));
+		assertTrue("bootstrap license", new String(builder.getAsset("css/main.css"), "UTF-8").startsWith("/*!"));
+		
+		//javascript engine only available from java 6 to 14
+		ScriptEngine engine = new ScriptEngineManager().getEngineByName("javascript");
+		if (!(engine instanceof Compilable)) return;
+		for (String path : new String[] { "js/main.js", "js/validate.js" }) {
+			assertNotNull(path, builder.getAsset(path));
+			((Compilable) engine).compile(new String(builder.getAsset(path), "UTF-8"));
+		}
+	}
+	
+}
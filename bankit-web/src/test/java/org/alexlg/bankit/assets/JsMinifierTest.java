@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.assets;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Test class for JsMinifier and CssMinifier
+ * 
+ * @author Alexandre Thomazo
+ */
+public class JsMinifierTest {
+
+	/** Test comments and whitespaces removed from a script */
+	@Test
+	public void testJs() throws Exception {
+		String js = "/* header */\nvar a = 1 ,  b = 'x  // y';\n"
+				+ "// comment\nfunction f( c ) {\n\treturn c + + a;\n}\n";
+		assertEquals("minified", "var a=1,b='x  // y';function f(c){return c+ +a;}",
+				JsMinifier.minify(js));
+	}
+	
+	/** Test regular expressions kept as is */
+	@Test
+	public void testJsRegexp() throws Exception {
+		String js = "var r = /^\\/\\/[a/]*  x/g;\nvar s = str.replace( /\\s+/ , ' ' );";
+		assertEquals("minified", "var r=/^\\/\\/[a/]*  x/g;var s=str.replace(/\\s+/,' ');",
+				JsMinifier.minify(js));
+	}
+	
+	/** Test license comments kept on their own lines */
+	@Test
+	public void testJsLicense() throws Exception {
+		String js = "/*! lib v1 | MIT */\n/* header */\nvar a = 1;\n"
+				+ "(function() {\n/*!\n * sub lib\n */\nvar b = a + 1;\n})();\n";
+		assertEquals("minified", "/*! lib v1 | MIT */\nvar a=1;(function(){\n/*!\n * sub lib\n */\nvar b=a+1;})();",
+				JsMinifier.minify(js));
+	}
+	
+	/** Test comments and whitespaces removed from a stylesheet */
+	@Test
+	public void testCss() throws Exception {
+		String css = "/* header */\n.list td ,\n.list th {\n\tcolor : red;\n"
+				+ "\tbackground: url(\"../img/a b.png\") no-repeat;\n}\na :hover { }\n";
+		assertEquals("minified", ".list td,.list th{color : red;"
+				+ "background: url(\"../img/a b.png\") no-repeat;}a :hover{}",
+				CssMinifier.minify(css));
+	}
+	
+	/** Test license comments kept in a stylesheet */
+	@Test
+	public void testCssLicense() throws Exception {
+		String css = "/*!\n * lib v2\n */\n/* header */\n.a { color: red; }\n/*! part */ .b { }\n";
+		assertEquals("minified", "/*!\n * lib v2\n */\n.a{color: red;}\n/*! part */\n.b{}",
+				CssMinifier.minify(css));
+	}
+	
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.boot;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.springframework.context.ApplicationContextException;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Test class for AsyncLiquibase
+ * 
+ * @author Alexandre Thomazo
+ */
+public class AsyncLiquibaseTest {
+
+	/** Test the context refresh failed by a broken update */
+	@Test
+	public void testFailedUpdate() throws Exception {
+		AsyncLiquibase liquibase = new AsyncLiquibase();
+		liquibase.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:liquibase-test", "sa", ""));
+		liquibase.setChangeLog("classpath:missing-changelog.xml");
+		liquibase.setResourceLoader(new DefaultResourceLoader());
+		liquibase.afterPropertiesSet();
+		
+		StaticApplicationContext context = new StaticApplicationContext();
+		context.getBeanFactory().registerSingleton("liquibase", liquibase);
+		try {
+			context.refresh();
+			fail("context started with a failed update");
+		} catch (ApplicationContextException e) {
+			assertTrue("update failure", e.getCause() instanceof IllegalStateException);
+		}
+		assertTrue("update done", liquibase.isDone());
+		assertFalse("not running", liquibase.isRunning());
+	}
+	
+}
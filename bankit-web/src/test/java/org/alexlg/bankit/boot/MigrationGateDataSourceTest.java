@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.boot;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for MigrationGateDataSource
+ * 
+ * @author Alexandre Thomazo
+ */
+public class MigrationGateDataSourceTest {
+
+	private DataSource target;
+	
+	private AsyncLiquibase liquibase;
+	
+	private MigrationGateDataSource dataSource;
+	
+	@Before
+	public void setUp() throws Exception {
+		target = mock(DataSource.class);
+		liquibase = mock(AsyncLiquibase.class);
+		dataSource = new MigrationGateDataSource();
+		dataSource.setTargetDataSource(target);
+		dataSource.setLiquibase(liquibase);
+	}
+	
+	/** Test the connection given after the update, which is awaited only once */
+	@Test
+	public void testGetConnection() throws Exception {
+		Connection connection = mock(Connection.class);
+		when(target.getConnection()).thenReturn(connection);
+		
+		assertSame(connection, dataSource.getConnection());
+		assertSame(connection, dataSource.getConnection());
+		verify(liquibase, times(1)).await();
+	}
+	
+	/** Test the connection refused while the update failed */
+	@Test
+	public void testFailedUpdate() throws Exception {
+		doThrow(new IllegalStateException("Liquibase update failed")).when(liquibase).await();
+		
+		try {
+			dataSource.getConnection();
+			fail("connection given without update");
+		} catch (SQLException e) {
+			//expected
+		}
+		verify(target, times(0)).getConnection();
+	}
+	
+}
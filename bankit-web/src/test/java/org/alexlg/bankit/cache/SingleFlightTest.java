@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test class for SingleFlight
+ * 
+ * @author Alexandre Thomazo
+ */
+public class SingleFlightTest {
+
+	/** Test concurrent calls sharing one computation */
+	@Test
+	public void testCoalesce() throws Exception {
+		final SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger computations = new AtomicInteger();
+		final Callable<Object> loader = new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				computations.incrementAndGet();
+				release.await(10, TimeUnit.SECONDS);
+				return new Object();
+			}
+		};
+		
+		int nbCalls = 5;
+		ExecutorService executor = Executors.newFixedThreadPool(nbCalls);
+		try {
+			List<Future<Object>> results = new ArrayList<Future<Object>>();
+			for (int i = 0; i < nbCalls; i++) {
+				results.add(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						return flight.execute("key", loader);
+					}
+				}));
+			}
+			
+			//waiting for all the calls to join the computation
+			long timeout = System.currentTimeMillis() + 10000;
+			while (flight.getCoalesced() < nbCalls - 1) {
+				if (System.currentTimeMillis() > timeout) fail("calls not coalesced");
+				Thread.sleep(5);
+			}
+			release.countDown();
+			
+			Object value = results.get(0).get();
+			for (Future<Object> result : results) {
+				assertSame("same value", value, result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		assertEquals("computations", 1, computations.get());
+		assertEquals("executions", 1, flight.getExecutions());
+		assertEquals("coalesced", nbCalls - 1, flight.getCoalesced());
+		assertEquals("nothing in flight", 0, flight.getInFlight());
+	}
+	
+	/** Test the exception of the computation and a new computation after it */
+	@Test
+	public void testException() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<String, String>();
+		try {
+			flight.execute("key", new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					throw new IllegalStateException("failed");
+				}
+			});
+			fail("exception expected");
+		} catch (IllegalStateException e) {
+			assertEquals("message", "failed", e.getMessage());
+		}
+		
+		String value = flight.execute("key", new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return "value";
+			}
+		});
+		assertEquals("computed again", "value", value);
+		assertEquals("executions", 2, flight.getExecutions());
+	}
+	
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for VersionedCache
+ * 
+ * @author Alexandre Thomazo
+ */
+public class VersionedCacheTest {
+
+	private VersionedCache<String, String> cache;
+	
+	@Before
+	public void setUp() {
+		cache = new VersionedCache<String, String>(2);
+	}
+	
+	/** Test a value read with the same and another version */
+	@Test
+	public void testVersion() throws Exception {
+		cache.put("a", 1, "value");
+		assertEquals("same version", "value", cache.get("a", 1));
+		assertNull("other version", cache.get("a", 2));
+		assertEquals("outdated removed", 0, cache.size());
+		assertEquals("hits", 1, cache.getHits());
+		assertEquals("misses", 1, cache.getMisses());
+	}
+	
+	/** Test the removal of the least recently used entry */
+	@Test
+	public void testEviction() throws Exception {
+		cache.put("a", 1, "a");
+		cache.put("b", 1, "b");
+		cache.get("a", 1);
+		cache.put("c", 1, "c");
+		
+		assertEquals("size", 2, cache.size());
+		assertEquals("a kept", "a", cache.get("a", 1));
+		assertNull("b removed", cache.get("b", 1));
+		assertEquals("c kept", "c", cache.get("c", 1));
+	}
+	
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2012-2013 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.controllers;
+
+import org.alexlg.bankit.dao.AbstractDaoTest;
+import org.alexlg.bankit.db.Cost;
+import org.alexlg.bankit.recurrence.Frequency;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the cost controller.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class CostControllerTest extends AbstractDaoTest {
+
+	@Autowired
+	private CostController costController;
+
+	/**
+	 * Test that a weekly cost starts on its week day.
+	 */
+	@Test
+	public void testInitStartDateWeekly() throws Exception {
+		//2012-08-25 is a saturday
+		LocalDate day = new LocalDate(2012, 8, 25);
+
+		Cost cost = buildCost(Frequency.WEEKLY, 3);
+		costController.initStartDate(cost, day);
+		assertEquals("next wednesday", new LocalDate(2012, 8, 29), new LocalDate(cost.getStartDate()));
+
+		cost = buildCost(Frequency.BIWEEKLY, 6);
+		costController.initStartDate(cost, day);
+		assertEquals("same day", day, new LocalDate(cost.getStartDate()));
+
+		//start date given by the user
+		cost = buildCost(Frequency.WEEKLY, 1);
+		cost.setStartDate(new LocalDate(2012, 9, 4).toDate());
+		costController.initStartDate(cost, day);
+		assertEquals("monday after start", new LocalDate(2012, 9, 10), new LocalDate(cost.getStartDate()));
+	}
+
+	/**
+	 * Test the start date of the monthly and yearly costs.
+	 */
+	@Test
+	public void testInitStartDateDayOfMonth() throws Exception {
+		LocalDate day = new LocalDate(2012, 8, 25);
+
+		Cost cost = buildCost(Frequency.MONTHLY, 12);
+		costController.initStartDate(cost, day);
+		assertNull("monthly", cost.getStartDate());
+
+		cost = buildCost(Frequency.YEARLY, 12);
+		costController.initStartDate(cost, day);
+		assertEquals("yearly", day, new LocalDate(cost.getStartDate()));
+
+		cost = buildCost(Frequency.YEARLY, 12);
+		cost.setStartDate(new LocalDate(2012, 9, 4).toDate());
+		costController.initStartDate(cost, day);
+		assertEquals("yearly given", new LocalDate(2012, 9, 4), new LocalDate(cost.getStartDate()));
+	}
+
+	/**
+	 * Test that a weekly cost with a day out of the week is rejected.
+	 */
+	@Test
+	public void testAddWeeklyCostBadDay() throws Exception {
+		Cost cost = buildCost(Frequency.WEEKLY, 15);
+		BindingResult result = new BeanPropertyBindingResult(cost, "cost");
+
+		String view = costController.addCost(cost, result, new RedirectAttributesModelMap());
+		assertEquals("view", "cost/form", view);
+		assertTrue("day error", result.hasFieldErrors("day"));
+	}
+
+	/**
+	 * Build a cost
+	 * @param frequency Frequency of the cost
+	 * @param day Day of the cost
+	 * @return Cost
+	 */
+	private Cost buildCost(Frequency frequency, int day) {
+		Cost cost = new Cost();
+		cost.setLabel("TEST");
+		cost.setAmount(new BigDecimal("10"));
+		cost.setFrequency(frequency);
+		cost.setInterval(1);
+		cost.setDay(day);
+		return cost;
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.controllers.options;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.alexlg.bankit.dao.AbstractDaoTest;
+import org.alexlg.bankit.dao.CategoryDao;
+import org.alexlg.bankit.db.Category;
+import org.alexlg.bankit.metrics.SlowQueryStatistics;
+import org.alexlg.bankit.metrics.SlowQueryStatisticsFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.ui.ModelMap;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+/**
+ * Test class for the Hibernate statistics controller.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class StatisticsControllerTest extends AbstractDaoTest {
+
+	@Autowired
+	private StatisticsController statisticsController;
+	
+	@Autowired
+	private CategoryDao categoryDao;
+	
+	/** Test the statistics shown after a query */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testShowStatistics() throws Exception {
+		statisticsController.clearStatistics();
+		categoryDao.getList();
+		
+		ModelMap model = new ModelMap();
+		assertEquals("options/stats", statisticsController.showStatistics(model));
+		assertEquals("enabled", true, model.get("enabled"));
+		assertEquals("threshold", (long) SlowQueryStatisticsFactory.DEFAULT_THRESHOLD, model.get("threshold"));
+		
+		Map<String, QueryStatistics> queries = (Map<String, QueryStatistics>) model.get("queries");
+		assertEquals("nb queries", 1, queries.size());
+		assertEquals("executions", 1, queries.values().iterator().next().getExecutionCount());
+		
+		Map<String, EntityStatistics> entities = (Map<String, EntityStatistics>) model.get("entities");
+		assertNotNull("category", entities.get(Category.class.getName()));
+		
+		//clearing
+		statisticsController.clearStatistics();
+		statisticsController.showStatistics(model);
+		assertTrue("cleared", ((Map<String, QueryStatistics>) model.get("queries")).isEmpty());
+	}
+	
+	/** Test that only the queries above the threshold are logged */
+	@Test
+	public void testSlowQueryLog() throws Exception {
+		Logger logger = (Logger) LoggerFactory.getLogger(SlowQueryStatistics.class);
+		ListAppender<ILoggingEvent> appender = new ListAppender<ILoggingEvent>();
+		appender.start();
+		logger.addAppender(appender);
+		try {
+			SlowQueryStatistics statistics = new SlowQueryStatistics(null, 100);
+			statistics.queryExecuted("from Fast", 1, 99);
+			statistics.queryExecuted("from Slow", 12, 100);
+			
+			assertEquals("nb logged", 1, appender.list.size());
+			assertEquals("message", "100 ms, 12 rows: from Slow", appender.list.get(0).getFormattedMessage());
+			assertEquals("executions", 2, statistics.getQueryExecutionCount());
+		} finally {
+			logger.detachAppender(appender);
+		}
+	}
+	
+}
@@ -64,6 +64,10 @@ public abstract class AbstractDaoTest extends AbstractTransactionalJUnit4SpringC
 	protected void flush() {
 		em.flush();
 	}
+	
+	protected void clear() {
+		em.clear();
+	}
 
 	public DataSource getDataSrc() {
 		return dataSrc;
@@ -19,6 +19,7 @@
 package org.alexlg.bankit.dao;
 
 import org.alexlg.bankit.db.Category;
+import org.alexlg.bankit.db.CategoryRule;
 import org.joda.time.YearMonth;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,6 +28,7 @@ import java.math.BigDecimal;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * {@link CategoryDao} test class
@@ -38,6 +40,15 @@ public class CategoryDaoTest extends AbstractDaoTest {
 	@Autowired
 	private CategoryDao categoryDao;
 
+	@Autowired
+	private OperationDao operationDao;
+
+	@Autowired
+	private CostDao costDao;
+
+	@Autowired
+	private CategoryRuleDao categoryRuleDao;
+
 	/** Test if each category has the correct amount */
 	@Test
 	public void testGetMonthSummary() throws Exception {
@@ -93,4 +104,47 @@ public class CategoryDaoTest extends AbstractDaoTest {
 		assertEquals("Not checked all categories", 4, i);
 	}
 	
+	/** Test that deleting a category keeps its operations and costs */
+	@Test
+	public void testDelete() throws Exception {
+		addRule("free", 2);
+		categoryDao.delete(categoryDao.get(2));
+		flush();
+
+		assertNull("category deleted", categoryDao.get(2));
+		assertNull("operation kept", operationDao.get(15).getCategory());
+		assertNull("planned operation kept", operationDao.get(10).getCategory());
+		assertNull("cost kept", costDao.get(4).getCategory());
+		assertEquals("rule deleted", 0, categoryRuleDao.count());
+		assertEquals("other category untouched", 1, operationDao.get(1).getCategory().getCategoryId());
+	}
+
+	/** Test the merge of a category into another */
+	@Test
+	public void testMerge() throws Exception {
+		addRule("free", 2);
+		categoryDao.merge(categoryDao.get(2), categoryDao.get(4));
+		flush();
+		//the rule inserted is managed and not updated by the bulk update
+		clear();
+
+		assertNull("category deleted", categoryDao.get(2));
+		assertEquals("operation moved", 4, operationDao.get(15).getCategory().getCategoryId());
+		assertEquals("operation moved", 4, operationDao.get(6).getCategory().getCategoryId());
+		assertEquals("cost moved", 4, costDao.get(4).getCategory().getCategoryId());
+		assertEquals("rule moved", 4, categoryRuleDao.getList().get(0).getCategory().getCategoryId());
+	}
+
+	/**
+	 * Insert a rule.
+	 * @param pattern Pattern of the rule
+	 * @param catId Id of the category
+	 */
+	private void addRule(String pattern, int catId) {
+		CategoryRule rule = new CategoryRule();
+		rule.setPattern(pattern);
+		rule.setCategory(categoryDao.get(catId));
+		categoryRuleDao.insert(rule);
+	}
+	
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.dao;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DataVersion} test class
+ * 
+ * @author Alexandre Thomazo
+ */
+public class DataVersionTest extends AbstractDaoTest {
+
+	@Autowired
+	private DataVersion dataVersion;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	/** Test that the version changes at the commit of the write */
+	@Test
+	public void testBump() throws Exception {
+		final long before = bumpInNewTransaction(1);
+		long after = dataVersion.get();
+		assertTrue("version changed after the commit", after > before);
+		
+		//same version if nothing is written
+		assertEquals("same version", after, dataVersion.get());
+	}
+	
+	/** Test that a write of another node changes the version */
+	@Test
+	public void testOtherNode() throws Exception {
+		bumpInNewTransaction(1);
+		long before = dataVersion.get();
+		
+		simpleJdbcTemplate.update("update data_version set version = version + 1 where version_id = 1");
+		assertEquals("version changed by the other node", before + 1, dataVersion.get());
+	}
+	
+	/** Test that the rules version changes alone */
+	@Test
+	public void testBumpRules() throws Exception {
+		bumpInNewTransaction(1);
+		long global = dataVersion.get();
+		
+		final long before = bumpInNewTransaction(DataVersion.RULES);
+		assertTrue("rules version changed", dataVersion.get(DataVersion.RULES) > before);
+		assertEquals("same global version", global, dataVersion.get());
+	}
+	
+	/**
+	 * Change a version in a committed transaction.
+	 * @param versionId Id of the version
+	 * @return Version read in the transaction after the change
+	 */
+	private long bumpInNewTransaction(final int versionId) {
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return template.execute(new TransactionCallback<Long>() {
+			@Override
+			public Long doInTransaction(TransactionStatus status) {
+				dataVersion.bump(versionId);
+				//not changed before the commit
+				return dataVersion.get(versionId);
+			}
+		});
+	}
+	
+}
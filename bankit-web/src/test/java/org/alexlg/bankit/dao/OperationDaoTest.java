@@ -18,13 +18,16 @@
  */
 package org.alexlg.bankit.dao;
 
+import org.alexlg.bankit.db.Category;
 import org.alexlg.bankit.db.Operation;
 import org.joda.time.LocalDate;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -39,6 +42,9 @@ public class OperationDaoTest extends AbstractDaoTest {
 	@Autowired
 	OperationDao operationDao;
 	
+	@Autowired
+	CategoryDao categoryDao;
+	
 	/** Testing retrieval operation the 25th of the month  */
 	@Test
 	public void testGetHistoryEndMonth() throws Exception {
@@ -162,4 +168,23 @@ public class OperationDaoTest extends AbstractDaoTest {
 		realOp = operationDao.matchRealOp(planOp);
 		assertEquals("matched not the good operation", matchedOp, realOp);
 	}
+	
+	/** Test the category update of several operations */
+	@Test
+	public void testUpdateCategory() throws Exception {
+		Category cat = categoryDao.get(4);
+		
+		int nb = operationDao.updateCategory(cat, Arrays.asList(3, 5, 8, 999));
+		assertEquals("nb updated", 3, nb);
+		for (int opId : new int[] { 3, 5, 8 }) {
+			assertEquals("category of " + opId, cat, operationDao.get(opId).getCategory());
+		}
+		
+		nb = operationDao.updateCategory(null, Arrays.asList(11));
+		assertEquals("nb removed", 1, nb);
+		assertNull("category removed", operationDao.get(11).getCategory());
+		
+		List<Date> dates = operationDao.getOperationDates(Arrays.asList(3, 5, 8));
+		assertEquals("dates", 3, dates.size());
+	}
 }
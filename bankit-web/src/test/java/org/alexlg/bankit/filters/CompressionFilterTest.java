@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.filters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Test class for CompressionFilter
+ * 
+ * @author Alexandre Thomazo
+ */
+public class CompressionFilterTest {
+
+	private CompressionFilter filter;
+	
+	@Before
+	public void setUp() throws Exception {
+		MockFilterConfig config = new MockFilterConfig();
+		config.addInitParameter("mimeTypes", "text/html, application/json");
+		config.addInitParameter("minSize", "100");
+		filter = new CompressionFilter();
+		filter.init(config);
+	}
+	
+	/** Test a page compressed with gzip */
+	@Test
+	public void testGzip() throws Exception {
+		String page = buildPage(500);
+		MockHttpServletResponse response = doFilter("gzip, deflate", "text/html;charset=UTF-8", page);
+		
+		assertEquals("encoding", "gzip", response.getHeader("Content-Encoding"));
+		assertEquals("vary", "Accept-Encoding", response.getHeader("Vary"));
+		byte[] compressed = response.getContentAsByteArray();
+		assertArrayEquals("content", page.getBytes("UTF-8"),
+				read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+		assertTrue("smaller", compressed.length < page.length() / 5);
+	}
+	
+	/** Test deflate used when gzip is not accepted */
+	@Test
+	public void testDeflate() throws Exception {
+		String page = buildPage(10);
+		MockHttpServletResponse response = doFilter("gzip;q=0, deflate", "application/json", page);
+		
+		assertEquals("encoding", "deflate", response.getHeader("Content-Encoding"));
+		assertArrayEquals("content", page.getBytes("UTF-8"),
+				read(new InflaterInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))));
+	}
+	
+	/** Test responses sent as is */
+	@Test
+	public void testNotCompressed() throws Exception {
+		String page = buildPage(10);
+		
+		MockHttpServletResponse response = doFilter(null, "text/html", page);
+		assertNull("not accepted", response.getHeader("Content-Encoding"));
+		assertEquals("not accepted content", page, response.getContentAsString());
+		
+		response = doFilter("gzip", "image/png", page);
+		assertNull("other type", response.getHeader("Content-Encoding"));
+		assertEquals("other type content", page, response.getContentAsString());
+		
+		response = doFilter("gzip", "text/html", "<p>small</p>");
+		assertNull("too small", response.getHeader("Content-Encoding"));
+		assertEquals("too small content", "<p>small</p>", response.getContentAsString());
+		assertEquals("too small length", 12, response.getContentLength());
+	}
+	
+	/** Test the first bytes sent before the end of the page */
+	@Test
+	public void testFirstBytes() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/account/list");
+		request.addHeader("Accept-Encoding", "gzip");
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+		final String page = buildPage(100);
+		final int[] sentAtFlush = new int[1];
+		
+		filter.doFilter(request, response, new FilterChain() {
+			@Override
+			public void doFilter(ServletRequest req, ServletResponse resp)
+					throws IOException, ServletException {
+				resp.setContentType("text/html");
+				PrintWriter writer = resp.getWriter();
+				writer.write(page);
+				resp.flushBuffer();
+				sentAtFlush[0] = response.getContentAsByteArray().length;
+				writer.write(page);
+			}
+		});
+		
+		assertTrue("bytes sent at the flush", sentAtFlush[0] > 0);
+		byte[] compressed = response.getContentAsByteArray();
+		assertTrue("rest sent at the end", compressed.length > sentAtFlush[0]);
+		assertArrayEquals("content", (page + page).getBytes("UTF-8"),
+				read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+	}
+	
+	/** Test an exception of the application before anything is sent */
+	@Test
+	public void testExceptionNotCommitted() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/account/list");
+		request.addHeader("Accept-Encoding", "gzip");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		try {
+			filter.doFilter(request, response, new FilterChain() {
+				@Override
+				public void doFilter(ServletRequest req, ServletResponse resp)
+						throws IOException, ServletException {
+					resp.setContentType("text/html");
+					resp.getWriter().write(buildPage(100));
+					throw new ServletException("failed");
+				}
+			});
+			fail("exception expected");
+		} catch (ServletException e) {
+			assertEquals("message", "failed", e.getMessage());
+		}
+		
+		assertNull("not compressed", response.getHeader("Content-Encoding"));
+		assertEquals("nothing sent", 0, response.getContentAsByteArray().length);
+	}
+	
+	/** Test an exception of the application after the first bytes */
+	@Test
+	public void testExceptionCommitted() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/account/list");
+		request.addHeader("Accept-Encoding", "gzip");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		final String page = buildPage(100);
+		
+		try {
+			filter.doFilter(request, response, new FilterChain() {
+				@Override
+				public void doFilter(ServletRequest req, ServletResponse resp)
+						throws IOException, ServletException {
+					resp.setContentType("text/html");
+					resp.getWriter().write(page);
+					resp.flushBuffer();
+					throw new IllegalStateException("failed");
+				}
+			});
+			fail("exception expected");
+		} catch (IllegalStateException e) {
+			assertEquals("message", "failed", e.getMessage());
+		}
+		
+		//the compressed stream is terminated
+		assertEquals("encoding", "gzip", response.getHeader("Content-Encoding"));
+		assertArrayEquals("content", page.getBytes("UTF-8"),
+				read(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))));
+	}
+	
+	/**
+	 * Filter a response.
+	 * @param acceptEncoding Accept-Encoding header or null
+	 * @param contentType Content type of the response
+	 * @param content Content of the response
+	 * @return Response sent to the client
+	 */
+	private MockHttpServletResponse doFilter(String acceptEncoding,
+			final String contentType, final String content) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/account/list");
+		if (acceptEncoding != null) request.addHeader("Accept-Encoding", acceptEncoding);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		response.setCharacterEncoding("UTF-8");
+		
+		filter.doFilter(request, response, new FilterChain() {
+			@Override
+			public void doFilter(ServletRequest req, ServletResponse resp)
+					throws IOException, ServletException {
+				resp.setContentType(contentType);
+				resp.getWriter().write(content);
+			}
+		});
+		return response;
+	}
+	
+	/**
+	 * Build a page looking like the operations list.
+	 * @param nbRows Number of rows in the table
+	 * @return HTML content
+	 */
+	private String buildPage(int nbRows) {
+		StringBuilder page = new StringBuilder("<table>");
+		for (int i = 0; i < nbRows; i++) {
+			page.append("<tr><td class=\"date\">").append(i % 28 + 1).append("/01/2013</td>")
+				.append("<td class=\"label\">CB MAGASIN ").append(i).append("</td>")
+				.append("<td class=\"amount\">-").append(i * 7 % 100).append(",00</td></tr>\n");
+		}
+		return page.append("</table>").toString();
+	}
+	
+	private byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int len;
+		while ((len = in.read(buf)) > 0) out.write(buf, 0, len);
+		return out.toByteArray();
+	}
+	
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.interceptors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.alexlg.bankit.controllers.GitProperties;
+import org.alexlg.bankit.dao.DataVersion;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Test class for DataVersionETagInterceptor
+ * 
+ * @author Alexandre Thomazo
+ */
+public class DataVersionETagInterceptorTest {
+
+	private DataVersionETagInterceptor interceptor;
+	private DataVersion dataVersion;
+	
+	@Before
+	public void setUp() {
+		dataVersion = mock(DataVersion.class);
+		when(dataVersion.get()).thenReturn(1000L);
+		GitProperties gitProperties = new GitProperties();
+		gitProperties.setCommitIdAbbrev("abcdef");
+		
+		interceptor = new DataVersionETagInterceptor();
+		ReflectionTestUtils.setField(interceptor, "dataVersion", dataVersion);
+		ReflectionTestUtils.setField(interceptor, "gitProperties", gitProperties);
+	}
+	
+	/** Test the 304 with the ETag of the previous response */
+	@Test
+	public void testNotModified() throws Exception {
+		HandlerMethod handler = new HandlerMethod(this, "annotated");
+		
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertTrue("first call", interceptor.preHandle(new MockHttpServletRequest("GET", "/"), response, handler));
+		String etag = (String) response.getHeader("ETag");
+		
+		//same version
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("If-None-Match", etag);
+		response = new MockHttpServletResponse();
+		assertFalse("not modified", interceptor.preHandle(request, response, handler));
+		assertEquals("status", 304, response.getStatus());
+		
+		//data changed, by this node or another one
+		when(dataVersion.get()).thenReturn(2000L);
+		response = new MockHttpServletResponse();
+		assertTrue("modified", interceptor.preHandle(request, response, handler));
+		assertFalse("new etag", etag.equals(response.getHeader("ETag")));
+	}
+	
+	/** Test the Last-Modified built from the version */
+	@Test
+	public void testLastModified() throws Exception {
+		HandlerMethod handler = new HandlerMethod(this, "annotated");
+		long changed = System.currentTimeMillis() + 60000;
+		when(dataVersion.get()).thenReturn(changed);
+		
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertTrue("first call", interceptor.preHandle(new MockHttpServletRequest("GET", "/"), response, handler));
+		assertEquals("last modified", changed - changed % 1000, response.getHeaderValue("Last-Modified"));
+		
+		//changed again after the date of the browser
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("If-Modified-Since", changed);
+		when(dataVersion.get()).thenReturn(changed + 1000);
+		response = new MockHttpServletResponse();
+		assertTrue("modified", interceptor.preHandle(request, response, handler));
+	}
+	
+	/** Test a handler without annotation */
+	@Test
+	public void testNotAnnotated() throws Exception {
+		HandlerMethod handler = new HandlerMethod(this, "notAnnotated");
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("If-None-Match", "*");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		assertTrue("handled", interceptor.preHandle(request, response, handler));
+		assertNull("no etag", response.getHeader("ETag"));
+	}
+	
+	@DataVersionETag
+	public void annotated() {}
+	
+	public void notAnnotated() {}
+	
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.interceptors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.StringWriter;
+
+import org.alexlg.bankit.metrics.ByteHistogram;
+import org.alexlg.bankit.metrics.ThreadUsage;
+import org.alexlg.bankit.metrics.Timer;
+import org.alexlg.bankit.services.MetricsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Test class for MetricsInterceptor
+ * 
+ * @author Alexandre Thomazo
+ */
+public class MetricsInterceptorTest {
+
+	private MetricsInterceptor interceptor;
+	private MetricsService metricsService;
+	
+	@Before
+	public void setUp() {
+		metricsService = new MetricsService();
+		interceptor = new MetricsInterceptor();
+		ReflectionTestUtils.setField(interceptor, "metricsService", metricsService);
+	}
+	
+	/** Test the duration, CPU time and allocations recorded by handler */
+	@Test
+	public void testRecord() throws Exception {
+		HandlerMethod handler = new HandlerMethod(this, "handle");
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		interceptor.preHandle(request, response, handler);
+		handle();
+		interceptor.afterCompletion(request, response, handler, null);
+		
+		Timer duration = metricsService.timer("bankit_http_request_seconds", "",
+				"handler", "MetricsInterceptorTest.handle", "method", "GET", "status", "200");
+		assertEquals("duration", 1, duration.getCount());
+		
+		assumeTrue(ThreadUsage.cpuTime() >= 0);
+		Timer cpu = metricsService.timer("bankit_http_request_cpu_seconds", "",
+				"handler", "MetricsInterceptorTest.handle");
+		assertEquals("cpu", 1, cpu.getCount());
+		
+		assumeTrue(ThreadUsage.allocatedBytes() >= 0);
+		ByteHistogram allocated = metricsService.byteHistogram("bankit_http_request_allocated_bytes", "",
+				"handler", "MetricsInterceptorTest.handle");
+		assertEquals("allocations", 1, allocated.getCount());
+		assertTrue("1 MiB allocated", allocated.getSum() >= 1024 * 1024);
+		
+		StringWriter writer = new StringWriter();
+		metricsService.write(writer);
+		assertTrue("bytes buckets", writer.toString().contains(
+				"bankit_http_request_allocated_bytes_bucket{handler=\"MetricsInterceptorTest.handle\",le=\"1024.0\"} 0\n"));
+	}
+	
+	/** Handler allocating 1 MiB */
+	public byte[] handle() {
+		return new byte[1024 * 1024];
+	}
+	
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.matching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for LabelMatcher
+ * 
+ * @author Alexandre Thomazo
+ */
+public class LabelMatcherTest {
+
+	private LabelMatcher<String> matcher;
+	
+	@Before
+	public void setUp() {
+		matcher = new LabelMatcher<String>();
+	}
+	
+	/** Test the normalization of the labels */
+	@Test
+	public void testNormalize() throws Exception {
+		assertEquals("PRLV SEPA ELECTRICITE", LabelMatcher.normalize("  prlv   sepa électricité "));
+		assertEquals("", LabelMatcher.normalize(null));
+	}
+	
+	/** Test patterns found anywhere in the label, case and accents ignored */
+	@Test
+	public void testMatch() throws Exception {
+		matcher.add("carrefour", "Alimentation");
+		matcher.add("Free Mobile", "Communications");
+		matcher.add("essence", "Carburant");
+		
+		assertEquals("Alimentation", matcher.match("CB CARREFOUR MARKET 12/08"));
+		assertEquals("Communications", matcher.match("PRLV FREE  MOBILE"));
+		assertEquals("Carburant", matcher.match("Total Essence"));
+		assertNull(matcher.match("VIR SALAIRE"));
+		assertNull(matcher.match(null));
+	}
+	
+	/** Test patterns found through the failure links */
+	@Test
+	public void testOverlap() throws Exception {
+		matcher.add("abcd", "long");
+		matcher.add("bce", "suffix");
+		
+		//abc fails on e, continues from bc
+		assertEquals("suffix", matcher.match("xabcex"));
+		assertEquals("long", matcher.match("xabcdx"));
+	}
+	
+	/** Test the priority between several patterns found */
+	@Test
+	public void testPriority() throws Exception {
+		matcher.add("sncf", "Transport");
+		matcher.add("sncf internet", "Voyages");
+		matcher.add("loyer", "Logement");
+		matcher.add("assur", "Assurance");
+		matcher.add("loyer", "Duplicate");
+		
+		assertEquals("longest wins", "Voyages", matcher.match("CB SNCF INTERNET"));
+		assertEquals("shorter found", "Transport", matcher.match("CB SNCF GARE"));
+		assertEquals("same length, first added", "Logement", matcher.match("ASSUR LOYER"));
+		assertEquals("pattern counted", 5, matcher.size());
+	}
+	
+	/** Test a matcher without patterns */
+	@Test
+	public void testEmpty() throws Exception {
+		assertNull(matcher.match("ANY LABEL"));
+		matcher = new LabelMatcher<String>();
+		matcher.add("  ", "blank");
+		assertNull("blank pattern ignored", matcher.match("ANY LABEL"));
+	}
+	
+	/** Test that patterns can't be added once compiled */
+	@Test(expected=IllegalStateException.class)
+	public void testAddAfterMatch() throws Exception {
+		matcher.add("a", "a");
+		matcher.match("a");
+		matcher.add("b", "b");
+	}
+	
+}
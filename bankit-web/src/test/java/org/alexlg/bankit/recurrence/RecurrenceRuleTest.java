@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.recurrence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+/**
+ * Test class for RecurrenceRule and EpochDays
+ * 
+ * @author Alexandre Thomazo
+ */
+public class RecurrenceRuleTest {
+
+	/** Test the conversions between epoch days and dates */
+	@Test
+	public void testEpochDays() throws Exception {
+		assertEquals("epoch", 0, EpochDays.of(1970, 1, 1));
+		assertEquals("before epoch", -1, EpochDays.of(1969, 12, 31));
+		assertEquals("leap day", new LocalDate(2012, 2, 29), EpochDays.toLocalDate(EpochDays.of(2012, 2, 29)));
+		
+		//every day over 10 years
+		LocalDate date = new LocalDate(2010, 1, 1);
+		for (int i = 0 ; i < 3653 ; i++) {
+			int epochDay = EpochDays.of(date);
+			assertEquals("of " + date, date, EpochDays.toLocalDate(epochDay));
+			assertEquals("month " + date, date.getYear() * 12 + date.getMonthOfYear() - 1,
+					EpochDays.monthIndex(epochDay));
+			assertEquals("day of week " + date, date.getDayOfWeek(), EpochDays.dayOfWeek(epochDay));
+			date = date.plusDays(1);
+		}
+	}
+	
+	/** Test a monthly rule on the 31th, moved to the last day of short months */
+	@Test
+	public void testMonthly() throws Exception {
+		RecurrenceRule rule = new RecurrenceRule(31);
+		List<LocalDate> dates = expand(rule, new LocalDate(2012, 1, 15), new LocalDate(2012, 4, 30));
+		
+		assertEquals("size", 4, dates.size());
+		assertEquals("january", new LocalDate(2012, 1, 31), dates.get(0));
+		assertEquals("february", new LocalDate(2012, 2, 29), dates.get(1));
+		assertEquals("march", new LocalDate(2012, 3, 31), dates.get(2));
+		assertEquals("april", new LocalDate(2012, 4, 30), dates.get(3));
+	}
+	
+	/** Test a rule every 3 months from february with an end date */
+	@Test
+	public void testEveryNMonths() throws Exception {
+		RecurrenceRule rule = new RecurrenceRule(Frequency.MONTHLY, 3, 10,
+				EpochDays.of(2012, 2, 10), EpochDays.of(2013, 2, 9));
+		List<LocalDate> dates = expand(rule, new LocalDate(2012, 1, 1), new LocalDate(2013, 12, 31));
+		
+		assertEquals("size", 4, dates.size());
+		assertEquals("first", new LocalDate(2012, 2, 10), dates.get(0));
+		assertEquals("second", new LocalDate(2012, 5, 10), dates.get(1));
+		assertEquals("last", new LocalDate(2012, 11, 10), dates.get(3));
+	}
+	
+	/** Test a yearly rule starting from a date */
+	@Test
+	public void testYearly() throws Exception {
+		RecurrenceRule rule = new RecurrenceRule(Frequency.YEARLY, 1, 15,
+				EpochDays.of(2012, 6, 1), RecurrenceRule.UNBOUNDED_END);
+		List<LocalDate> dates = expand(rule, new LocalDate(2012, 6, 20), new LocalDate(2015, 1, 1));
+		
+		assertEquals("size", 2, dates.size());
+		assertEquals("first", new LocalDate(2013, 6, 15), dates.get(0));
+		assertEquals("second", new LocalDate(2014, 6, 15), dates.get(1));
+	}
+	
+	/** Test weekly and bi-weekly rules */
+	@Test
+	public void testWeekly() throws Exception {
+		//every monday from 2012-09-03
+		RecurrenceRule rule = new RecurrenceRule(Frequency.WEEKLY, 1, 3,
+				EpochDays.of(2012, 9, 3), RecurrenceRule.UNBOUNDED_END);
+		List<LocalDate> dates = expand(rule, new LocalDate(2012, 9, 5), new LocalDate(2012, 9, 30));
+		assertEquals("size", 3, dates.size());
+		assertEquals("first", new LocalDate(2012, 9, 10), dates.get(0));
+		assertEquals("last", new LocalDate(2012, 9, 24), dates.get(2));
+		
+		//every 2 weeks
+		rule = new RecurrenceRule(Frequency.BIWEEKLY, 1, 3,
+				EpochDays.of(2012, 9, 3), RecurrenceRule.UNBOUNDED_END);
+		dates = expand(rule, new LocalDate(2012, 9, 5), new LocalDate(2012, 9, 30));
+		assertEquals("size", 1, dates.size());
+		assertEquals("first", new LocalDate(2012, 9, 17), dates.get(0));
+	}
+	
+	/** Test an interval outside of the rule bounds */
+	@Test
+	public void testOutOfBounds() throws Exception {
+		RecurrenceRule rule = new RecurrenceRule(Frequency.MONTHLY, 1, 10,
+				EpochDays.of(2012, 2, 10), EpochDays.of(2012, 5, 1));
+		assertFalse("after end", rule.occurrences(EpochDays.of(2012, 6, 1), EpochDays.of(2012, 12, 1)).hasNext());
+		assertFalse("before start", rule.occurrences(EpochDays.of(2011, 6, 1), EpochDays.of(2012, 1, 1)).hasNext());
+	}
+	
+	/**
+	 * Expand the occurrences of a rule between two dates.
+	 */
+	private List<LocalDate> expand(RecurrenceRule rule, LocalDate from, LocalDate to) {
+		List<LocalDate> dates = new ArrayList<LocalDate>();
+		RecurrenceRule.Occurrences occurrences = rule.occurrences(EpochDays.of(from), EpochDays.of(to));
+		while (occurrences.hasNext()) {
+			dates.add(EpochDays.toLocalDate(occurrences.next()));
+		}
+		return dates;
+	}
+	
+}
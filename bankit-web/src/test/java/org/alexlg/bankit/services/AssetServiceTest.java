@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.alexlg.bankit.assets.AssetBuilder;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * Test class for AssetService
+ * 
+ * @author Alexandre Thomazo
+ */
+public class AssetServiceTest {
+
+	/** Test the loading of the assets built with the webapp */
+	@Test
+	public void testInit() throws Exception {
+		Map<String, byte[]> files = new HashMap<String, byte[]>();
+		files.put("js/a.js", "var a = 1\n".getBytes("UTF-8"));
+		files.put("img/c.png", new byte[] { 1, 2, 3 });
+		Properties config = new Properties();
+		config.setProperty("bundle.js/all.js", "js/a.js");
+		
+		AssetBuilder builder = new AssetBuilder();
+		builder.build(files, config);
+		
+		File webappDir = new File(System.getProperty("java.io.tmpdir"), "bankit-webapp-" + builder.getVersion());
+		try {
+			builder.export(new File(webappDir, AssetBuilder.ASSETS_DIR));
+			MockServletContext servletContext = new MockServletContext("file:" + webappDir.getAbsolutePath(),
+					new FileSystemResourceLoader());
+			
+			AssetService service = new AssetService();
+			service.setServletContext(servletContext);
+			service.init();
+			
+			String version = builder.getVersion();
+			assertEquals("version", version, service.getVersion());
+			assertEquals("url", "/assets/" + version, servletContext.getAttribute(AssetService.ASSETS_URL_ATTR));
+			assertEquals("bundle", "var a=1;\n", new String(service.getAsset("js/all.js"), "UTF-8"));
+			assertEquals("file", 3, service.getAsset("img/c.png").length);
+			assertNull("gzipped copy not loaded", service.getAsset("js/all.js.gz"));
+			assertEquals("dir", new File(webappDir, AssetBuilder.ASSETS_DIR + version).getCanonicalPath(),
+					new File((String) servletContext.getAttribute(AssetService.ASSETS_DIR_ATTR)).getCanonicalPath());
+		} finally {
+			FileUtils.deleteDirectory(webappDir);
+		}
+	}
+	
+	/** Test that a webapp without built assets doesn't start */
+	@Test(expected=FileNotFoundException.class)
+	public void testNotBuilt() throws Exception {
+		AssetService service = new AssetService();
+		service.setServletContext(new MockServletContext("file:" + System.getProperty("java.io.tmpdir"),
+				new FileSystemResourceLoader()));
+		service.init();
+	}
+	
+}
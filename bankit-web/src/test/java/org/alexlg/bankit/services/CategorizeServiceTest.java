@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.alexlg.bankit.dao.AbstractDaoTest;
+import org.alexlg.bankit.dao.CategoryDao;
+import org.alexlg.bankit.dao.CategoryRuleDao;
+import org.alexlg.bankit.dao.DataVersion;
+import org.alexlg.bankit.dao.OperationDao;
+import org.alexlg.bankit.db.CategoryRule;
+import org.alexlg.bankit.db.Operation;
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Test class for {@link CategorizeService}
+ * 
+ * @author Alexandre Thomazo
+ */
+public class CategorizeServiceTest extends AbstractDaoTest {
+
+	@Autowired
+	private CategorizeService categorizeService;
+	
+	@Autowired
+	private CategoryRuleDao categoryRuleDao;
+	
+	@Autowired
+	private CategoryDao categoryDao;
+	
+	@Autowired
+	private OperationDao operationDao;
+	
+	@Autowired
+	private OptionsService optionsService;
+	
+	@Autowired
+	private SyncService syncService;
+	
+	@Before
+	public void setUp() {
+		addRule("supermarche", 3);
+		addRule("free mobile", 2);
+		addRule("essence", 1);
+		categorizeService.invalidate();
+	}
+	
+	@After
+	public void tearDown() {
+		//the rules are rolled back, so must be the compiled ones
+		categorizeService.invalidate();
+	}
+	
+	/**
+	 * Test the categorization of the imported operations.
+	 */
+	@Test
+	public void testSyncOpList() throws Exception {
+		List<Operation> ops = new ArrayList<Operation>();
+		ops.add(newOp("CB Supermarché du centre", null));
+		ops.add(newOp("PRLV FREE MOBILE", null));
+		ops.add(newOp("VIR SALAIRE", null));
+		ops.add(newOp("ESSENCE", 4));
+		
+		optionsService.set(SyncService.OP_SYNC_OPT, new LocalDate(2012, 9, 1).toDate());
+		List<Integer> ids = syncService.syncOpList(ops);
+		flush();
+		
+		assertEquals("inserted", 4, ids.size());
+		assertEquals("matched", 3, operationDao.get(ids.get(0)).getCategory().getCategoryId());
+		assertEquals("matched", 2, operationDao.get(ids.get(1)).getCategory().getCategoryId());
+		assertNull("not matched", operationDao.get(ids.get(2)).getCategory());
+		assertEquals("category kept", 4, operationDao.get(ids.get(3)).getCategory().getCategoryId());
+	}
+	
+	/**
+	 * Test that a new rule is used once the compiled rules are invalidated.
+	 */
+	@Test
+	public void testInvalidate() throws Exception {
+		List<Operation> ops = new ArrayList<Operation>();
+		ops.add(newOp("VIR SALAIRE", null));
+		assertEquals(0, categorizeService.categorize(ops));
+		
+		addRule("salaire", 4);
+		categorizeService.invalidate();
+		assertEquals(1, categorizeService.categorize(ops));
+		assertEquals(4, ops.get(0).getCategory().getCategoryId());
+	}
+	
+	/**
+	 * Test that rules committed by another node are used
+	 * without invalidating the compiled ones.
+	 */
+	@Test
+	public void testCommittedRules() throws Exception {
+		List<Operation> ops = new ArrayList<Operation>();
+		ops.add(newOp("VIR SALAIRE", null));
+		assertEquals(0, categorizeService.categorize(ops));
+		
+		//not committed, same rules version
+		addRule("salaire", 4);
+		assertEquals("compiled rules kept", 0, categorizeService.categorize(ops));
+		
+		//other data committed, same rules version
+		bumpVersion(1);
+		assertEquals("compiled rules kept after a write", 0, categorizeService.categorize(ops));
+		
+		//rules version changed by the commit
+		bumpVersion(DataVersion.RULES);
+		assertEquals("rules compiled again", 1, categorizeService.categorize(ops));
+		assertEquals(4, ops.get(0).getCategory().getCategoryId());
+	}
+	
+	/**
+	 * Test the rules applied to the history by the batch job.
+	 */
+	@Test
+	public void testApplyToHistory() throws Exception {
+		addRule("retrait", 4);
+		addRule("epargne", 1);
+		categorizeService.invalidate();
+		
+		assertEquals("categorized", 2, categorizeService.applyToHistory());
+		//the operations are updated without the entity manager
+		clear();
+		assertEquals("RETRAIT", 4, operationDao.get(7).getCategory().getCategoryId());
+		assertEquals("EPARGNE", 1, operationDao.get(4).getCategory().getCategoryId());
+		assertNull("not matched", operationDao.get(2).getCategory());
+		assertEquals("category kept", 3, operationDao.get(3).getCategory().getCategoryId());
+		
+		//nothing left to categorize
+		assertEquals("second run", 0, categorizeService.applyToHistory());
+	}
+	
+	/**
+	 * Create a new operation to import.
+	 * @param label Label of the operation
+	 * @param catId Id of the category or null
+	 * @return Operation
+	 */
+	private Operation newOp(String label, Integer catId) {
+		Operation op = new Operation();
+		op.setLabel(label);
+		op.setAmount(new BigDecimal("-10"));
+		op.setOperationDate(new LocalDate(2012, 9, 10).toDate());
+		if (catId != null) op.setCategory(categoryDao.get(catId));
+		return op;
+	}
+	
+	/**
+	 * Change a version as a commit of another node.
+	 * @param versionId Id of the version
+	 */
+	private void bumpVersion(int versionId) {
+		if (simpleJdbcTemplate.update("update data_version set version = version + 1 where version_id = ?",
+				versionId) == 0) {
+			simpleJdbcTemplate.update("insert into data_version (version_id, version) values (?, 1)", versionId);
+		}
+	}
+	
+	/**
+	 * Insert a rule.
+	 * @param pattern Pattern of the rule
+	 * @param catId Id of the category
+	 */
+	private void addRule(String pattern, int catId) {
+		CategoryRule rule = new CategoryRule();
+		rule.setPattern(pattern);
+		rule.setCategory(categoryDao.get(catId));
+		categoryRuleDao.insert(rule);
+	}
+	
+}
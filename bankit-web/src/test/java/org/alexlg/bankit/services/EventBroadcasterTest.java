@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import javax.servlet.AsyncContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Test class for EventBroadcaster
+ * 
+ * @author Alexandre Thomazo
+ */
+public class EventBroadcasterTest {
+
+	private EventBroadcaster broadcaster;
+	
+	@Before
+	public void setUp() {
+		broadcaster = new EventBroadcaster();
+		broadcaster.start();
+	}
+	
+	@After
+	public void tearDown() {
+		broadcaster.stop();
+	}
+	
+	/** Test an event written to all the clients */
+	@Test
+	public void testPublish() throws Exception {
+		MockHttpServletResponse response1 = new MockHttpServletResponse();
+		MockHttpServletResponse response2 = new MockHttpServletResponse();
+		broadcaster.register(mockClient(response1));
+		broadcaster.register(mockClient(response2));
+		assertEquals("clients", 2, broadcaster.getClientCount());
+		
+		broadcaster.publish("balance", Collections.singletonMap("current", "12.50"));
+		
+		String expected = "event: balance\ndata: {\"current\":\"12.50\"}\n\n";
+		waitFor(response2, expected);
+		assertEquals("client 1", expected, response1.getContentAsString());
+		assertEquals("client 2", expected, response2.getContentAsString());
+	}
+	
+	/**
+	 * Create a client writing into a response.
+	 * @param response Response of the client
+	 * @return Asynchronous context of the client
+	 */
+	private AsyncContext mockClient(MockHttpServletResponse response) {
+		AsyncContext client = mock(AsyncContext.class);
+		when(client.getResponse()).thenReturn(response);
+		return client;
+	}
+	
+	/**
+	 * Wait for the broadcaster thread to write a content.
+	 * @param response Response written
+	 * @param content Content expected
+	 */
+	private void waitFor(MockHttpServletResponse response, String content) throws Exception {
+		long timeout = System.currentTimeMillis() + 5000;
+		while (!response.getContentAsString().equals(content) && System.currentTimeMillis() < timeout) {
+			Thread.sleep(5);
+		}
+		assertTrue("event received", response.getContentAsString().equals(content));
+	}
+	
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+import org.alexlg.bankit.metrics.FlightEvent;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test class for FlightRecorderService and the flight events
+ * 
+ * @author Alexandre Thomazo
+ */
+public class FlightRecorderServiceTest {
+
+	private static final FlightEvent.Type TEST_EVENT = new FlightEvent.Type(
+			"org.alexlg.bankit.Test", "Test", "rows");
+	
+	private final FlightRecorderService service = new FlightRecorderService();
+	
+	@After
+	public void stopRecording() throws Exception {
+		Object recording = service.getRecording();
+		if (recording != null) recording.getClass().getMethod("close").invoke(recording);
+	}
+	
+	/** Test that the events can be used with or without JFR */
+	@Test
+	public void testEvent() throws Exception {
+		assertEquals("available", service.isAvailable(), TEST_EVENT.isAvailable());
+		TEST_EVENT.begin().set("rows", 12).commit();
+		
+		if (TEST_EVENT.isAvailable()) {
+			try {
+				TEST_EVENT.begin().set("unknown", 1);
+				assertTrue("unknown field accepted", false);
+			} catch (IllegalArgumentException e) {
+				//ok
+			}
+		}
+	}
+	
+	/** Test the start and the dump of the recording */
+	@Test
+	public void testDump() throws Exception {
+		assumeTrue(service.isAvailable());
+		assertNull("not recording", service.getRecordingInfo());
+		assertFalse("no dump", service.dump(new ByteArrayOutputStream()));
+		
+		assertTrue("started", service.start());
+		assertTrue("already started", service.start());
+		Map<String, Object> info = service.getRecordingInfo();
+		assertNotNull("recording", info);
+		assertEquals("max age", 60L, info.get("maxAge"));
+		
+		TEST_EVENT.begin().set("rows", 12).commit();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue("dumped", service.dump(out));
+		byte[] bytes = out.toByteArray();
+		assertEquals("jfr file", "FLR", new String(bytes, 0, 3, "US-ASCII"));
+	}
+	
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import org.alexlg.bankit.dao.AbstractDaoTest;
+import org.alexlg.bankit.dao.JobLockDao;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link JobService}
+ * 
+ * @author Alexandre Thomazo
+ */
+public class JobServiceTest extends AbstractDaoTest {
+
+	@Autowired
+	private JobService jobService;
+	
+	@Autowired
+	private JobLockDao jobLockDao;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	/**
+	 * Test that a running job can't be locked by another
+	 * node and that the lock is released at the end.
+	 */
+	@Test
+	public void testRunJob() throws Exception {
+		final String name = "testRunJob";
+		final boolean[] locked = new boolean[1];
+		assertNull("no previous run", jobService.getLastSuccess(name));
+		
+		boolean success = jobService.runJob(name, new Runnable() {
+			@Override
+			public void run() {
+				Date now = new Date();
+				locked[0] = !jobLockDao.acquire(name, "otherNode", now,
+						new Date(now.getTime() + JobService.LEASE));
+			}
+		});
+		
+		assertTrue("job success", success);
+		assertTrue("lock not acquired by other node while running", locked[0]);
+		assertNotNull("run recorded", jobService.getLastSuccess(name));
+		
+		//lock released
+		Date later = new Date(System.currentTimeMillis() + 1000);
+		assertTrue("lock released", jobLockDao.acquire(name, "otherNode", later,
+				new Date(later.getTime() + JobService.LEASE)));
+	}
+	
+	/**
+	 * Test that a job isn't run if locked by another node.
+	 */
+	@Test
+	public void testRunJobLocked() throws Exception {
+		final String name = "testRunJobLocked";
+		final boolean[] run = new boolean[1];
+		
+		//lock owned by another node in a committed transaction
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		template.execute(new TransactionCallback<Boolean>() {
+			@Override
+			public Boolean doInTransaction(TransactionStatus status) {
+				Date now = new Date();
+				return jobLockDao.acquire(name, "otherNode", now, new Date(now.getTime() + JobService.LEASE));
+			}
+		});
+		
+		boolean success = jobService.runJob(name, new Runnable() {
+			@Override
+			public void run() {
+				run[0] = true;
+			}
+		});
+		
+		assertFalse("job not run", success);
+		assertFalse("job not run", run[0]);
+	}
+	
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import org.alexlg.bankit.controllers.AccountController;
+import org.alexlg.bankit.controllers.options.CategoryController;
+import org.alexlg.bankit.dao.AbstractDaoTest;
+import org.alexlg.bankit.dao.CategoryDao;
+import org.alexlg.bankit.dao.OperationDao;
+import org.alexlg.bankit.db.Category;
+import org.alexlg.bankit.db.Operation;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for {@link LiveUpdateService}, checking the
+ * events sent after the writes.
+ * 
+ * @author Alexandre Thomazo
+ */
+public class LiveUpdateServiceTest extends AbstractDaoTest {
+
+	@Autowired
+	private LiveUpdateService liveUpdateService;
+	
+	@Autowired
+	private AccountController accountController;
+	
+	@Autowired
+	private CategoryController categoryController;
+	
+	@Autowired
+	private SyncService syncService;
+	
+	@Autowired
+	private OptionsService optionsService;
+	
+	@Autowired
+	private OperationDao operationDao;
+	
+	@Autowired
+	private CategoryDao categoryDao;
+	
+	/** Service behind the transaction proxy */
+	private Object target;
+	
+	/** Broadcaster of the context, put back after the test */
+	private Object broadcaster;
+	
+	private EventBroadcaster mockBroadcaster;
+	
+	@Before
+	public void setUp() throws Exception {
+		target = ((Advised) liveUpdateService).getTargetSource().getTarget();
+		broadcaster = ReflectionTestUtils.getField(target, "eventBroadcaster");
+		mockBroadcaster = mock(EventBroadcaster.class);
+		ReflectionTestUtils.setField(target, "eventBroadcaster", mockBroadcaster);
+	}
+	
+	@After
+	public void tearDown() {
+		ReflectionTestUtils.setField(target, "eventBroadcaster", broadcaster);
+	}
+	
+	/** Test the category summary sent after a category change */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSaveCategory() throws Exception {
+		//SUPERMARCHE of 14/08/2012, from Alimentation to Carburant
+		Operation op = operationDao.get(3);
+		YearMonth month = new YearMonth(2012, 8);
+		Map<Integer, BigDecimal> before = amountsById(categoryDao.getMonthSummary(month));
+		
+		accountController.saveCategory(3, 1);
+		
+		ArgumentCaptor<Object> data = ArgumentCaptor.forClass(Object.class);
+		verify(mockBroadcaster).publish(eq("category"), data.capture());
+		Map<String, Object> event = (Map<String, Object>) data.getValue();
+		assertEquals("month", "2012-08", event.get("month"));
+		
+		Map<Integer, String> cells = new HashMap<Integer, String>();
+		for (Map<String, Object> cell : (List<Map<String, Object>>) event.get("categories")) {
+			cells.put((Integer) cell.get("id"), (String) cell.get("amount"));
+		}
+		BigDecimal amount = op.getAmount();
+		BigDecimal carburant = before.containsKey(1) ? before.get(1).add(amount) : amount;
+		assertEquals("Carburant", carburant.toString(), cells.get(1));
+		assertEquals("Alimentation", before.get(3).subtract(amount).toString(), cells.get(3));
+	}
+	
+	/** Test the single event sent after a category merge */
+	@Test
+	public void testMergeCategory() throws Exception {
+		//Alimentation into Carburant
+		categoryController.mergeCategory(3, 1, new RedirectAttributesModelMap());
+		
+		verify(mockBroadcaster).publish(eq("categories"), any());
+		verify(mockBroadcaster, times(1)).publish(anyString(), any());
+	}
+	
+	/** Test the balance sent after a synchronisation */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSyncOpList() throws Exception {
+		LocalDate today = new LocalDate();
+		BigDecimal before = operationDao.getBalanceHistory(today.plusDays(1));
+		BigDecimal plannedWaiting = operationDao.getPlannedWaiting(today);
+		if (plannedWaiting == null) plannedWaiting = BigDecimal.ZERO;
+		
+		Operation newOp = new Operation();
+		newOp.setAmount(new BigDecimal("-12.34"));
+		newOp.setOperationDate(today.toDate());
+		newOp.setLabel("CB BOULANGERIE");
+		List<Operation> ops = new ArrayList<Operation>();
+		ops.add(newOp);
+		optionsService.set(SyncService.OP_SYNC_OPT, (Date) null);
+		List<Integer> ids = syncService.syncOpList(ops);
+		liveUpdateService.balanceChanged(ids.size());
+		
+		ArgumentCaptor<Object> data = ArgumentCaptor.forClass(Object.class);
+		verify(mockBroadcaster).publish(eq("balance"), data.capture());
+		Map<String, Object> event = (Map<String, Object>) data.getValue();
+		BigDecimal current = before.add(new BigDecimal("-12.34"));
+		//the scale of the amounts depends on the database
+		assertEquals("current", 0, current.compareTo(new BigDecimal((String) event.get("current"))));
+		assertEquals("planned waiting", 0,
+				plannedWaiting.compareTo(new BigDecimal((String) event.get("plannedWaiting"))));
+		assertEquals("current waiting", 0,
+				current.add(plannedWaiting).compareTo(new BigDecimal((String) event.get("currentWaiting"))));
+		assertEquals("new operations", 1, event.get("newOps"));
+	}
+	
+	/**
+	 * Get the amounts of a category summary by category id.
+	 * @param summary Category summary of a month
+	 * @return Amounts by category id
+	 */
+	private Map<Integer, BigDecimal> amountsById(Map<Category, BigDecimal> summary) {
+		Map<Integer, BigDecimal> amounts = new HashMap<Integer, BigDecimal>();
+		for (Map.Entry<Category, BigDecimal> entry : summary.entrySet()) {
+			amounts.put(entry.getKey().getCategoryId(), entry.getValue());
+		}
+		return amounts;
+	}
+	
+}
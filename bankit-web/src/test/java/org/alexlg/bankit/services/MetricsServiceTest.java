@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2012 Alexandre Thomazo
+ *
+ * This file is part of BankIt.
+ *
+ * BankIt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BankIt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BankIt. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alexlg.bankit.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.alexlg.bankit.dao.AbstractDaoTest;
+import org.alexlg.bankit.dao.CategoryDao;
+import org.alexlg.bankit.metrics.Timer;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Test class for MetricsService
+ * 
+ * @author Alexandre Thomazo
+ */
+public class MetricsServiceTest extends AbstractDaoTest {
+
+	@Autowired
+	private MetricsService metricsService;
+	
+	@Autowired
+	private CategoryDao categoryDao;
+	
+	/** Test the text format of a counter with labels */
+	@Test
+	public void testCounter() throws Exception {
+		MetricsService service = new MetricsService();
+		service.counter("test_total", "Test counter", "name", "a\"b").add(3);
+		service.counter("test_total", "Test counter", "name", "a\"b").increment();
+		
+		StringWriter writer = new StringWriter();
+		service.write(writer);
+		assertEquals("# HELP test_total Test counter\n"
+				+ "# TYPE test_total counter\n"
+				+ "test_total{name=\"a\\\"b\"} 4\n", writer.toString());
+	}
+	
+	/** Test the cumulated buckets of a timer */
+	@Test
+	public void testTimer() throws Exception {
+		MetricsService service = new MetricsService();
+		Timer timer = service.timer("test_seconds", "Test timer");
+		assertSame("same timer", timer, service.timer("test_seconds", "Test timer"));
+		timer.record(500000); //0.5ms
+		timer.record(3000000); //3ms
+		timer.record(20000000000L); //20s
+		
+		StringWriter writer = new StringWriter();
+		service.write(writer);
+		String text = writer.toString();
+		assertTrue("1ms bucket", text.contains("test_seconds_bucket{le=\"0.001\"} 1\n"));
+		assertTrue("5ms bucket", text.contains("test_seconds_bucket{le=\"0.005\"} 2\n"));
+		assertTrue("10s bucket", text.contains("test_seconds_bucket{le=\"10.0\"} 2\n"));
+		assertTrue("last bucket", text.contains("test_seconds_bucket{le=\"+Inf\"} 3\n"));
+		assertTrue("count", text.contains("test_seconds_count 3\n"));
+		assertTrue("sum", text.contains("test_seconds_sum 20.0035\n"));
+		
+		assertEquals("median", 5, timer.getP50(), 0);
+		assertEquals("max", 20000, timer.getMax(), 0);
+	}
+	
+	/** A name can't be used by two types of metrics */
+	@Test(expected = IllegalArgumentException.class)
+	public void testTypeConflict() throws Exception {
+		MetricsService service = new MetricsService();
+		service.counter("test", "Test");
+		service.timer("test", "Test");
+	}
+	
+	/** Test the timing of the DAO calls */
+	@Test
+	public void testDaoTimer() throws Exception {
+		Timer timer = metricsService.timer("bankit_dao_call_seconds", "Duration of the DAO calls",
+				"dao", "CategoryDao", "method", "getList");
+		long count = timer.getCount();
+		categoryDao.getList();
+		assertEquals("call recorded", count + 1, timer.getCount());
+	}
+	
+}
@@ -18,21 +18,36 @@
  */
 package org.alexlg.bankit.services;
 
+import org.alexlg.bankit.boot.LinkCostOperationsChange;
 import org.alexlg.bankit.dao.AbstractDaoTest;
+import org.alexlg.bankit.dao.CostDao;
 import org.alexlg.bankit.dao.OperationDao;
+import org.alexlg.bankit.db.Cost;
 import org.alexlg.bankit.db.Operation;
+import org.alexlg.bankit.recurrence.RecurrenceRule;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
 import org.joda.time.LocalDate;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
 import java.io.FileInputStream;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 /**
@@ -51,6 +66,15 @@ public class SyncServiceTest extends AbstractDaoTest {
 	@Autowired
 	private OperationDao operationDao;
 	
+	@Autowired
+	private CostDao costDao;
+	
+	@PersistenceContext
+	private EntityManager em;
+	
+	/** Class logger */
+	private static Logger logger = LoggerFactory.getLogger(SyncServiceTest.class);
+	
 	/**
 	 * Test the materialization of operations from cost
 	 * within the same month.
@@ -113,6 +137,123 @@ public class SyncServiceTest extends AbstractDaoTest {
 		assertEquals("ops label", "PRLV Assurance Auto", ops.get(3).getLabel());
 	}
 	
+	/**
+	 * Test the materialization of operations from cost
+	 * after one year without synchronization with 200 costs.
+	 */
+	@Test
+	public void testMaterializeCostsIntoOperationCatchUp() throws Exception {
+		LocalDate previousSyncDate = new LocalDate(2011, 10, 1);
+		LocalDate endTestDate = new LocalDate(2012, 9, 29);
+		optionsService.set(SyncService.COST_SYNC_OPT, previousSyncDate.toDate());
+		
+		//adding costs to the 4 already present
+		for (int i = 0 ; i < 196 ; i++) {
+			Cost cost = new Cost();
+			cost.setDay(i % 31 + 1);
+			cost.setLabel("Cost " + i);
+			cost.setAmount(new BigDecimal("-10"));
+			costDao.insert(cost);
+		}
+		int nbOps = operationDao.count();
+		
+		//return a fixed date
+		syncService.setEndSyncDate(endTestDate);
+		
+		//calling method
+		long start = System.currentTimeMillis();
+		syncService.materializeCostsIntoOperation();
+		logger.info("One year catch-up with 200 costs in {} ms", System.currentTimeMillis() - start);
+		
+		//each cost is materialized once a month
+		assertEquals("ops created", 200 * 12, operationDao.count() - nbOps);
+		assertEquals("sync date", endTestDate.plusDays(2).toDate(),
+				optionsService.getDate(SyncService.COST_SYNC_OPT));
+	}
+	
+	/**
+	 * Test the update and the retraction of the planned
+	 * operations of a cost.
+	 */
+	@Test
+	public void testCostOperations() throws Exception {
+		LocalDate previousSyncDate = new LocalDate(2012, 9, 2);
+		LocalDate today = new LocalDate(2012, 9, 22);
+		optionsService.set(SyncService.COST_SYNC_OPT, previousSyncDate.toDate());
+		syncService.setEndSyncDate(today);
+		syncService.materializeCostsIntoOperation();
+		
+		//updating label of Free Mobile, the operation of the 24th is updated
+		Cost cost = costDao.get(4);
+		cost.setLabel("PRLV Free");
+		syncService.updateCostOperations(cost, cost.getRecurrenceRule());
+		List<Operation> ops = operationDao.getFuture(today);
+		assertEquals("ops size", 1, ops.size());
+		assertEquals("ops label", "PRLV Free", ops.get(0).getLabel());
+		
+		//moving the cost to the 23th, the operation is created again
+		RecurrenceRule previousRule = cost.getRecurrenceRule();
+		cost.setDay(23);
+		syncService.updateCostOperations(cost, previousRule);
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+		ops = operationDao.getFuture(today);
+		assertEquals("ops size", 1, ops.size());
+		assertEquals("ops date", "2012-09-23", sdf.format(ops.get(0).getOperationDate()));
+		
+		//retracting the cost, the future operation is deleted
+		syncService.retractCost(cost);
+		assertEquals("ops size", 0, operationDao.getFuture(today).size());
+		
+		//adding a new cost on the 22th, the operation is created
+		Cost newCost = new Cost();
+		newCost.setDay(22);
+		newCost.setLabel("New Cost");
+		newCost.setAmount(new BigDecimal("-5"));
+		costDao.insert(newCost);
+		syncService.materializeCost(newCost);
+		ops = operationDao.getFuture(today.minusDays(1));
+		assertEquals("ops size", 1, ops.size());
+		assertEquals("ops label", "New Cost", ops.get(0).getLabel());
+	}
+	
+	/**
+	 * Test the modification of a cost whose planned operations
+	 * were created before they were linked to their cost.
+	 */
+	@Test
+	public void testUnlinkedCostOperations() throws Exception {
+		LocalDate today = new LocalDate(2012, 9, 22);
+		optionsService.set(SyncService.COST_SYNC_OPT, new LocalDate(2012, 9, 24).toDate());
+		syncService.setEndSyncDate(today);
+		
+		//operation of Free Mobile created before the cost_id column,
+		//linked with the connection of the test transaction
+		em.createNativeQuery("insert into operations (operation_date, label, planned, category_id) "
+				+ "values ('2012-09-24', 'PRLV Free Mobile', -19.99, 2)").executeUpdate();
+		final int[] nbLinked = new int[1];
+		em.unwrap(Session.class).doWork(new Work() {
+			@Override
+			public void execute(Connection connection) throws SQLException {
+				nbLinked[0] = LinkCostOperationsChange.link(connection);
+			}
+		});
+		assertEquals("ops linked", 1, nbLinked[0]);
+		
+		//moving the cost to the 23th, the operation is moved without duplicate
+		Cost cost = costDao.get(4);
+		RecurrenceRule previousRule = cost.getRecurrenceRule();
+		cost.setDay(23);
+		syncService.updateCostOperations(cost, previousRule);
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+		List<Operation> ops = operationDao.getFuture(today);
+		assertEquals("ops size", 1, ops.size());
+		assertEquals("ops date", "2012-09-23", sdf.format(ops.get(0).getOperationDate()));
+		
+		//retracting the cost, no operation left
+		syncService.retractCost(cost);
+		assertEquals("ops size", 0, operationDao.getFuture(today).size());
+	}
+	
 	@Test
 	public void testMergeOldPlannedOps() throws Exception {
 		LocalDate testDate = new LocalDate(2012, 8, 29);
@@ -152,6 +293,89 @@ public class SyncServiceTest extends AbstractDaoTest {
 				operationDao.get(realOp2.getOperationId()).getPlanned());
 	}
 	
+	/**
+	 * Test the merge of planned operations restricted
+	 * to the operations just imported.
+	 */
+	@Test
+	public void testMergeOldPlannedOpsImported() throws Exception {
+		LocalDate testDate = new LocalDate(2012, 8, 29);
+
+		//return a fixed date
+		syncService.setEndSyncDate(testDate);
+
+		Calendar day = Calendar.getInstance();
+		day.clear();
+
+		//matches planned 14 on amount but not imported in this sync
+		Operation oldOp = new Operation();
+		oldOp.setAmount(new BigDecimal("-200"));
+		day.set(2012, Calendar.JUNE, 12);
+		oldOp.setOperationDate(day.getTime());
+		oldOp.setLabel("Test Planned Op");
+		operationDao.insert(oldOp);
+
+		//matches planned 12 on label, imported in this sync
+		Operation newOp = new Operation();
+		newOp.setAmount(new BigDecimal("-72.24"));
+		day.set(2012, Calendar.AUGUST, 29);
+		newOp.setOperationDate(day.getTime());
+		newOp.setLabel("Impots Revenu XYZ-AAA");
+
+		List<Operation> ops = new ArrayList<Operation>();
+		ops.add(newOp);
+		optionsService.set(SyncService.OP_SYNC_OPT, (Date) null);
+		List<Integer> opIds = syncService.syncOpList(ops);
+		assertEquals("imported ids", 1, opIds.size());
+
+		//start matching
+		syncService.mergeOldPlannedOps(opIds);
+
+		//only the planned operation near the imported one is merged
+		assertNotNull("planned 1 merged whereas not imported", operationDao.get(14));
+		assertNull("planned 2 matched not deleted", operationDao.get(12));
+		assertNull("real 1 planned amount updated",
+				operationDao.get(oldOp.getOperationId()).getPlanned());
+		assertEquals("real 2 planned amount not updated", new BigDecimal("-845.00"),
+				operationDao.get(newOp.getOperationId()).getPlanned());
+	}
+
+	/**
+	 * Test the merge with more imported operations
+	 * than the ids of one query.
+	 */
+	@Test
+	public void testMergeOldPlannedOpsManyImported() throws Exception {
+		LocalDate testDate = new LocalDate(2012, 8, 29);
+		syncService.setEndSyncDate(testDate);
+		
+		List<Operation> ops = new ArrayList<Operation>();
+		for (int i = 0; i < 1200; i++) {
+			Operation op = new Operation();
+			op.setAmount(new BigDecimal("-1.00"));
+			op.setOperationDate(testDate.toDate());
+			op.setLabel("CB BOULANGERIE " + i);
+			ops.add(op);
+		}
+		//matches planned 12 on label, ignoring the case
+		Operation newOp = new Operation();
+		newOp.setAmount(new BigDecimal("-72.24"));
+		newOp.setOperationDate(testDate.toDate());
+		newOp.setLabel("IMPOTS REVENU XYZ-AAA");
+		ops.add(newOp);
+		
+		optionsService.set(SyncService.OP_SYNC_OPT, (Date) null);
+		List<Integer> opIds = syncService.syncOpList(ops);
+		assertEquals("imported ids", 1201, opIds.size());
+		
+		syncService.mergeOldPlannedOps(opIds);
+		
+		assertNull("planned matched not deleted", operationDao.get(12));
+		assertEquals("real planned amount not updated", new BigDecimal("-845.00"),
+				operationDao.get(newOp.getOperationId()).getPlanned());
+		assertNotNull("planned not imported merged", operationDao.get(14));
+	}
+
 	@Test
 	public void testReadQifAndInsertOp() throws Exception {
 		//setting start option sync